@@ -0,0 +1,33 @@
+package io.lanki.edgeservice.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import org.springframework.core.io.buffer.DataBuffer;
+
+/** Copies a body up to a limit, giving up on bodies above it. */
+public final class BodyCollector {
+
+  private final long limit;
+
+  private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+  public BodyCollector(long limit) {
+    this.limit = limit;
+  }
+
+  public void add(DataBuffer buffer) {
+    var length = buffer.readableByteCount();
+    if (bytes == null || bytes.size() + length > limit) {
+      bytes = null;
+      return;
+    }
+    var chunk = new byte[length];
+    buffer.toByteBuffer(buffer.readPosition(), ByteBuffer.wrap(chunk), 0, length);
+    bytes.write(chunk, 0, length);
+  }
+
+  /** @return the body, or {@code null} when it was larger than the limit. */
+  public byte[] toByteArray() {
+    return bytes == null ? null : bytes.toByteArray();
+  }
+}
@@ -0,0 +1,76 @@
+package io.lanki.edgeservice.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.http.HttpHeaders;
+
+/** The Cache-Control directives a shared cache acts on (RFC 9111 and RFC 5861). */
+record CacheControlDirectives(
+    boolean isPublic,
+    boolean isPrivate,
+    boolean noStore,
+    boolean noCache,
+    Duration maxAge,
+    Duration staleWhileRevalidate,
+    Duration staleIfError) {
+
+  static CacheControlDirectives of(HttpHeaders headers) {
+    return parse(headers.getOrEmpty(HttpHeaders.CACHE_CONTROL));
+  }
+
+  static CacheControlDirectives parse(List<String> values) {
+    boolean isPublic = false;
+    boolean isPrivate = false;
+    boolean noStore = false;
+    boolean noCache = false;
+    Duration maxAge = null;
+    Duration sharedMaxAge = null;
+    var staleWhileRevalidate = Duration.ZERO;
+    var staleIfError = Duration.ZERO;
+    for (var value : values) {
+      for (var directive : value.split(",")) {
+        var parts = directive.trim().toLowerCase(Locale.ROOT).split("=", 2);
+        var seconds = parts.length == 2 ? seconds(parts[1]) : null;
+        switch (parts[0]) {
+          case "public" -> isPublic = true;
+          // private="Set-Cookie" only withholds the named fields, which is not worth supporting.
+          case "private" -> isPrivate = true;
+          case "no-store" -> noStore = true;
+          case "no-cache" -> noCache = true;
+          case "max-age" -> maxAge = seconds;
+          case "s-maxage" -> sharedMaxAge = seconds;
+          case "stale-while-revalidate" -> staleWhileRevalidate = orZero(seconds);
+          case "stale-if-error" -> staleIfError = orZero(seconds);
+          default -> {}
+        }
+      }
+    }
+    return new CacheControlDirectives(
+        isPublic,
+        isPrivate,
+        noStore,
+        noCache,
+        // s-maxage is meant for shared caches like this one.
+        sharedMaxAge != null ? sharedMaxAge : maxAge,
+        staleWhileRevalidate,
+        staleIfError);
+  }
+
+  /** @return whether a response may be stored at all, shared or for one user. */
+  boolean isStorable() {
+    return !noStore && !noCache && maxAge != null;
+  }
+
+  private static Duration seconds(String value) {
+    try {
+      return Duration.ofSeconds(Long.parseLong(value.replace("\"", "").trim()));
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  private static Duration orZero(Duration duration) {
+    return duration == null ? Duration.ZERO : duration;
+  }
+}
@@ -0,0 +1,17 @@
+package io.lanki.edgeservice.cache;
+
+/**
+ * @param user user a private response was cached for, or {@code null} for a response shared by
+ *     every user.
+ * @param uri path and query of the request.
+ */
+record CacheKey(String user, String uri) {
+
+  static CacheKey shared(String uri) {
+    return new CacheKey(null, uri);
+  }
+
+  boolean isShared() {
+    return user == null;
+  }
+}
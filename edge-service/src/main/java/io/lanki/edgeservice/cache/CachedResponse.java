@@ -0,0 +1,122 @@
+package io.lanki.edgeservice.cache;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * A 200 response kept by the {@link ResponseCache}. The body lives in a direct buffer, outside of
+ * the heap, and is shared by every request served from it.
+ */
+final class CachedResponse {
+
+  // Describe the connection or the exchange rather than the response, or must not be replayed.
+  // The rate limiter's tell the quota left to the client which made the request.
+  private static final List<String> UNSTORED_HEADERS =
+      List.of(
+          HttpHeaders.CONNECTION,
+          HttpHeaders.TRANSFER_ENCODING,
+          HttpHeaders.CONTENT_LENGTH,
+          HttpHeaders.SET_COOKIE,
+          HttpHeaders.AGE,
+          "Keep-Alive",
+          RedisRateLimiter.REMAINING_HEADER,
+          RedisRateLimiter.REPLENISH_RATE_HEADER,
+          RedisRateLimiter.BURST_CAPACITY_HEADER,
+          RedisRateLimiter.REQUESTED_TOKENS_HEADER);
+
+  private final HttpHeaders headers;
+
+  private final ByteBuffer body;
+
+  private final long storedAt;
+
+  private final long freshUntil;
+
+  private final long staleWhileRevalidateUntil;
+
+  private final long staleIfErrorUntil;
+
+  private CachedResponse(HttpHeaders headers, ByteBuffer body, long now) {
+    var directives = CacheControlDirectives.of(headers);
+    this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+    this.body = body;
+    this.storedAt = now;
+    this.freshUntil = now + directives.maxAge().toMillis();
+    this.staleWhileRevalidateUntil = freshUntil + directives.staleWhileRevalidate().toMillis();
+    this.staleIfErrorUntil = freshUntil + directives.staleIfError().toMillis();
+  }
+
+  /** @param headers headers of a response whose directives are storable. */
+  static CachedResponse of(HttpHeaders headers, byte[] body, long now) {
+    var buffer = ByteBuffer.allocateDirect(body.length).put(body).flip();
+    return new CachedResponse(storedHeaders(headers), buffer.asReadOnlyBuffer(), now);
+  }
+
+  /**
+   * @param notModified headers of the 304 Not Modified which confirmed this response.
+   * @return this response with the updated headers, or {@code null} when it may not be stored
+   *     anymore.
+   */
+  CachedResponse revalidated(HttpHeaders notModified, long now) {
+    var updated = new HttpHeaders();
+    updated.putAll(headers);
+    storedHeaders(notModified).forEach(updated::put);
+    if (!CacheControlDirectives.of(updated).isStorable()) {
+      return null;
+    }
+    return new CachedResponse(updated, body, now);
+  }
+
+  /** @return the headers describing the response itself, which may be replayed to other clients. */
+  static HttpHeaders storedHeaders(HttpHeaders headers) {
+    var stored = new HttpHeaders();
+    headers.forEach(
+        (name, values) -> {
+          if (UNSTORED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+            stored.put(name, values);
+          }
+        });
+    return stored;
+  }
+
+  HttpHeaders headers() {
+    return headers;
+  }
+
+  /** @return a view of the body of its own, positioned at its start. */
+  ByteBuffer body() {
+    return body.duplicate();
+  }
+
+  String etag() {
+    return headers.getETag();
+  }
+
+  boolean isFresh(long now) {
+    return now < freshUntil;
+  }
+
+  boolean isStaleWhileRevalidate(long now) {
+    return now < staleWhileRevalidateUntil;
+  }
+
+  boolean isStaleIfError(long now) {
+    return now < staleIfErrorUntil;
+  }
+
+  /** @return the time after which the response cannot be served in any case. */
+  long expiresAt() {
+    return Math.max(staleWhileRevalidateUntil, staleIfErrorUntil);
+  }
+
+  long ageSeconds(long now) {
+    return Math.max(now - storedAt, 0) / 1000;
+  }
+
+  int weight() {
+    // Headers are a rough estimate. The body is what the budget is about.
+    return body.capacity() + headers.size() * 64;
+  }
+}
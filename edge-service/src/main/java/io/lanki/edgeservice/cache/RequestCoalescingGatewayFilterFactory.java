@@ -0,0 +1,193 @@
+package io.lanki.edgeservice.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Collapses identical GET requests in flight into one call of the route. The first one is
+ * forwarded, and those arriving before its response is complete wait for it and get a copy of it.
+ * Requests are identical when they have the same path, query and user, since the token relayed for
+ * a user may be allowed to read what another one is not.
+ *
+ * <p>Only successful responses are shared. A waiting request is forwarded on its own once it
+ * waited too long, or when the first one failed, e.g. was rate limited or answered by the circuit
+ * breaker's fallback, or its body is too large to copy. Anonymous requests of all clients wait for
+ * the same one, which must not hand the 429 of one client to the others.
+ */
+@Component
+public class RequestCoalescingGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
+
+  static final String REQUESTS = "lanki.gateway.coalescing.requests";
+
+  static final String IN_FLIGHT = "lanki.gateway.coalescing.in_flight";
+
+  // Ordered like the ResponseCache and listed after it, so that only misses are collapsed. Like a
+  // hit, a request answered with the response of another one takes no rate limit tokens.
+  static final int ORDER = ResponseCacheGatewayFilterFactory.ORDER;
+
+  private final RequestCoalescingProperties properties;
+
+  private final MeterRegistry meterRegistry;
+
+  private final Map<CacheKey, Sinks.One<SharedResponse>> flights = new ConcurrentHashMap<>();
+
+  public RequestCoalescingGatewayFilterFactory(
+      RequestCoalescingProperties properties, MeterRegistry meterRegistry) {
+    super(Object.class);
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    Gauge.builder(IN_FLIGHT, flights, Map::size).register(meterRegistry);
+  }
+
+  @Override
+  public GatewayFilter apply(Object config) {
+    return new OrderedGatewayFilter(this::filter, ORDER);
+  }
+
+  private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    var request = exchange.getRequest();
+    // Conditional and range requests get answers of their own, which they are also cheap to get.
+    if (!HttpMethod.GET.equals(request.getMethod())
+        || !request.getHeaders().getIfNoneMatch().isEmpty()
+        || request.getHeaders().containsKey(HttpHeaders.IF_MODIFIED_SINCE)
+        || request.getHeaders().containsKey(HttpHeaders.RANGE)) {
+      return chain.filter(exchange);
+    }
+    var uri = ResponseCacheGatewayFilterFactory.uri(request);
+    return exchange
+        .getPrincipal()
+        .map(Principal::getName)
+        .map(user -> new CacheKey(user, uri))
+        .defaultIfEmpty(CacheKey.shared(uri))
+        .flatMap(key -> coalesce(exchange, chain, key));
+  }
+
+  private Mono<Void> coalesce(ServerWebExchange exchange, GatewayFilterChain chain, CacheKey key) {
+    var flight = Sinks.<SharedResponse>one();
+    var leading = flights.putIfAbsent(key, flight);
+    if (leading != null) {
+      return follow(exchange, chain, leading);
+    }
+    record("leader");
+    var response = new SharingResponse(exchange, key, flight);
+    return chain
+        .filter(exchange.mutate().response(response).build())
+        .doFinally(
+            signal -> {
+              // Without a response to share, e.g. on errors or when the client went away, the
+              // waiting requests are forwarded on their own.
+              flights.remove(key, flight);
+              flight.tryEmitEmpty();
+            });
+  }
+
+  private Mono<Void> follow(
+      ServerWebExchange exchange, GatewayFilterChain chain, Sinks.One<SharedResponse> flight) {
+    return flight
+        .asMono()
+        .timeout(properties.maxWait(), Mono.empty())
+        .flatMap(
+            shared -> {
+              record("follower");
+              return shared.writeTo(exchange.getResponse()).thenReturn(shared);
+            })
+        .switchIfEmpty(
+            Mono.defer(
+                () -> {
+                  record("forwarded");
+                  return chain.filter(exchange).then(Mono.empty());
+                }))
+        .then();
+  }
+
+  /** @param result leader, follower, or forwarded when a follower gave up waiting. */
+  private void record(String result) {
+    Counter.builder(REQUESTS).tag("result", result).register(meterRegistry).increment();
+  }
+
+  private record SharedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+
+    Mono<Void> writeTo(ServerHttpResponse response) {
+      response.setStatusCode(status);
+      response.getHeaders().putAll(headers);
+      response.getHeaders().setContentLength(body.length);
+      return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(body)));
+    }
+  }
+
+  /** Copies the response of the leading request for the waiting ones. */
+  private class SharingResponse extends ServerHttpResponseDecorator {
+
+    private final ServerWebExchange exchange;
+
+    private final CacheKey key;
+
+    private final Sinks.One<SharedResponse> flight;
+
+    SharingResponse(ServerWebExchange exchange, CacheKey key, Sinks.One<SharedResponse> flight) {
+      super(exchange.getResponse());
+      this.exchange = exchange;
+      this.key = key;
+      this.flight = flight;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      var status = getStatusCode();
+      if (status == null
+          || !status.is2xxSuccessful()
+          // The circuit breaker's fallback answers with 200, but records why the call failed.
+          || exchange.getAttribute(ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR)
+              != null
+          || getHeaders().containsKey(HttpHeaders.SET_COOKIE)) {
+        return super.writeWith(body);
+      }
+      // Those of this exchange only, not the ones the rate limiter set for its client.
+      var headers = CachedResponse.storedHeaders(getHeaders());
+      var collector = new BodyCollector(properties.maximumBodySize().toBytes());
+      return super.writeWith(
+          Flux.from(body)
+              .doOnNext(collector::add)
+              .doOnComplete(
+                  () -> {
+                    var bytes = collector.toByteArray();
+                    // Removed first, so that no request arriving from now on waits for this one.
+                    flights.remove(key, flight);
+                    if (bytes != null) {
+                      flight.tryEmitValue(new SharedResponse(status, headers, bytes));
+                    }
+                  }));
+    }
+
+    @Override
+    public Mono<Void> setComplete() {
+      return writeWith(Flux.empty());
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+      return writeWith(Flux.from(body).flatMapSequential(Flux::from));
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package io.lanki.edgeservice.cache;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param maxWait time a request waits for the response of an identical one in flight, after which
+ *     it is forwarded on its own.
+ * @param maximumBodySize bytes of the largest body copied to the waiting requests. They are
+ *     forwarded on their own when the response is larger.
+ */
+@ConfigurationProperties(prefix = "lanki.request-coalescing")
+public record RequestCoalescingProperties(
+    @DefaultValue("3s") Duration maxWait, @DefaultValue("256KB") DataSize maximumBodySize) {}
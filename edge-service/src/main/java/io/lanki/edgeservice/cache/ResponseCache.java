@@ -0,0 +1,118 @@
+package io.lanki.edgeservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Responses cached by the gateway, bounded by the bytes of their bodies. Each entry is dropped once
+ * it cannot be served anymore, not even stale.
+ */
+@Component
+public class ResponseCache {
+
+  static final String REQUESTS = "lanki.gateway.response_cache.requests";
+
+  static final String SIZE = "lanki.gateway.response_cache.size";
+
+  private final ResponseCacheProperties properties;
+
+  private final MeterRegistry meterRegistry;
+
+  private final Clock clock;
+
+  private final Cache<CacheKey, CachedResponse> entries;
+
+  private final Set<CacheKey> revalidating = ConcurrentHashMap.newKeySet();
+
+  @Autowired
+  public ResponseCache(ResponseCacheProperties properties, MeterRegistry meterRegistry) {
+    this(properties, meterRegistry, Clock.systemUTC());
+  }
+
+  ResponseCache(ResponseCacheProperties properties, MeterRegistry meterRegistry, Clock clock) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    this.clock = clock;
+    this.entries =
+        Caffeine.newBuilder()
+            .maximumWeight(properties.maximumSize().toBytes())
+            .weigher((CacheKey key, CachedResponse response) -> response.weight())
+            .expireAfter(new UsableExpiry())
+            .build();
+    Gauge.builder(SIZE, entries, ResponseCache::weightedSize)
+        .baseUnit("bytes")
+        .register(meterRegistry);
+  }
+
+  ResponseCacheProperties properties() {
+    return properties;
+  }
+
+  long now() {
+    return clock.millis();
+  }
+
+  CachedResponse get(CacheKey key) {
+    return entries.getIfPresent(key);
+  }
+
+  void put(CacheKey key, CachedResponse response) {
+    entries.put(key, response);
+  }
+
+  void invalidate(CacheKey key) {
+    entries.invalidate(key);
+  }
+
+  /** @return whether the caller is the one to revalidate the response, which nobody else is. */
+  boolean startRevalidation(CacheKey key) {
+    return revalidating.add(key);
+  }
+
+  void endRevalidation(CacheKey key) {
+    revalidating.remove(key);
+  }
+
+  /** @param result hit, stale, revalidated, stale_if_error, miss or bypass. */
+  void record(String result) {
+    Counter.builder(REQUESTS).tag("result", result).register(meterRegistry).increment();
+  }
+
+  private static double weightedSize(Cache<CacheKey, CachedResponse> entries) {
+    return entries
+        .policy()
+        .eviction()
+        .map(eviction -> eviction.weightedSize().orElse(0))
+        .orElse(0L);
+  }
+
+  private class UsableExpiry implements Expiry<CacheKey, CachedResponse> {
+
+    @Override
+    public long expireAfterCreate(CacheKey key, CachedResponse response, long currentTime) {
+      return TimeUnit.MILLISECONDS.toNanos(Math.max(response.expiresAt() - now(), 0));
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        CacheKey key, CachedResponse response, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, response, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        CacheKey key, CachedResponse response, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,386 @@
+package io.lanki.edgeservice.cache;
+
+import java.security.Principal;
+import java.util.List;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Serves GET responses of a route from the {@link ResponseCache} for as long as their Cache-Control
+ * allows. Responses marked public are shared by all users, any other cacheable response is only
+ * served to the user it was fetched for.
+ *
+ * <p>Stale responses are revalidated with their ETag, so that note-service only answers 304 Not
+ * Modified when nothing changed. Within stale-while-revalidate, shared responses are served stale
+ * at once and revalidated in the background. Within stale-if-error, they are served instead of
+ * errors and of the circuit breaker's fallback, e.g. when note-service is too slow to answer.
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
+
+  /** Tells clients whether the response came from the cache, for debugging. */
+  static final String CACHE_HEADER = "X-Cache";
+
+  // Ahead of the default filters, so that a hit takes no rate limit tokens and does not count as a
+  // call of the circuit breaker, neither of which it puts load on note-service for.
+  static final int ORDER = 0;
+
+  private static final Logger log =
+      LoggerFactory.getLogger(ResponseCacheGatewayFilterFactory.class);
+
+  private static final String ANONYMOUS = "";
+
+  private final ResponseCache cache;
+
+  private final WebClient webClient;
+
+  public ResponseCacheGatewayFilterFactory(
+      ResponseCache cache, WebClient.Builder webClientBuilder) {
+    super(Object.class);
+    this.cache = cache;
+    this.webClient = webClientBuilder.build();
+  }
+
+  @Override
+  public GatewayFilter apply(Object config) {
+    return new OrderedGatewayFilter(this::filter, ORDER);
+  }
+
+  private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    var request = exchange.getRequest();
+    var uri = uri(request);
+    if (!HttpMethod.GET.equals(request.getMethod())) {
+      // What is cached for the URI is outdated once it was written, on this replica at least.
+      // Other replicas serve it until it is stale.
+      return chain.filter(exchange).then(Mono.defer(() -> invalidate(exchange, uri)));
+    }
+    var directives =
+        CacheControlDirectives.parse(request.getHeaders().getOrEmpty(HttpHeaders.CACHE_CONTROL));
+    if (directives.noCache() || directives.noStore() || isZero(directives)) {
+      cache.record("bypass");
+      return chain.filter(exchange);
+    }
+    return user(exchange).flatMap(user -> serve(exchange, chain, uri, user));
+  }
+
+  private Mono<Void> serve(
+      ServerWebExchange exchange, GatewayFilterChain chain, String uri, String user) {
+    var key = CacheKey.shared(uri);
+    var cached = cache.get(key);
+    if (cached == null && !user.isEmpty()) {
+      key = new CacheKey(user, uri);
+      cached = cache.get(key);
+    }
+    if (cached == null) {
+      return forward(exchange, chain, uri, user, null, null);
+    }
+    var now = cache.now();
+    if (cached.isFresh(now)) {
+      cache.record("hit");
+      return write(exchange.getResponse(), exchange.getRequest(), cached, now, "HIT");
+    }
+    if (key.isShared() && cached.etag() != null && cached.isStaleWhileRevalidate(now)) {
+      cache.record("stale");
+      revalidateInBackground(exchange, key, cached);
+      return write(exchange.getResponse(), exchange.getRequest(), cached, now, "STALE");
+    }
+    return forward(exchange, chain, uri, user, key, cached);
+  }
+
+  private Mono<Void> forward(
+      ServerWebExchange exchange,
+      GatewayFilterChain chain,
+      String uri,
+      String user,
+      CacheKey staleKey,
+      CachedResponse stale) {
+    var request = exchange.getRequest();
+    var revalidating = stale != null && stale.etag() != null;
+    if (revalidating) {
+      // Asks with the cached ETag rather than the client's, so that a 304 means the cached body.
+      // A copy, as mutate() writes through to the headers of the client's request, whose
+      // If-None-Match decides whether the client gets the body.
+      var headers = new HttpHeaders();
+      headers.putAll(request.getHeaders());
+      headers.setIfNoneMatch(stale.etag());
+      request =
+          new ServerHttpRequestDecorator(request) {
+            @Override
+            public HttpHeaders getHeaders() {
+              return headers;
+            }
+          };
+    }
+    var response = new CachingResponse(exchange, uri, user, staleKey, stale, revalidating);
+    return chain
+        .filter(exchange.mutate().request(request).response(response).build())
+        .onErrorResume(
+            ex -> {
+              var now = cache.now();
+              if (stale == null
+                  || !stale.isStaleIfError(now)
+                  || exchange.getResponse().isCommitted()) {
+                return Mono.error(ex);
+              }
+              cache.record("stale_if_error");
+              return write(exchange.getResponse(), exchange.getRequest(), stale, now, "STALE");
+            });
+  }
+
+  private void revalidateInBackground(
+      ServerWebExchange exchange, CacheKey key, CachedResponse cached) {
+    Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+    if (route == null || !cache.startRevalidation(key)) {
+      return;
+    }
+    // The response is shared, so it is fetched without the user's token.
+    var uri =
+        UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+            .scheme(route.getUri().getScheme())
+            .host(route.getUri().getHost())
+            .port(route.getUri().getPort())
+            .build(true)
+            .toUri();
+    webClient
+        .get()
+        .uri(uri)
+        .headers(headers -> headers.setIfNoneMatch(cached.etag()))
+        .exchangeToMono(response -> revalidated(key, cached, response))
+        .timeout(cache.properties().revalidationTimeout())
+        .doFinally(signal -> cache.endRevalidation(key))
+        .subscribe(null, ex -> log.debug("Could not revalidate {}: {}", key.uri(), ex.toString()));
+  }
+
+  private Mono<Void> revalidated(CacheKey key, CachedResponse cached, ClientResponse response) {
+    var now = cache.now();
+    var headers = response.headers().asHttpHeaders();
+    if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+      update(key, cached.revalidated(headers, now));
+      return response.releaseBody();
+    }
+    if (response.statusCode().isSameCodeAs(HttpStatus.OK)) {
+      if (!key.equals(storeKey(headers, key.uri(), ANONYMOUS))) {
+        cache.invalidate(key);
+        return response.releaseBody();
+      }
+      return response
+          .bodyToMono(byte[].class)
+          .doOnNext(body -> cache.put(key, CachedResponse.of(headers, body, now)))
+          .then();
+    }
+    // Errors leave the stale response to be served for as long as it may.
+    return response.releaseBody();
+  }
+
+  private Mono<Void> invalidate(ServerWebExchange exchange, String uri) {
+    var status = exchange.getResponse().getStatusCode();
+    if (status == null || !status.is2xxSuccessful()) {
+      return Mono.empty();
+    }
+    cache.invalidate(CacheKey.shared(uri));
+    return user(exchange)
+        .filter(user -> !user.isEmpty())
+        .doOnNext(user -> cache.invalidate(new CacheKey(user, uri)))
+        .then();
+  }
+
+  private void update(CacheKey key, CachedResponse revalidated) {
+    if (revalidated == null) {
+      cache.invalidate(key);
+    } else {
+      cache.put(key, revalidated);
+    }
+  }
+
+  /** @return the key to store a 200 response under, or {@code null} when it may not be stored. */
+  private CacheKey storeKey(HttpHeaders headers, String uri, String user) {
+    var directives = CacheControlDirectives.of(headers);
+    if (!directives.isStorable()
+        // Bodies differing by request headers would need those headers in the key.
+        || !headers.getVary().isEmpty()
+        || headers.containsKey(HttpHeaders.SET_COOKIE)
+        || headers.getContentLength() > cache.properties().maximumEntrySize().toBytes()) {
+      return null;
+    }
+    if (directives.isPublic() && !directives.isPrivate()) {
+      return CacheKey.shared(uri);
+    }
+    return user.isEmpty() ? null : new CacheKey(user, uri);
+  }
+
+  static Mono<Void> write(
+      ServerHttpResponse response,
+      ServerHttpRequest request,
+      CachedResponse cached,
+      long now,
+      String result) {
+    var headers = response.getHeaders();
+    headers.remove(HttpHeaders.TRANSFER_ENCODING);
+    headers.putAll(cached.headers());
+    headers.set(HttpHeaders.AGE, String.valueOf(cached.ageSeconds(now)));
+    headers.set(CACHE_HEADER, result);
+    if (matches(request.getHeaders().getIfNoneMatch(), cached.etag())) {
+      response.setStatusCode(HttpStatus.NOT_MODIFIED);
+      headers.remove(HttpHeaders.CONTENT_LENGTH);
+      return response.setComplete();
+    }
+    response.setStatusCode(HttpStatus.OK);
+    var body = cached.body();
+    headers.setContentLength(body.remaining());
+    return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+  }
+
+  /**
+   * Compares the tags of an If-None-Match with an ETag the weak way, as RFC 9110 asks for.
+   *
+   * @param etag ETag of the response, or {@code null} for none, which matches no tag.
+   */
+  public static boolean matches(List<String> ifNoneMatch, String etag) {
+    return etag != null
+        && ifNoneMatch.stream()
+            .anyMatch(tag -> tag.equals("*") || weak(tag).equals(weak(etag)));
+  }
+
+  private static String weak(String etag) {
+    return etag.startsWith("W/") ? etag.substring(2) : etag;
+  }
+
+  private static Mono<Void> discard(Publisher<? extends DataBuffer> body) {
+    return Flux.from(body).doOnNext(DataBufferUtils::release).then();
+  }
+
+  private static Mono<String> user(ServerWebExchange exchange) {
+    return exchange.getPrincipal().map(Principal::getName).defaultIfEmpty(ANONYMOUS);
+  }
+
+  static String uri(ServerHttpRequest request) {
+    var query = request.getURI().getRawQuery();
+    return request.getPath().value() + (query == null ? "" : "?" + query);
+  }
+
+  // Browsers send max-age=0 when reloading, which asks to revalidate.
+  private static boolean isZero(CacheControlDirectives directives) {
+    return directives.maxAge() != null && directives.maxAge().isZero();
+  }
+
+  /** Stores cacheable responses, and answers with the cached one when note-service confirms it. */
+  private class CachingResponse extends ServerHttpResponseDecorator {
+
+    private final ServerWebExchange exchange;
+
+    private final String uri;
+
+    private final String user;
+
+    private final CacheKey staleKey;
+
+    private final CachedResponse stale;
+
+    private final boolean revalidating;
+
+    CachingResponse(
+        ServerWebExchange exchange,
+        String uri,
+        String user,
+        CacheKey staleKey,
+        CachedResponse stale,
+        boolean revalidating) {
+      super(exchange.getResponse());
+      this.exchange = exchange;
+      this.uri = uri;
+      this.user = user;
+      this.staleKey = staleKey;
+      this.stale = stale;
+      this.revalidating = revalidating;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      var now = cache.now();
+      var status = getStatusCode();
+      if (stale != null && failed(status) && stale.isStaleIfError(now)) {
+        cache.record("stale_if_error");
+        return discard(body)
+            .then(
+                Mono.defer(
+                    () -> write(getDelegate(), exchange.getRequest(), stale, now, "STALE")));
+      }
+      if (revalidating && status != null && status.isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+        var revalidated = stale.revalidated(getHeaders(), now);
+        update(staleKey, revalidated);
+        cache.record("revalidated");
+        var served = revalidated == null ? stale : revalidated;
+        return discard(body)
+            .then(
+                Mono.defer(
+                    () ->
+                        write(getDelegate(), exchange.getRequest(), served, now, "REVALIDATED")));
+      }
+      cache.record("miss");
+      var key =
+          status != null && status.isSameCodeAs(HttpStatus.OK)
+              ? storeKey(getHeaders(), uri, user)
+              : null;
+      if (key == null) {
+        return super.writeWith(body);
+      }
+      // The body is copied on its way to the client, which does not wait for it to be complete.
+      var collector = new BodyCollector(cache.properties().maximumEntrySize().toBytes());
+      // Those of this exchange only, not the ones the rate limiter set for its client.
+      var headers = CachedResponse.storedHeaders(getHeaders());
+      return super.writeWith(
+          Flux.from(body)
+              .doOnNext(collector::add)
+              .doOnComplete(
+                  () -> {
+                    var bytes = collector.toByteArray();
+                    if (bytes != null) {
+                      cache.put(key, CachedResponse.of(headers, bytes, now));
+                    }
+                  }));
+    }
+
+    // A 304 Not Modified or the fallback may complete the response without writing a body.
+    @Override
+    public Mono<Void> setComplete() {
+      return writeWith(Flux.empty());
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+      return writeWith(Flux.from(body).flatMapSequential(Flux::from));
+    }
+
+    // The circuit breaker's fallback answers with 200, but records why the call failed.
+    private boolean failed(HttpStatusCode status) {
+      return status == null
+          || status.is5xxServerError()
+          || exchange.getAttribute(ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR)
+              != null;
+    }
+  }
+}
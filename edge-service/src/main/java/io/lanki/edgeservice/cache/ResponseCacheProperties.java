@@ -0,0 +1,18 @@
+package io.lanki.edgeservice.cache;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param maximumSize bytes of response bodies cached. They are kept in direct buffers, so this
+ *     counts against -XX:MaxDirectMemorySize rather than the heap.
+ * @param maximumEntrySize bytes of the largest body cached. Larger responses are passed through.
+ * @param revalidationTimeout time after which a background revalidation is given up.
+ */
+@ConfigurationProperties(prefix = "lanki.response-cache")
+public record ResponseCacheProperties(
+    @DefaultValue("64MB") DataSize maximumSize,
+    @DefaultValue("256KB") DataSize maximumEntrySize,
+    @DefaultValue("5s") Duration revalidationTimeout) {}
@@ -0,0 +1,52 @@
+package io.lanki.edgeservice.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.lettuce.core.metrics.MicrometerOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metrics of the gateway's dependencies. Redis round trips are timed by Lettuce per command type,
+ * so the rate limiter reconciliation shows up as EVALSHA and session saves as HSET, EXPIRE and
+ * friends.
+ */
+@Configuration
+public class MetricsConfig {
+
+  static final String CIRCUIT_BREAKER_TRANSITIONS = "lanki.gateway.circuitbreaker.transitions";
+
+  // Replaces Boot's options, which publish percentiles of one instance but no histogram.
+  @Bean
+  public MicrometerOptions micrometerOptions() {
+    return MicrometerOptions.builder().histogram(true).build();
+  }
+
+  @Bean
+  public SmartInitializingSingleton circuitBreakerTransitionMetrics(
+      CircuitBreakerRegistry circuitBreakerRegistry, MeterRegistry meterRegistry) {
+    return () -> {
+      // Circuit breakers are created on the first request of their route.
+      circuitBreakerRegistry.getAllCircuitBreakers().forEach(cb -> monitor(cb, meterRegistry));
+      circuitBreakerRegistry
+          .getEventPublisher()
+          .onEntryAdded(event -> monitor(event.getAddedEntry(), meterRegistry));
+    };
+  }
+
+  private static void monitor(CircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+    circuitBreaker
+        .getEventPublisher()
+        .onStateTransition(
+            event ->
+                Counter.builder(CIRCUIT_BREAKER_TRANSITIONS)
+                    .tag("name", circuitBreaker.getName())
+                    .tag("from", event.getStateTransition().getFromState().name())
+                    .tag("to", event.getStateTransition().getToState().name())
+                    .register(meterRegistry)
+                    .increment());
+  }
+}
@@ -0,0 +1,74 @@
+package io.lanki.edgeservice.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * A route filter observed as a span of its own. A filter runs the rest of the chain, so the spans
+ * are nested in filter order and the time a filter spends on its own is what its span does not
+ * share with its child.
+ */
+final class ObservedGatewayFilter implements GatewayFilter {
+
+  static final String NAME = "lanki.gateway.filter";
+
+  private final String name;
+
+  private final GatewayFilter delegate;
+
+  private final ObservationRegistry observationRegistry;
+
+  private ObservedGatewayFilter(
+      String name, GatewayFilter delegate, ObservationRegistry observationRegistry) {
+    this.name = name;
+    this.delegate = delegate;
+    this.observationRegistry = observationRegistry;
+  }
+
+  /** Keeps the order of an ordered filter, which the route sorts its filters by. */
+  static GatewayFilter observe(
+      String name, GatewayFilter filter, ObservationRegistry observationRegistry) {
+    if (filter instanceof OrderedGatewayFilter ordered) {
+      return new OrderedGatewayFilter(
+          new ObservedGatewayFilter(name, ordered.getDelegate(), observationRegistry),
+          ordered.getOrder());
+    }
+    return new ObservedGatewayFilter(name, filter, observationRegistry);
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    return Mono.deferContextual(
+        context -> {
+          Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+          Observation parent = context.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+          var observation =
+              Observation.createNotStarted(NAME, observationRegistry)
+                  .contextualName(name)
+                  .lowCardinalityKeyValue("filter", name)
+                  .lowCardinalityKeyValue("route", route == null ? "none" : route.getId())
+                  .parentObservation(parent)
+                  .start();
+          // Stopped before the signal reaches the enclosing filter, so that child spans end first.
+          return delegate
+              .filter(exchange, chain)
+              .doOnError(observation::error)
+              .doOnTerminate(observation::stop)
+              .doOnCancel(observation::stop)
+              .contextWrite(c -> c.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+}
@@ -1,18 +1,87 @@
 package io.lanki.edgeservice.config;
 
+import io.lanki.edgeservice.ratelimit.ClientAddresses;
+import io.lanki.edgeservice.ratelimit.RateLimitKey;
+import io.lanki.edgeservice.ratelimit.RateLimitPolicies;
 import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
 
 @Configuration
 public class RateLimiterConfig {
 
+  /** Exchange attribute holding whether the request was limited as a user or as anonymous. */
+  public static final String KEY_CLASS_ATTRIBUTE = RateLimiterConfig.class.getName() + ".keyClass";
+
+  /** Exchange attribute holding the name of the policy which limited the request, if any. */
+  public static final String POLICY_ATTRIBUTE = RateLimiterConfig.class.getName() + ".policy";
+
+  public static final String ANONYMOUS = "anonymous";
+
+  public static final String AUTHENTICATED = "authenticated";
+
   @Bean
-  public KeyResolver keyResolver() {
+  public KeyResolver keyResolver(RateLimitPolicies policies, ClientAddresses clientAddresses) {
     // Principal is the currently authenticated user from the current request (e.g., exchange).
     // Extract the username from the principal but if the request is unauthenticated, it uses
-    // "anonymous" as the default key for rate limiting.
-    return exchange -> exchange.getPrincipal().map(Principal::getName).defaultIfEmpty("anonymous");
+    // the client's subnet, so that one client cannot use up the limit of all anonymous clients.
+    return exchange ->
+        exchange
+            .getPrincipal()
+            .map(
+                principal -> {
+                  exchange.getAttributes().put(KEY_CLASS_ATTRIBUTE, AUTHENTICATED);
+                  return key(exchange, policies, principal.getName(), roles(principal));
+                })
+            .switchIfEmpty(
+                Mono.fromSupplier(
+                    () -> {
+                      exchange.getAttributes().put(KEY_CLASS_ATTRIBUTE, ANONYMOUS);
+                      var subnet = clientAddresses.subnet(exchange);
+                      return key(
+                          exchange,
+                          policies,
+                          subnet == null ? ANONYMOUS : subnet,
+                          List.of(ANONYMOUS));
+                    }));
+  }
+
+  // The policy and the cost of the request are resolved here, where the request is known, and
+  // handed to the rate limiter in the key.
+  private static String key(
+      ServerWebExchange exchange,
+      RateLimitPolicies policies,
+      String name,
+      Collection<String> roles) {
+    Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+    var routeId = route == null ? null : route.getId();
+    var request = exchange.getRequest();
+    return policies
+        .select(routeId, request, roles)
+        .map(
+            policy -> {
+              exchange.getAttributes().put(POLICY_ATTRIBUTE, policy.name());
+              return new RateLimitKey(policy.name(), policy.requestedTokens(request), name)
+                  .toString();
+            })
+        .orElse(name);
+  }
+
+  private static Collection<String> roles(Principal principal) {
+    if (principal instanceof OAuth2AuthenticationToken token
+        && token.getPrincipal() instanceof OidcUser user) {
+      var roles = user.getClaimAsStringList("roles");
+      return roles == null ? List.of() : roles;
+    }
+    return List.of();
   }
 }
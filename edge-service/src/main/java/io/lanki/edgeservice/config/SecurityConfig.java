@@ -1,6 +1,7 @@
 package io.lanki.edgeservice.config;
 
 import java.nio.charset.Charset;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.buffer.DataBufferUtils;
@@ -48,6 +49,9 @@ public class SecurityConfig {
         .authorizeExchange(
             exchange ->
                 exchange
+                    // Served on the management port only.
+                    .matchers(EndpointRequest.toAnyEndpoint())
+                    .permitAll()
                     .pathMatchers("/", "/*.css", "/*.js", "/favicon.ico")
                     .permitAll()
                     .pathMatchers(HttpMethod.GET, "/v1/api/notes/**")
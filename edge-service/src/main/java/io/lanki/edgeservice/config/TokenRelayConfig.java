@@ -0,0 +1,76 @@
+package io.lanki.edgeservice.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientProviderBuilder;
+import org.springframework.security.oauth2.client.endpoint.OAuth2RefreshTokenGrantRequest;
+import org.springframework.security.oauth2.client.endpoint.ReactiveOAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.WebClientReactiveRefreshTokenTokenResponseClient;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.client.web.DefaultReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.web.server.ServerOAuth2AuthorizedClientRepository;
+import reactor.core.publisher.Mono;
+
+/**
+ * The authorized client manager the TokenRelay filter uses to get the access token of a session. It
+ * is the gateway's default one, except that refreshing an expired token against Keycloak is
+ * observed, as a timer and a span: that call happens inside a user's request. Besides client and
+ * outcome, the timer has the {@code error} tag of the meter observation handler.
+ */
+@Configuration
+public class TokenRelayConfig {
+
+  static final String TOKEN_REFRESH = "lanki.gateway.token.refresh";
+
+  @Bean
+  public ReactiveOAuth2AuthorizedClientManager authorizedClientManager(
+      ReactiveClientRegistrationRepository clientRegistrationRepository,
+      ServerOAuth2AuthorizedClientRepository authorizedClientRepository,
+      ObservationRegistry observationRegistry) {
+    var refreshTokenClient =
+        observed(new WebClientReactiveRefreshTokenTokenResponseClient(), observationRegistry);
+    var authorizedClientProvider =
+        ReactiveOAuth2AuthorizedClientProviderBuilder.builder()
+            .authorizationCode()
+            .refreshToken(
+                refreshToken -> refreshToken.accessTokenResponseClient(refreshTokenClient))
+            .build();
+    var authorizedClientManager =
+        new DefaultReactiveOAuth2AuthorizedClientManager(
+            clientRegistrationRepository, authorizedClientRepository);
+    authorizedClientManager.setAuthorizedClientProvider(authorizedClientProvider);
+    return authorizedClientManager;
+  }
+
+  private static ReactiveOAuth2AccessTokenResponseClient<OAuth2RefreshTokenGrantRequest> observed(
+      ReactiveOAuth2AccessTokenResponseClient<OAuth2RefreshTokenGrantRequest> client,
+      ObservationRegistry observationRegistry) {
+    return request ->
+        Mono.deferContextual(
+            context -> {
+              Observation parent = context.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+              var observation =
+                  Observation.createNotStarted(TOKEN_REFRESH, observationRegistry)
+                      .contextualName("token refresh")
+                      .lowCardinalityKeyValue(
+                          "client", request.getClientRegistration().getRegistrationId())
+                      // Replaced once the refresh completes, unless the request is cancelled.
+                      .lowCardinalityKeyValue("outcome", "cancelled")
+                      .parentObservation(parent)
+                      .start();
+              return client
+                  .getTokenResponse(request)
+                  .doOnSuccess(
+                      response -> observation.lowCardinalityKeyValue("outcome", "success"))
+                  .doOnError(
+                      error -> observation.lowCardinalityKeyValue("outcome", "error").error(error))
+                  .doOnTerminate(observation::stop)
+                  .doOnCancel(observation::stop)
+                  .contextWrite(c -> c.put(ObservationThreadLocalAccessor.KEY, observation));
+            });
+  }
+}
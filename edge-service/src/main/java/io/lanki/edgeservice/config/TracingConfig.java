@@ -0,0 +1,56 @@
+package io.lanki.edgeservice.config;
+
+import io.lettuce.core.tracing.MicrometerTracing;
+import io.micrometer.observation.ObservationRegistry;
+import java.lang.reflect.Modifier;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.data.redis.ClientResourcesBuilderCustomizer;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spans on top of the ones Boot and the gateway create for the incoming request and the proxied
+ * call to note-service: one per route filter (SaveSession, TokenRelay, RequestRateLimiter, Retry,
+ * CircuitBreaker), and one per Redis command, e.g. the session load or the rate limiter script.
+ */
+@Configuration
+public class TracingConfig {
+
+  @Bean
+  public ClientResourcesBuilderCustomizer lettuceTracing(ObservationRegistry observationRegistry) {
+    return builder -> builder.tracing(new MicrometerTracing(observationRegistry, "redis"));
+  }
+
+  // Static, as it post-processes beans of the gateway's auto-configuration.
+  @Bean
+  public static BeanPostProcessor observedGatewayFilters(
+      ObjectProvider<ObservationRegistry> observationRegistry) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof GatewayFilterFactory<?> factory)
+            || Modifier.isFinal(bean.getClass().getModifiers())) {
+          return bean;
+        }
+        // A class proxy, so that the factory can still be looked up by its type.
+        var proxyFactory = new ProxyFactory(factory);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(
+            (MethodInterceptor)
+                invocation -> {
+                  var result = invocation.proceed();
+                  return result instanceof GatewayFilter filter
+                      ? ObservedGatewayFilter.observe(
+                          factory.name(), filter, observationRegistry.getObject())
+                      : result;
+                });
+        return proxyFactory.getProxy();
+      }
+    };
+  }
+}
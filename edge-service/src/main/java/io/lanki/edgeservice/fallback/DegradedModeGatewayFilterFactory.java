@@ -0,0 +1,232 @@
+package io.lanki.edgeservice.fallback;
+
+import io.lanki.edgeservice.cache.BodyCollector;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Prepares the {@link NoteServiceFallback} of a route while note-service answers: keeps the
+ * {@link NoteSnapshots} of what users read, and the bodies of writes it may queue. Once a request
+ * of a user with queued writes gets through again, they are replayed from the {@link WriteQueue}.
+ * A new write of the user is only forwarded after the writes queued before it were replayed, or
+ * could not be. Anonymous requests are passed through.
+ */
+@Component
+public class DegradedModeGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
+
+  // Listed after RequestCoalescing, so that it sees what note-service answered a user rather than
+  // what the response cache did.
+  static final int ORDER = 0;
+
+  /** Exchange attribute holding the body of a write which may be queued. */
+  static final String BODY_ATTRIBUTE = DegradedModeGatewayFilterFactory.class.getName() + ".body";
+
+  private static final Logger log = LoggerFactory.getLogger(DegradedModeGatewayFilterFactory.class);
+
+  private final NoteSnapshots snapshots;
+
+  private final WriteQueue writes;
+
+  private final DegradedModeProperties properties;
+
+  private final ReactiveOAuth2AuthorizedClientManager authorizedClientManager;
+
+  public DegradedModeGatewayFilterFactory(
+      NoteSnapshots snapshots,
+      WriteQueue writes,
+      DegradedModeProperties properties,
+      ReactiveOAuth2AuthorizedClientManager authorizedClientManager) {
+    super(Object.class);
+    this.snapshots = snapshots;
+    this.writes = writes;
+    this.properties = properties;
+    this.authorizedClientManager = authorizedClientManager;
+  }
+
+  @Override
+  public GatewayFilter apply(Object config) {
+    return new OrderedGatewayFilter(this::filter, ORDER);
+  }
+
+  private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    return exchange
+        .getPrincipal()
+        .filter(OAuth2AuthenticationToken.class::isInstance)
+        .cast(OAuth2AuthenticationToken.class)
+        .flatMap(user -> filter(exchange, chain, user).thenReturn(user))
+        .switchIfEmpty(Mono.defer(() -> chain.filter(exchange).then(Mono.empty())))
+        .then();
+  }
+
+  private Mono<Void> filter(
+      ServerWebExchange exchange, GatewayFilterChain chain, OAuth2AuthenticationToken user) {
+    var request = exchange.getRequest();
+    var path = request.getPath().value();
+    Mono<Void> forwarded;
+    if (HttpMethod.GET.equals(request.getMethod()) && NoteSnapshots.isSnapshotted(path)) {
+      var response = new SnapshottingResponse(exchange, user.getName(), uri(request));
+      forwarded = chain.filter(exchange.mutate().response(response).build());
+    } else if (WriteQueue.isQueueable(request.getMethod(), path)
+        && request.getHeaders().getContentLength() > 0
+        && request.getHeaders().getContentLength() <= properties.maximumEntrySize().toBytes()) {
+      forwarded = readBody(request).flatMap(body -> forward(exchange, chain, body));
+    } else {
+      forwarded = chain.filter(exchange);
+    }
+    if (!HttpMethod.GET.equals(request.getMethod())) {
+      // Replayed after it, an older queued write would overwrite it, or be rejected at best.
+      forwarded = replay(exchange, user).then(forwarded);
+    }
+    return forwarded.doOnSuccess(
+        ignored -> {
+          if (!failed(exchange)) {
+            replay(exchange, user).subscribe();
+          }
+        });
+  }
+
+  private static Mono<byte[]> readBody(ServerHttpRequest request) {
+    return DataBufferUtils.join(request.getBody())
+        .map(
+            buffer -> {
+              var bytes = new byte[buffer.readableByteCount()];
+              buffer.read(bytes);
+              DataBufferUtils.release(buffer);
+              return bytes;
+            })
+        .defaultIfEmpty(new byte[0]);
+  }
+
+  // Read ahead, so that the fallback still has the body when the call failed before or after it
+  // was sent to note-service.
+  private static Mono<Void> forward(
+      ServerWebExchange exchange, GatewayFilterChain chain, byte[] body) {
+    exchange.getAttributes().put(BODY_ATTRIBUTE, body);
+    var request =
+        new ServerHttpRequestDecorator(exchange.getRequest()) {
+          @Override
+          public Flux<DataBuffer> getBody() {
+            return Flux.defer(() -> Flux.just(exchange.getResponse().bufferFactory().wrap(body)));
+          }
+        };
+    return chain.filter(exchange.mutate().request(request).build());
+  }
+
+  // Completes once the queued writes were replayed, or the replay stopped at one which could not.
+  private Mono<Void> replay(ServerWebExchange exchange, OAuth2AuthenticationToken user) {
+    Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+    if (route == null || !writes.hasPending(user.getName())) {
+      return Mono.empty();
+    }
+    var authorizeRequest =
+        OAuth2AuthorizeRequest.withClientRegistrationId(user.getAuthorizedClientRegistrationId())
+            .principal(user)
+            .attribute(ServerWebExchange.class.getName(), exchange)
+            .build();
+    return authorizedClientManager
+        .authorize(authorizeRequest)
+        .flatMap(
+            client ->
+                writes.replay(
+                    user.getName(), route.getUri(), client.getAccessToken().getTokenValue()))
+        .onErrorResume(
+            ex -> {
+              log.debug("Could not replay the writes of {}: {}", user.getName(), ex.toString());
+              return Mono.empty();
+            });
+  }
+
+  // Answered by the fallback, or with an error note-service may well answer again shortly.
+  private static boolean failed(ServerWebExchange exchange) {
+    var status = exchange.getResponse().getStatusCode();
+    return status == null
+        || status.is5xxServerError()
+        || exchange.getAttribute(ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR)
+            != null;
+  }
+
+  private static String uri(ServerHttpRequest request) {
+    var query = request.getURI().getRawQuery();
+    return request.getPath().value() + (query == null ? "" : "?" + query);
+  }
+
+  /** Keeps the response to a GET as the snapshot of a user, or drops it once the note is gone. */
+  private class SnapshottingResponse extends ServerHttpResponseDecorator {
+
+    private final ServerWebExchange exchange;
+
+    private final String user;
+
+    private final String uri;
+
+    SnapshottingResponse(ServerWebExchange exchange, String user, String uri) {
+      super(exchange.getResponse());
+      this.exchange = exchange;
+      this.user = user;
+      this.uri = uri;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      var status = getStatusCode();
+      if (failed(exchange)) {
+        return super.writeWith(body);
+      }
+      if (status.isSameCodeAs(HttpStatus.NOT_FOUND) || status.isSameCodeAs(HttpStatus.GONE)) {
+        snapshots.invalidate(user, uri);
+      }
+      if (status.isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+        snapshots.revalidated(user, uri, getHeaders().getETag());
+      }
+      if (!status.isSameCodeAs(HttpStatus.OK)) {
+        return super.writeWith(body);
+      }
+      var etag = getHeaders().getETag();
+      var contentType = getHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+      var now = snapshots.now();
+      var collector = new BodyCollector(properties.maximumEntrySize().toBytes());
+      return super.writeWith(
+          Flux.from(body)
+              .doOnNext(collector::add)
+              .doOnComplete(
+                  () -> {
+                    var bytes = collector.toByteArray();
+                    if (bytes != null) {
+                      snapshots.put(user, uri, new NoteSnapshot(etag, contentType, now, bytes));
+                    }
+                  }));
+    }
+
+    @Override
+    public Mono<Void> setComplete() {
+      return writeWith(Flux.empty());
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+      return writeWith(Flux.from(body).flatMapSequential(Flux::from));
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package io.lanki.edgeservice.fallback;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param maximumSize bytes of snapshots kept in memory.
+ * @param maximumEntrySize bytes of the largest snapshot or queued write body. Larger ones are not
+ *     kept.
+ * @param maximumAge time after which a snapshot is not served anymore.
+ * @param snapshotFile file the snapshots are also written to, so that they survive a restart of
+ *     the gateway. Snapshots are only kept in memory when empty.
+ * @param snapshotFileSize size of the snapshot file, which is mapped into memory.
+ * @param maximumQueuedWrites number of writes queued for a user, after which further ones are
+ *     rejected.
+ * @param maximumQueueUsers number of users with writes queued, after which the queues of those who
+ *     wrote least recently are dropped.
+ * @param maximumWriteAge time after which a queued write is dropped rather than replayed.
+ * @param replayTimeout time after which a replayed write is given up and sent again with the next
+ *     replay. A write of the user waits for the replay of the writes queued before it.
+ */
+@ConfigurationProperties(prefix = "lanki.degraded-mode")
+public record DegradedModeProperties(
+    @DefaultValue("32MB") DataSize maximumSize,
+    @DefaultValue("64KB") DataSize maximumEntrySize,
+    @DefaultValue("24h") Duration maximumAge,
+    String snapshotFile,
+    @DefaultValue("64MB") DataSize snapshotFileSize,
+    @DefaultValue("50") int maximumQueuedWrites,
+    @DefaultValue("10000") int maximumQueueUsers,
+    @DefaultValue("1h") Duration maximumWriteAge,
+    @DefaultValue("2s") Duration replayTimeout) {}
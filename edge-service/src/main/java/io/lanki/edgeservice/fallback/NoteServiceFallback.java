@@ -0,0 +1,175 @@
+package io.lanki.edgeservice.fallback;
+
+import io.lanki.edgeservice.cache.ResponseCacheGatewayFilterFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * Answers the requests the circuit breaker of note-service's route rejected or which failed. A
+ * user's recently read notes and due reviews are served from their {@link NoteSnapshots}, and
+ * conditional writes which are safe to send twice are accepted into the {@link WriteQueue}. A PUT
+ * or DELETE without If-Match is made conditional on the snapshot of the note the user read last.
+ * Anything else is answered with 503 Service Unavailable, as are anonymous requests.
+ */
+@Component
+public class NoteServiceFallback {
+
+  /**
+   * Marks responses of the fallback: {@code stale} for a snapshot, whose age is in the Age header,
+   * and {@code queued} for an accepted write.
+   */
+  static final String DEGRADED_HEADER = "X-Lanki-Degraded";
+
+  static final String READS = "lanki.gateway.degraded.reads";
+
+  // Replayed as sent, the Authorization header is replaced by the access token of the replay.
+  private static final List<String> QUEUED_HEADERS =
+      List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT, HttpHeaders.IF_MATCH);
+
+  private final NoteSnapshots snapshots;
+
+  private final WriteQueue writes;
+
+  private final MeterRegistry meterRegistry;
+
+  public NoteServiceFallback(
+      NoteSnapshots snapshots, WriteQueue writes, MeterRegistry meterRegistry) {
+    this.snapshots = snapshots;
+    this.writes = writes;
+    this.meterRegistry = meterRegistry;
+  }
+
+  public Mono<ServerResponse> read(ServerRequest request) {
+    var uri = uri(originalUri(request));
+    return request
+        .principal()
+        .map(Principal::getName)
+        .mapNotNull(user -> snapshots.get(user, uri))
+        .flatMap(snapshot -> stale(request, snapshot))
+        .switchIfEmpty(
+            Mono.defer(
+                () -> {
+                  record("miss");
+                  return unavailable();
+                }));
+  }
+
+  private Mono<ServerResponse> stale(ServerRequest request, NoteSnapshot snapshot) {
+    record("stale");
+    var notModified =
+        ResponseCacheGatewayFilterFactory.matches(
+            request.headers().asHttpHeaders().getIfNoneMatch(), snapshot.etag());
+    var response =
+        ServerResponse.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+            .header(DEGRADED_HEADER, "stale")
+            .header(HttpHeaders.AGE, String.valueOf(snapshot.ageSeconds(snapshots.now())))
+            // Neither the browser nor the response cache may keep it in place of the real one.
+            .cacheControl(CacheControl.noStore())
+            .headers(
+                headers -> {
+                  if (snapshot.etag() != null) {
+                    headers.setETag(snapshot.etag());
+                  }
+                  if (!notModified && snapshot.contentType() != null) {
+                    headers.set(HttpHeaders.CONTENT_TYPE, snapshot.contentType());
+                  }
+                });
+    return notModified ? response.build() : response.bodyValue(snapshot.body());
+  }
+
+  public Mono<ServerResponse> write(ServerRequest request) {
+    var original = originalUri(request);
+    var method = request.method();
+    var body = body(request);
+    // Only DELETE comes without a body. A larger one than queued writes may have was not kept.
+    if (!WriteQueue.isQueueable(method, original.getPath())
+        || (body.length == 0 && !HttpMethod.DELETE.equals(method))) {
+      return unavailable();
+    }
+    var uri = uri(original);
+    var now = writes.now();
+    var headers = new HttpHeaders();
+    QUEUED_HEADERS.forEach(
+        name -> {
+          var values = request.headers().header(name);
+          if (!values.isEmpty()) {
+            headers.put(name, values);
+          }
+        });
+    return request
+        .principal()
+        .map(Principal::getName)
+        .filter(user -> conditional(method, headers, user, uri))
+        .filter(user -> writes.offer(user, new QueuedWrite(method, uri, headers, body, now)))
+        .flatMap(
+            user -> {
+              if (!HttpMethod.POST.equals(method)) {
+                // The snapshot of the note is outdated by the write.
+                snapshots.invalidate(user, uri);
+              }
+              return ServerResponse.accepted().header(DEGRADED_HEADER, "queued").build();
+            })
+        .switchIfEmpty(Mono.defer(NoteServiceFallback::unavailable));
+  }
+
+  /**
+   * Makes a PUT or DELETE without If-Match conditional on the snapshot of the note, the version the
+   * user read last, so that a replay does not overwrite what was written since.
+   *
+   * @return whether the write is conditional now.
+   */
+  private boolean conditional(HttpMethod method, HttpHeaders headers, String user, String uri) {
+    if (WriteQueue.isConditional(method, headers)) {
+      return true;
+    }
+    var snapshot = headers.getIfMatch().isEmpty() ? snapshots.get(user, uri) : null;
+    // If-Match compares strong tags only.
+    if (snapshot == null || snapshot.etag() == null || snapshot.etag().startsWith("W/")) {
+      return false;
+    }
+    headers.setIfMatch(snapshot.etag());
+    return true;
+  }
+
+  private void record(String result) {
+    Counter.builder(READS).tag("result", result).register(meterRegistry).increment();
+  }
+
+  private static Mono<ServerResponse> unavailable() {
+    return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+  }
+
+  // The request was forwarded to the fallback's path, the gateway recorded the one it came with.
+  @SuppressWarnings("unchecked")
+  private static URI originalUri(ServerRequest request) {
+    return request
+        .attribute(ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR)
+        .map(uris -> (Collection<URI>) uris)
+        .flatMap(uris -> uris.stream().findFirst())
+        .orElse(request.uri());
+  }
+
+  private static String uri(URI uri) {
+    return uri.getRawPath() + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+  }
+
+  private static byte[] body(ServerRequest request) {
+    return request
+        .attribute(DegradedModeGatewayFilterFactory.BODY_ATTRIBUTE)
+        .map(byte[].class::cast)
+        .orElse(new byte[0]);
+  }
+}
@@ -0,0 +1,16 @@
+package io.lanki.edgeservice.fallback;
+
+/**
+ * The last response note-service sent a user for a URI.
+ *
+ * @param etag entity tag of the response, or {@code null}.
+ * @param contentType media type of the body, or {@code null}.
+ * @param storedAt when the response was received, in epoch milliseconds.
+ * @param body body of the response, which must not be modified.
+ */
+record NoteSnapshot(String etag, String contentType, long storedAt, byte[] body) {
+
+  long ageSeconds(long now) {
+    return Math.max(now - storedAt, 0) / 1000;
+  }
+}
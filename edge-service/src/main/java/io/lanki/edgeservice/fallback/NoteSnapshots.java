@@ -0,0 +1,149 @@
+package io.lanki.edgeservice.fallback;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * The last responses note-service sent each user for the notes they read and their due reviews,
+ * served by the {@link NoteServiceFallback} while note-service cannot be reached. Kept in memory,
+ * and also in a {@link SnapshotFile} when one is configured, from which they are read back on
+ * startup.
+ */
+@Component
+public class NoteSnapshots {
+
+  static final String SIZE = "lanki.gateway.degraded.snapshots.size";
+
+  // A note by ID and the due reviews, which is what a review session reads.
+  private static final Pattern SNAPSHOTTED = Pattern.compile("/v1/api/notes/(\\d+|reviews)");
+
+  private static final long TOMBSTONE = -1;
+
+  private static final Logger log = LoggerFactory.getLogger(NoteSnapshots.class);
+
+  private final DegradedModeProperties properties;
+
+  private final Clock clock;
+
+  private final Cache<Key, NoteSnapshot> snapshots;
+
+  private final SnapshotFile file;
+
+  @Autowired
+  public NoteSnapshots(DegradedModeProperties properties, MeterRegistry meterRegistry) {
+    this(properties, meterRegistry, Clock.systemUTC());
+  }
+
+  NoteSnapshots(DegradedModeProperties properties, MeterRegistry meterRegistry, Clock clock) {
+    this.properties = properties;
+    this.clock = clock;
+    this.snapshots =
+        Caffeine.newBuilder()
+            .maximumWeight(properties.maximumSize().toBytes())
+            .weigher((Key key, NoteSnapshot snapshot) -> snapshot.body().length)
+            .expireAfterWrite(properties.maximumAge())
+            .build();
+    this.file = open(properties);
+    if (file != null) {
+      file.read(this::load);
+      log.info("Loaded {} snapshots from {}", snapshots.estimatedSize(), properties.snapshotFile());
+    }
+    Gauge.builder(SIZE, snapshots, NoteSnapshots::weightedSize)
+        .baseUnit("bytes")
+        .register(meterRegistry);
+  }
+
+  private static SnapshotFile open(DegradedModeProperties properties) {
+    if (!StringUtils.hasText(properties.snapshotFile())) {
+      return null;
+    }
+    try {
+      return SnapshotFile.open(
+          Path.of(properties.snapshotFile()), properties.snapshotFileSize().toBytes());
+    } catch (IOException ex) {
+      throw new UncheckedIOException("could not open " + properties.snapshotFile(), ex);
+    }
+  }
+
+  // Read oldest first, so later snapshots of a URI replace earlier ones.
+  private void load(String user, String uri, NoteSnapshot snapshot) {
+    if (snapshot.storedAt() == TOMBSTONE) {
+      snapshots.invalidate(new Key(user, uri));
+    } else if (now() - snapshot.storedAt() < properties.maximumAge().toMillis()) {
+      snapshots.put(new Key(user, uri), snapshot);
+    }
+  }
+
+  /** @param path path of a GET request. */
+  static boolean isSnapshotted(String path) {
+    return SNAPSHOTTED.matcher(path).matches();
+  }
+
+  long now() {
+    return clock.millis();
+  }
+
+  /** @return the snapshot, or {@code null} when there is none young enough. */
+  NoteSnapshot get(String user, String uri) {
+    var snapshot = snapshots.getIfPresent(new Key(user, uri));
+    if (snapshot == null || now() - snapshot.storedAt() >= properties.maximumAge().toMillis()) {
+      return null;
+    }
+    return snapshot;
+  }
+
+  void put(String user, String uri, NoteSnapshot snapshot) {
+    if (snapshot.body().length > properties.maximumEntrySize().toBytes()) {
+      return;
+    }
+    snapshots.put(new Key(user, uri), snapshot);
+    if (file != null) {
+      file.append(user, uri, snapshot);
+    }
+  }
+
+  /**
+   * Renews a snapshot note-service confirmed with a 304 Not Modified. Only in memory, so that
+   * clients revalidating do not keep writing to the file.
+   */
+  void revalidated(String user, String uri, String etag) {
+    snapshots
+        .asMap()
+        .computeIfPresent(
+            new Key(user, uri),
+            (key, snapshot) ->
+                etag != null && etag.equals(snapshot.etag())
+                    ? new NoteSnapshot(etag, snapshot.contentType(), now(), snapshot.body())
+                    : snapshot);
+  }
+
+  /** Forgets the snapshot of a note which was deleted or is about to change. */
+  void invalidate(String user, String uri) {
+    if (snapshots.asMap().remove(new Key(user, uri)) != null && file != null) {
+      // Otherwise read back from the file on the next startup.
+      file.append(user, uri, new NoteSnapshot(null, null, TOMBSTONE, new byte[0]));
+    }
+  }
+
+  private static double weightedSize(Cache<Key, NoteSnapshot> snapshots) {
+    return snapshots
+        .policy()
+        .eviction()
+        .map(eviction -> eviction.weightedSize().orElse(0))
+        .orElse(0L);
+  }
+
+  private record Key(String user, String uri) {}
+}
@@ -0,0 +1,15 @@
+package io.lanki.edgeservice.fallback;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+/**
+ * A write accepted while note-service could not be reached, to be sent once it can again.
+ *
+ * @param uri path and query of the request.
+ * @param headers headers of the request note-service acts on, e.g. If-Match.
+ * @param body body of the request, empty for none.
+ * @param queuedAt when the write was accepted, in epoch milliseconds.
+ */
+record QueuedWrite(
+    HttpMethod method, String uri, HttpHeaders headers, byte[] body, long queuedAt) {}
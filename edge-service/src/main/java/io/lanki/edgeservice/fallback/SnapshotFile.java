@@ -0,0 +1,147 @@
+package io.lanki.edgeservice.fallback;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Snapshots appended to a memory-mapped file used as a ring. Once the end is reached, writing
+ * starts over at the beginning, and the snapshots of the previous round are not read back anymore,
+ * so that a restart keeps the snapshots of at most one round.
+ *
+ * <p>The file starts with a header holding a magic number and the position to append at, followed
+ * by records of a length and the fields of a snapshot. A length of 0 marks the end of a round.
+ */
+final class SnapshotFile {
+
+  private static final int MAGIC = 0x4c4e5331;
+
+  private static final int HEADER_SIZE = 8;
+
+  private final MappedByteBuffer buffer;
+
+  private int position;
+
+  private SnapshotFile(MappedByteBuffer buffer) {
+    this.buffer = buffer;
+    var written = buffer.getInt(4);
+    // Also starts over when the file was written with a larger size.
+    if (buffer.getInt(0) == MAGIC && written >= HEADER_SIZE && written <= buffer.capacity()) {
+      position = written;
+    } else {
+      position = HEADER_SIZE;
+      buffer.putInt(0, MAGIC);
+      writePosition();
+    }
+  }
+
+  static SnapshotFile open(Path path, long size) throws IOException {
+    if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("invalid snapshot file size " + size);
+    }
+    try (var channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      // The mapping stays valid after the channel is closed.
+      return new SnapshotFile(channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+  }
+
+  /** @return whether the snapshot fit into the file. */
+  synchronized boolean append(String user, String uri, NoteSnapshot snapshot) {
+    var record = encode(user, uri, snapshot);
+    if (HEADER_SIZE + Integer.BYTES + record.length > buffer.capacity()) {
+      return false;
+    }
+    if (position + Integer.BYTES + record.length > buffer.capacity()) {
+      if (position + Integer.BYTES <= buffer.capacity()) {
+        buffer.putInt(position, 0);
+      }
+      position = HEADER_SIZE;
+    }
+    buffer.put(position + Integer.BYTES, record);
+    buffer.putInt(position, record.length);
+    position += Integer.BYTES + record.length;
+    writePosition();
+    return true;
+  }
+
+  /** Reads the snapshots of the current round, oldest first. */
+  synchronized void read(Reader reader) {
+    var offset = HEADER_SIZE;
+    while (offset + Integer.BYTES <= position) {
+      var length = buffer.getInt(offset);
+      if (length <= 0 || offset + Integer.BYTES + length > position) {
+        return;
+      }
+      var record = ByteBuffer.wrap(new byte[length]);
+      buffer.get(offset + Integer.BYTES, record.array());
+      var user = string(record);
+      var uri = string(record);
+      var etag = nullable(record);
+      var contentType = nullable(record);
+      var storedAt = record.getLong();
+      reader.read(user, uri, new NoteSnapshot(etag, contentType, storedAt, body(record)));
+      offset += Integer.BYTES + length;
+    }
+  }
+
+  private void writePosition() {
+    buffer.putInt(4, position);
+  }
+
+  private static byte[] encode(String user, String uri, NoteSnapshot snapshot) {
+    var fields =
+        new byte[][] {
+          bytes(user),
+          bytes(uri),
+          bytes(snapshot.etag() == null ? "" : snapshot.etag()),
+          bytes(snapshot.contentType() == null ? "" : snapshot.contentType())
+        };
+    var length = Long.BYTES + Integer.BYTES + snapshot.body().length;
+    for (var field : fields) {
+      length += Integer.BYTES + field.length;
+    }
+    var record = ByteBuffer.allocate(length);
+    for (var field : fields) {
+      record.putInt(field.length).put(field);
+    }
+    record.putLong(snapshot.storedAt());
+    record.putInt(snapshot.body().length).put(snapshot.body());
+    return record.array();
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(ByteBuffer record) {
+    var bytes = new byte[record.getInt()];
+    record.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static String nullable(ByteBuffer record) {
+    var value = string(record);
+    return value.isEmpty() ? null : value;
+  }
+
+  private static byte[] body(ByteBuffer record) {
+    var body = new byte[record.getInt()];
+    record.get(body);
+    return body;
+  }
+
+  @FunctionalInterface
+  interface Reader {
+
+    void read(String user, String uri, NoteSnapshot snapshot);
+  }
+}
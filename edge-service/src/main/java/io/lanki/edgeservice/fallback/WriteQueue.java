@@ -0,0 +1,232 @@
+package io.lanki.edgeservice.fallback;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.URI;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Writes accepted while note-service could not be reached, per user and in the order they were
+ * made. They are sent again, with the user's current access token, once a request of the user gets
+ * through to note-service.
+ *
+ * <p>Only writes which have the same effect when sent twice are queued, since a write might have
+ * reached note-service before the call failed: a PUT, PATCH or DELETE of a note, and the review
+ * submissions. They must also be conditional, see {@link #isConditional}, so that a replay is
+ * rejected rather than overwrites what was written since it was queued.
+ */
+@Component
+public class WriteQueue {
+
+  static final String WRITES = "lanki.gateway.degraded.writes";
+
+  private static final Pattern NOTE = Pattern.compile("/v1/api/notes/\\d+");
+
+  private static final String REVIEWS = "/v1/api/notes/reviews";
+
+  private static final Logger log = LoggerFactory.getLogger(WriteQueue.class);
+
+  private final DegradedModeProperties properties;
+
+  private final MeterRegistry meterRegistry;
+
+  private final Clock clock;
+
+  private final WebClient webClient;
+
+  private final Cache<String, Deque<QueuedWrite>> queues;
+
+  // Replays in progress, by user, which later callers wait for rather than start another.
+  private final Map<String, Mono<Void>> replays = new ConcurrentHashMap<>();
+
+  @Autowired
+  public WriteQueue(
+      DegradedModeProperties properties,
+      MeterRegistry meterRegistry,
+      WebClient.Builder webClientBuilder) {
+    this(properties, meterRegistry, webClientBuilder, Clock.systemUTC());
+  }
+
+  WriteQueue(
+      DegradedModeProperties properties,
+      MeterRegistry meterRegistry,
+      WebClient.Builder webClientBuilder,
+      Clock clock) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    this.clock = clock;
+    this.webClient = webClientBuilder.build();
+    this.queues =
+        Caffeine.newBuilder()
+            .maximumSize(properties.maximumQueueUsers())
+            .expireAfterAccess(properties.maximumWriteAge())
+            .<String, Deque<QueuedWrite>>removalListener(
+                (user, queue, cause) -> {
+                  if (cause.wasEvicted() && queue != null) {
+                    record(cause == RemovalCause.EXPIRED ? "expired" : "evicted", queue.size());
+                  }
+                })
+            .build();
+  }
+
+  /** @param path path of a request which could not reach note-service. */
+  static boolean isQueueable(HttpMethod method, String path) {
+    if (HttpMethod.PUT.equals(method)
+        || HttpMethod.PATCH.equals(method)
+        || HttpMethod.DELETE.equals(method)) {
+      return NOTE.matcher(path).matches();
+    }
+    return HttpMethod.POST.equals(method) && REVIEWS.equals(path);
+  }
+
+  /**
+   * @return whether a queueable write only applies to the version of the note it was based on. A
+   *     PATCH and the review submissions carry the version in their body, a PUT or DELETE needs an
+   *     If-Match with one.
+   */
+  static boolean isConditional(HttpMethod method, HttpHeaders headers) {
+    if (HttpMethod.PUT.equals(method) || HttpMethod.DELETE.equals(method)) {
+      var ifMatch = headers.getIfMatch();
+      return !ifMatch.isEmpty() && !ifMatch.contains("*");
+    }
+    return true;
+  }
+
+  long now() {
+    return clock.millis();
+  }
+
+  /** @return whether the write was queued, which it is not when the user's queue is full. */
+  boolean offer(String user, QueuedWrite write) {
+    var queue = queues.get(user, u -> new ArrayDeque<>());
+    synchronized (queue) {
+      if (queue.size() >= properties.maximumQueuedWrites()) {
+        record("full", 1);
+        return false;
+      }
+      queue.addLast(write);
+    }
+    record("queued", 1);
+    return true;
+  }
+
+  boolean hasPending(String user) {
+    var queue = queues.getIfPresent(user);
+    if (queue == null) {
+      return false;
+    }
+    synchronized (queue) {
+      return !queue.isEmpty();
+    }
+  }
+
+  /**
+   * Sends the writes of a user one after the other, or waits for them if they are already being
+   * sent. Stops at the first one note-service did not answer, which is sent again with the next
+   * replay.
+   *
+   * @param target URI of note-service.
+   */
+  Mono<Void> replay(String user, URI target, String accessToken) {
+    return Mono.defer(
+        () ->
+            replays.computeIfAbsent(
+                user,
+                u ->
+                    Mono.defer(() -> replayNext(u, target, accessToken))
+                        .doFinally(signal -> replays.remove(u))
+                        .cache()));
+  }
+
+  private Mono<Void> replayNext(String user, URI target, String accessToken) {
+    var queue = queues.getIfPresent(user);
+    if (queue == null) {
+      return Mono.empty();
+    }
+    QueuedWrite write;
+    synchronized (queue) {
+      write = queue.peekFirst();
+    }
+    if (write == null) {
+      return Mono.empty();
+    }
+    if (now() - write.queuedAt() >= properties.maximumWriteAge().toMillis()) {
+      remove(queue, write, "expired");
+      return replayNext(user, target, accessToken);
+    }
+    return send(write, target, accessToken)
+        .flatMap(
+            status -> {
+              if (status.is5xxServerError()) {
+                return Mono.empty();
+              }
+              if (status.is2xxSuccessful()) {
+                remove(queue, write, "replayed");
+              } else {
+                // E.g. 412 Precondition Failed, when the note was changed meanwhile.
+                log.info(
+                    "Replayed {} {} of {} was rejected with {}",
+                    write.method(),
+                    write.uri(),
+                    user,
+                    status);
+                remove(queue, write, "rejected");
+              }
+              return replayNext(user, target, accessToken);
+            })
+        .onErrorResume(
+            ex -> {
+              log.debug("Could not replay the writes of {}: {}", user, ex.toString());
+              return Mono.empty();
+            });
+  }
+
+  private Mono<HttpStatusCode> send(QueuedWrite write, URI target, String accessToken) {
+    var uri = URI.create(target.getScheme() + "://" + target.getRawAuthority() + write.uri());
+    var request =
+        webClient
+            .method(write.method())
+            .uri(uri)
+            .headers(
+                headers -> {
+                  headers.addAll(write.headers());
+                  headers.setBearerAuth(accessToken);
+                });
+    var spec = write.body().length > 0 ? request.bodyValue(write.body()) : request;
+    return spec.exchangeToMono(
+            response -> response.releaseBody().thenReturn(response.statusCode()))
+        // Writes of the user wait for the replay, which an unreachable note-service must not stall.
+        .timeout(properties.replayTimeout());
+  }
+
+  private void remove(Deque<QueuedWrite> queue, QueuedWrite write, String outcome) {
+    synchronized (queue) {
+      if (queue.peekFirst() == write) {
+        queue.removeFirst();
+      }
+    }
+    record(outcome, 1);
+  }
+
+  /** @param outcome queued, full, replayed, rejected, expired or evicted. */
+  private void record(String outcome, int writes) {
+    Counter.builder(WRITES).tag("outcome", outcome).register(meterRegistry).increment(writes);
+  }
+}
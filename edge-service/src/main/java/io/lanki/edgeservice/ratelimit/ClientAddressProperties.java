@@ -0,0 +1,18 @@
+package io.lanki.edgeservice.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param trustedProxies proxies in front of the gateway, each of which appends the address it was
+ *     called from to X-Forwarded-For. 0 uses the address of the connection and ignores the header,
+ *     which clients can set to anything.
+ * @param ipv4PrefixLength bits of an IPv4 address which identify a client.
+ * @param ipv6PrefixLength bits of an IPv6 address which identify a client. A host usually gets a
+ *     whole /64 and can pick any address in it.
+ */
+@ConfigurationProperties(prefix = "lanki.rate-limiter.client-address")
+public record ClientAddressProperties(
+    @DefaultValue("0") int trustedProxies,
+    @DefaultValue("32") int ipv4PrefixLength,
+    @DefaultValue("64") int ipv6PrefixLength) {}
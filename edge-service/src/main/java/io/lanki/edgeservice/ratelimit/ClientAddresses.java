@@ -0,0 +1,54 @@
+package io.lanki.edgeservice.ratelimit;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
+import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+/** Resolves the subnet an anonymous request came from, to rate limit clients one by one. */
+@Component
+public class ClientAddresses {
+
+  private final ClientAddressProperties properties;
+
+  private final RemoteAddressResolver remoteAddressResolver;
+
+  public ClientAddresses(ClientAddressProperties properties) {
+    this.properties = properties;
+    this.remoteAddressResolver =
+        properties.trustedProxies() > 0
+            ? XForwardedRemoteAddressResolver.maxTrustedIndex(properties.trustedProxies())
+            : new RemoteAddressResolver() {};
+  }
+
+  /** @return the client's subnet, e.g. 203.0.113.7/32, or {@code null} when it is unknown. */
+  public String subnet(ServerWebExchange exchange) {
+    var remoteAddress = remoteAddressResolver.resolve(exchange);
+    if (remoteAddress == null || remoteAddress.getAddress() == null) {
+      return null;
+    }
+    var address = remoteAddress.getAddress();
+    var prefixLength =
+        address instanceof Inet4Address
+            ? properties.ipv4PrefixLength()
+            : properties.ipv6PrefixLength();
+    return mask(address, prefixLength).getHostAddress() + "/" + prefixLength;
+  }
+
+  private static InetAddress mask(InetAddress address, int prefixLength) {
+    var bytes = address.getAddress();
+    for (var i = 0; i < bytes.length; i++) {
+      var bits = Math.min(Math.max(prefixLength - i * 8, 0), 8);
+      bytes[i] &= (byte) (0xff << (8 - bits));
+    }
+    try {
+      return InetAddress.getByAddress(bytes);
+    } catch (UnknownHostException ex) {
+      // Only thrown for an address of illegal length, which InetAddress never returns.
+      throw new IllegalStateException(ex);
+    }
+  }
+}
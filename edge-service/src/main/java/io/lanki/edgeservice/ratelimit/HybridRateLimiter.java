@@ -0,0 +1,353 @@
+package io.lanki.edgeservice.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.constraints.Min;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Rate limiter which decides every request from a local token bucket per route and key, without a
+ * Redis round trip. Keys resolved for one of the {@link RateLimitPolicies} are limited by it, all
+ * others by the arguments of the route. The tokens taken on each replica are reconciled through
+ * Redis in the background. Tokens another replica handed out are taken from the local bucket at
+ * the next reconciliation, so a key can exceed its global limit by what the other replicas hand out
+ * within one sync interval. Replaces the {@link RedisRateLimiter}, whose response headers it keeps.
+ */
+@Component
+@Primary
+public class HybridRateLimiter extends AbstractRateLimiter<HybridRateLimiter.Config>
+    implements InitializingBean, DisposableBean {
+
+  public static final String CONFIGURATION_PROPERTY_NAME = "hybrid-rate-limiter";
+
+  static final String SYNC = "lanki.gateway.ratelimit.sync";
+
+  static final String BUCKETS = "lanki.gateway.ratelimit.buckets";
+
+  static final String KEY_PREFIX = "lanki:edge:rate_limit.";
+
+  private static final Logger log = LoggerFactory.getLogger(HybridRateLimiter.class);
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final RedisScript<List<Long>> SCRIPT =
+      (RedisScript)
+          RedisScript.of(
+              new ClassPathResource("META-INF/scripts/hybrid_rate_limiter.lua"), List.class);
+
+  private final ReactiveStringRedisTemplate redisTemplate;
+
+  private final HybridRateLimiterProperties properties;
+
+  private final MeterRegistry meterRegistry;
+
+  private final RateLimitPolicies policies;
+
+  private final Ticker ticker;
+
+  private final Cache<BucketKey, TokenBucket> buckets;
+
+  private Disposable sync;
+
+  @Autowired
+  public HybridRateLimiter(
+      ReactiveStringRedisTemplate redisTemplate,
+      HybridRateLimiterProperties properties,
+      MeterRegistry meterRegistry,
+      RateLimitPolicies policies,
+      ConfigurationService configurationService) {
+    this(
+        redisTemplate,
+        properties,
+        meterRegistry,
+        policies,
+        configurationService,
+        Ticker.systemTicker());
+  }
+
+  /** @param ticker source of the nanosecond time the buckets refill by. */
+  HybridRateLimiter(
+      ReactiveStringRedisTemplate redisTemplate,
+      HybridRateLimiterProperties properties,
+      MeterRegistry meterRegistry,
+      RateLimitPolicies policies,
+      ConfigurationService configurationService,
+      Ticker ticker) {
+    super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+    this.redisTemplate = redisTemplate;
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+    this.policies = policies;
+    this.ticker = ticker;
+    // Caffeine reads are lock-free and its bookkeeping is striped, so the hot path does not contend
+    // on the cache. Idle keys are evicted, so one-off anonymous callers do not pile up.
+    this.buckets =
+        Caffeine.newBuilder()
+            .maximumSize(properties.maximumKeys())
+            .expireAfterAccess(properties.idleTimeout())
+            .ticker(ticker)
+            .build();
+    Gauge.builder(BUCKETS, buckets, Cache::estimatedSize).register(meterRegistry);
+  }
+
+  @Override
+  public Mono<Response> isAllowed(String routeId, String id) {
+    var key = RateLimitKey.parse(id);
+    var policy = key == null ? null : policies.get(key.policy());
+    if (policy != null) {
+      return Mono.just(
+          take(
+              new BucketKey(routeId, key.bucket()),
+              policy.replenishRate(),
+              policy.burstCapacity(),
+              key.tokens()));
+    }
+    var config = loadConfiguration(routeId);
+    return Mono.just(
+        take(
+            new BucketKey(routeId, id),
+            config.getReplenishRate(),
+            config.getBurstCapacity(),
+            config.getRequestedTokens()));
+  }
+
+  private Response take(BucketKey key, int replenishRate, int burstCapacity, int tokens) {
+    var now = ticker.read();
+    var bucket = buckets.get(key, k -> new TokenBucket(replenishRate, burstCapacity, now));
+    if (!bucket.hasLimits(replenishRate, burstCapacity)) {
+      // The limits were reloaded. The tokens taken so far are forgotten along with the old bucket.
+      bucket =
+          buckets
+              .asMap()
+              .compute(
+                  key,
+                  (k, current) ->
+                      current != null && current.hasLimits(replenishRate, burstCapacity)
+                          ? current
+                          : new TokenBucket(replenishRate, burstCapacity, now));
+    }
+    var remaining = bucket.tryTake(tokens, now);
+    var headers = new HashMap<String, String>();
+    headers.put(RedisRateLimiter.REMAINING_HEADER, String.valueOf(Math.max(remaining, 0)));
+    headers.put(RedisRateLimiter.REPLENISH_RATE_HEADER, String.valueOf(replenishRate));
+    headers.put(RedisRateLimiter.BURST_CAPACITY_HEADER, String.valueOf(burstCapacity));
+    headers.put(RedisRateLimiter.REQUESTED_TOKENS_HEADER, String.valueOf(tokens));
+    return new Response(remaining >= 0, headers);
+  }
+
+  private Config loadConfiguration(String routeId) {
+    var config = getConfig().get(routeId);
+    if (config == null) {
+      config = getConfig().get(RouteDefinitionRouteLocator.DEFAULT_FILTERS);
+    }
+    if (config == null) {
+      throw new IllegalArgumentException(
+          "No Configuration found for route " + routeId + " or defaultFilters");
+    }
+    return config;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    // Ticks arriving while a reconciliation is still running are dropped rather than queued.
+    sync =
+        Flux.interval(properties.syncInterval())
+            .onBackpressureDrop()
+            .concatMap(tick -> reconcile(), 1)
+            .subscribe();
+  }
+
+  @Override
+  public void destroy() {
+    if (sync != null) {
+      sync.dispose();
+    }
+  }
+
+  /** Sends the tokens taken since the last reconciliation and debits those of other replicas. */
+  Mono<Void> reconcile() {
+    var now = ticker.read();
+    var sample = Timer.start(meterRegistry);
+    var shards = new HashMap<Integer, List<Map.Entry<BucketKey, TokenBucket>>>();
+    buckets
+        .asMap()
+        .forEach(
+            (key, bucket) -> {
+              if (needsSync(bucket, now)) {
+                shards
+                    .computeIfAbsent(key.shard(properties.shards()), shard -> new ArrayList<>())
+                    .add(Map.entry(key, bucket));
+              }
+            });
+    // A batch only holds keys of one shard.
+    return Flux.fromIterable(shards.values())
+        .concatMap(entries -> Flux.fromIterable(entries).buffer(properties.syncBatchSize()))
+        .concatMap(batch -> Mono.defer(() -> reconcile(batch)))
+        .then()
+        .doOnSuccess(ignored -> sample.stop(syncTimer("success")))
+        .onErrorResume(
+            ex -> {
+              sample.stop(syncTimer("error"));
+              log.warn("Could not reconcile the rate limits with Redis: {}", ex.toString());
+              return Mono.empty();
+            });
+  }
+
+  private static boolean needsSync(TokenBucket bucket, long now) {
+    if (bucket.isIdle(now)) {
+      // Nothing to send, nor to debit from a full bucket. Its counter is read again once the bucket
+      // is used, instead of every interval for as long as it stays cached.
+      bucket.lastGlobalTotal(TokenBucket.UNKNOWN);
+      return false;
+    }
+    return true;
+  }
+
+  private Mono<Void> reconcile(List<Map.Entry<BucketKey, TokenBucket>> batch) {
+    var keys = new ArrayList<String>(batch.size());
+    var deltas = new long[batch.size()];
+    var args = new ArrayList<String>(batch.size() + 1);
+    // Counters live as long as buckets, which a replica recreates from scratch after eviction.
+    args.add(String.valueOf(Math.max(properties.idleTimeout().toSeconds(), 1)));
+    for (var i = 0; i < batch.size(); i++) {
+      keys.add(batch.get(i).getKey().redisKey(properties.shards()));
+      deltas[i] = batch.get(i).getValue().drainUnsynced();
+      args.add(String.valueOf(deltas[i]));
+    }
+    return redisTemplate
+        .execute(SCRIPT, keys, args)
+        .reduce(
+            new ArrayList<Long>(),
+            (totals, chunk) -> {
+              totals.addAll(chunk);
+              return totals;
+            })
+        .timeout(properties.syncTimeout())
+        .doOnNext(totals -> apply(batch, deltas, totals))
+        .doOnError(
+            ex -> {
+              // Sent again with the next reconciliation. If Redis did count them before the call
+              // failed, they are counted twice, which errs on the side of limiting.
+              for (var i = 0; i < batch.size(); i++) {
+                batch.get(i).getValue().restoreUnsynced(deltas[i]);
+              }
+            })
+        .then();
+  }
+
+  private void apply(
+      List<Map.Entry<BucketKey, TokenBucket>> batch, long[] deltas, List<Long> totals) {
+    var now = ticker.read();
+    for (var i = 0; i < batch.size(); i++) {
+      var bucket = batch.get(i).getValue();
+      var total = totals.get(i);
+      var last = bucket.lastGlobalTotal();
+      // Without a previous total, which tokens are this replica's is unknown: it becomes the
+      // baseline of the next reconciliation. A smaller total means the counter expired meanwhile.
+      if (last != TokenBucket.UNKNOWN && total >= last + deltas[i]) {
+        var remote = total - last - deltas[i];
+        if (remote > 0) {
+          bucket.debit(remote, now);
+        }
+      }
+      bucket.lastGlobalTotal(total);
+    }
+  }
+
+  private Timer syncTimer(String outcome) {
+    return Timer.builder(SYNC).tag("outcome", outcome).register(meterRegistry);
+  }
+
+  record BucketKey(String routeId, String id) {
+
+    // Every replica must map a key to the same shard, hence String.hashCode, which is specified.
+    int shard(int shards) {
+      return Math.floorMod(name().hashCode(), shards);
+    }
+
+    // The shard is the hash tag, so that Redis Cluster keeps the keys of a batch on one node while
+    // the keys as a whole, including those of busy anonymous subnets, spread over all of them.
+    String redisKey(int shards) {
+      return KEY_PREFIX + "{" + shard(shards) + "}." + name();
+    }
+
+    private String name() {
+      return routeId + "." + id;
+    }
+  }
+
+  @Validated
+  public static class Config {
+
+    @Min(1)
+    private int replenishRate;
+
+    @Min(0)
+    private int burstCapacity = 1;
+
+    @Min(1)
+    private int requestedTokens = 1;
+
+    public int getReplenishRate() {
+      return replenishRate;
+    }
+
+    public Config setReplenishRate(int replenishRate) {
+      this.replenishRate = replenishRate;
+      return this;
+    }
+
+    public int getBurstCapacity() {
+      return burstCapacity;
+    }
+
+    public Config setBurstCapacity(int burstCapacity) {
+      this.burstCapacity = burstCapacity;
+      return this;
+    }
+
+    public int getRequestedTokens() {
+      return requestedTokens;
+    }
+
+    public Config setRequestedTokens(int requestedTokens) {
+      this.requestedTokens = requestedTokens;
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return "Config{replenishRate="
+          + replenishRate
+          + ", burstCapacity="
+          + burstCapacity
+          + ", requestedTokens="
+          + requestedTokens
+          + "}";
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package io.lanki.edgeservice.ratelimit;
+
+import java.time.Duration;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param syncInterval how often the tokens taken on this replica are reconciled with Redis. Other
+ *     replicas' requests are seen this late, so it bounds how far a key can exceed its limit.
+ * @param syncTimeout time after which a reconciliation is given up and retried with the next one.
+ * @param syncBatchSize keys reconciled per Redis call.
+ * @param shards groups the Redis keys are spread over. A Redis call only takes keys of one shard.
+ * @param maximumKeys buckets kept before the least recently used ones are evicted.
+ * @param idleTimeout time after which an unused bucket is evicted. A bucket refills within
+ *     burstCapacity / replenishRate seconds, so evicting it later loses nothing.
+ * @param policies limits by role, route and HTTP method, see {@link RateLimitPolicies}.
+ */
+@ConfigurationProperties(prefix = HybridRateLimiterProperties.PREFIX)
+public record HybridRateLimiterProperties(
+    @DefaultValue("200ms") Duration syncInterval,
+    @DefaultValue("1s") Duration syncTimeout,
+    @DefaultValue("500") int syncBatchSize,
+    @DefaultValue("16") int shards,
+    @DefaultValue("100000") long maximumKeys,
+    @DefaultValue("1m") Duration idleTimeout,
+    @DefaultValue List<RateLimitPolicy> policies) {
+
+  static final String PREFIX = "lanki.rate-limiter";
+}
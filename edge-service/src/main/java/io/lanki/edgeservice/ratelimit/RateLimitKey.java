@@ -0,0 +1,33 @@
+package io.lanki.edgeservice.ratelimit;
+
+/**
+ * Key resolved for a request limited by a policy. The RateLimiter only gets the key, so the policy
+ * and the cost of the request travel in it as {@code policy:tokens:id}.
+ */
+public record RateLimitKey(String policy, int tokens, String id) {
+
+  private static final String SEPARATOR = ":";
+
+  /** @return the key, or {@code null} when it was not resolved for a policy. */
+  static RateLimitKey parse(String key) {
+    var parts = key.split(SEPARATOR, 3);
+    if (parts.length < 3) {
+      return null;
+    }
+    try {
+      return new RateLimitKey(parts[0], Integer.parseInt(parts[1]), parts[2]);
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  // Requests of any cost share the bucket of their policy.
+  String bucket() {
+    return policy + SEPARATOR + id;
+  }
+
+  @Override
+  public String toString() {
+    return policy + SEPARATOR + tokens + SEPARATOR + id;
+  }
+}
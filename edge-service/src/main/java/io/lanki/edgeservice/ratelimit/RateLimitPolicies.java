@@ -0,0 +1,102 @@
+package io.lanki.edgeservice.ratelimit;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.BindException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * Selects the rate limit policy of a request by route, HTTP method and role: the first of
+ * lanki.rate-limiter.policies which matches. Requests no policy matches are limited by the
+ * arguments of their route's rate limiter. The policies are bound again whenever the environment
+ * changes, e.g. when it is refreshed from a config server, without restarting the gateway.
+ */
+@Component
+public class RateLimitPolicies {
+
+  private static final Logger log = LoggerFactory.getLogger(RateLimitPolicies.class);
+
+  private final Environment environment;
+
+  // By name, in the order they are matched.
+  private volatile Map<String, RateLimitPolicy> policies;
+
+  public RateLimitPolicies(HybridRateLimiterProperties properties, Environment environment) {
+    this.environment = environment;
+    this.policies = index(properties.policies());
+  }
+
+  public Optional<RateLimitPolicy> select(
+      String routeId, ServerHttpRequest request, Collection<String> roles) {
+    for (var policy : policies.values()) {
+      if (policy.matches(routeId, request, roles)) {
+        return Optional.of(policy);
+      }
+    }
+    return Optional.empty();
+  }
+
+  RateLimitPolicy get(String name) {
+    return policies.get(name);
+  }
+
+  // An invalid change is rejected as a whole, so requests keep the policies they were limited by.
+  @EventListener
+  public void onEnvironmentChange(EnvironmentChangeEvent event) {
+    Map<String, RateLimitPolicy> changed;
+    try {
+      var properties =
+          Binder.get(environment)
+              .bindOrCreate(HybridRateLimiterProperties.PREFIX, HybridRateLimiterProperties.class);
+      changed = index(properties.policies());
+    } catch (BindException | IllegalArgumentException ex) {
+      log.error(
+          "Rate limit policies are still {}, the change is invalid: {}",
+          policies.keySet(),
+          ex.toString());
+      return;
+    }
+    policies = changed;
+    log.info("Rate limit policies are now {}", policies.keySet());
+  }
+
+  private static Map<String, RateLimitPolicy> index(List<RateLimitPolicy> policies) {
+    var byName = new LinkedHashMap<String, RateLimitPolicy>();
+    for (var policy : policies) {
+      validate(policy);
+      if (byName.putIfAbsent(policy.name(), policy) != null) {
+        throw new IllegalArgumentException("duplicate rate limit policy " + policy.name());
+      }
+    }
+    return byName;
+  }
+
+  // The same bounds as the arguments of HybridRateLimiter.Config.
+  private static void validate(RateLimitPolicy policy) {
+    var name = policy.name();
+    if (name == null || name.isEmpty() || name.contains(":")) {
+      throw new IllegalArgumentException("invalid rate limit policy name " + name);
+    }
+    if (policy.replenishRate() < 1) {
+      throw new IllegalArgumentException("replenish rate of " + name + " must be at least 1");
+    }
+    if (policy.burstCapacity() < 0) {
+      throw new IllegalArgumentException("burst capacity of " + name + " must be at least 0");
+    }
+    if (policy.requestedTokens() < 1
+        || (policy.conditionalRequestedTokens() != null
+            && policy.conditionalRequestedTokens() < 1)) {
+      throw new IllegalArgumentException("requested tokens of " + name + " must be at least 1");
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package io.lanki.edgeservice.ratelimit;
+
+import java.util.Collection;
+import java.util.List;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+/**
+ * Limit of the requests a policy matches. Each matcher which is empty matches every request.
+ *
+ * @param name names the buckets of the policy, one per route and user. Must not contain ':'.
+ * @param roles roles of which the user needs any. Unauthenticated requests have the role
+ *     anonymous.
+ * @param routes IDs of the routes the policy applies to.
+ * @param methods HTTP methods the policy applies to.
+ * @param requestedTokens tokens a request costs.
+ * @param conditionalRequestedTokens tokens a conditional request costs, which is mostly answered
+ *     with 304 Not Modified from the ETag of note-service. Defaults to requestedTokens.
+ */
+public record RateLimitPolicy(
+    String name,
+    @DefaultValue List<String> roles,
+    @DefaultValue List<String> routes,
+    @DefaultValue List<String> methods,
+    int replenishRate,
+    int burstCapacity,
+    @DefaultValue("1") int requestedTokens,
+    Integer conditionalRequestedTokens) {
+
+  boolean matches(String routeId, ServerHttpRequest request, Collection<String> userRoles) {
+    return (routes.isEmpty() || routes.contains(routeId))
+        && (methods.isEmpty() || methods.contains(request.getMethod().name()))
+        && (roles.isEmpty() || roles.stream().anyMatch(userRoles::contains));
+  }
+
+  public int requestedTokens(ServerHttpRequest request) {
+    var headers = request.getHeaders();
+    var conditional =
+        headers.containsKey(HttpHeaders.IF_NONE_MATCH)
+            || headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE);
+    return conditional && conditionalRequestedTokens != null
+        ? conditionalRequestedTokens
+        : requestedTokens;
+  }
+}
@@ -0,0 +1,86 @@
+package io.lanki.edgeservice.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket of one key, kept as the time at which it will be full again (the GCRA formulation),
+ * so that taking tokens is a single compare-and-set without locks or allocation.
+ */
+final class TokenBucket {
+
+  // Global counter value seen at the last reconciliation, or UNKNOWN.
+  static final long UNKNOWN = -1;
+
+  private final int replenishRate;
+
+  private final int burstCapacity;
+
+  private final long nanosPerToken;
+
+  private final long capacityNanos;
+
+  // When the bucket is full again. In the past means full.
+  private final AtomicLong fullAt;
+
+  // Tokens taken on this replica that Redis has not been told about yet.
+  private final AtomicLong unsynced = new AtomicLong();
+
+  // Only written by the reconciliation, which never runs concurrently with itself.
+  private volatile long lastGlobalTotal = UNKNOWN;
+
+  TokenBucket(int replenishRate, int burstCapacity, long now) {
+    this.replenishRate = replenishRate;
+    this.burstCapacity = burstCapacity;
+    this.nanosPerToken = TimeUnit.SECONDS.toNanos(1) / replenishRate;
+    this.capacityNanos = nanosPerToken * burstCapacity;
+    this.fullAt = new AtomicLong(now);
+  }
+
+  boolean hasLimits(int replenishRate, int burstCapacity) {
+    return this.replenishRate == replenishRate && this.burstCapacity == burstCapacity;
+  }
+
+  /** @return tokens left after taking {@code tokens}, or -1 when there were not enough. */
+  long tryTake(int tokens, long now) {
+    while (true) {
+      var current = fullAt.get();
+      var next = Math.max(current, now) + tokens * nanosPerToken;
+      if (next - now > capacityNanos) {
+        return -1;
+      }
+      if (fullAt.compareAndSet(current, next)) {
+        unsynced.addAndGet(tokens);
+        return (now + capacityNanos - next) / nanosPerToken;
+      }
+    }
+  }
+
+  /** Takes tokens other replicas handed out, even if that leaves the bucket in debt. */
+  void debit(long tokens, long now) {
+    fullAt.accumulateAndGet(
+        tokens * nanosPerToken, (current, debt) -> Math.max(current, now) + debt);
+  }
+
+  /** @return whether the bucket is full and Redis knows about all tokens taken from it. */
+  boolean isIdle(long now) {
+    return fullAt.get() <= now && unsynced.get() == 0;
+  }
+
+  long drainUnsynced() {
+    return unsynced.getAndSet(0);
+  }
+
+  /** Puts back tokens whose reconciliation failed, to be sent with the next one. */
+  void restoreUnsynced(long tokens) {
+    unsynced.addAndGet(tokens);
+  }
+
+  long lastGlobalTotal() {
+    return lastGlobalTotal;
+  }
+
+  void lastGlobalTotal(long total) {
+    this.lastGlobalTotal = total;
+  }
+}
@@ -0,0 +1,79 @@
+package io.lanki.edgeservice.web;
+
+import io.lanki.edgeservice.config.RateLimiterConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Records what the route filters did to a request once it completes: whether the rate limiter let
+ * it through, by key class and policy, and how many times it was retried. Route latency is recorded
+ * by the gateway itself as spring.cloud.gateway.requests.
+ */
+@Component
+public class RouteMetricsFilter implements GlobalFilter, Ordered {
+
+  static final String RATE_LIMIT = "lanki.gateway.ratelimit.requests";
+
+  static final String RETRIES = "lanki.gateway.retries";
+
+  private final MeterRegistry meterRegistry;
+
+  public RouteMetricsFilter(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    return chain.filter(exchange).doFinally(signal -> record(exchange));
+  }
+
+  private void record(ServerWebExchange exchange) {
+    Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+    var routeId = route == null ? "none" : route.getId();
+
+    // The key class, never the key, so that users do not become tags.
+    String keyClass = exchange.getAttribute(RateLimiterConfig.KEY_CLASS_ATTRIBUTE);
+    if (keyClass != null) {
+      // The limiter answers before the request is routed, so a 429 of note-service is allowed.
+      var rejected =
+          HttpStatus.TOO_MANY_REQUESTS.equals(exchange.getResponse().getStatusCode())
+              && !ServerWebExchangeUtils.isAlreadyRouted(exchange);
+      // Requests no policy matched were limited by the route's arguments.
+      String policy = exchange.getAttributeOrDefault(RateLimiterConfig.POLICY_ATTRIBUTE, "route");
+      Counter.builder(RATE_LIMIT)
+          .tag("route", routeId)
+          .tag("key_class", keyClass)
+          .tag("policy", policy)
+          .tag("outcome", rejected ? "rejected" : "allowed")
+          .register(meterRegistry)
+          .increment();
+    }
+
+    // Set by the Retry filter to the number of retries, 0 when the first attempt was enough.
+    Integer iteration = exchange.getAttribute(RetryGatewayFilterFactory.RETRY_ITERATION_KEY);
+    if (iteration != null) {
+      DistributionSummary.builder(RETRIES)
+          .baseUnit("retries")
+          .tag("route", routeId)
+          .register(meterRegistry)
+          .record(Math.max(iteration, 0));
+    }
+  }
+
+  // Outermost, so that it sees the outcome of all route filters.
+  @Override
+  public int getOrder() {
+    return Ordered.HIGHEST_PRECEDENCE;
+  }
+}
@@ -1,29 +1,24 @@
 package io.lanki.edgeservice.web;
 
+import io.lanki.edgeservice.fallback.NoteServiceFallback;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerResponse;
-import reactor.core.publisher.Mono;
 
 @Configuration
 public class WebEndpoints {
 
   @Bean
-  public RouterFunction<ServerResponse> routerFunction() {
+  public RouterFunction<ServerResponse> routerFunction(NoteServiceFallback noteServiceFallback) {
+    // The circuit breaker forwards requests with their method.
     return RouterFunctions.route()
-        .GET(
-            "/note-service-fallback",
-            request ->
-                ServerResponse.ok()
-                    .body(
-                        Mono.just("TODO: Implement a fallback logic for note service"),
-                        String.class))
-        .POST(
-            "/note-service-fallback",
-            request -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build())
+        .GET("/note-service-fallback", noteServiceFallback::read)
+        .POST("/note-service-fallback", noteServiceFallback::write)
+        .PUT("/note-service-fallback", noteServiceFallback::write)
+        .PATCH("/note-service-fallback", noteServiceFallback::write)
+        .DELETE("/note-service-fallback", noteServiceFallback::write)
         .build();
   }
 }
@@ -0,0 +1,17 @@
+-- Reconciles the tokens edge-service replicas took from their local buckets.
+-- KEYS: one counter per route and key, of all tokens taken on any replica.
+-- ARGV[1]: seconds the counters live after their last increment.
+-- ARGV[i + 1]: tokens taken on the calling replica since its last reconciliation of KEYS[i].
+-- Returns the counters after adding the calling replica's tokens.
+local ttl = tonumber(ARGV[1])
+local totals = {}
+for i, key in ipairs(KEYS) do
+  local tokens = tonumber(ARGV[i + 1])
+  if tokens > 0 then
+    totals[i] = redis.call("incrby", key, tokens)
+    redis.call("expire", key, ttl)
+  else
+    totals[i] = tonumber(redis.call("get", key) or "0")
+  end
+end
+return totals
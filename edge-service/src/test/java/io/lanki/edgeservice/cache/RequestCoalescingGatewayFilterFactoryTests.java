@@ -0,0 +1,186 @@
+package io.lanki.edgeservice.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+public class RequestCoalescingGatewayFilterFactoryTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final GatewayFilter filter =
+      new RequestCoalescingGatewayFilterFactory(
+              new RequestCoalescingProperties(Duration.ofMillis(200), DataSize.ofKilobytes(1)),
+              meterRegistry)
+          .apply(new Object());
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  // Holds back the upstream responses until the test lets them through.
+  private final Sinks.Empty<Void> upstreamDone = Sinks.empty();
+
+  @Test
+  @DisplayName("Test identical requests in flight are answered by one upstream call")
+  public void testCoalesced() {
+    var leader = exchange("bob");
+    leader.getResponse().getHeaders().set(RedisRateLimiter.REMAINING_HEADER, "9");
+    var follower = exchange("bob");
+
+    var leading = filter.filter(leader, upstream()).toFuture();
+    var following = filter.filter(follower, upstream()).toFuture();
+    upstreamDone.tryEmitEmpty();
+    leading.join();
+    following.join();
+
+    assertThat(calls).hasValue(1);
+    assertThat(follower.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(follower.getResponse().getHeaders().getETag()).isEqualTo("\"1-1\"");
+    // The follower took no token, and may be keyed by another client than the leader.
+    assertThat(follower.getResponse().getHeaders())
+        .doesNotContainKey(RedisRateLimiter.REMAINING_HEADER);
+    assertThat(body(follower)).isEqualTo("note");
+    assertThat(body(leader)).isEqualTo("note");
+    assertThat(count("leader")).isEqualTo(1);
+    assertThat(count("follower")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test requests of different users are not coalesced")
+  public void testDifferentUsers() {
+    var bob = filter.filter(exchange("bob"), upstream()).toFuture();
+    var alice = filter.filter(exchange("alice"), upstream()).toFuture();
+    upstreamDone.tryEmitEmpty();
+    bob.join();
+    alice.join();
+
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  @DisplayName("Test a request waiting for a rate limited one is forwarded on its own")
+  public void testRateLimitedNotShared() {
+    var leading =
+        filter
+            .filter(
+                exchange("bob"),
+                e -> {
+                  calls.incrementAndGet();
+                  e.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                  return upstreamDone.asMono().then(Mono.defer(e.getResponse()::setComplete));
+                })
+            .toFuture();
+    var follower = exchange("bob");
+    var following = filter.filter(follower, upstream()).toFuture();
+    upstreamDone.tryEmitEmpty();
+    leading.join();
+    following.join();
+
+    assertThat(calls).hasValue(2);
+    assertThat(follower.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(count("forwarded")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test the response of the circuit breaker's fallback is not shared")
+  public void testFallbackNotShared() {
+    var leader = exchange("bob");
+    leader
+        .getAttributes()
+        .put(
+            ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR,
+            new TimeoutException());
+    var leading = filter.filter(leader, upstream()).toFuture();
+    var following = filter.filter(exchange("bob"), upstream()).toFuture();
+    upstreamDone.tryEmitEmpty();
+    leading.join();
+    following.join();
+
+    assertThat(calls).hasValue(2);
+    assertThat(count("forwarded")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test a request waiting too long is forwarded on its own")
+  public void testMaxWait() {
+    filter.filter(exchange("bob"), upstream()).subscribe();
+
+    var follower = exchange("bob");
+    filter
+        .filter(
+            follower,
+            e -> {
+              calls.incrementAndGet();
+              e.getResponse().setStatusCode(HttpStatus.OK);
+              return e.getResponse().setComplete();
+            })
+        .block();
+
+    assertThat(calls).hasValue(2);
+    assertThat(count("forwarded")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test the next request after the upstream call completed is forwarded again")
+  public void testCompleted() {
+    upstreamDone.tryEmitEmpty();
+    filter.filter(exchange("bob"), upstream()).block();
+    filter.filter(exchange("bob"), upstream()).block();
+
+    assertThat(calls).hasValue(2);
+    assertThat(count("leader")).isEqualTo(2);
+  }
+
+  private GatewayFilterChain upstream() {
+    return exchange -> {
+      calls.incrementAndGet();
+      var response = exchange.getResponse();
+      response.setStatusCode(HttpStatus.OK);
+      response.getHeaders().setETag("\"1-1\"");
+      var body = "note".getBytes(StandardCharsets.UTF_8);
+      var buffer = DefaultDataBufferFactory.sharedInstance.wrap(body);
+      return upstreamDone.asMono().then(Mono.defer(() -> response.writeWith(Mono.just(buffer))));
+    };
+  }
+
+  private double count(String result) {
+    return meterRegistry
+        .get(RequestCoalescingGatewayFilterFactory.REQUESTS)
+        .tags("result", result)
+        .counter()
+        .count();
+  }
+
+  private static ServerWebExchange exchange(String user) {
+    Principal principal = () -> user;
+    return MockServerWebExchange.from(
+            MockServerHttpRequest.get("/v1/api/notes/1").header(HttpHeaders.ACCEPT, "*/*"))
+        .mutate()
+        .principal(Mono.just(principal))
+        .build();
+  }
+
+  private static String body(ServerWebExchange exchange) {
+    return ((MockServerHttpResponse) exchange.getResponse()).getBodyAsString().block();
+  }
+}
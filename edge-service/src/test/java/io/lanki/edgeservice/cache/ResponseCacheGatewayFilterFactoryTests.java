@@ -0,0 +1,229 @@
+package io.lanki.edgeservice.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+public class ResponseCacheGatewayFilterFactoryTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final Clock clock = mock(Clock.class);
+
+  private final ResponseCache cache =
+      new ResponseCache(
+          new ResponseCacheProperties(
+              DataSize.ofMegabytes(1), DataSize.ofKilobytes(1), Duration.ofSeconds(1)),
+          meterRegistry,
+          clock);
+
+  private final GatewayFilter filter =
+      new ResponseCacheGatewayFilterFactory(cache, WebClient.builder()).apply(new Object());
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  @BeforeEach
+  public void setUp() {
+    when(clock.millis()).thenReturn(0L);
+  }
+
+  @Test
+  @DisplayName("Test a public response is served from the cache to every user while fresh")
+  public void testHit() {
+    var chain = upstream("public, max-age=5", "\"1-1\"", HttpStatus.OK);
+    filter(exchange(get(), "bob"), chain);
+
+    var exchange = exchange(get(), "alice");
+    filter(exchange, chain);
+
+    assertThat(calls).hasValue(1);
+    assertThat(cacheHeader(exchange)).isEqualTo("HIT");
+    assertThat(body(exchange)).isEqualTo("note");
+    assertThat(meterRegistry.get(ResponseCache.REQUESTS).tags("result", "hit").counter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test a hit carries none of the rate limit headers of the request that filled it")
+  public void testHitWithoutRateLimitHeaders() {
+    var chain = upstream("public, max-age=5", "\"1-1\"", HttpStatus.OK);
+    var filling = exchange(get(), "bob");
+    filling.getResponse().getHeaders().set(RedisRateLimiter.REMAINING_HEADER, "9");
+    filling.getResponse().getHeaders().set(RedisRateLimiter.BURST_CAPACITY_HEADER, "10");
+    filter(filling, chain);
+
+    var exchange = exchange(get(), "alice");
+    filter(exchange, chain);
+
+    assertThat(cacheHeader(exchange)).isEqualTo("HIT");
+    assertThat(exchange.getResponse().getHeaders())
+        .doesNotContainKeys(
+            RedisRateLimiter.REMAINING_HEADER, RedisRateLimiter.BURST_CAPACITY_HEADER);
+  }
+
+  @Test
+  @DisplayName("Test a private response is only served to the user it was fetched for")
+  public void testPrivate() {
+    var chain = upstream("private, max-age=5", "\"1-1\"", HttpStatus.OK);
+    filter(exchange(get(), "bob"), chain);
+
+    filter(exchange(get(), "alice"), chain);
+    filter(exchange(get(), "bob"), chain);
+
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  @DisplayName("Test a response marked no-store is not cached")
+  public void testNoStore() {
+    var chain = upstream("no-store", "\"1-1\"", HttpStatus.OK);
+    filter(exchange(get(), "bob"), chain);
+    filter(exchange(get(), "bob"), chain);
+
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  @DisplayName("Test a stale response is revalidated with its ETag and served on 304")
+  public void testRevalidated() {
+    filter(exchange(get(), "bob"), upstream("public, max-age=5", "\"1-1\"", HttpStatus.OK));
+    when(clock.millis()).thenReturn(10_000L);
+
+    var exchange = exchange(get(), "bob");
+    filter(
+        exchange,
+        e -> {
+          assertThat(e.getRequest().getHeaders().getIfNoneMatch()).containsExactly("\"1-1\"");
+          e.getResponse().setStatusCode(HttpStatus.NOT_MODIFIED);
+          e.getResponse().getHeaders().setCacheControl("public, max-age=5");
+          return e.getResponse().setComplete();
+        });
+
+    assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(cacheHeader(exchange)).isEqualTo("REVALIDATED");
+    assertThat(body(exchange)).isEqualTo("note");
+    // Fresh again.
+    filter(exchange(get(), "bob"), upstream("no-store", null, HttpStatus.OK));
+    assertThat(calls).hasValue(1);
+  }
+
+  @Test
+  @DisplayName("Test a revalidation leaves the If-None-Match of the client's request as it was")
+  public void testRevalidatedClientETag() {
+    filter(exchange(get(), "bob"), upstream("public, max-age=5", "\"1-1\"", HttpStatus.OK));
+    when(clock.millis()).thenReturn(10_000L);
+
+    var exchange = exchange(get().ifNoneMatch("\"1-0\""), "bob");
+    filter(
+        exchange,
+        e -> {
+          assertThat(e.getRequest().getHeaders().getIfNoneMatch()).containsExactly("\"1-1\"");
+          e.getResponse().setStatusCode(HttpStatus.NOT_MODIFIED);
+          e.getResponse().getHeaders().setCacheControl("public, max-age=5");
+          return e.getResponse().setComplete();
+        });
+
+    assertThat(exchange.getRequest().getHeaders().getIfNoneMatch()).containsExactly("\"1-0\"");
+    assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(body(exchange)).isEqualTo("note");
+  }
+
+  @Test
+  @DisplayName("Test a stale response is served instead of an error within stale-if-error")
+  public void testStaleIfError() {
+    filter(
+        exchange(get(), "bob"),
+        upstream("public, max-age=5, stale-if-error=60", null, HttpStatus.OK));
+    when(clock.millis()).thenReturn(10_000L);
+
+    var exchange = exchange(get(), "bob");
+    filter(exchange, upstream("no-store", null, HttpStatus.SERVICE_UNAVAILABLE));
+
+    assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(cacheHeader(exchange)).isEqualTo("STALE");
+    assertThat(body(exchange)).isEqualTo("note");
+  }
+
+  @Test
+  @DisplayName("Test a write invalidates what is cached for its URI")
+  public void testInvalidatedByWrite() {
+    var chain = upstream("public, max-age=5", "\"1-1\"", HttpStatus.OK);
+    filter(exchange(get(), "bob"), chain);
+
+    filter(
+        exchange(MockServerHttpRequest.put("/v1/api/notes/1"), "bob"),
+        e -> {
+          e.getResponse().setStatusCode(HttpStatus.OK);
+          return e.getResponse().setComplete();
+        });
+    filter(exchange(get(), "bob"), chain);
+
+    assertThat(calls).hasValue(2);
+  }
+
+  private void filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    filter.filter(exchange, chain).block();
+  }
+
+  private GatewayFilterChain upstream(String cacheControl, String etag, HttpStatus status) {
+    return exchange -> {
+      calls.incrementAndGet();
+      var response = exchange.getResponse();
+      response.setStatusCode(status);
+      response.getHeaders().setCacheControl(cacheControl);
+      if (etag != null) {
+        response.getHeaders().setETag(etag);
+      }
+      var body = "note".getBytes(StandardCharsets.UTF_8);
+      response.getHeaders().setContentLength(body.length);
+      return response.writeWith(Mono.just(DefaultDataBufferFactory.sharedInstance.wrap(body)));
+    };
+  }
+
+  private static MockServerHttpRequest.BaseBuilder<?> get() {
+    return MockServerHttpRequest.get("/v1/api/notes/1");
+  }
+
+  private static ServerWebExchange exchange(
+      MockServerHttpRequest.BaseBuilder<?> request, String user) {
+    Principal principal = () -> user;
+    return MockServerWebExchange.from(request.header(HttpHeaders.ACCEPT, "application/json"))
+        .mutate()
+        .principal(Mono.just(principal))
+        .build();
+  }
+
+  private static String cacheHeader(ServerWebExchange exchange) {
+    return exchange
+        .getResponse()
+        .getHeaders()
+        .getFirst(ResponseCacheGatewayFilterFactory.CACHE_HEADER);
+  }
+
+  private static String body(ServerWebExchange exchange) {
+    return ((MockServerHttpResponse) exchange.getResponse()).getBodyAsString().block();
+  }
+}
@@ -0,0 +1,67 @@
+package io.lanki.edgeservice.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+public class ObservedGatewayFilterTests {
+
+  private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+  private final List<Observation.Context> stopped = new ArrayList<>();
+
+  @BeforeEach
+  public void setUp() {
+    observationRegistry
+        .observationConfig()
+        .observationHandler(
+            new ObservationHandler<>() {
+              @Override
+              public void onStop(Observation.Context context) {
+                stopped.add(context);
+              }
+
+              @Override
+              public boolean supportsContext(Observation.Context context) {
+                return true;
+              }
+            });
+  }
+
+  @Test
+  @DisplayName("Test filters are observed nested in chain order and keep their order")
+  public void testNested() {
+    GatewayFilter inner =
+        ObservedGatewayFilter.observe(
+            "Retry", (exchange, chain) -> chain.filter(exchange), observationRegistry);
+    GatewayFilter outer =
+        ObservedGatewayFilter.observe(
+            "TokenRelay",
+            new OrderedGatewayFilter((exchange, chain) -> chain.filter(exchange), 2),
+            observationRegistry);
+    var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/api/notes/1"));
+
+    outer.filter(exchange, e -> inner.filter(e, last -> Mono.empty())).block();
+
+    assertThat(outer).isInstanceOf(OrderedGatewayFilter.class);
+    assertThat(((OrderedGatewayFilter) outer).getOrder()).isEqualTo(2);
+    assertThat(stopped)
+        .extracting(Observation.Context::getContextualName)
+        .containsExactly("Retry", "TokenRelay");
+    assertThat(stopped.get(0).getParentObservation().getContextView().getContextualName())
+        .isEqualTo("TokenRelay");
+    assertThat(stopped.get(0).getLowCardinalityKeyValue("route").getValue()).isEqualTo("none");
+  }
+}
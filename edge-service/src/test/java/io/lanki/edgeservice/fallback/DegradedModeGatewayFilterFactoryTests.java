@@ -0,0 +1,146 @@
+package io.lanki.edgeservice.fallback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+public class DegradedModeGatewayFilterFactoryTests {
+
+  private final DegradedModeProperties properties =
+      new DegradedModeProperties(
+          DataSize.ofMegabytes(1),
+          DataSize.ofKilobytes(1),
+          Duration.ofHours(1),
+          null,
+          DataSize.ofMegabytes(1),
+          10,
+          100,
+          Duration.ofHours(1),
+          Duration.ofSeconds(2));
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  // What note-service received, in order.
+  private final List<String> received = new ArrayList<>();
+
+  private final WriteQueue writes =
+      new WriteQueue(
+          properties,
+          meterRegistry,
+          WebClient.builder()
+              .exchangeFunction(
+                  request -> {
+                    received.add("replayed " + request.method() + " " + request.url().getPath());
+                    return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                  }),
+          Clock.systemUTC());
+
+  private final ReactiveOAuth2AuthorizedClientManager authorizedClientManager =
+      mock(ReactiveOAuth2AuthorizedClientManager.class);
+
+  private final GatewayFilter filter =
+      new DegradedModeGatewayFilterFactory(
+              new NoteSnapshots(properties, meterRegistry),
+              writes,
+              properties,
+              authorizedClientManager)
+          .apply(new Object());
+
+  @Test
+  @DisplayName("Test a write is forwarded after the writes queued before it were replayed")
+  public void testQueuedWritesReplayedFirst() {
+    var headers = new HttpHeaders();
+    headers.setIfMatch("\"1-1\"");
+    writes.offer(
+        "bob",
+        new QueuedWrite(HttpMethod.DELETE, "/v1/api/notes/1", headers, new byte[0], writes.now()));
+    when(authorizedClientManager.authorize(any())).thenReturn(Mono.just(authorizedClient()));
+
+    var body = "{}".getBytes(StandardCharsets.UTF_8);
+    var exchange =
+        exchange(
+            MockServerHttpRequest.put("/v1/api/notes/2")
+                .header(HttpHeaders.IF_MATCH, "\"2-1\"")
+                .contentLength(body.length)
+                .body("{}"));
+    filter
+        .filter(
+            exchange,
+            e -> {
+              received.add("forwarded PUT " + e.getRequest().getPath().value());
+              e.getResponse().setStatusCode(HttpStatus.OK);
+              return e.getResponse().setComplete();
+            })
+        .block();
+
+    assertThat(received)
+        .containsExactly("replayed DELETE /v1/api/notes/1", "forwarded PUT /v1/api/notes/2");
+    assertThat(writes.hasPending("bob")).isFalse();
+  }
+
+  private static ServerWebExchange exchange(MockServerHttpRequest request) {
+    var user = new DefaultOAuth2User(List.of(), Map.of("sub", "bob"), "sub");
+    var exchange =
+        MockServerWebExchange.from(request)
+            .mutate()
+            .principal(Mono.just(new OAuth2AuthenticationToken(user, List.of(), "keycloak")))
+            .build();
+    var route =
+        Route.async()
+            .id("note-route")
+            .uri(URI.create("http://localhost:9001"))
+            .predicate(e -> true)
+            .build();
+    exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+    return exchange;
+  }
+
+  private static OAuth2AuthorizedClient authorizedClient() {
+    var registration =
+        ClientRegistration.withRegistrationId("keycloak")
+            .clientId("edge-service")
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .redirectUri("http://localhost:9000/login/oauth2/code/keycloak")
+            .authorizationUri("http://localhost:8080/auth")
+            .tokenUri("http://localhost:8080/token")
+            .build();
+    var now = Instant.now();
+    var token =
+        new OAuth2AccessToken(
+            OAuth2AccessToken.TokenType.BEARER, "token", now, now.plusSeconds(60));
+    return new OAuth2AuthorizedClient(registration, "bob", token);
+  }
+}
@@ -0,0 +1,237 @@
+package io.lanki.edgeservice.fallback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.server.EntityResponse;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+public class NoteServiceFallbackTests {
+
+  private static final Principal BOB = () -> "bob";
+
+  private final Clock clock = Clock.fixed(Instant.ofEpochSecond(100), ZoneOffset.UTC);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final DegradedModeProperties properties =
+      new DegradedModeProperties(
+          DataSize.ofMegabytes(1),
+          DataSize.ofKilobytes(1),
+          Duration.ofHours(1),
+          null,
+          DataSize.ofMegabytes(1),
+          2,
+          100,
+          Duration.ofHours(1),
+          Duration.ofSeconds(2));
+
+  private final NoteSnapshots snapshots = new NoteSnapshots(properties, meterRegistry, clock);
+
+  // Requests replayed to note-service, which answers them all with 200.
+  private final List<ClientRequest> replayed = new ArrayList<>();
+
+  private final WriteQueue writes =
+      new WriteQueue(
+          properties,
+          meterRegistry,
+          WebClient.builder()
+              .exchangeFunction(
+                  request -> {
+                    replayed.add(request);
+                    return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                  }),
+          clock);
+
+  private final NoteServiceFallback fallback =
+      new NoteServiceFallback(snapshots, writes, meterRegistry);
+
+  @Test
+  @DisplayName("Test a note read is answered with the user's snapshot")
+  public void testStale() {
+    snapshots.put("bob", "/v1/api/notes/1", snapshot(90_000));
+
+    var response = fallback.read(request(HttpMethod.GET, "/v1/api/notes/1").build()).block();
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.headers().getFirst(NoteServiceFallback.DEGRADED_HEADER))
+        .isEqualTo("stale");
+    assertThat(response.headers().getFirst(HttpHeaders.AGE)).isEqualTo("10");
+    assertThat(response.headers().getCacheControl()).isEqualTo("no-store");
+    assertThat(response.headers().getETag()).isEqualTo("\"1-1\"");
+    assertThat(new String((byte[]) ((EntityResponse<?>) response).entity(), StandardCharsets.UTF_8))
+        .isEqualTo("note");
+    assertThat(count(NoteServiceFallback.READS, "result", "stale")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test a conditional read matching the snapshot is answered with 304")
+  public void testStaleNotModified() {
+    snapshots.put("bob", "/v1/api/notes/1", snapshot(90_000));
+
+    var response =
+        fallback
+            .read(
+                request(HttpMethod.GET, "/v1/api/notes/1")
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"1-1\"")
+                    .build())
+            .block();
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    assertThat(response.headers().getFirst(NoteServiceFallback.DEGRADED_HEADER))
+        .isEqualTo("stale");
+  }
+
+  @Test
+  @DisplayName("Test a conditional read is compared with each of its weak tags")
+  public void testStaleNotModifiedWeak() {
+    snapshots.put("bob", "/v1/api/notes/1", snapshot(90_000));
+
+    var response =
+        fallback
+            .read(
+                request(HttpMethod.GET, "/v1/api/notes/1")
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"1-0\", W/\"1-1\"")
+                    .build())
+            .block();
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+  }
+
+  @Test
+  @DisplayName("Test a read without a snapshot of the user is answered with 503")
+  public void testMiss() {
+    snapshots.put("alice", "/v1/api/notes/1", snapshot(90_000));
+
+    var response = fallback.read(request(HttpMethod.GET, "/v1/api/notes/1").build()).block();
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(count(NoteServiceFallback.READS, "result", "miss")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test an update of a note is queued and its snapshot dropped")
+  public void testQueued() {
+    snapshots.put("bob", "/v1/api/notes/1", snapshot(90_000));
+
+    var response = write(HttpMethod.PUT, "/v1/api/notes/1", "{}", "\"1-1\"");
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    assertThat(response.headers().getFirst(NoteServiceFallback.DEGRADED_HEADER))
+        .isEqualTo("queued");
+    assertThat(writes.hasPending("bob")).isTrue();
+    assertThat(snapshots.get("bob", "/v1/api/notes/1")).isNull();
+    assertThat(count(WriteQueue.WRITES, "outcome", "queued")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test an update without If-Match is replayed conditional on the user's snapshot")
+  public void testQueuedConditionalOnSnapshot() {
+    snapshots.put("bob", "/v1/api/notes/1", snapshot(90_000));
+
+    var response = write(HttpMethod.PUT, "/v1/api/notes/1", "{}", null);
+    writes.replay("bob", URI.create("http://localhost:9001"), "token").block();
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    assertThat(replayed).hasSize(1);
+    assertThat(replayed.get(0).url()).isEqualTo(URI.create("http://localhost:9001/v1/api/notes/1"));
+    assertThat(replayed.get(0).headers().getIfMatch()).containsExactly("\"1-1\"");
+    assertThat(writes.hasPending("bob")).isFalse();
+  }
+
+  @Test
+  @DisplayName("Test an update which cannot be made conditional is not queued")
+  public void testNotConditional() {
+    var response = write(HttpMethod.PUT, "/v1/api/notes/1", "{}", null);
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(write(HttpMethod.DELETE, "/v1/api/notes/1", null, "*").statusCode())
+        .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(writes.hasPending("bob")).isFalse();
+  }
+
+  @Test
+  @DisplayName("Test writes are not queued beyond the user's limit")
+  public void testQueueFull() {
+    write(HttpMethod.DELETE, "/v1/api/notes/1", null, "\"1-1\"");
+    write(HttpMethod.DELETE, "/v1/api/notes/2", null, "\"2-1\"");
+
+    var response = write(HttpMethod.DELETE, "/v1/api/notes/3", null, "\"3-1\"");
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(count(WriteQueue.WRITES, "outcome", "full")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test creating a note is not queued")
+  public void testNotQueueable() {
+    var response = write(HttpMethod.POST, "/v1/api/notes", "{}", null);
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(writes.hasPending("bob")).isFalse();
+  }
+
+  @Test
+  @DisplayName("Test an update whose body was not kept is not queued")
+  public void testBodyNotKept() {
+    var response = write(HttpMethod.PUT, "/v1/api/notes/1", null, "\"1-1\"");
+
+    assertThat(response.statusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(writes.hasPending("bob")).isFalse();
+  }
+
+  private ServerResponse write(HttpMethod method, String path, String body, String ifMatch) {
+    var request = request(method, path);
+    if (ifMatch != null) {
+      request.header(HttpHeaders.IF_MATCH, ifMatch);
+    }
+    if (body != null) {
+      request.attribute(
+          DegradedModeGatewayFilterFactory.BODY_ATTRIBUTE, body.getBytes(StandardCharsets.UTF_8));
+    }
+    return fallback.write(request.build()).block();
+  }
+
+  // Forwarded to the fallback by the circuit breaker, which keeps the original URI.
+  private static MockServerRequest.Builder request(HttpMethod method, String path) {
+    return MockServerRequest.builder()
+        .method(method)
+        .uri(URI.create("http://localhost:9000/note-service-fallback"))
+        .attribute(
+            ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR,
+            new LinkedHashSet<>(List.of(URI.create("http://localhost:9000" + path))))
+        .principal(BOB);
+  }
+
+  private static NoteSnapshot snapshot(long storedAt) {
+    return new NoteSnapshot(
+        "\"1-1\"", "application/json", storedAt, "note".getBytes(StandardCharsets.UTF_8));
+  }
+
+  private double count(String name, String tag, String value) {
+    var counter = meterRegistry.find(name).tag(tag, value).counter();
+    return counter == null ? 0 : counter.count();
+  }
+}
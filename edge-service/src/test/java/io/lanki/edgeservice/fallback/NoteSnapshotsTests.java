@@ -0,0 +1,104 @@
+package io.lanki.edgeservice.fallback;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+public class NoteSnapshotsTests {
+
+  @TempDir private Path directory;
+
+  private final Clock clock = mock(Clock.class);
+
+  @BeforeEach
+  public void setUp() {
+    when(clock.millis()).thenReturn(0L);
+  }
+
+  @Test
+  @DisplayName("Test only the notes by ID and the due reviews are snapshotted")
+  public void testIsSnapshotted() {
+    assertThat(NoteSnapshots.isSnapshotted("/v1/api/notes/1")).isTrue();
+    assertThat(NoteSnapshots.isSnapshotted("/v1/api/notes/reviews")).isTrue();
+    assertThat(NoteSnapshots.isSnapshotted("/v1/api/notes")).isFalse();
+    assertThat(NoteSnapshots.isSnapshotted("/v1/api/notes/search")).isFalse();
+  }
+
+  @Test
+  @DisplayName("Test snapshots are read back from the file after a restart")
+  public void testFile() {
+    var file = directory.resolve("snapshots");
+    var snapshots = snapshots(file, DataSize.ofKilobytes(64));
+    snapshots.put("bob", "/v1/api/notes/1", snapshot("\"1-1\"", "first"));
+    snapshots.put("bob", "/v1/api/notes/1", snapshot("\"1-2\"", "second"));
+    snapshots.put("bob", "/v1/api/notes/2", snapshot("\"2-1\"", "deleted"));
+    snapshots.invalidate("bob", "/v1/api/notes/2");
+
+    var restarted = snapshots(file, DataSize.ofKilobytes(64));
+
+    var snapshot = restarted.get("bob", "/v1/api/notes/1");
+    assertThat(snapshot.etag()).isEqualTo("\"1-2\"");
+    assertThat(new String(snapshot.body(), StandardCharsets.UTF_8)).isEqualTo("second");
+    assertThat(restarted.get("bob", "/v1/api/notes/2")).isNull();
+    assertThat(restarted.get("alice", "/v1/api/notes/1")).isNull();
+  }
+
+  @Test
+  @DisplayName("Test the file starts over at its beginning once it is full")
+  public void testFileWraps() {
+    var file = directory.resolve("snapshots");
+    // Room for two of the snapshots below, but not for three.
+    var snapshots = snapshots(file, DataSize.ofBytes(300));
+    for (var id = 1; id <= 3; id++) {
+      snapshots.put("bob", "/v1/api/notes/" + id, snapshot("\"1-1\"", "x".repeat(50)));
+    }
+
+    var restarted = snapshots(file, DataSize.ofBytes(300));
+
+    assertThat(restarted.get("bob", "/v1/api/notes/1")).isNull();
+    assertThat(restarted.get("bob", "/v1/api/notes/3")).isNotNull();
+  }
+
+  @Test
+  @DisplayName("Test a snapshot older than the maximum age is not served")
+  public void testMaximumAge() {
+    var snapshots = snapshots(null, DataSize.ofKilobytes(64));
+    snapshots.put("bob", "/v1/api/notes/1", snapshot("\"1-1\"", "note"));
+
+    when(clock.millis()).thenReturn(Duration.ofHours(1).toMillis());
+
+    assertThat(snapshots.get("bob", "/v1/api/notes/1")).isNull();
+  }
+
+  private NoteSnapshots snapshots(Path file, DataSize fileSize) {
+    return new NoteSnapshots(
+        new DegradedModeProperties(
+            DataSize.ofMegabytes(1),
+            DataSize.ofKilobytes(1),
+            Duration.ofHours(1),
+            file == null ? null : file.toString(),
+            fileSize,
+            10,
+            100,
+            Duration.ofHours(1),
+            Duration.ofSeconds(2)),
+        new SimpleMeterRegistry(),
+        clock);
+  }
+
+  private NoteSnapshot snapshot(String etag, String body) {
+    return new NoteSnapshot(
+        etag, "application/json", clock.millis(), body.getBytes(StandardCharsets.UTF_8));
+  }
+}
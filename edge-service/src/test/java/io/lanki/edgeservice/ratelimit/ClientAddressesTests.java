@@ -0,0 +1,51 @@
+package io.lanki.edgeservice.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+public class ClientAddressesTests {
+
+  @Test
+  @DisplayName("Test the subnet of a client is its masked address")
+  public void testSubnet() {
+    var clientAddresses = new ClientAddresses(new ClientAddressProperties(0, 24, 64));
+
+    assertThat(clientAddresses.subnet(exchange("203.0.113.7", null))).isEqualTo("203.0.113.0/24");
+    assertThat(clientAddresses.subnet(exchange("2001:db8:1:2:aaaa:bbbb:cccc:dddd", null)))
+        .isEqualTo("2001:db8:1:2:0:0:0:0/64");
+  }
+
+  @Test
+  @DisplayName("Test X-Forwarded-For is ignored without trusted proxies")
+  public void testUntrustedForwardedFor() {
+    var clientAddresses = new ClientAddresses(new ClientAddressProperties(0, 32, 64));
+
+    assertThat(clientAddresses.subnet(exchange("10.0.0.1", "198.51.100.1")))
+        .isEqualTo("10.0.0.1/32");
+  }
+
+  @Test
+  @DisplayName("Test the client is read from X-Forwarded-For behind trusted proxies")
+  public void testTrustedForwardedFor() {
+    var clientAddresses = new ClientAddresses(new ClientAddressProperties(1, 32, 64));
+
+    // The first address was set by the client itself and is not trusted.
+    assertThat(clientAddresses.subnet(exchange("10.0.0.1", "192.0.2.1, 198.51.100.1")))
+        .isEqualTo("198.51.100.1/32");
+  }
+
+  private static MockServerWebExchange exchange(String remoteAddress, String forwardedFor) {
+    var request =
+        MockServerHttpRequest.get("/v1/api/notes")
+            .remoteAddress(new InetSocketAddress(remoteAddress, 443));
+    if (forwardedFor != null) {
+      request.header("X-Forwarded-For", forwardedFor);
+    }
+    return MockServerWebExchange.from(request);
+  }
+}
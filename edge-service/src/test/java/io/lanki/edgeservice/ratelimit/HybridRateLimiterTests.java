@@ -0,0 +1,157 @@
+package io.lanki.edgeservice.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter.Response;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+
+public class HybridRateLimiterTests {
+
+  private final ReactiveStringRedisTemplate redisTemplate = mock(ReactiveStringRedisTemplate.class);
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final HybridRateLimiterProperties properties =
+      new HybridRateLimiterProperties(
+          Duration.ofMillis(200),
+          Duration.ofSeconds(1),
+          500,
+          16,
+          1000,
+          Duration.ofMinutes(1),
+          List.of(new RateLimitPolicy("write", List.of(), List.of(), List.of(), 1, 4, 1, null)));
+
+  // Stands still unless a test moves it, so the buckets only refill when a test says so.
+  private final AtomicLong nanos = new AtomicLong();
+
+  private final HybridRateLimiter rateLimiter =
+      new HybridRateLimiter(
+          redisTemplate,
+          properties,
+          meterRegistry,
+          new RateLimitPolicies(properties, new MockEnvironment()),
+          null,
+          nanos::get);
+
+  @BeforeEach
+  public void setUp() {
+    // One token a second.
+    rateLimiter
+        .getConfig()
+        .put("note-route", new HybridRateLimiter.Config().setReplenishRate(1).setBurstCapacity(10));
+  }
+
+  @Test
+  @DisplayName("Test requests are allowed until the burst capacity is used up")
+  public void testBurst() {
+    for (var i = 0; i < 10; i++) {
+      assertThat(isAllowed("bob").isAllowed()).isTrue();
+    }
+
+    var denied = isAllowed("bob");
+
+    assertThat(denied.isAllowed()).isFalse();
+    assertThat(denied.getHeaders()).containsEntry(RedisRateLimiter.REMAINING_HEADER, "0");
+    assertThat(isAllowed("alice").isAllowed()).isTrue();
+    verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), anyList());
+  }
+
+  @Test
+  @DisplayName("Test a used up bucket refills at the replenish rate")
+  public void testRefill() {
+    for (var i = 0; i < 10; i++) {
+      isAllowed("bob");
+    }
+    assertThat(isAllowed("bob").isAllowed()).isFalse();
+
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+    assertThat(isAllowed("bob").isAllowed()).isTrue();
+    assertThat(isAllowed("bob").isAllowed()).isFalse();
+  }
+
+  @Test
+  @DisplayName("Test a key resolved for a policy is limited by the policy's bucket and cost")
+  public void testPolicy() {
+    var allowed = isAllowed(new RateLimitKey("write", 3, "bob").toString());
+
+    assertThat(allowed.isAllowed()).isTrue();
+    assertThat(allowed.getHeaders())
+        .containsEntry(RedisRateLimiter.BURST_CAPACITY_HEADER, "4")
+        .containsEntry(RedisRateLimiter.REMAINING_HEADER, "1");
+    assertThat(isAllowed(new RateLimitKey("write", 3, "bob").toString()).isAllowed()).isFalse();
+    // The route's bucket of the same user is separate.
+    assertThat(isAllowed("bob").isAllowed()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Test reconciliation takes the tokens other replicas handed out from the bucket")
+  public void testReconcileDebitsRemoteTokens() {
+    isAllowed("bob");
+    isAllowed("bob");
+    // Only this replica's 2 tokens so far, which become the baseline.
+    when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList()))
+        .thenReturn(Flux.just(List.of(2L)));
+    rateLimiter.reconcile().block();
+
+    isAllowed("bob");
+    // This replica's 3 tokens and 5 of another replica.
+    when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList()))
+        .thenReturn(Flux.just(List.of(8L)));
+    rateLimiter.reconcile().block();
+
+    assertThat(isAllowed("bob").getHeaders())
+        .containsEntry(RedisRateLimiter.REMAINING_HEADER, "1");
+    verify(redisTemplate)
+        .execute(
+            any(RedisScript.class),
+            eq(List.of(new HybridRateLimiter.BucketKey("note-route", "bob").redisKey(16))),
+            eq(List.of("60", "1")));
+  }
+
+  @Test
+  @DisplayName("Test tokens of a failed reconciliation are sent with the next one")
+  public void testReconcileFailure() {
+    isAllowed("bob");
+    when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList()))
+        .thenReturn(Flux.error(new IllegalStateException("Redis is down")));
+    rateLimiter.reconcile().block();
+
+    isAllowed("bob");
+    when(redisTemplate.execute(any(RedisScript.class), anyList(), anyList()))
+        .thenReturn(Flux.just(List.of(2L)));
+    rateLimiter.reconcile().block();
+
+    verify(redisTemplate)
+        .execute(
+            any(RedisScript.class),
+            eq(List.of(new HybridRateLimiter.BucketKey("note-route", "bob").redisKey(16))),
+            eq(List.of("60", "2")));
+    assertThat(
+            meterRegistry.get(HybridRateLimiter.SYNC).tags("outcome", "error").timer().count())
+        .isEqualTo(1);
+  }
+
+  private Response isAllowed(String id) {
+    return rateLimiter.isAllowed("note-route", id).block();
+  }
+}
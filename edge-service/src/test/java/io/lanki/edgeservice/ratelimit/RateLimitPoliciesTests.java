@@ -0,0 +1,147 @@
+package io.lanki.edgeservice.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.lanki.edgeservice.config.RateLimiterConfig;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+public class RateLimitPoliciesTests {
+
+  private final MockEnvironment environment = new MockEnvironment();
+
+  private final RateLimitPolicies policies =
+      new RateLimitPolicies(
+          properties(
+              new RateLimitPolicy(
+                  "premium-write",
+                  List.of("premium"),
+                  List.of(),
+                  List.of("POST", "PUT"),
+                  20,
+                  100,
+                  1,
+                  null),
+              new RateLimitPolicy(
+                  "read", List.of(), List.of("note-route"), List.of("GET"), 20, 40, 2, 1)),
+          environment);
+
+  @Test
+  @DisplayName("Test the first policy matching the route, method and roles is selected")
+  public void testSelect() {
+    var post = MockServerHttpRequest.post("/v1/api/notes").build();
+    var get = MockServerHttpRequest.get("/v1/api/notes/1").build();
+
+    assertThat(policies.select("note-route", post, List.of("basic", "premium")))
+        .map(RateLimitPolicy::name)
+        .hasValue("premium-write");
+    assertThat(policies.select("note-route", post, List.of("basic"))).isEmpty();
+    assertThat(policies.select("note-route", get, List.of(RateLimiterConfig.ANONYMOUS)))
+        .map(RateLimitPolicy::name)
+        .hasValue("read");
+    assertThat(policies.select("spa-route", get, List.of())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test a conditional request costs the conditional requested tokens")
+  public void testConditionalRequestedTokens() {
+    var read = policies.get("read");
+
+    assertThat(read.requestedTokens(MockServerHttpRequest.get("/v1/api/notes/1").build()))
+        .isEqualTo(2);
+    assertThat(
+            read.requestedTokens(
+                MockServerHttpRequest.get("/v1/api/notes/1")
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"1-0\"")
+                    .build()))
+        .isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test the policies are bound again when the environment changes")
+  public void testReload() {
+    environment
+        .withProperty("lanki.rate-limiter.policies[0].name", "everything")
+        .withProperty("lanki.rate-limiter.policies[0].replenish-rate", "1")
+        .withProperty("lanki.rate-limiter.policies[0].burst-capacity", "1");
+
+    policies.onEnvironmentChange(
+        new EnvironmentChangeEvent(Set.of("lanki.rate-limiter.policies[0].name")));
+
+    assertThat(policies.get("premium-write")).isNull();
+    assertThat(policies.select("spa-route", MockServerHttpRequest.get("/").build(), List.of()))
+        .map(RateLimitPolicy::name)
+        .hasValue("everything");
+  }
+
+  @Test
+  @DisplayName("Test an invalid change of the environment keeps the previous policies")
+  public void testReloadInvalid() {
+    environment
+        .withProperty("lanki.rate-limiter.policies[0].name", "everything")
+        .withProperty("lanki.rate-limiter.policies[0].replenish-rate", "0")
+        .withProperty("lanki.rate-limiter.policies[0].burst-capacity", "1");
+
+    policies.onEnvironmentChange(
+        new EnvironmentChangeEvent(Set.of("lanki.rate-limiter.policies[0].replenish-rate")));
+
+    assertThat(policies.get("everything")).isNull();
+    assertThat(policies.get("premium-write")).isNotNull();
+  }
+
+  @Test
+  @DisplayName("Test policies with invalid limits or names are rejected")
+  public void testInvalid() {
+    assertThatThrownBy(() -> policies(policy("a:b", 1, 1, 1, null)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> policies(policy("a", 0, 1, 1, null)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> policies(policy("a", 1, -1, 1, null)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> policies(policy("a", 1, 1, 0, null)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> policies(policy("a", 1, 1, 1, 0)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(policies(policy("a", 1, 0, 1, 1)).get("a")).isNotNull();
+  }
+
+  private RateLimitPolicies policies(RateLimitPolicy policy) {
+    return new RateLimitPolicies(properties(policy), environment);
+  }
+
+  private static RateLimitPolicy policy(
+      String name,
+      int replenishRate,
+      int burstCapacity,
+      int requestedTokens,
+      Integer conditionalRequestedTokens) {
+    return new RateLimitPolicy(
+        name,
+        List.of(),
+        List.of(),
+        List.of(),
+        replenishRate,
+        burstCapacity,
+        requestedTokens,
+        conditionalRequestedTokens);
+  }
+
+  private static HybridRateLimiterProperties properties(RateLimitPolicy... policies) {
+    return new HybridRateLimiterProperties(
+        Duration.ofMillis(200),
+        Duration.ofSeconds(1),
+        500,
+        16,
+        1000,
+        Duration.ofMinutes(1),
+        List.of(policies));
+  }
+}
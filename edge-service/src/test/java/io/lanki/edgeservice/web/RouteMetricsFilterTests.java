@@ -0,0 +1,109 @@
+package io.lanki.edgeservice.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lanki.edgeservice.config.RateLimiterConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.factory.RetryGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+public class RouteMetricsFilterTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final RouteMetricsFilter filter = new RouteMetricsFilter(meterRegistry);
+
+  @Test
+  @DisplayName("Test a request rejected by the rate limiter is counted by key class")
+  public void testRateLimited() {
+    var exchange = exchange();
+    exchange
+        .getAttributes()
+        .put(RateLimiterConfig.KEY_CLASS_ATTRIBUTE, RateLimiterConfig.ANONYMOUS);
+
+    filter
+        .filter(
+            exchange,
+            e -> {
+              e.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+              return Mono.empty();
+            })
+        .block();
+
+    var rejected =
+        meterRegistry
+            .get(RouteMetricsFilter.RATE_LIMIT)
+            .tags("route", "note-route", "key_class", "anonymous", "outcome", "rejected")
+            .counter();
+    assertThat(rejected.count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test a request rejected by note-service is counted as allowed by the rate limiter")
+  public void testRejectedDownstream() {
+    var exchange = exchange();
+    exchange
+        .getAttributes()
+        .put(RateLimiterConfig.KEY_CLASS_ATTRIBUTE, RateLimiterConfig.ANONYMOUS);
+
+    filter
+        .filter(
+            exchange,
+            e -> {
+              ServerWebExchangeUtils.setAlreadyRouted(e);
+              e.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+              return Mono.empty();
+            })
+        .block();
+
+    var allowed =
+        meterRegistry
+            .get(RouteMetricsFilter.RATE_LIMIT)
+            .tags("route", "note-route", "key_class", "anonymous", "outcome", "allowed")
+            .counter();
+    assertThat(allowed.count()).isEqualTo(1);
+    assertThat(
+            meterRegistry.find(RouteMetricsFilter.RATE_LIMIT).tags("outcome", "rejected").counter())
+        .isNull();
+  }
+
+  @Test
+  @DisplayName("Test the retries of a request are recorded")
+  public void testRetries() {
+    var exchange = exchange();
+
+    filter
+        .filter(
+            exchange,
+            e -> {
+              e.getAttributes().put(RetryGatewayFilterFactory.RETRY_ITERATION_KEY, 2);
+              return Mono.empty();
+            })
+        .block();
+
+    var retries =
+        meterRegistry.get(RouteMetricsFilter.RETRIES).tags("route", "note-route").summary();
+    assertThat(retries.count()).isEqualTo(1);
+    assertThat(retries.totalAmount()).isEqualTo(2);
+  }
+
+  private static MockServerWebExchange exchange() {
+    var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/api/notes/1"));
+    var route =
+        Route.async()
+            .id("note-route")
+            .uri(URI.create("http://localhost:9001"))
+            .predicate(e -> true)
+            .build();
+    exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+    return exchange;
+  }
+}
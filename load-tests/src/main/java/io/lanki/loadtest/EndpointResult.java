@@ -0,0 +1,24 @@
+package io.lanki.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+/** What one endpoint measured over the run. Latencies are in microseconds. */
+record EndpointResult(
+    String name, Histogram histogram, long errors, long rateLimited, double seconds) {
+
+  long requests() {
+    return histogram.getTotalCount();
+  }
+
+  double throughput() {
+    return requests() / seconds;
+  }
+
+  double errorRate() {
+    return requests() == 0 ? 0 : (double) (errors + rateLimited) / requests();
+  }
+
+  long percentileMicros(double percentile) {
+    return histogram.getValueAtPercentile(percentile);
+  }
+}
@@ -0,0 +1,55 @@
+package io.lanki.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/** Latencies and outcomes of one endpoint, recorded concurrently by all users. */
+final class EndpointStats {
+
+  // Latencies are recorded in microseconds, up to the one minute of the longest timeout.
+  private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+  private final String name;
+
+  private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+
+  private final LongAdder errors = new LongAdder();
+
+  private final LongAdder rateLimited = new LongAdder();
+
+  EndpointStats(String name) {
+    this.name = name;
+  }
+
+  void record(long latencyNanos, Outcome outcome) {
+    recorder.recordValue(
+        Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_LATENCY_MICROS));
+    switch (outcome) {
+      case OK -> {}
+      case RATE_LIMITED -> rateLimited.increment();
+      case ERROR -> errors.increment();
+    }
+  }
+
+  /** Forgets what was recorded so far, e.g. during ramp-up. */
+  void reset() {
+    recorder.reset();
+    errors.reset();
+    rateLimited.reset();
+  }
+
+  EndpointResult result(double seconds) {
+    Histogram histogram = recorder.getIntervalHistogram();
+    return new EndpointResult(name, histogram, errors.sum(), rateLimited.sum(), seconds);
+  }
+
+  enum Outcome {
+    OK,
+    // 429 from the gateway's RequestRateLimiter.
+    RATE_LIMITED,
+    // Any other failure, including a circuit breaker fallback instead of the note-service answer.
+    ERROR
+  }
+}
@@ -0,0 +1,43 @@
+package io.lanki.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/** Prints a summary table and keeps the full latency distribution of every endpoint. */
+final class LoadReport {
+
+  private LoadReport() {}
+
+  static void print(Collection<EndpointResult> results, PrintStream out) {
+    out.printf(
+        "%-14s %9s %9s %9s %9s %9s %9s %7s %7s%n",
+        "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors",
+        "429s");
+    for (var result : results) {
+      out.printf(
+          "%-14s %9d %9.1f %9.1f %9.1f %9.1f %9.1f %7d %7d%n",
+          result.name(),
+          result.requests(),
+          result.throughput(),
+          result.percentileMicros(50) / 1e3,
+          result.percentileMicros(99) / 1e3,
+          result.percentileMicros(99.9) / 1e3,
+          result.histogram().getMaxValue() / 1e3,
+          result.errors(),
+          result.rateLimited());
+    }
+  }
+
+  /** Writes one HdrHistogram percentile distribution (.hgrm) per endpoint, in milliseconds. */
+  static void write(Collection<EndpointResult> results, Path directory) throws IOException {
+    Files.createDirectories(directory);
+    for (var result : results) {
+      try (var out = new PrintStream(directory.resolve(result.name() + ".hgrm").toFile())) {
+        result.histogram().outputPercentileDistribution(out, 1000.0);
+      }
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package io.lanki.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+
+@SpringBootApplication
+@ConfigurationPropertiesScan
+public class LoadTestApplication {
+
+  public static void main(String[] args) {
+    // Exits with 1 when an SLO is violated, so a CI job fails.
+    System.exit(SpringApplication.exit(SpringApplication.run(LoadTestApplication.class, args)));
+  }
+}
@@ -0,0 +1,51 @@
+package io.lanki.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param users number of concurrent review sessions.
+ * @param rampUp time over which the users start. Their requests are not measured.
+ * @param duration measured time once all users have started.
+ * @param thinkTime pause of a user between two requests.
+ * @param notesPerUser due notes seeded for every user.
+ * @param reviewBatchSize notes reviewed per session, and submitted in one request.
+ * @param noteService how note-service is started.
+ * @param edgeService how edge-service is started.
+ * @param slos service level objectives, by endpoint name.
+ */
+@ConfigurationProperties(prefix = "lanki.load-test")
+public record LoadTestProperties(
+    @DefaultValue("100") int users,
+    @DefaultValue("30s") Duration rampUp,
+    @DefaultValue("2m") Duration duration,
+    @DefaultValue("200ms") Duration thinkTime,
+    @DefaultValue("1000") int notesPerUser,
+    @DefaultValue("10") int reviewBatchSize,
+    Service noteService,
+    Service edgeService,
+    Map<String, Slo> slos) {
+
+  /**
+   * @param jar executable jar built by the service's module.
+   * @param args extra command line arguments, e.g. to try other rate limiter settings.
+   */
+  public record Service(Path jar, int port, @DefaultValue List<String> args) {}
+
+  /**
+   * Limits that fail the run. Unset latencies are not checked.
+   *
+   * @param maxErrorRate share of failed, rate limited or fallback responses.
+   * @param minThroughput requests per second.
+   */
+  public record Slo(
+      Duration p50,
+      Duration p99,
+      Duration p999,
+      @DefaultValue("0.01") double maxErrorRate,
+      @DefaultValue("0") double minThroughput) {}
+}
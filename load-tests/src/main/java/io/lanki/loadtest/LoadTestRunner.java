@@ -0,0 +1,168 @@
+package io.lanki.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redis.testcontainers.RedisContainer;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.net.URI;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Starts the whole request path (stub issuer, PostgreSQL, Redis, note-service and edge-service),
+ * seeds due notes, drives the virtual users through edge-service, and reports per endpoint latency
+ * percentiles. The run fails with exit code 1 when an endpoint misses its SLO.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoadTestRunner implements ApplicationRunner, ExitCodeGenerator {
+
+  private static final Path OUTPUT = Path.of("target", "load-test");
+
+  private static final String LOGIN = "login";
+
+  private static final List<String> ENDPOINTS =
+      List.of(LOGIN, "get-reviews", "get-note", "post-reviews", "post-note");
+
+  private static final int SEED_BATCH_SIZE = 1000;
+
+  private final LoadTestProperties properties;
+
+  private final ObjectMapper objectMapper;
+
+  private int exitCode;
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    try (var issuer = StubIssuer.start();
+        var postgres = EmbeddedPostgres.start();
+        var redis = new RedisContainer(DockerImageName.parse("redis:7.2"))) {
+      redis.start();
+      var jdbcUrl = postgres.getJdbcUrl("postgres", "postgres");
+      try (var noteService =
+              ServiceProcess.start(
+                  "note-service",
+                  properties.noteService(),
+                  List.of(
+                      "--spring.datasource.url=" + jdbcUrl,
+                      "--spring.security.oauth2.resourceserver.jwt.issuer-uri="
+                          + issuer.issuerUri()),
+                  OUTPUT);
+          var edgeService =
+              ServiceProcess.start(
+                  "edge-service",
+                  properties.edgeService(),
+                  List.of(
+                      "--NOTE_SERVICE_URL=http://localhost:" + properties.noteService().port(),
+                      "--spring.security.oauth2.client.provider.keycloak.issuer-uri="
+                          + issuer.issuerUri(),
+                      "--spring.redis.host=" + redis.getHost(),
+                      "--spring.redis.port=" + redis.getFirstMappedPort(),
+                      "--spring.data.redis.host=" + redis.getHost(),
+                      "--spring.data.redis.port=" + redis.getFirstMappedPort()),
+                  OUTPUT)) {
+        // Flyway has created the schema once note-service is up.
+        seed(postgres.getPostgresDatabase());
+        var results = drive(URI.create("http://localhost:" + properties.edgeService().port()));
+
+        LoadReport.print(results.values(), System.out);
+        LoadReport.write(results.values(), OUTPUT);
+        var violations = SloVerifier.violations(results, properties.slos());
+        violations.forEach(violation -> log.error("SLO violated: {}", violation));
+        exitCode = violations.isEmpty() ? 0 : 1;
+      }
+    }
+  }
+
+  private void seed(DataSource dataSource) {
+    var jdbcTemplate = new JdbcTemplate(dataSource);
+    var now = Timestamp.from(Instant.now());
+    var due = Timestamp.from(Instant.now().minus(Duration.ofDays(1)));
+    for (var user = 0; user < properties.users(); user++) {
+      var owner = userName(user);
+      var rows = new ArrayList<Object[]>(SEED_BATCH_SIZE);
+      for (var note = 0; note < properties.notesPerUser(); note++) {
+        rows.add(
+            new Object[] {"Note " + note, "Content of note " + note, due, now, now, owner, owner});
+        if (rows.size() == SEED_BATCH_SIZE || note == properties.notesPerUser() - 1) {
+          jdbcTemplate.batchUpdate(
+              "INSERT INTO notes (id, title, content, type, reviews, score, next_review_date,"
+                  + " created_date, last_modified_date, created_by, last_modified_by, version)"
+                  + " VALUES (nextval('notes_seq'), ?, ?, 'PERSONAL', 0, 100, ?, ?, ?, ?, ?, 0)",
+              rows);
+          rows.clear();
+        }
+      }
+    }
+    log.info("Seeded {} due notes for {} users", properties.notesPerUser(), properties.users());
+  }
+
+  private Map<String, EndpointResult> drive(URI edge) throws InterruptedException {
+    var stats = new LinkedHashMap<String, EndpointStats>();
+    ENDPOINTS.forEach(endpoint -> stats.put(endpoint, new EndpointStats(endpoint)));
+    var running = new AtomicBoolean(true);
+
+    ExecutorService executor = Executors.newFixedThreadPool(properties.users());
+    try {
+      var start = System.nanoTime();
+      var rampUpStep = properties.rampUp().toNanos() / Math.max(properties.users(), 1);
+      for (var user = 0; user < properties.users(); user++) {
+        executor.execute(
+            new VirtualUser(userName(user), edge, properties, stats, running::get, objectMapper));
+        TimeUnit.NANOSECONDS.sleep(rampUpStep);
+      }
+      log.info("All {} users started, measuring for {}", properties.users(), properties.duration());
+
+      // Warm-up requests are dropped. Sign-ins mostly happen during ramp-up, so they are kept.
+      stats.forEach(
+          (endpoint, endpointStats) -> {
+            if (!endpoint.equals(LOGIN)) {
+              endpointStats.reset();
+            }
+          });
+      var measuredStart = System.nanoTime();
+      TimeUnit.NANOSECONDS.sleep(properties.duration().toNanos());
+      running.set(false);
+
+      var end = System.nanoTime();
+      var results = new LinkedHashMap<String, EndpointResult>();
+      stats.forEach(
+          (endpoint, endpointStats) -> {
+            var elapsed = endpoint.equals(LOGIN) ? end - start : end - measuredStart;
+            results.put(endpoint, endpointStats.result(elapsed / 1e9));
+          });
+      return results;
+    } finally {
+      executor.shutdownNow();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  private static String userName(int user) {
+    return String.format("load-user-%04d", user);
+  }
+
+  @Override
+  public int getExitCode() {
+    return exitCode;
+  }
+}
@@ -0,0 +1,109 @@
+package io.lanki.loadtest;
+
+import io.lanki.loadtest.LoadTestProperties.Service;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A service under test, started from its executable jar in a JVM of its own so that its heap,
+ * threads and GC pauses are not shared with the load generator.
+ */
+@Slf4j
+final class ServiceProcess implements AutoCloseable {
+
+  private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+  private final String name;
+
+  private final Process process;
+
+  private ServiceProcess(String name, Process process) {
+    this.name = name;
+    this.process = process;
+  }
+
+  /**
+   * Starts the jar and waits until it accepts connections on its port.
+   *
+   * @param args arguments on top of the port and the configured ones, e.g. the database URL.
+   * @param logDirectory where the service's output is written, as {@code <name>.log}.
+   */
+  static ServiceProcess start(String name, Service service, List<String> args, Path logDirectory)
+      throws IOException, InterruptedException {
+    if (!Files.isRegularFile(service.jar())) {
+      throw new IllegalStateException(
+          service.jar().toAbsolutePath() + " does not exist, package " + name + " first");
+    }
+    var command = new ArrayList<String>();
+    command.add(javaExecutable());
+    command.add("-jar");
+    command.add(service.jar().toAbsolutePath().toString());
+    command.add("--server.port=" + service.port());
+    command.addAll(args);
+    command.addAll(service.args());
+
+    Files.createDirectories(logDirectory);
+    var logFile = logDirectory.resolve(name + ".log");
+    var process =
+        new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(logFile.toFile())
+            .start();
+    var serviceProcess = new ServiceProcess(name, process);
+    try {
+      serviceProcess.awaitPort(service.port(), logFile);
+    } catch (IOException | InterruptedException | RuntimeException ex) {
+      serviceProcess.close();
+      throw ex;
+    }
+    log.info("Started {} on port {}, logging to {}", name, service.port(), logFile);
+    return serviceProcess;
+  }
+
+  private void awaitPort(int port, Path logFile) throws IOException, InterruptedException {
+    var deadline = Instant.now().plus(STARTUP_TIMEOUT);
+    while (Instant.now().isBefore(deadline)) {
+      if (!process.isAlive()) {
+        throw new IOException(name + " exited with " + process.exitValue() + ", see " + logFile);
+      }
+      try (var socket = new Socket()) {
+        socket.connect(new InetSocketAddress("localhost", port), 500);
+        return;
+      } catch (IOException ex) {
+        TimeUnit.MILLISECONDS.sleep(500);
+      }
+    }
+    throw new IOException(name + " did not open port " + port + " in time, see " + logFile);
+  }
+
+  // The same JVM that runs the load test, so the services need no JAVA_HOME of their own.
+  private static String javaExecutable() {
+    return ProcessHandle.current()
+        .info()
+        .command()
+        .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+  }
+
+  @Override
+  public void close() {
+    // SIGTERM, so the service shuts down gracefully like it would in production.
+    process.destroy();
+    try {
+      if (!process.waitFor(30, TimeUnit.SECONDS)) {
+        process.destroyForcibly();
+      }
+    } catch (InterruptedException ex) {
+      process.destroyForcibly();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package io.lanki.loadtest;
+
+import io.lanki.loadtest.LoadTestProperties.Slo;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Checks the measured endpoints against their service level objectives. */
+final class SloVerifier {
+
+  private SloVerifier() {}
+
+  /** @return one message per violated objective, empty when the run passes. */
+  static List<String> violations(Map<String, EndpointResult> results, Map<String, Slo> slos) {
+    var violations = new ArrayList<String>();
+    slos.forEach(
+        (endpoint, slo) -> {
+          var result = results.get(endpoint);
+          if (result == null || result.requests() == 0) {
+            violations.add(endpoint + ": no requests were measured");
+            return;
+          }
+          checkLatency(violations, result, "p50", 50, slo.p50());
+          checkLatency(violations, result, "p99", 99, slo.p99());
+          checkLatency(violations, result, "p99.9", 99.9, slo.p999());
+          if (result.errorRate() > slo.maxErrorRate()) {
+            violations.add(
+                String.format(
+                    "%s: error rate %.2f%% above %.2f%% (%d errors, %d rate limited)",
+                    endpoint,
+                    result.errorRate() * 100,
+                    slo.maxErrorRate() * 100,
+                    result.errors(),
+                    result.rateLimited()));
+          }
+          if (result.throughput() < slo.minThroughput()) {
+            violations.add(
+                String.format(
+                    "%s: throughput %.1f req/s below %.1f req/s",
+                    endpoint, result.throughput(), slo.minThroughput()));
+          }
+        });
+    return violations;
+  }
+
+  private static void checkLatency(
+      List<String> violations,
+      EndpointResult result,
+      String label,
+      double percentile,
+      Duration limit) {
+    if (limit == null) {
+      return;
+    }
+    var micros = result.percentileMicros(percentile);
+    if (micros > limit.toNanos() / 1_000) {
+      violations.add(
+          String.format(
+              "%s: %s %.1fms above %dms", result.name(), label, micros / 1e3, limit.toMillis()));
+    }
+  }
+}
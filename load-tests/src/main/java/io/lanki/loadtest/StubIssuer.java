@@ -0,0 +1,230 @@
+package io.lanki.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Minimal OpenID provider in place of Keycloak, under the same paths. The authorization endpoint
+ * signs in the user named by {@code login_hint} without a login page, and every token is an RS256
+ * JWT that edge-service and note-service validate against the published key.
+ */
+final class StubIssuer implements AutoCloseable {
+
+  private static final String REALM = "/realms/Lanki";
+
+  private static final String PROTOCOL = REALM + "/protocol/openid-connect";
+
+  private static final Duration TOKEN_LIFETIME = Duration.ofHours(1);
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final HttpServer server;
+
+  private final ExecutorService executor;
+
+  private final RSAKey key;
+
+  private final RSASSASigner signer;
+
+  // Authorization code -> the grant it stands for.
+  private final Map<String, Grant> grants = new ConcurrentHashMap<>();
+
+  private StubIssuer(HttpServer server, ExecutorService executor, RSAKey key)
+      throws JOSEException {
+    this.server = server;
+    this.executor = executor;
+    this.key = key;
+    this.signer = new RSASSASigner(key);
+  }
+
+  static StubIssuer start() throws IOException, JOSEException {
+    var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    var executor = Executors.newFixedThreadPool(8);
+    var key = new RSAKeyGenerator(2048).keyID("load-test").generate();
+    var issuer = new StubIssuer(server, executor, key);
+    server.createContext(REALM + "/.well-known/openid-configuration", issuer::discovery);
+    server.createContext(PROTOCOL + "/certs", issuer::certs);
+    server.createContext(PROTOCOL + "/auth", issuer::authorize);
+    server.createContext(PROTOCOL + "/token", issuer::token);
+    server.createContext(PROTOCOL + "/userinfo", issuer::userInfo);
+    server.setExecutor(executor);
+    server.start();
+    return issuer;
+  }
+
+  String issuerUri() {
+    return "http://localhost:" + server.getAddress().getPort() + REALM;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void discovery(HttpExchange exchange) throws IOException {
+    var protocol = "http://localhost:" + server.getAddress().getPort() + PROTOCOL;
+    var metadata = new HashMap<String, Object>();
+    metadata.put("issuer", issuerUri());
+    metadata.put("authorization_endpoint", protocol + "/auth");
+    metadata.put("token_endpoint", protocol + "/token");
+    metadata.put("userinfo_endpoint", protocol + "/userinfo");
+    metadata.put("jwks_uri", protocol + "/certs");
+    metadata.put("response_types_supported", List.of("code"));
+    metadata.put("subject_types_supported", List.of("public"));
+    metadata.put("id_token_signing_alg_values_supported", List.of("RS256"));
+    metadata.put("grant_types_supported", List.of("authorization_code"));
+    metadata.put(
+        "token_endpoint_auth_methods_supported",
+        List.of("client_secret_basic", "client_secret_post"));
+    metadata.put("scopes_supported", List.of("openid", "roles"));
+    respondJson(exchange, 200, metadata);
+  }
+
+  private void certs(HttpExchange exchange) throws IOException {
+    respondJson(exchange, 200, new JWKSet(key.toPublicJWK()).toJSONObject());
+  }
+
+  private void authorize(HttpExchange exchange) throws IOException {
+    var query = parse(exchange.getRequestURI().getRawQuery());
+    var user = query.get("login_hint");
+    if (user == null) {
+      respondJson(exchange, 400, Map.of("error", "login_hint is required"));
+      return;
+    }
+    var code = UUID.randomUUID().toString();
+    grants.put(code, new Grant(user, query.get("client_id"), query.get("nonce")));
+    var location =
+        UriComponentsBuilder.fromUriString(query.get("redirect_uri"))
+            .queryParam("code", code)
+            .queryParam("state", query.get("state"))
+            .encode()
+            .toUriString();
+    exchange.getResponseHeaders().add("Location", location);
+    exchange.sendResponseHeaders(302, -1);
+    exchange.close();
+  }
+
+  private void token(HttpExchange exchange) throws IOException {
+    var form = parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+    var grant = form.get("code") == null ? null : grants.remove(form.get("code"));
+    if (grant == null) {
+      respondJson(exchange, 400, Map.of("error", "invalid_grant"));
+      return;
+    }
+    try {
+      var now = Instant.now();
+      var response = new HashMap<String, Object>();
+      response.put("access_token", sign(accessToken(grant.user(), now)));
+      response.put("id_token", sign(idToken(grant, now)));
+      response.put("token_type", "Bearer");
+      response.put("expires_in", TOKEN_LIFETIME.toSeconds());
+      response.put("scope", "openid roles");
+      respondJson(exchange, 200, response);
+    } catch (JOSEException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  private void userInfo(HttpExchange exchange) throws IOException {
+    var authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    try {
+      var claims = SignedJWT.parse(authorization.substring("Bearer ".length())).getJWTClaimsSet();
+      respondJson(exchange, 200, userClaims(claims.getSubject()));
+    } catch (Exception ex) {
+      respondJson(exchange, 401, Map.of("error", "invalid_token"));
+    }
+  }
+
+  private JWTClaimsSet accessToken(String user, Instant now) {
+    var claims = new JWTClaimsSet.Builder();
+    userClaims(user).forEach(claims::claim);
+    return claims
+        .issuer(issuerUri())
+        .subject(user)
+        .issueTime(Date.from(now))
+        .expirationTime(Date.from(now.plus(TOKEN_LIFETIME)))
+        .claim("scope", "openid roles")
+        .build();
+  }
+
+  private JWTClaimsSet idToken(Grant grant, Instant now) {
+    var claims = new JWTClaimsSet.Builder();
+    userClaims(grant.user()).forEach(claims::claim);
+    return claims
+        .issuer(issuerUri())
+        .subject(grant.user())
+        .audience(grant.clientId())
+        .issueTime(Date.from(now))
+        .expirationTime(Date.from(now.plus(TOKEN_LIFETIME)))
+        .claim("nonce", grant.nonce())
+        .build();
+  }
+
+  private static Map<String, Object> userClaims(String user) {
+    return Map.of(
+        "sub", user,
+        "preferred_username", user,
+        "given_name", "Load",
+        "family_name", user,
+        "roles", List.of("basic"));
+  }
+
+  private String sign(JWTClaimsSet claims) throws JOSEException {
+    var header = new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build();
+    var jwt = new SignedJWT(header, claims);
+    jwt.sign(signer);
+    return jwt.serialize();
+  }
+
+  private static Map<String, String> parse(String form) {
+    var values = new HashMap<String, String>();
+    if (form == null || form.isEmpty()) {
+      return values;
+    }
+    for (var pair : form.split("&")) {
+      var keyAndValue = pair.split("=", 2);
+      values.put(
+          URLDecoder.decode(keyAndValue[0], StandardCharsets.UTF_8),
+          keyAndValue.length == 2 ? URLDecoder.decode(keyAndValue[1], StandardCharsets.UTF_8) : "");
+    }
+    return values;
+  }
+
+  private static void respondJson(HttpExchange exchange, int status, Object body)
+      throws IOException {
+    var bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (var out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private record Grant(String user, String clientId, String nonce) {}
+}
@@ -0,0 +1,231 @@
+package io.lanki.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lanki.loadtest.EndpointStats.Outcome;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.CookieManager;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One user of the web app, going through edge-service like the browser does: it signs in with the
+ * authorization code flow, keeps the SESSION and XSRF-TOKEN cookies, and then repeats review
+ * sessions until the run is over. A session fetches the due notes, opens each of them, submits
+ * all grades in one request and sometimes adds a note.
+ */
+@Slf4j
+final class VirtualUser implements Runnable {
+
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+  private static final String NOTES = "/v1/api/notes";
+
+  // Share of sessions that end with a new note.
+  private static final double POST_NOTE_RATE = 0.2;
+
+  private final String name;
+
+  private final URI edge;
+
+  private final LoadTestProperties properties;
+
+  private final Map<String, EndpointStats> stats;
+
+  private final BooleanSupplier running;
+
+  private final ObjectMapper objectMapper;
+
+  private final CookieManager cookies = new CookieManager();
+
+  private final HttpClient client;
+
+  VirtualUser(
+      String name,
+      URI edge,
+      LoadTestProperties properties,
+      Map<String, EndpointStats> stats,
+      BooleanSupplier running,
+      ObjectMapper objectMapper) {
+    this.name = name;
+    this.edge = edge;
+    this.properties = properties;
+    this.stats = stats;
+    this.running = running;
+    this.objectMapper = objectMapper;
+    // Redirects are followed by hand, to add the login hint and to not leave the gateway.
+    this.client =
+        HttpClient.newBuilder()
+            .cookieHandler(cookies)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (running.getAsBoolean() && !login()) {
+        think();
+      }
+      while (running.getAsBoolean()) {
+        review();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean login() throws InterruptedException {
+    var start = System.nanoTime();
+    try {
+      var authorize = send(get(edge.resolve("/oauth2/authorization/keycloak")));
+      // The stub issuer signs in whoever the hint names, instead of showing a login page.
+      var callback = send(get(URI.create(location(authorize) + "&login_hint=" + name)));
+      var signedIn = send(get(location(callback)));
+      // Edge-service redirects to the app once the code is exchanged, or to an error page.
+      var ok = signedIn.statusCode() == 302 && !location(signedIn).toString().contains("error");
+      stats.get("login").record(System.nanoTime() - start, ok ? Outcome.OK : Outcome.ERROR);
+      if (!ok) {
+        log.warn("{} could not sign in: {}", name, signedIn.headers().map());
+      }
+      return ok;
+    } catch (IOException | IllegalStateException ex) {
+      stats.get("login").record(System.nanoTime() - start, Outcome.ERROR);
+      log.warn("{} could not sign in", name, ex);
+      return false;
+    }
+  }
+
+  private void review() throws InterruptedException {
+    var size = properties.reviewBatchSize();
+    var due = call("get-reviews", get(edge.resolve(NOTES + "/reviews?size=" + size)));
+    think();
+    var grades = new ArrayList<Map<String, Object>>();
+    if (due != null) {
+      for (var note : due) {
+        if (!running.getAsBoolean()) {
+          return;
+        }
+        var opened = call("get-note", get(edge.resolve(NOTES + "/" + note.get("id").asLong())));
+        think();
+        if (opened != null) {
+          grades.add(
+              Map.of(
+                  "id", opened.get("id").asLong(),
+                  "version", opened.get("version").asInt(),
+                  "grade", ThreadLocalRandom.current().nextInt(6)));
+        }
+      }
+    }
+    if (!grades.isEmpty() && running.getAsBoolean()) {
+      call("post-reviews", post(NOTES + "/reviews", grades));
+      think();
+    }
+    if (ThreadLocalRandom.current().nextDouble() < POST_NOTE_RATE && running.getAsBoolean()) {
+      call(
+          "post-note",
+          post(
+              NOTES,
+              Map.of(
+                  "title", "Load test note",
+                  "content", "Added by " + name + " during a review session",
+                  "type", "PERSONAL",
+                  "next_review_date", Instant.now().plus(Duration.ofDays(1)).toString())));
+      think();
+    }
+  }
+
+  /**
+   * Sends a request to note-service through the gateway and records how it went.
+   *
+   * @return the JSON body of a successful response, or {@code null}.
+   */
+  private JsonNode call(String endpoint, HttpRequest request) throws InterruptedException {
+    var start = System.nanoTime();
+    try {
+      var response = send(request);
+      var latency = System.nanoTime() - start;
+      var outcome = outcome(response);
+      stats.get(endpoint).record(latency, outcome);
+      return outcome == Outcome.OK ? objectMapper.readTree(response.body()) : null;
+    } catch (IOException ex) {
+      stats.get(endpoint).record(System.nanoTime() - start, Outcome.ERROR);
+      return null;
+    }
+  }
+
+  private static Outcome outcome(HttpResponse<String> response) {
+    if (response.statusCode() == 429) {
+      return Outcome.RATE_LIMITED;
+    }
+    // The circuit breaker fallback answers in plain text, so a 200 is not enough.
+    var json =
+        response
+            .headers()
+            .firstValue("Content-Type")
+            .filter(type -> type.startsWith("application/json"))
+            .isPresent();
+    return response.statusCode() / 100 == 2 && json ? Outcome.OK : Outcome.ERROR;
+  }
+
+  private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+    return client.send(request, BodyHandlers.ofString());
+  }
+
+  private static HttpRequest get(URI uri) {
+    return HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).GET().build();
+  }
+
+  private HttpRequest post(String path, Object body) {
+    byte[] json;
+    try {
+      json = objectMapper.writeValueAsBytes(body);
+    } catch (JsonProcessingException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    return HttpRequest.newBuilder(edge.resolve(path))
+        .timeout(REQUEST_TIMEOUT)
+        .header("Content-Type", "application/json")
+        .header("X-XSRF-TOKEN", csrfToken())
+        .POST(BodyPublishers.ofByteArray(json))
+        .build();
+  }
+
+  // Edge-service sets the cookie on every response, like it does for the SPA.
+  private String csrfToken() {
+    return cookies.getCookieStore().get(edge).stream()
+        .filter(cookie -> cookie.getName().equals("XSRF-TOKEN"))
+        .map(HttpCookie::getValue)
+        .findFirst()
+        .orElse("");
+  }
+
+  private static URI location(HttpResponse<?> response) {
+    return response
+        .headers()
+        .firstValue("Location")
+        .map(URI::create)
+        .orElseThrow(
+            () -> new IllegalStateException("expected a redirect, got " + response.statusCode()));
+  }
+
+  private void think() throws InterruptedException {
+    TimeUnit.MILLISECONDS.sleep(properties.thinkTime().toMillis());
+  }
+}
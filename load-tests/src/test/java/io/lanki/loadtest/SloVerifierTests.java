@@ -0,0 +1,75 @@
+package io.lanki.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lanki.loadtest.LoadTestProperties.Slo;
+import java.time.Duration;
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SloVerifierTests {
+
+  private static final Slo SLO =
+      new Slo(Duration.ofMillis(20), Duration.ofMillis(100), null, 0.01, 10);
+
+  @Test
+  @DisplayName("Test an endpoint within its SLO")
+  public void testWithinSlo() {
+    var result = result(990, 10_000, 10, 0);
+
+    assertThat(SloVerifier.violations(Map.of("get-note", result), Map.of("get-note", SLO)))
+        .isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test an endpoint with a slow tail")
+  public void testSlowTail() {
+    var result = result(970, 250_000, 30, 0);
+
+    assertThat(SloVerifier.violations(Map.of("get-note", result), Map.of("get-note", SLO)))
+        .singleElement()
+        .asString()
+        .startsWith("get-note: p99 250.");
+  }
+
+  @Test
+  @DisplayName("Test an endpoint with rate limited responses above the error rate")
+  public void testRateLimited() {
+    var result = result(1000, 10_000, 0, 50);
+
+    assertThat(SloVerifier.violations(Map.of("get-note", result), Map.of("get-note", SLO)))
+        .singleElement()
+        .asString()
+        .contains("error rate 5.00%", "50 rate limited");
+  }
+
+  @Test
+  @DisplayName("Test an endpoint below its minimum throughput")
+  public void testLowThroughput() {
+    var histogram = new Histogram(3);
+    histogram.recordValueWithCount(5_000, 100);
+    var result = new EndpointResult("get-note", histogram, 0, 0, 100);
+
+    assertThat(SloVerifier.violations(Map.of("get-note", result), Map.of("get-note", SLO)))
+        .containsExactly("get-note: throughput 1.0 req/s below 10.0 req/s");
+  }
+
+  @Test
+  @DisplayName("Test an endpoint with an SLO that was never called")
+  public void testNotMeasured() {
+    assertThat(SloVerifier.violations(Map.of(), Map.of("post-note", SLO)))
+        .containsExactly("post-note: no requests were measured");
+  }
+
+  // Requests of 5ms, then the slow ones, over 10 seconds.
+  private static EndpointResult result(int fast, long slowMicros, int slow, long rateLimited) {
+    var histogram = new Histogram(3);
+    histogram.recordValueWithCount(5_000, fast);
+    if (slow > 0) {
+      histogram.recordValueWithCount(slowMicros, slow);
+    }
+    return new EndpointResult("get-note", histogram, 0, rateLimited, 10);
+  }
+}
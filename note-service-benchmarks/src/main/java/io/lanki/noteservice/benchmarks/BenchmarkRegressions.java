@@ -0,0 +1,69 @@
+package io.lanki.noteservice.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Compares two JMH JSON result files benchmark by benchmark. */
+final class BenchmarkRegressions {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private BenchmarkRegressions() {}
+
+  /**
+   * @param tolerance slowdown in percent that is still accepted.
+   * @return one message per benchmark that got slower by more than the tolerance. Benchmarks that
+   *     are missing from either file are ignored.
+   */
+  static List<String> find(Path baseline, Path current, double tolerance) throws IOException {
+    var baselineScores = scores(OBJECT_MAPPER.readTree(baseline.toFile()));
+    var regressions = new ArrayList<String>();
+    for (var result : OBJECT_MAPPER.readTree(current.toFile())) {
+      var key = key(result);
+      var before = baselineScores.get(key);
+      if (before == null) {
+        continue;
+      }
+      var after = result.path("primaryMetric").path("score").asDouble();
+      // Throughput is better when higher, every other mode measures time.
+      var slowdown =
+          "thrpt".equals(result.path("mode").asText())
+              ? (before - after) / before * 100
+              : (after - before) / before * 100;
+      if (slowdown > tolerance) {
+        regressions.add(
+            String.format(
+                "%s is %.1f%% slower: %.3f -> %.3f %s",
+                key,
+                slowdown,
+                before,
+                after,
+                result.path("primaryMetric").path("scoreUnit").asText()));
+      }
+    }
+    return regressions;
+  }
+
+  private static Map<String, Double> scores(JsonNode results) {
+    var scores = new HashMap<String, Double>();
+    for (var result : results) {
+      scores.put(key(result), result.path("primaryMetric").path("score").asDouble());
+    }
+    return scores;
+  }
+
+  // The same benchmark may run with several @Param values and modes.
+  private static String key(JsonNode result) {
+    return result.path("benchmark").asText()
+        + result.path("params").toString()
+        + " ["
+        + result.path("mode").asText()
+        + "]";
+  }
+}
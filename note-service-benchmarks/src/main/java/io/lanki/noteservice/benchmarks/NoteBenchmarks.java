@@ -0,0 +1,59 @@
+package io.lanki.noteservice.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results to {@code target/jmh-result.json}. Takes the usual JMH
+ * options, plus {@code -baseline <file>} to fail when a benchmark got slower than in an earlier
+ * result file, and {@code -tolerance <percent>} for the allowed slowdown (10 by default).
+ */
+public final class NoteBenchmarks {
+
+  private static final String RESULT = "target/jmh-result.json";
+
+  private NoteBenchmarks() {}
+
+  public static void main(String[] args)
+      throws CommandLineOptionException, RunnerException, IOException {
+    var jmhArgs = new ArrayList<>(Arrays.asList(args));
+    var baseline = removeOption(jmhArgs, "-baseline");
+    var tolerance = removeOption(jmhArgs, "-tolerance");
+
+    var commandLine = new CommandLineOptions(jmhArgs.toArray(String[]::new));
+    var options = new OptionsBuilder().parent(commandLine);
+    if (commandLine.getIncludes().isEmpty()) {
+      options.include(NoteBenchmarks.class.getPackageName());
+    }
+    new Runner(options.resultFormat(ResultFormatType.JSON).result(RESULT).build()).run();
+
+    if (baseline != null) {
+      var regressions =
+          BenchmarkRegressions.find(
+              Path.of(baseline),
+              Path.of(RESULT),
+              tolerance == null ? 10 : Double.parseDouble(tolerance));
+      regressions.forEach(System.err::println);
+      if (!regressions.isEmpty()) {
+        System.exit(1);
+      }
+    }
+  }
+
+  private static String removeOption(ArrayList<String> args, String name) {
+    var index = args.indexOf(name);
+    if (index < 0 || index + 1 >= args.size()) {
+      return null;
+    }
+    args.remove(index);
+    return args.remove(index);
+  }
+}
@@ -0,0 +1,134 @@
+package io.lanki.noteservice.benchmarks;
+
+import io.lanki.noteservice.NoteServiceApplication;
+import io.lanki.noteservice.domain.Note;
+import io.lanki.noteservice.domain.NoteRepository;
+import io.lanki.noteservice.domain.NoteService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Repository operations through the real application context, against an embedded Postgres that
+ * the Flyway migrations run on. Each operation includes the JDBC round-trip on localhost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoteRepositoryBenchmark {
+
+  private static final int NOTES = 10_000;
+
+  private EmbeddedPostgres postgres;
+
+  private ConfigurableApplicationContext context;
+
+  private NoteRepository noteRepository;
+
+  private NoteService noteService;
+
+  private long[] ids;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    postgres = EmbeddedPostgres.start();
+    context =
+        new SpringApplicationBuilder(NoteServiceApplication.class)
+            .run(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn",
+                "--lanki.note-invalidation.enabled=false");
+    noteRepository = context.getBean(NoteRepository.class);
+    noteService = context.getBean(NoteService.class);
+
+    // Auditing fills created_by from the security context, which the worker threads share.
+    SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken(Notes.OWNER, null, "ROLE_basic"));
+
+    var jdbcTemplate = context.getBean(JdbcTemplate.class);
+    seed(jdbcTemplate);
+    // notes_seq hands out blocks of 50, so the ids are not consecutive.
+    ids =
+        jdbcTemplate.queryForList("SELECT id FROM notes", Long.class).stream()
+            .mapToLong(Long::longValue)
+            .toArray();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    context.close();
+    postgres.close();
+  }
+
+  @Benchmark
+  public Optional<Note> findById() {
+    return noteRepository.findById(randomId());
+  }
+
+  @Benchmark
+  public List<Note> findFirstPage() {
+    return noteRepository.findByCreatedByOrderByIdAsc(
+        Notes.OWNER, PageRequest.ofSize(NoteService.DEFAULT_PAGE_SIZE + 1));
+  }
+
+  @Benchmark
+  public Note insert() {
+    return noteRepository.save(Notes.submitted());
+  }
+
+  @Benchmark
+  public Note put() {
+    return noteService.put(randomId(), Notes.submitted(), null);
+  }
+
+  private long randomId() {
+    return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+  }
+
+  private static void seed(JdbcTemplate jdbcTemplate) {
+    var note = Notes.submitted();
+    var now = Timestamp.from(Instant.now());
+    var rows = new ArrayList<Object[]>(NOTES);
+    for (var i = 0; i < NOTES; i++) {
+      rows.add(new Object[] {note.getTitle() + " " + i, note.getContent(), now, now, now});
+    }
+    jdbcTemplate.batchUpdate(
+        """
+        INSERT INTO notes (id, title, content, type, next_review_date, url, created_date,
+                           last_modified_date, created_by, last_modified_by, version)
+        VALUES (nextval('notes_seq'), ?, ?, 'LEETCODE', ?, '', ?, ?, 'bob', 'bob', 0)
+        """,
+        rows);
+  }
+}
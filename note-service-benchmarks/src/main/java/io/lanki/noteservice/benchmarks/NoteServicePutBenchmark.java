@@ -0,0 +1,87 @@
+package io.lanki.noteservice.benchmarks;
+
+import io.lanki.noteservice.domain.Note;
+import io.lanki.noteservice.domain.NoteCache;
+import io.lanki.noteservice.domain.NoteCacheProperties;
+import io.lanki.noteservice.domain.NoteMetrics;
+import io.lanki.noteservice.domain.NoteRepository;
+import io.lanki.noteservice.domain.NoteService;
+import io.lanki.noteservice.domain.ReviewQueue;
+import io.lanki.noteservice.domain.ReviewQueueProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+/**
+ * The in-memory part of {@link NoteService#put}: the version check, the copy onto the stored note,
+ * the change event and the operation observation. The repository is a stub, {@link
+ * NoteRepositoryBenchmark} covers the SQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoteServicePutBenchmark {
+
+  private NoteService noteService;
+
+  private Note update;
+
+  @Setup
+  public void setup() {
+    var stored = Notes.stored(1L);
+    NoteRepository noteRepository =
+        (NoteRepository)
+            Proxy.newProxyInstance(
+                NoteRepository.class.getClassLoader(),
+                new Class<?>[] {NoteRepository.class},
+                (proxy, method, args) ->
+                    switch (method.getName()) {
+                      case "findById" -> Optional.of(stored);
+                      case "save" -> args[0];
+                      default -> throw new UnsupportedOperationException(method.getName());
+                    });
+    var reviewQueueProperties = new ReviewQueueProperties(50, 10, 10_000, Duration.ofMinutes(10));
+    var reviewQueue = new ReviewQueue(noteRepository, Runnable::run, reviewQueueProperties);
+    var noteCache =
+        new NoteCache(
+            new NoteCacheProperties(10_000, Duration.ofMinutes(5)),
+            new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    var observationRegistry = ObservationRegistry.create();
+    observationRegistry
+        .observationConfig()
+        .observationHandler(new DefaultMeterObservationHandler(new SimpleMeterRegistry()));
+    var noteMetrics = new NoteMetrics(observationRegistry);
+    noteService =
+        new NoteService(noteRepository, null, reviewQueue, noteCache, event -> {}, noteMetrics);
+    update = Notes.submitted();
+  }
+
+  @Benchmark
+  public Note put() {
+    return noteService.put(1L, update, null);
+  }
+
+  @Benchmark
+  public Note putExpectedVersion() {
+    return noteService.put(1L, update, 2);
+  }
+}
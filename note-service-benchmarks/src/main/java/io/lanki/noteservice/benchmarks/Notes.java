@@ -0,0 +1,48 @@
+package io.lanki.noteservice.benchmarks;
+
+import io.lanki.noteservice.domain.Note;
+import io.lanki.noteservice.domain.Note.NoteType;
+import java.time.Instant;
+
+/** Notes of a typical size, shared by the benchmarks. */
+final class Notes {
+
+  static final String OWNER = "bob";
+
+  private static final String CONTENT =
+      "Two pointers moving towards each other find a pair with a given sum in a sorted array in"
+          + " linear time. Start at both ends and move the pointer whose value is too far off.";
+
+  private Notes() {}
+
+  /** A note as submitted by a client. */
+  static Note submitted() {
+    return Note.builder()
+        .title("Two sum II")
+        .content(CONTENT)
+        .type(NoteType.LEETCODE)
+        .score(80)
+        .url("https://leetcode.com/problems/two-sum-ii-input-array-is-sorted")
+        .build();
+  }
+
+  /** A note as loaded from the database. */
+  static Note stored(Long id) {
+    var now = Instant.now();
+    return Note.builder()
+        .id(id)
+        .title("Two sum II")
+        .content(CONTENT)
+        .type(NoteType.LEETCODE)
+        .reviews(3)
+        .nextReviewDate(now)
+        .score(80)
+        .url("https://leetcode.com/problems/two-sum-ii-input-array-is-sorted")
+        .createdDate(now)
+        .lastModifiedDate(now)
+        .createdBy(OWNER)
+        .lastModifiedBy(OWNER)
+        .version(2)
+        .build();
+  }
+}
@@ -0,0 +1,64 @@
+package io.lanki.noteservice.benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BenchmarkRegressionsTests {
+
+  @TempDir private Path directory;
+
+  @Test
+  @DisplayName("Test a slower average time beyond the tolerance is a regression")
+  public void testAverageTimeRegression() throws IOException {
+    var baseline = write("baseline.json", result("serialize", "avgt", 100));
+    var current = write("current.json", result("serialize", "avgt", 120));
+
+    assertThat(BenchmarkRegressions.find(baseline, current, 10))
+        .singleElement()
+        .asString()
+        .contains("serialize", "20.0% slower");
+    assertThat(BenchmarkRegressions.find(baseline, current, 25)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test a lower throughput is a regression and a faster time is not")
+  public void testThroughputRegression() throws IOException {
+    var baseline =
+        write(
+            "baseline.json", result("put", "thrpt", 1000) + "," + result("validate", "avgt", 50));
+    var current =
+        write("current.json", result("put", "thrpt", 800) + "," + result("validate", "avgt", 30));
+
+    assertThat(BenchmarkRegressions.find(baseline, current, 10))
+        .singleElement()
+        .asString()
+        .contains("put");
+  }
+
+  @Test
+  @DisplayName("Test benchmarks missing from the baseline are ignored")
+  public void testNewBenchmark() throws IOException {
+    var baseline = write("baseline.json", result("serialize", "avgt", 100));
+    var current = write("current.json", result("deserialize", "avgt", 500));
+
+    assertThat(BenchmarkRegressions.find(baseline, current, 10)).isEmpty();
+  }
+
+  private Path write(String name, String results) throws IOException {
+    return Files.writeString(directory.resolve(name), "[" + results + "]");
+  }
+
+  private static String result(String benchmark, String mode, double score) {
+    return String.format(
+        """
+        {"benchmark": "%s", "mode": "%s", "primaryMetric": {"score": %s, "scoreUnit": "ns/op"}}
+        """,
+        benchmark, mode, score);
+  }
+}
@@ -0,0 +1,31 @@
+package io.lanki.noteservice.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, so that a request can tell
+ * how many round trips it made. Statements of the JdbcTemplate based paths, and statements
+ * executed on another thread than the request's, are not counted.
+ */
+final class HibernateStatementCounter implements StatementInspector {
+
+  static final HibernateStatementCounter INSTANCE = new HibernateStatementCounter();
+
+  private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+  private HibernateStatementCounter() {}
+
+  @Override
+  public String inspect(String sql) {
+    COUNT.get()[0]++;
+    return sql;
+  }
+
+  static void reset() {
+    COUNT.get()[0] = 0;
+  }
+
+  static int count() {
+    return COUNT.get()[0];
+  }
+}
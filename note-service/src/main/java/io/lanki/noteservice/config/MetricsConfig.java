@@ -0,0 +1,50 @@
+package io.lanki.noteservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Metrics Boot does not publish by itself: Hibernate statements per request and JSON
+ * (de)serialization time. Service operations are timed by NoteMetrics; repository calls, the
+ * Hikari pool and HTTP requests by Actuator.
+ */
+@Configuration
+@Profile("!reactive")
+@AllArgsConstructor
+public class MetricsConfig implements WebMvcConfigurer {
+
+  // Absent in the sliced MVC tests, which then record nothing.
+  private final ObjectProvider<MeterRegistry> meterRegistry;
+
+  @Bean
+  public HibernatePropertiesCustomizer statementCounterCustomizer() {
+    return properties ->
+        properties.put(AvailableSettings.STATEMENT_INSPECTOR, HibernateStatementCounter.INSTANCE);
+  }
+
+  // Replaces Boot's converter of the same type.
+  @Bean
+  public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(
+      ObjectMapper objectMapper) {
+    var registry = meterRegistry.getIfAvailable();
+    return registry == null
+        ? new MappingJackson2HttpMessageConverter(objectMapper)
+        : new TimedJacksonHttpMessageConverter(objectMapper, registry);
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    meterRegistry.ifAvailable(
+        meters -> registry.addInterceptor(new StatementCountInterceptor(meters)));
+  }
+}
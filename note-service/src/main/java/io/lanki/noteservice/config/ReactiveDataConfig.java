@@ -0,0 +1,47 @@
+package io.lanki.noteservice.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * R2DBC connection pool of the reactive profile, configured with the spring.r2dbc properties.
+ * Boot's R2DBC auto-configuration is excluded in application.yml because it would register a
+ * second transaction manager next to the JPA one, which still backs Flyway and the blocking
+ * components.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class ReactiveDataConfig {
+
+  @Bean(destroyMethod = "dispose")
+  public ConnectionPool connectionFactory(R2dbcProperties properties) {
+    var options =
+        ConnectionFactoryOptions.parse(properties.getUrl())
+            .mutate()
+            .option(ConnectionFactoryOptions.USER, properties.getUsername())
+            .option(ConnectionFactoryOptions.PASSWORD, properties.getPassword())
+            .build();
+    var pool = properties.getPool();
+    return new ConnectionPool(
+        ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+            .initialSize(pool.getInitialSize())
+            .maxSize(pool.getMaxSize())
+            .maxIdleTime(pool.getMaxIdleTime())
+            .build());
+  }
+
+  @Bean
+  public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+    return DatabaseClient.create(connectionFactory);
+  }
+}
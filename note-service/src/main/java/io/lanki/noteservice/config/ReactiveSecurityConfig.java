@@ -0,0 +1,47 @@
+package io.lanki.noteservice.config;
+
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+/** The rules of {@link SecurityConfig} for the endpoints served by the reactive profile. */
+@Configuration
+@EnableWebFluxSecurity
+@Profile("reactive")
+public class ReactiveSecurityConfig {
+
+  @Bean
+  public SecurityWebFilterChain securityWebFilterChain(
+      ServerHttpSecurity http, JwtAuthenticationConverter jwtAuthenticationConverter) {
+    return http.authorizeExchange(
+            exchange ->
+                exchange
+                    .matchers(EndpointRequest.toAnyEndpoint())
+                    .permitAll()
+                    // Listing is scoped to the owner.
+                    .pathMatchers(HttpMethod.GET, "/v1/api/notes")
+                    .authenticated()
+                    .pathMatchers(HttpMethod.GET, "/", "/v1/api/notes/**")
+                    .permitAll()
+                    .anyExchange()
+                    .authenticated())
+        .oauth2ResourceServer(
+            oauth2 ->
+                oauth2.jwt(
+                    jwt ->
+                        jwt.jwtAuthenticationConverter(
+                            new ReactiveJwtAuthenticationConverterAdapter(
+                                jwtAuthenticationConverter))))
+        .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+        .csrf(ServerHttpSecurity.CsrfSpec::disable)
+        .build();
+  }
+}
@@ -1,19 +1,20 @@
 package io.lanki.noteservice.config;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
-import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
 @EnableWebSecurity
+@Profile("!reactive")
 public class SecurityConfig {
 
   @Bean
@@ -21,10 +22,22 @@ public class SecurityConfig {
     return http.authorizeHttpRequests(
             authorize ->
                 authorize
+                    // Served on the management port only, which is not routed by the gateway.
+                    .requestMatchers(EndpointRequest.toAnyEndpoint())
+                    .permitAll()
                     .requestMatchers("/", "/v1/api/notes/basic/**")
                     .hasRole("basic")
                     .requestMatchers("/", "/v1/api/notes/premium/**")
                     .hasRole("premium")
+                    // Listing, syncing, searching, reviewing and exporting are scoped to the owner.
+                    .requestMatchers(
+                        HttpMethod.GET,
+                        "/v1/api/notes",
+                        "/v1/api/notes/changes",
+                        "/v1/api/notes/search",
+                        "/v1/api/notes/reviews",
+                        "/v1/api/notes/export")
+                    .authenticated()
                     .requestMatchers(HttpMethod.GET, "/", "/v1/api/notes/**")
                     .permitAll()
                     .anyRequest()
@@ -36,16 +49,4 @@ public class SecurityConfig {
         .csrf(AbstractHttpConfigurer::disable)
         .build();
   }
-
-  @Bean
-  public JwtAuthenticationConverter jwtAuthenticationConverter() {
-    var jwtGrantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
-    jwtGrantedAuthoritiesConverter.setAuthorityPrefix("ROLE_");
-    jwtGrantedAuthoritiesConverter.setAuthoritiesClaimName("roles");
-
-    var jwtAuthenticationConverter = new JwtAuthenticationConverter();
-    jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(jwtGrantedAuthoritiesConverter);
-
-    return jwtAuthenticationConverter;
-  }
 }
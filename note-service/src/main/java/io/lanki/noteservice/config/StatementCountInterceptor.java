@@ -0,0 +1,51 @@
+package io.lanki.noteservice.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Records how many statements Hibernate sent for a request, by method and URI template, to spot
+ * N+1 queries and endpoints that stopped hitting the cache.
+ *
+ * <p>The count is per thread, so async requests, such as the export whose {@code
+ * StreamingResponseBody} runs its query on the MVC task executor, are not recorded at all rather
+ * than recorded with the statements of whichever threads dispatched them.
+ */
+@AllArgsConstructor
+class StatementCountInterceptor implements HandlerInterceptor {
+
+  static final String STATEMENTS = "lanki.hibernate.statements";
+
+  private final MeterRegistry meterRegistry;
+
+  @Override
+  public boolean preHandle(
+      HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (request.getDispatcherType() != DispatcherType.ASYNC) {
+      HibernateStatementCounter.reset();
+    }
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(
+      HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    if (request.getDispatcherType() == DispatcherType.ASYNC) {
+      return;
+    }
+    // The URI template, not the URI, so that note IDs do not become tags.
+    var uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    DistributionSummary.builder(STATEMENTS)
+        .baseUnit("statements")
+        .tag("method", request.getMethod())
+        .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+        .register(meterRegistry)
+        .record(HibernateStatementCounter.count());
+  }
+}
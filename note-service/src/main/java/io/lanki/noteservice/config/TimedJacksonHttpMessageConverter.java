@@ -0,0 +1,56 @@
+package io.lanki.noteservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * Boot's JSON converter, timing how long request bodies take to read and response bodies to write,
+ * by body type. The time includes copying from and to the connection buffers.
+ */
+class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+  static final String JSON = "lanki.json";
+
+  private final MeterRegistry meterRegistry;
+
+  TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+    super(objectMapper);
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+      throws IOException {
+    var sample = Timer.start(meterRegistry);
+    try {
+      return super.read(type, contextClass, inputMessage);
+    } finally {
+      sample.stop(timer("read", ResolvableType.forType(type).toClass()));
+    }
+  }
+
+  @Override
+  protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+      throws IOException {
+    var sample = Timer.start(meterRegistry);
+    try {
+      super.writeInternal(object, type, outputMessage);
+    } finally {
+      sample.stop(timer("write", object.getClass()));
+    }
+  }
+
+  private Timer timer(String operation, Class<?> bodyType) {
+    return Timer.builder(JSON)
+        .tag("operation", operation)
+        .tag("type", bodyType.getSimpleName())
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,38 @@
+package io.lanki.noteservice.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position in the changes feed: the transaction ID and note ID of the last change, and the time up
+ * to which the client had seen every change, which decides whether tombstones it still needs may
+ * have been purged.
+ */
+record ChangeCursor(long xid, long id, Instant syncedAt) {
+
+  private static final String SEPARATOR = "|";
+
+  String encode() {
+    var payload = xid + SEPARATOR + id + SEPARATOR + syncedAt.toEpochMilli();
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static ChangeCursor decode(String token) {
+    try {
+      var payload = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      var parts = payload.split("\\" + SEPARATOR, -1);
+      if (parts.length != 3) {
+        throw new InvalidNoteQueryException("invalid cursor");
+      }
+      return new ChangeCursor(
+          Long.parseLong(parts[0]),
+          Long.parseLong(parts[1]),
+          Instant.ofEpochMilli(Long.parseLong(parts[2])));
+    } catch (IllegalArgumentException ex) {
+      throw new InvalidNoteQueryException("invalid cursor");
+    }
+  }
+}
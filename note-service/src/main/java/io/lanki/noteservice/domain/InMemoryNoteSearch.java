@@ -0,0 +1,257 @@
+package io.lanki.noteservice.domain;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Searches a {@link NoteIndex} per owner kept in the heap. An owner's index is built from the
+ * database on their first search and then kept current from {@link NoteChangedEvent}s, so repeated
+ * searches never touch the notes table except to load the notes of the returned page. Indexes are
+ * dropped least recently searched first once they exceed the memory budget.
+ *
+ * <p>Unlike {@link PostgresNoteSearch} words are not stemmed, and the rank is the sum of the field
+ * weights of the matched terms instead of ts_rank_cd.
+ */
+@Component
+@ConditionalOnProperty(prefix = "lanki.search", name = "engine", havingValue = "in-memory")
+public class InMemoryNoteSearch implements NoteSearch {
+
+  static final int SNIPPET_LENGTH = 160;
+
+  // Characters of content shown before the first match of a snippet.
+  static final int SNIPPET_CONTEXT = 40;
+
+  private static final String LOAD_SQL =
+      "SELECT id, title, content FROM notes WHERE created_by = ? AND NOT deleted ORDER BY id";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final NoteRepository noteRepository;
+
+  private final long memoryBudget;
+
+  // Access ordered, guarded by itself together with usedBytes.
+  private final Map<String, NoteIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+
+  // Owners whose index is being loaded, flagged when one of their notes changes meanwhile.
+  private final Map<String, AtomicBoolean> building = new ConcurrentHashMap<>();
+
+  private long usedBytes;
+
+  public InMemoryNoteSearch(
+      JdbcTemplate jdbcTemplate, NoteRepository noteRepository, NoteSearchProperties properties) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.noteRepository = noteRepository;
+    this.memoryBudget = properties.memoryBudget().toBytes();
+  }
+
+  @Override
+  public NoteSearchPage search(String owner, String text, String cursor, int size) {
+    var pageSize = Math.min(Math.max(size, 1), NoteService.MAX_PAGE_SIZE);
+    var prefixes = NoteIndex.terms(text).stream().distinct().limit(MAX_TERMS).toList();
+    if (prefixes.isEmpty()) {
+      throw new InvalidNoteQueryException("query must be defined");
+    }
+    var after = cursor == null || cursor.isBlank() ? null : SearchCursor.decode(cursor);
+    var afterRank = after == null ? Float.POSITIVE_INFINITY : after.rank();
+    var afterId = after == null ? 0L : after.id();
+
+    var matches = indexFor(owner).search(prefixes, afterRank, afterId, pageSize + 1);
+    var pageMatches = matches.size() > pageSize ? matches.subList(0, pageSize) : matches;
+
+    // The page is loaded in one query; notes deleted since the index was read are skipped.
+    var ids = pageMatches.stream().map(NoteIndex.Match::noteId).toList();
+    Map<Long, Note> notes =
+        StreamSupport.stream(noteRepository.findAllById(ids).spliterator(), false)
+            .collect(Collectors.toMap(Note::getId, Function.identity()));
+    var hits = new ArrayList<NoteSearchHit>(pageMatches.size());
+    for (var match : pageMatches) {
+      var note = notes.get(match.noteId());
+      if (note != null) {
+        hits.add(new NoteSearchHit(note, match.rank(), snippet(note.getContent(), prefixes)));
+      }
+    }
+
+    if (matches.size() <= pageSize) {
+      return new NoteSearchPage(hits, null);
+    }
+    var last = pageMatches.get(pageSize - 1);
+    return new NoteSearchPage(hits, new SearchCursor(last.rank(), last.noteId()).encode());
+  }
+
+  @EventListener
+  public void onNoteChanged(NoteChangedEvent event) {
+    if (event.type() == NoteChangedEvent.Type.REVIEWED) {
+      // Title and content are unchanged.
+      return;
+    }
+    synchronized (indexes) {
+      flagBuilding(event.owner());
+      var index = indexes.get(event.owner());
+      if (index == null) {
+        return;
+      }
+      var before = index.sizeInBytes();
+      if (event.type() == NoteChangedEvent.Type.DELETED) {
+        index.remove(event.id());
+      } else {
+        index.put(event.id(), event.note().getTitle(), event.note().getContent());
+      }
+      if (index.needsCompaction()) {
+        // Rebuilt on the next search.
+        indexes.remove(event.owner());
+        usedBytes -= before;
+        return;
+      }
+      usedBytes += index.sizeInBytes() - before;
+      evict();
+    }
+  }
+
+  @EventListener
+  public void onRemoteNoteChanged(RemoteNoteChangedEvent event) {
+    // The event carries no title and content, so the owner's index is rebuilt on the next search.
+    drop(event.owner());
+  }
+
+  @EventListener
+  public void onRemoteNoteChangesMissed(RemoteNoteChangesMissedEvent event) {
+    synchronized (indexes) {
+      indexes.clear();
+      usedBytes = 0;
+    }
+  }
+
+  long usedBytes() {
+    synchronized (indexes) {
+      return usedBytes;
+    }
+  }
+
+  boolean isIndexed(String owner) {
+    synchronized (indexes) {
+      return indexes.containsKey(owner);
+    }
+  }
+
+  private NoteIndex indexFor(String owner) {
+    synchronized (indexes) {
+      var index = indexes.get(owner);
+      if (index != null) {
+        return index;
+      }
+    }
+
+    // Only one concurrent load per owner may cache its result, the others just answer their query.
+    var changed = new AtomicBoolean();
+    var cacheable = building.putIfAbsent(owner, changed) == null;
+    var index = new NoteIndex();
+    try {
+      jdbcTemplate.query(
+          LOAD_SQL,
+          rs -> {
+            index.put(rs.getLong("id"), rs.getString("title"), rs.getString("content"));
+          },
+          owner);
+    } catch (RuntimeException ex) {
+      if (cacheable) {
+        building.remove(owner);
+      }
+      throw ex;
+    }
+    if (cacheable) {
+      // Changes are flagged under the same lock, so each one is either flagged before the index is
+      // published or applied to the published index.
+      synchronized (indexes) {
+        building.remove(owner);
+        // An index that missed a change would stay stale, so it is only used for this query.
+        if (!changed.get()) {
+          var previous = indexes.put(owner, index);
+          usedBytes += index.sizeInBytes() - (previous == null ? 0 : previous.sizeInBytes());
+          evict();
+        }
+      }
+    }
+    return index;
+  }
+
+  private void drop(String owner) {
+    synchronized (indexes) {
+      flagBuilding(owner);
+      var index = indexes.remove(owner);
+      if (index != null) {
+        usedBytes -= index.sizeInBytes();
+      }
+    }
+  }
+
+  // Must hold the lock on indexes.
+  private void flagBuilding(String owner) {
+    var changedWhileBuilding = building.get(owner);
+    if (changedWhileBuilding != null) {
+      changedWhileBuilding.set(true);
+    }
+  }
+
+  // Must hold the lock on indexes.
+  private void evict() {
+    var iterator = indexes.values().iterator();
+    while (usedBytes > memoryBudget && iterator.hasNext()) {
+      usedBytes -= iterator.next().sizeInBytes();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * A window of the content starting shortly before the first matched word, with every matched
+   * word wrapped in {@code <mark>} tags.
+   */
+  static String snippet(String content, List<String> prefixes) {
+    if (content == null) {
+      return "";
+    }
+    var first = 0;
+    var matcher = NoteIndex.WORD.matcher(content);
+    while (matcher.find()) {
+      if (matches(matcher.group(), prefixes)) {
+        first = matcher.start();
+        break;
+      }
+    }
+    var start = Math.max(0, first - SNIPPET_CONTEXT);
+    // Do not start in the middle of a word.
+    while (start > 0 && start < first && Character.isLetterOrDigit(content.charAt(start - 1))) {
+      start++;
+    }
+    var end = Math.min(content.length(), start + SNIPPET_LENGTH);
+
+    var snippet = new StringBuilder(end - start + 16);
+    var position = start;
+    matcher.region(start, end);
+    while (matcher.find()) {
+      if (matches(matcher.group(), prefixes)) {
+        snippet.append(content, position, matcher.start());
+        snippet.append("<mark>").append(matcher.group()).append("</mark>");
+        position = matcher.end();
+      }
+    }
+    return snippet.append(content, position, end).toString();
+  }
+
+  private static boolean matches(String word, List<String> prefixes) {
+    var term = word.toLowerCase(Locale.ROOT);
+    return prefixes.stream().anyMatch(term::startsWith);
+  }
+}
@@ -0,0 +1,15 @@
+package io.lanki.noteservice.domain;
+
+import java.util.Map;
+import lombok.Getter;
+
+@Getter
+public class InvalidNotePatchException extends RuntimeException {
+
+  private final Map<String, String> errors;
+
+  public InvalidNotePatchException(Map<String, String> errors) {
+    super("invalid patch " + errors);
+    this.errors = errors;
+  }
+}
@@ -0,0 +1,8 @@
+package io.lanki.noteservice.domain;
+
+public class InvalidNoteQueryException extends RuntimeException {
+
+  public InvalidNoteQueryException(String message) {
+    super(message);
+  }
+}
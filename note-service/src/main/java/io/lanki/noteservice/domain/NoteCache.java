@@ -0,0 +1,124 @@
+package io.lanki.noteservice.domain;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Read-through cache of notes by ID, bounded in size and age. Every {@link NoteChangedEvent} evicts
+ * the note, so a cached entry always holds the latest version written through this replica; writes
+ * of other replicas arrive as {@link RemoteNoteChangedEvent}s. Hit, miss and eviction counts are
+ * published as the "notes" cache when a meter registry is present.
+ *
+ * <p>Notes are loaded on the calling thread outside of any lock of the cache, so that a virtual
+ * thread waiting on the database is never pinned to its carrier by the monitor of a compute.
+ */
+@Component
+public class NoteCache {
+
+  static final String NAME = "notes";
+
+  // Holds the loads in flight too, which concurrent readers of the same note wait for.
+  private final AsyncCache<Long, Note> cache;
+
+  public NoteCache(NoteCacheProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(properties.maximumSize())
+            .expireAfterWrite(properties.expireAfterWrite())
+            .recordStats()
+            .buildAsync();
+    meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, NAME));
+  }
+
+  /**
+   * @param loader looks the note up when it is not cached; an absent note is not cached.
+   */
+  public Optional<Note> get(Long id, Function<Long, Optional<Note>> loader) {
+    var cached = cache.getIfPresent(id);
+    if (cached != null) {
+      return Optional.ofNullable(join(cached));
+    }
+    // Evicting the note drops the load in flight, so a load racing a write is not cached.
+    var loading = new CompletableFuture<Note>();
+    var existing = cache.asMap().putIfAbsent(id, loading);
+    if (existing != null) {
+      return Optional.ofNullable(join(existing));
+    }
+    try {
+      var note = loader.apply(id).orElse(null);
+      if (note == null) {
+        cache.asMap().remove(id, loading);
+      }
+      loading.complete(note);
+      return Optional.ofNullable(note);
+    } catch (RuntimeException ex) {
+      cache.asMap().remove(id, loading);
+      loading.completeExceptionally(ex);
+      throw ex;
+    }
+  }
+
+  public void evict(Long id) {
+    cache.asMap().remove(id);
+  }
+
+  /** Evicts the note unless the cached copy is already newer than {@code version}. */
+  public void evict(Long id, int version) {
+    cache
+        .asMap()
+        .computeIfPresent(
+            id,
+            (key, future) -> {
+              // A load in flight may have read an older version.
+              var note =
+                  future.isDone() && !future.isCompletedExceptionally() ? future.getNow(null) : null;
+              return note != null && note.getVersion() > version ? future : null;
+            });
+  }
+
+  public void evictAll() {
+    cache.synchronous().invalidateAll();
+  }
+
+  public CacheStats stats() {
+    return cache.synchronous().stats();
+  }
+
+  private static Note join(CompletableFuture<Note> future) {
+    try {
+      return future.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw ex;
+    }
+  }
+
+  // After commit, so a concurrent read cannot cache the state the transaction is replacing.
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onNoteChanged(NoteChangedEvent event) {
+    evict(event.id());
+  }
+
+  @EventListener
+  public void onRemoteNoteChanged(RemoteNoteChangedEvent event) {
+    evict(event.id(), event.version());
+  }
+
+  @EventListener
+  public void onRemoteNoteChangesMissed(RemoteNoteChangesMissedEvent event) {
+    evictAll();
+  }
+}
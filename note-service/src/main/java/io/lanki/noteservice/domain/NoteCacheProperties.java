@@ -0,0 +1,14 @@
+package io.lanki.noteservice.domain;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param maximumSize number of notes kept before the least valuable ones are evicted.
+ * @param expireAfterWrite time after which a cached note is loaded again, bounding how long a note
+ *     changed behind the service's back can be served.
+ */
+@ConfigurationProperties(prefix = "lanki.note-cache")
+public record NoteCacheProperties(
+    @DefaultValue("10000") long maximumSize, @DefaultValue("5m") Duration expireAfterWrite) {}
@@ -0,0 +1,7 @@
+package io.lanki.noteservice.domain;
+
+/**
+ * @param deleted whether the note was deleted, in which case {@code note} is {@code null}.
+ * @param note the current state of a created or updated note.
+ */
+public record NoteChange(Long id, boolean deleted, Note note) {}
@@ -0,0 +1,113 @@
+package io.lanki.noteservice.domain;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Changes of an owner's notes in the order they were committed, so a client only downloads what
+ * changed since its last sync. Changes are ordered by the ID of the writing transaction (see the
+ * V4 migration) and only returned once no older transaction is still running, which keeps the
+ * cursor from skipping a change that commits late.
+ */
+@Component
+public class NoteChangeFeed {
+
+  public static final int DEFAULT_PAGE_SIZE = 100;
+
+  public static final int MAX_PAGE_SIZE = 1000;
+
+  // Tombstones outlive the cursors that may need them by this much, covering long transactions.
+  static final Duration PURGE_MARGIN = Duration.ofDays(1);
+
+  private static final String CHANGES_SQL =
+      """
+      SELECT %s, deleted, change_xid::text AS change_xid
+      FROM notes
+      WHERE created_by = ?
+        AND (change_xid, id) > (?::text::xid8, ?)
+        AND change_xid < pg_snapshot_xmin(pg_current_snapshot())
+        %s
+      ORDER BY change_xid, id
+      LIMIT ?
+      """;
+
+  // A client without a cursor has no notes yet, so tombstones are of no use to it.
+  private static final String INITIAL_SQL =
+      CHANGES_SQL.formatted(NoteRowMapper.COLUMNS, "AND NOT deleted");
+
+  private static final String NEXT_SQL = CHANGES_SQL.formatted(NoteRowMapper.COLUMNS, "");
+
+  private static final RowMapper<Row> ROW_MAPPER =
+      (rs, rowNum) -> {
+        var deleted = rs.getBoolean("deleted");
+        var id = rs.getLong("id");
+        var note = deleted ? null : NoteRowMapper.INSTANCE.mapRow(rs, rowNum);
+        var xid = Long.parseLong(rs.getString("change_xid"));
+        return new Row(xid, new NoteChange(id, deleted, note));
+      };
+
+  private record Row(long xid, NoteChange change) {}
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final NoteSyncProperties properties;
+
+  private final Clock clock;
+
+  @Autowired
+  public NoteChangeFeed(JdbcTemplate jdbcTemplate, NoteSyncProperties properties) {
+    this(jdbcTemplate, properties, Clock.systemUTC());
+  }
+
+  NoteChangeFeed(JdbcTemplate jdbcTemplate, NoteSyncProperties properties, Clock clock) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.properties = properties;
+    this.clock = clock;
+  }
+
+  /**
+   * @param since {@code next_cursor} of the previous page, or {@code null} to start from scratch.
+   */
+  public NoteChangePage changes(String owner, String since, int size) {
+    var pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+    var now = clock.instant();
+    var after = since == null || since.isBlank() ? null : ChangeCursor.decode(since);
+    if (after != null && after.syncedAt().isBefore(now.minus(properties.tombstoneRetention()))) {
+      throw new SyncCursorExpiredException();
+    }
+
+    List<Row> rows =
+        after == null
+            ? jdbcTemplate.query(INITIAL_SQL, ROW_MAPPER, owner, "0", 0L, pageSize + 1)
+            : jdbcTemplate.query(
+                NEXT_SQL, ROW_MAPPER, owner, Long.toString(after.xid()), after.id(), pageSize + 1);
+
+    var hasMore = rows.size() > pageSize;
+    var page = hasMore ? rows.subList(0, pageSize) : rows;
+    var last = page.isEmpty() ? null : page.get(page.size() - 1);
+    var xid = last != null ? last.xid() : after != null ? after.xid() : 0L;
+    var id = last != null ? last.change().id() : after != null ? after.id() : 0L;
+    // Until a client has read up to the end it has only seen every change from before it started.
+    var syncedAt = hasMore && after != null ? after.syncedAt() : now;
+
+    return new NoteChangePage(
+        page.stream().map(Row::change).toList(),
+        new ChangeCursor(xid, id, syncedAt).encode(),
+        hasMore);
+  }
+
+  /** Deletes the tombstones no unexpired cursor can still need. */
+  @Scheduled(fixedDelayString = "${lanki.sync.purge-interval:1h}")
+  public void purgeTombstones() {
+    var cutoff = clock.instant().minus(properties.tombstoneRetention()).minus(PURGE_MARGIN);
+    jdbcTemplate.update(
+        "DELETE FROM notes WHERE deleted AND last_modified_date < ?", Timestamp.from(cutoff));
+  }
+}
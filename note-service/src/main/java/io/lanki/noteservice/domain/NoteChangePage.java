@@ -0,0 +1,14 @@
+package io.lanki.noteservice.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * @param nextCursor position after the last change, always present so a client can poll for later
+ *     changes with it.
+ * @param hasMore whether more changes can be fetched right away.
+ */
+public record NoteChangePage(
+    List<NoteChange> changes,
+    @JsonProperty("next_cursor") String nextCursor,
+    @JsonProperty("has_more") boolean hasMore) {}
@@ -0,0 +1,35 @@
+package io.lanki.noteservice.domain;
+
+/**
+ * Published after a note was written. {@code note} holds the new state for {@link Type#CREATED}
+ * and {@link Type#UPDATED}, and is {@code null} otherwise.
+ */
+public record NoteChangedEvent(Long id, String owner, int version, Type type, Note note) {
+
+  public enum Type {
+    CREATED,
+    UPDATED,
+    // Only the review fields (reviews, score, next_review_date) changed.
+    REVIEWED,
+    DELETED
+  }
+
+  public static NoteChangedEvent created(Note note) {
+    return new NoteChangedEvent(
+        note.getId(), note.getCreatedBy(), note.getVersion(), Type.CREATED, note);
+  }
+
+  public static NoteChangedEvent updated(Note note) {
+    return new NoteChangedEvent(
+        note.getId(), note.getCreatedBy(), note.getVersion(), Type.UPDATED, note);
+  }
+
+  public static NoteChangedEvent reviewed(Long id, String owner, int version) {
+    return new NoteChangedEvent(id, owner, version, Type.REVIEWED, null);
+  }
+
+  public static NoteChangedEvent deleted(Note note) {
+    return new NoteChangedEvent(
+        note.getId(), note.getCreatedBy(), note.getVersion(), Type.DELETED, null);
+  }
+}
@@ -0,0 +1,51 @@
+package io.lanki.noteservice.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last note of a page. It is handed to clients as an opaque Base64 token so that
+ * the keyset columns can change without breaking the API.
+ */
+record NoteCursor(NoteOrder order, Instant nextReviewDate, long id) {
+
+  private static final String SEPARATOR = "|";
+
+  static NoteCursor after(NoteOrder order, Note note) {
+    return new NoteCursor(order, note.getNextReviewDate(), note.getId());
+  }
+
+  String encode() {
+    var payload =
+        order.value()
+            + SEPARATOR
+            + id
+            + SEPARATOR
+            + (nextReviewDate == null ? "" : nextReviewDate.toString());
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static NoteCursor decode(String token) {
+    try {
+      var payload = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      var parts = payload.split("\\" + SEPARATOR, -1);
+      if (parts.length != 3) {
+        throw new InvalidNoteQueryException("invalid cursor");
+      }
+      var order = NoteOrder.fromValue(parts[0]);
+      var id = Long.parseLong(parts[1]);
+      var nextReviewDate = parts[2].isEmpty() ? null : Instant.parse(parts[2]);
+      if (order == NoteOrder.NEXT_REVIEW_DATE && nextReviewDate == null) {
+        throw new InvalidNoteQueryException("invalid cursor");
+      }
+      return new NoteCursor(order, nextReviewDate, id);
+    } catch (IllegalArgumentException | DateTimeParseException ex) {
+      // NumberFormatException is an IllegalArgumentException as well.
+      throw new InvalidNoteQueryException("invalid cursor");
+    }
+  }
+}
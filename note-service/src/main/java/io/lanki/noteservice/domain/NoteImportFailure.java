@@ -0,0 +1,9 @@
+package io.lanki.noteservice.domain;
+
+import java.util.Map;
+
+/**
+ * @param index position of the rejected note in the imported array or stream.
+ * @param errors error messages keyed by field name.
+ */
+public record NoteImportFailure(int index, Map<String, String> errors) {}
@@ -0,0 +1,13 @@
+package io.lanki.noteservice.domain;
+
+import jakarta.validation.constraints.Min;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * @param chunkSize number of notes committed per transaction during a bulk import.
+ */
+@Validated
+@ConfigurationProperties(prefix = "lanki.import")
+public record NoteImportProperties(@DefaultValue("1000") @Min(1) int chunkSize) {}
@@ -0,0 +1,5 @@
+package io.lanki.noteservice.domain;
+
+import java.util.List;
+
+public record NoteImportResult(int imported, List<NoteImportFailure> failures) {}
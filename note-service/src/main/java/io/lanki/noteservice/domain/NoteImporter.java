@@ -0,0 +1,131 @@
+package io.lanki.noteservice.domain;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Imports notes in chunks. Each chunk is persisted in its own transaction so that the JDBC inserts
+ * are batched (see hibernate.jdbc.batch_size) and a large import never holds one long transaction.
+ * A chunk the database rejects is saved again one note at a time to tell which notes failed.
+ */
+@Component
+@AllArgsConstructor
+public class NoteImporter {
+
+  private final EntityManager entityManager;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final Validator validator;
+
+  private final NoteImportProperties properties;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  public NoteImportResult importNotes(Iterator<Note> notes) {
+    var failures = new ArrayList<NoteImportFailure>();
+    var chunk = new ArrayList<Note>(properties.chunkSize());
+    var chunkIndexes = new ArrayList<Integer>(properties.chunkSize());
+    var imported = 0;
+    var index = 0;
+
+    while (true) {
+      Note note;
+      try {
+        if (!notes.hasNext()) {
+          break;
+        }
+        note = notes.next();
+      } catch (RuntimeException ex) {
+        // The input can't be read past a malformed note, so stop and keep what was imported.
+        failures.add(new NoteImportFailure(index, Map.of("note", "malformed note")));
+        break;
+      }
+
+      Set<ConstraintViolation<Note>> violations = validator.validate(note);
+      if (violations.isEmpty()) {
+        chunk.add(note);
+        chunkIndexes.add(index);
+      } else {
+        failures.add(new NoteImportFailure(index, errors(violations)));
+      }
+      index++;
+
+      if (chunk.size() == properties.chunkSize()) {
+        imported += persist(chunk, chunkIndexes, failures);
+      }
+    }
+    imported += persist(chunk, chunkIndexes, failures);
+
+    failures.sort(Comparator.comparingInt(NoteImportFailure::index));
+    return new NoteImportResult(imported, failures);
+  }
+
+  private int persist(
+      List<Note> chunk, List<Integer> chunkIndexes, List<NoteImportFailure> failures) {
+    if (chunk.isEmpty()) {
+      return 0;
+    }
+    try {
+      if (save(chunk)) {
+        return chunk.size();
+      }
+      // Saved one note at a time, so that only the notes the database rejected are reported.
+      var saved = 0;
+      for (var i = 0; i < chunk.size(); i++) {
+        if (save(List.of(chunk.get(i)))) {
+          saved++;
+        } else {
+          var index = chunkIndexes.get(i);
+          failures.add(new NoteImportFailure(index, Map.of("note", "note could not be saved")));
+        }
+      }
+      return saved;
+    } finally {
+      chunk.clear();
+      chunkIndexes.clear();
+    }
+  }
+
+  private boolean save(List<Note> notes) {
+    try {
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            for (var note : notes) {
+              // Imported notes always get a fresh ID and version.
+              note.setId(null);
+              note.setVersion(0);
+              entityManager.persist(note);
+            }
+            entityManager.flush();
+            entityManager.clear();
+          });
+    } catch (PersistenceException | DataAccessException | TransactionException ex) {
+      return false;
+    }
+    notes.forEach(note -> eventPublisher.publishEvent(NoteChangedEvent.created(note)));
+    return true;
+  }
+
+  private static Map<String, String> errors(Set<ConstraintViolation<Note>> violations) {
+    var errors = new HashMap<String, String>();
+    violations.forEach(
+        violation -> errors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+    return errors;
+  }
+}
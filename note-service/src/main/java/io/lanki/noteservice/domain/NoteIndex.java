@@ -0,0 +1,151 @@
+package io.lanki.noteservice.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over the title and content of the notes of one owner. Notes are numbered with
+ * dense document ordinals in the order they are added; a changed note is added again under a new
+ * ordinal and its old ordinal is marked deleted, so posting lists only ever grow at the end.
+ */
+final class NoteIndex {
+
+  static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+  static final int MAX_TERM_LENGTH = 64;
+
+  static final int TITLE_WEIGHT = 2;
+
+  static final int CONTENT_WEIGHT = 1;
+
+  // Estimated bytes of a term entry in the TreeMap besides the characters of the term.
+  private static final int TERM_OVERHEAD_BYTES = 96;
+
+  // Estimated bytes of a boxed entry in the note ID map.
+  private static final int DOC_OVERHEAD_BYTES = 64;
+
+  record Match(long noteId, float rank) {}
+
+  private final TreeMap<String, PostingList> postings = new TreeMap<>();
+
+  private final Map<Long, Integer> docsByNoteId = new HashMap<>();
+
+  private final BitSet deleted = new BitSet();
+
+  private long[] noteIds = new long[16];
+
+  private int docCount;
+
+  private long termBytes;
+
+  private long postingBytes;
+
+  synchronized void put(long noteId, String title, String content) {
+    remove(noteId);
+    var doc = docCount++;
+    if (doc == noteIds.length) {
+      noteIds = Arrays.copyOf(noteIds, noteIds.length * 2);
+    }
+    noteIds[doc] = noteId;
+    docsByNoteId.put(noteId, doc);
+
+    // A term in both fields gets both weights.
+    var weights = new HashMap<String, Integer>();
+    terms(title).forEach(term -> weights.merge(term, TITLE_WEIGHT, (a, b) -> a | b));
+    terms(content).forEach(term -> weights.merge(term, CONTENT_WEIGHT, (a, b) -> a | b));
+    weights.forEach(
+        (term, weight) -> {
+          var list = postings.get(term);
+          if (list == null) {
+            list = new PostingList();
+            postings.put(term, list);
+            termBytes += TERM_OVERHEAD_BYTES + 2L * term.length();
+          } else {
+            postingBytes -= list.sizeInBytes();
+          }
+          list.add(doc, weight);
+          postingBytes += list.sizeInBytes();
+        });
+  }
+
+  synchronized void remove(long noteId) {
+    var doc = docsByNoteId.remove(noteId);
+    if (doc != null) {
+      deleted.set(doc);
+    }
+  }
+
+  /**
+   * Notes matching every prefix, ordered by rank descending then note ID, starting after the given
+   * keyset position. The rank of a note is the sum over the prefixes of the highest weight of any
+   * term it matches.
+   */
+  synchronized List<Match> search(List<String> prefixes, float afterRank, long afterId, int limit) {
+    var scores = new int[docCount];
+    var matched = new int[docCount];
+    var best = new int[docCount];
+    for (var prefix : prefixes) {
+      Arrays.fill(best, 0);
+      for (var list : postings.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+        list.forEach((doc, weight) -> best[doc] = Math.max(best[doc], weight));
+      }
+      for (var doc = 0; doc < docCount; doc++) {
+        if (best[doc] > 0) {
+          matched[doc]++;
+          scores[doc] += best[doc];
+        }
+      }
+    }
+
+    var matches = new ArrayList<Match>();
+    for (var doc = 0; doc < docCount; doc++) {
+      if (matched[doc] != prefixes.size() || deleted.get(doc)) {
+        continue;
+      }
+      float rank = scores[doc];
+      var noteId = noteIds[doc];
+      if (rank < afterRank || (rank == afterRank && noteId > afterId)) {
+        matches.add(new Match(noteId, rank));
+      }
+    }
+    matches.sort(Comparator.comparing(Match::rank).reversed().thenComparingLong(Match::noteId));
+    return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+  }
+
+  /** True once more ordinals are deleted than live, at which point a rebuild is cheaper. */
+  synchronized boolean needsCompaction() {
+    var deletedDocs = docCount - docsByNoteId.size();
+    return deletedDocs > 64 && deletedDocs > docsByNoteId.size();
+  }
+
+  synchronized long sizeInBytes() {
+    return termBytes
+        + postingBytes
+        + 8L * noteIds.length
+        + (long) DOC_OVERHEAD_BYTES * docsByNoteId.size()
+        + deleted.size() / 8;
+  }
+
+  /** Lower-cased words of the text, skipping words too long to be useful as terms. */
+  static List<String> terms(String text) {
+    if (text == null) {
+      return List.of();
+    }
+    var terms = new ArrayList<String>();
+    var matcher = WORD.matcher(text);
+    while (matcher.find()) {
+      if (matcher.end() - matcher.start() <= MAX_TERM_LENGTH) {
+        terms.add(matcher.group().toLowerCase(Locale.ROOT));
+      }
+    }
+    return terms;
+  }
+}
@@ -0,0 +1,225 @@
+package io.lanki.noteservice.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Tells the other replicas about note changes over Postgres LISTEN/NOTIFY so they can evict their
+ * local copies. Committed changes are collected for a short batch window and sent as few
+ * notifications as fit the payload limit. Notifications from peers are republished as {@link
+ * RemoteNoteChangedEvent}s.
+ *
+ * <p>The listener keeps its own connection outside the pool. While it is disconnected peers'
+ * changes are missed and cached notes are only refreshed when they expire; after reconnecting a
+ * {@link RemoteNoteChangesMissedEvent} is published so caches start over.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(
+    prefix = "lanki.note-invalidation",
+    name = "enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+public class NoteInvalidationBus implements SmartLifecycle {
+
+  // Postgres rejects payloads of 8000 bytes and more.
+  static final int MAX_PAYLOAD_BYTES = 7900;
+
+  private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final DataSourceProperties dataSourceProperties;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final NoteInvalidationProperties properties;
+
+  // Identifies this replica so it can skip its own notifications.
+  private final String origin = UUID.randomUUID().toString();
+
+  private final BlockingQueue<NoteChangedEvent> pending = new LinkedBlockingQueue<>();
+
+  private volatile boolean running;
+
+  private Thread publisher;
+
+  private Thread listener;
+
+  public NoteInvalidationBus(
+      JdbcTemplate jdbcTemplate,
+      DataSourceProperties dataSourceProperties,
+      ApplicationEventPublisher eventPublisher,
+      NoteInvalidationProperties properties) {
+    if (!CHANNEL.matcher(properties.channel()).matches()) {
+      throw new IllegalArgumentException("invalid channel " + properties.channel());
+    }
+    this.jdbcTemplate = jdbcTemplate;
+    this.dataSourceProperties = dataSourceProperties;
+    this.eventPublisher = eventPublisher;
+    this.properties = properties;
+  }
+
+  // After commit, so peers never reload the state the transaction is replacing.
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onNoteChanged(NoteChangedEvent event) {
+    if (running) {
+      pending.add(event);
+    }
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    publisher = startDaemon(this::publish, "note-invalidation-publisher");
+    listener = startDaemon(this::listen, "note-invalidation-listener");
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    publisher.interrupt();
+    listener.interrupt();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private static Thread startDaemon(Runnable task, String name) {
+    var thread = new Thread(task, name);
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  private void publish() {
+    var batch = new ArrayList<NoteChangedEvent>();
+    while (running) {
+      try {
+        batch.add(pending.take());
+        TimeUnit.MILLISECONDS.sleep(properties.batchWindow().toMillis());
+        pending.drainTo(batch);
+        for (var payload : encode(origin, batch)) {
+          jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", properties.channel(), payload);
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException ex) {
+        // Peers fall back to expiring the notes of this batch.
+        log.warn("Could not publish {} note changes", batch.size(), ex);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void listen() {
+    var connectedBefore = false;
+    while (running) {
+      try (var connection = connect();
+          var statement = connection.createStatement()) {
+        statement.execute("LISTEN " + properties.channel());
+        if (connectedBefore) {
+          log.info("Reconnected note invalidation listener");
+          eventPublisher.publishEvent(new RemoteNoteChangesMissedEvent());
+        }
+        connectedBefore = true;
+
+        var pgConnection = connection.unwrap(PGConnection.class);
+        while (running) {
+          var notifications =
+              pgConnection.getNotifications((int) properties.pollTimeout().toMillis());
+          if (notifications == null || notifications.length == 0) {
+            // Makes a silently dropped connection fail instead of waiting forever.
+            statement.execute("SELECT 1");
+            continue;
+          }
+          for (var notification : notifications) {
+            decode(origin, notification.getParameter()).forEach(eventPublisher::publishEvent);
+          }
+        }
+      } catch (SQLException ex) {
+        log.warn("Note invalidation listener disconnected", ex);
+        try {
+          TimeUnit.MILLISECONDS.sleep(properties.reconnectDelay().toMillis());
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private Connection connect() throws SQLException {
+    return DriverManager.getConnection(
+        dataSourceProperties.determineUrl(),
+        dataSourceProperties.determineUsername(),
+        dataSourceProperties.determinePassword());
+  }
+
+  /**
+   * One line with the origin followed by one "id version owner" line per change, split so no
+   * payload exceeds {@link #MAX_PAYLOAD_BYTES}.
+   */
+  static List<String> encode(String origin, List<NoteChangedEvent> changes) {
+    var payloads = new ArrayList<String>();
+    var payload = new StringBuilder(origin);
+    var payloadBytes = origin.length();
+    for (var change : changes) {
+      var line = "\n" + change.id() + "\t" + change.version() + "\t" + change.owner();
+      var lineBytes = line.getBytes(StandardCharsets.UTF_8).length;
+      if (payloadBytes + lineBytes > MAX_PAYLOAD_BYTES) {
+        payloads.add(payload.toString());
+        payload = new StringBuilder(origin);
+        payloadBytes = origin.length();
+      }
+      payload.append(line);
+      payloadBytes += lineBytes;
+    }
+    if (payload.length() > origin.length()) {
+      payloads.add(payload.toString());
+    }
+    return payloads;
+  }
+
+  /** The changes of a payload sent by another replica; malformed lines are skipped. */
+  static List<RemoteNoteChangedEvent> decode(String origin, String payload) {
+    var lines = payload.split("\n");
+    if (lines[0].equals(origin)) {
+      return List.of();
+    }
+    var changes = new ArrayList<RemoteNoteChangedEvent>(lines.length - 1);
+    for (var i = 1; i < lines.length; i++) {
+      var fields = lines[i].split("\t", 3);
+      try {
+        changes.add(
+            new RemoteNoteChangedEvent(
+                Long.parseLong(fields[0]), fields[2], Integer.parseInt(fields[1])));
+      } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+        log.warn("Skipping malformed note change {}", lines[i]);
+      }
+    }
+    return changes;
+  }
+}
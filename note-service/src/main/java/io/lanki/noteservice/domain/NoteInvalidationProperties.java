@@ -0,0 +1,20 @@
+package io.lanki.noteservice.domain;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param enabled whether replicas exchange note changes at all.
+ * @param channel Postgres notification channel shared by all replicas.
+ * @param batchWindow time changes are collected before they are sent in one notification.
+ * @param pollTimeout time the listener waits for notifications before checking its connection.
+ * @param reconnectDelay time between attempts to reconnect a dropped listener connection.
+ */
+@ConfigurationProperties(prefix = "lanki.note-invalidation")
+public record NoteInvalidationProperties(
+    @DefaultValue("true") boolean enabled,
+    @DefaultValue("note_changes") String channel,
+    @DefaultValue("20ms") Duration batchWindow,
+    @DefaultValue("5s") Duration pollTimeout,
+    @DefaultValue("5s") Duration reconnectDelay) {}
@@ -0,0 +1,80 @@
+package io.lanki.noteservice.domain;
+
+import io.lanki.noteservice.domain.Note.NoteType;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import java.util.function.Supplier;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Observes the operations of the note services, which yields both a timer and a span. Every
+ * observation is tagged with the operation, its outcome and the note type, which all have a
+ * handful of values, so the series stay few enough to keep. The timer also gets the {@code error}
+ * tag of the meter observation handler: the exception class of an error outcome, else none.
+ */
+@Component
+@AllArgsConstructor
+public class NoteMetrics {
+
+  static final String OPERATIONS = "lanki.notes.operations";
+
+  private static final String NONE = "none";
+
+  private final ObservationRegistry observationRegistry;
+
+  /**
+   * @param type type of the note the operation works on, or {@code null} to take it from the
+   *     returned note, if any.
+   */
+  public <T> T record(String operation, NoteType type, Supplier<T> call) {
+    var observation =
+        Observation.createNotStarted(OPERATIONS, observationRegistry)
+            .contextualName("note " + operation)
+            .lowCardinalityKeyValue("operation", operation)
+            .start();
+    T result = null;
+    var outcome = "success";
+    // The scope makes the operation the parent of the JDBC spans it causes.
+    try (var scope = observation.openScope()) {
+      result = call.get();
+      return result;
+    } catch (RuntimeException ex) {
+      outcome = outcome(ex);
+      observation.error(ex);
+      throw ex;
+    } finally {
+      var noteType = type == null && result instanceof Note note ? note.getType() : type;
+      observation
+          .lowCardinalityKeyValue("outcome", outcome)
+          .lowCardinalityKeyValue("type", noteType == null ? NONE : noteType.name())
+          .stop();
+    }
+  }
+
+  public void record(String operation, NoteType type, Runnable call) {
+    record(
+        operation,
+        type,
+        () -> {
+          call.run();
+          return null;
+        });
+  }
+
+  private static String outcome(RuntimeException ex) {
+    if (ex instanceof NoteNotFoundException) {
+      return "not_found";
+    }
+    if (ex instanceof NotePreconditionFailedException) {
+      return "precondition_failed";
+    }
+    if (ex instanceof NoteVersionConflictException) {
+      return "conflict";
+    }
+    if (ex instanceof InvalidNoteQueryException || ex instanceof InvalidNotePatchException) {
+      return "invalid";
+    }
+    return "error";
+  }
+}
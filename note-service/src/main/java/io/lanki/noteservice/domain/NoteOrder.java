@@ -0,0 +1,26 @@
+package io.lanki.noteservice.domain;
+
+import java.util.Arrays;
+
+/** Orderings supported by keyset pagination. Each one is backed by a (created_by, ...) index. */
+public enum NoteOrder {
+  ID("id"),
+  NEXT_REVIEW_DATE("next_review_date");
+
+  private final String value;
+
+  NoteOrder(String value) {
+    this.value = value;
+  }
+
+  public String value() {
+    return value;
+  }
+
+  public static NoteOrder fromValue(String value) {
+    return Arrays.stream(values())
+        .filter(order -> order.value.equals(value))
+        .findFirst()
+        .orElseThrow(() -> new InvalidNoteQueryException("unknown sort order " + value));
+  }
+}
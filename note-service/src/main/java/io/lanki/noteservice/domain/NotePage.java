@@ -0,0 +1,10 @@
+package io.lanki.noteservice.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * A single page of notes. {@code nextCursor} is an opaque continuation token which is {@code null}
+ * once the last page has been reached.
+ */
+public record NotePage(List<Note> content, @JsonProperty("next_cursor") String nextCursor) {}
@@ -0,0 +1,32 @@
+package io.lanki.noteservice.domain;
+
+import java.util.List;
+
+/** Validated paging parameters, shared by the blocking and the reactive note services. */
+record NotePageRequest(NoteOrder order, NoteCursor after, int size) {
+
+  static NotePageRequest of(String cursor, String sort, int size) {
+    var pageSize = Math.min(Math.max(size, 1), NoteService.MAX_PAGE_SIZE);
+    var requestedOrder = sort == null ? null : NoteOrder.fromValue(sort);
+    var after = cursor == null || cursor.isBlank() ? null : NoteCursor.decode(cursor);
+    if (after != null && requestedOrder != null && after.order() != requestedOrder) {
+      throw new InvalidNoteQueryException("cursor does not match sort order " + sort);
+    }
+    var order =
+        after != null ? after.order() : requestedOrder != null ? requestedOrder : NoteOrder.ID;
+    return new NotePageRequest(order, after, pageSize);
+  }
+
+  // Fetch one extra row to find out whether there is a next page without a count query.
+  int limit() {
+    return size + 1;
+  }
+
+  NotePage toPage(List<Note> notes) {
+    if (notes.size() <= size) {
+      return new NotePage(notes, null);
+    }
+    var content = notes.subList(0, size);
+    return new NotePage(content, NoteCursor.after(order, content.get(size - 1)).encode());
+  }
+}
@@ -0,0 +1,153 @@
+package io.lanki.noteservice.domain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lanki.noteservice.domain.Note.NoteType;
+import jakarta.validation.Validator;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies a JSON Merge Patch (RFC 7396) to a note with a single {@code UPDATE ... RETURNING}
+ * statement that only sets the patched columns and checks the expected version, instead of loading
+ * the note and saving it back.
+ */
+@Component
+@AllArgsConstructor
+public class NotePatcher {
+
+  private static final String VERSION = "version";
+
+  // JSON property -> patchable column. The JSON names match the Note serialization.
+  private static final Map<String, Column> COLUMNS =
+      Map.of(
+          "title", new Column("title", "title", String.class, false),
+          "content", new Column("content", "content", String.class, false),
+          "type", new Column("type", "type", NoteType.class, false),
+          "reviews", new Column("reviews", "reviews", Integer.class, false),
+          "next_review_date",
+              new Column("nextReviewDate", "next_review_date", Instant.class, false),
+          "score", new Column("score", "score", Integer.class, false),
+          "url", new Column("url", "url", String.class, true));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final NoteRepository noteRepository;
+
+  private final ReviewQueue reviewQueue;
+
+  private final Validator validator;
+
+  private final ObjectMapper objectMapper;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  /**
+   * @param patch merge patch which must contain the {@code version} the patch is based on.
+   * @return the patched note with its new version.
+   */
+  public Note patch(Long id, String owner, Map<String, Object> patch) {
+    var errors = new LinkedHashMap<String, String>();
+    var assignments = new ArrayList<String>();
+    var args = new ArrayList<Object>();
+    Integer version = null;
+
+    for (var entry : patch.entrySet()) {
+      if (VERSION.equals(entry.getKey())) {
+        version = convert(entry.getValue(), Integer.class);
+        if (version == null) {
+          errors.put(VERSION, "version must be a number");
+        }
+        continue;
+      }
+      var column = COLUMNS.get(entry.getKey());
+      if (column == null) {
+        errors.put(entry.getKey(), "cannot be modified");
+        continue;
+      }
+      var value = convert(entry.getValue(), column.type());
+      if (value == null && entry.getValue() != null) {
+        errors.put(entry.getKey(), "invalid value");
+        continue;
+      }
+      // E.g. next_review_date, which Note only defaults on insert, would fail the UPDATE.
+      if (primitiveDefault(value, column) == null && !column.nullable()) {
+        errors.put(entry.getKey(), entry.getKey() + " must be defined");
+        continue;
+      }
+      // Reuse the constraints declared on Note. A null removes the value, which is validated too.
+      validator
+          .validateValue(Note.class, column.property(), primitiveDefault(value, column))
+          .forEach(violation -> errors.put(entry.getKey(), violation.getMessage()));
+      assignments.add(column.name() + " = ?");
+      args.add(bindValue(value, column));
+    }
+    if (version == null && !errors.containsKey(VERSION)) {
+      errors.put(VERSION, "version must be defined");
+    }
+    if (!errors.isEmpty()) {
+      throw new InvalidNotePatchException(errors);
+    }
+
+    var sql =
+        "UPDATE notes SET "
+            + String.join(", ", assignments)
+            + (assignments.isEmpty() ? "" : ", ")
+            + "version = version + 1, last_modified_date = ?, last_modified_by = ?"
+            + " WHERE id = ? AND version = ? AND created_by = ? AND NOT deleted RETURNING "
+            + NoteRowMapper.COLUMNS;
+    args.add(Timestamp.from(Instant.now()));
+    args.add(owner);
+    args.add(id);
+    args.add(version);
+    args.add(owner);
+
+    List<Note> patched = jdbcTemplate.query(sql, NoteRowMapper.INSTANCE, args.toArray());
+    if (patched.isEmpty()) {
+      // Only the failure path pays for a second query, to tell the two cases apart.
+      if (noteRepository.existsByIdAndCreatedBy(id, owner)) {
+        throw new NoteVersionConflictException(id);
+      }
+      throw new NoteNotFoundException(id);
+    }
+    reviewQueue.update(patched.get(0));
+    eventPublisher.publishEvent(NoteChangedEvent.updated(patched.get(0)));
+    return patched.get(0);
+  }
+
+  private <T> T convert(Object value, Class<T> type) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return objectMapper.convertValue(value, type);
+    } catch (IllegalArgumentException ex) {
+      return null;
+    }
+  }
+
+  private static Object primitiveDefault(Object value, Column column) {
+    // reviews and score are primitives on Note, so a removed value means 0.
+    return value == null && column.type() == Integer.class ? 0 : value;
+  }
+
+  private static Object bindValue(Object value, Column column) {
+    if (value instanceof Instant instant) {
+      return Timestamp.from(instant);
+    }
+    if (value instanceof NoteType type) {
+      return type.name();
+    }
+    return primitiveDefault(value, column);
+  }
+
+  /** @param nullable whether the column may be set to NULL. */
+  private record Column(String property, String name, Class<?> type, boolean nullable) {}
+}
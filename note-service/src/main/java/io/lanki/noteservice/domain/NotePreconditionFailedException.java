@@ -0,0 +1,8 @@
+package io.lanki.noteservice.domain;
+
+public class NotePreconditionFailedException extends RuntimeException {
+
+  public NotePreconditionFailedException(Long id) {
+    super(String.format("note with ID %d does not match the expected version", id));
+  }
+}
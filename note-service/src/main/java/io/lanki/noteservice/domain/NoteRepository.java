@@ -1,5 +1,66 @@
 package io.lanki.noteservice.domain;
 
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+import jakarta.persistence.QueryHint;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface NoteRepository extends CrudRepository<Note, Long> {
+
+  boolean existsByIdAndCreatedBy(Long id, String createdBy);
+
+  /* Keyset pagination. Pageable is only used to bound the number of rows, never as an offset. */
+
+  List<Note> findByCreatedByOrderByIdAsc(String createdBy, Pageable pageable);
+
+  List<Note> findByCreatedByAndIdGreaterThanOrderByIdAsc(
+      String createdBy, Long id, Pageable pageable);
+
+  List<Note> findByCreatedByOrderByNextReviewDateAscIdAsc(String createdBy, Pageable pageable);
+
+  @Query(
+      """
+      select n from Note n
+      where n.createdBy = :createdBy
+        and (n.nextReviewDate > :nextReviewDate
+          or (n.nextReviewDate = :nextReviewDate and n.id > :id))
+      order by n.nextReviewDate asc, n.id asc
+      """)
+  List<Note> findByCreatedByAfterNextReviewDate(
+      @Param("createdBy") String createdBy,
+      @Param("nextReviewDate") Instant nextReviewDate,
+      @Param("id") Long id,
+      Pageable pageable);
+
+  @Query(
+      """
+      select n from Note n
+      where n.createdBy = :createdBy
+        and n.nextReviewDate <= :now
+        and (n.nextReviewDate > :nextReviewDate
+          or (n.nextReviewDate = :nextReviewDate and n.id > :id))
+      order by n.nextReviewDate asc, n.id asc
+      """)
+  List<Note> findDueByCreatedByAfterNextReviewDate(
+      @Param("createdBy") String createdBy,
+      @Param("now") Instant now,
+      @Param("nextReviewDate") Instant nextReviewDate,
+      @Param("id") Long id,
+      Pageable pageable);
 
-public interface NoteRepository extends CrudRepository<Note, Long> {}
+  // Forward-only cursor for exports. The PostgreSQL driver only honours the fetch size inside a
+  // transaction, so callers must consume the stream within a read-only transaction.
+  @QueryHints({
+    @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+    @QueryHint(name = HINT_READ_ONLY, value = "true")
+  })
+  Stream<Note> streamByCreatedByOrderByIdAsc(String createdBy);
+}
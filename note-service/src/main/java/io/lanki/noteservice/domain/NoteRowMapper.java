@@ -0,0 +1,42 @@
+package io.lanki.noteservice.domain;
+
+import io.lanki.noteservice.domain.Note.NoteType;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import org.springframework.jdbc.core.RowMapper;
+
+/** Maps a row of the notes table, for queries that bypass JPA. */
+class NoteRowMapper implements RowMapper<Note> {
+
+  static final NoteRowMapper INSTANCE = new NoteRowMapper();
+
+  // Mapped columns, to avoid selecting the search_vector column.
+  static final String COLUMNS =
+      "id, title, content, type, reviews, next_review_date, score, url, created_date,"
+          + " last_modified_date, created_by, last_modified_by, version";
+
+  @Override
+  public Note mapRow(ResultSet rs, int rowNum) throws SQLException {
+    return Note.builder()
+        .id(rs.getLong("id"))
+        .title(rs.getString("title"))
+        .content(rs.getString("content"))
+        .type(NoteType.valueOf(rs.getString("type")))
+        .reviews(rs.getInt("reviews"))
+        .nextReviewDate(instant(rs.getTimestamp("next_review_date")))
+        .score(rs.getInt("score"))
+        .url(rs.getString("url"))
+        .createdDate(instant(rs.getTimestamp("created_date")))
+        .lastModifiedDate(instant(rs.getTimestamp("last_modified_date")))
+        .createdBy(rs.getString("created_by"))
+        .lastModifiedBy(rs.getString("last_modified_by"))
+        .version(rs.getInt("version"))
+        .build();
+  }
+
+  private static Instant instant(Timestamp timestamp) {
+    return timestamp == null ? null : timestamp.toInstant();
+  }
+}
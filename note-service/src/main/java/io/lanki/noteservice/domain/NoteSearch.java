@@ -0,0 +1,18 @@
+package io.lanki.noteservice.domain;
+
+/**
+ * Ranked full-text search over the notes of one owner. The engine is chosen with {@code
+ * lanki.search.engine}, see {@link NoteSearchProperties}.
+ */
+public interface NoteSearch {
+
+  // Terms of a query beyond this are ignored.
+  int MAX_TERMS = 10;
+
+  /**
+   * Every term of {@code text} must match a word of the title or content as a prefix.
+   *
+   * @param cursor {@code next_cursor} of the previous page, or {@code null} for the first page.
+   */
+  NoteSearchPage search(String owner, String text, String cursor, int size);
+}
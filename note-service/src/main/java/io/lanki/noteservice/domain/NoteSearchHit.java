@@ -0,0 +1,7 @@
+package io.lanki.noteservice.domain;
+
+/**
+ * @param rank relevance of the note, higher is better.
+ * @param snippet fragments of the content with the matched terms wrapped in {@code <mark>} tags.
+ */
+public record NoteSearchHit(Note note, float rank, String snippet) {}
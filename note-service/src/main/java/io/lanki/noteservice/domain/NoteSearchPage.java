@@ -0,0 +1,7 @@
+package io.lanki.noteservice.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+public record NoteSearchPage(
+    List<NoteSearchHit> content, @JsonProperty("next_cursor") String nextCursor) {}
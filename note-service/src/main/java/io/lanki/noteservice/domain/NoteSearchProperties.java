@@ -0,0 +1,15 @@
+package io.lanki.noteservice.domain;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param engine {@code postgres} to query the search_vector column, or {@code in-memory} to keep
+ *     a per-user inverted index in the heap.
+ * @param memoryBudget heap the in-memory indexes may take in total before the least recently
+ *     searched ones are dropped.
+ */
+@ConfigurationProperties(prefix = "lanki.search")
+public record NoteSearchProperties(
+    @DefaultValue("postgres") String engine, @DefaultValue("64MB") DataSize memoryBudget) {}
@@ -1,29 +1,108 @@
 package io.lanki.noteservice.domain;
 
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @AllArgsConstructor
 public class NoteService {
 
+  public static final int DEFAULT_PAGE_SIZE = 20;
+
+  public static final int MAX_PAGE_SIZE = 100;
+
   private final NoteRepository noteRepository;
 
-  public Iterable<Note> getAll() {
-    return noteRepository.findAll();
+  private final EntityManager entityManager;
+
+  private final ReviewQueue reviewQueue;
+
+  private final NoteCache noteCache;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final NoteMetrics noteMetrics;
+
+  public NotePage getPage(String owner, String cursor, String sort, int size) {
+    return noteMetrics.record("get_page", null, () -> findPage(owner, cursor, sort, size));
+  }
+
+  private NotePage findPage(String owner, String cursor, String sort, int size) {
+    var request = NotePageRequest.of(cursor, sort, size);
+    var after = request.after();
+    var limit = PageRequest.ofSize(request.limit());
+    List<Note> notes =
+        switch (request.order()) {
+          case ID -> after == null
+              ? noteRepository.findByCreatedByOrderByIdAsc(owner, limit)
+              : noteRepository.findByCreatedByAndIdGreaterThanOrderByIdAsc(
+                  owner, after.id(), limit);
+          case NEXT_REVIEW_DATE -> after == null
+              ? noteRepository.findByCreatedByOrderByNextReviewDateAscIdAsc(owner, limit)
+              : noteRepository.findByCreatedByAfterNextReviewDate(
+                  owner, after.nextReviewDate(), after.id(), limit);
+        };
+    return request.toPage(notes);
+  }
+
+  @Transactional(readOnly = true)
+  public void export(String owner, Consumer<Note> consumer) {
+    noteMetrics.record(
+        "export",
+        null,
+        () -> {
+          try (Stream<Note> notes = noteRepository.streamByCreatedByOrderByIdAsc(owner)) {
+            notes.forEach(
+                note -> {
+                  // Detach each note so the persistence context does not grow with the export.
+                  entityManager.detach(note);
+                  consumer.accept(note);
+                });
+          }
+        });
   }
 
   public Note get(Long id) {
-    return noteRepository.findById(id).orElseThrow(() -> new NoteNotFoundException(id));
+    return noteMetrics.record(
+        "get",
+        null,
+        () ->
+            noteCache
+                .get(id, noteRepository::findById)
+                .orElseThrow(() -> new NoteNotFoundException(id)));
   }
 
   public Note post(Note note) {
-    return noteRepository.save(note);
+    return noteMetrics.record("post", note.getType(), () -> insert(note));
   }
 
-  public Note put(Long id, Note note) {
-    return noteRepository
-        .findById(id)
+  private Note insert(Note note) {
+    var saved = noteRepository.save(note);
+    eventPublisher.publishEvent(NoteChangedEvent.created(saved));
+    return saved;
+  }
+
+  /**
+   * @param expectedVersion version the client based the update on, or {@code null} to overwrite
+   *     whatever version is stored.
+   */
+  public Note put(Long id, Note note, Integer expectedVersion) {
+    return noteMetrics.record("put", note.getType(), () -> update(id, note, expectedVersion));
+  }
+
+  private Note update(Long id, Note note, Integer expectedVersion) {
+    var existing = noteRepository.findById(id);
+    checkVersion(id, existing, expectedVersion);
+    return existing
         .map(
             existingNote -> {
               var noteToUpdate =
@@ -42,12 +121,52 @@ public class NoteService {
                       .lastModifiedBy(existingNote.getLastModifiedBy())
                       .version(existingNote.getVersion())
                       .build();
-              return noteRepository.save(noteToUpdate);
+              var saved = save(noteToUpdate, expectedVersion);
+              reviewQueue.update(saved);
+              eventPublisher.publishEvent(NoteChangedEvent.updated(saved));
+              return saved;
             })
-        .orElseGet(() -> post(note));
+        // Not post(), so that an upsert is recorded once, as a put.
+        .orElseGet(() -> insert(note));
+  }
+
+  /**
+   * @param expectedVersion version the client based the deletion on, or {@code null} to delete
+   *     whatever version is stored.
+   */
+  public void delete(Long id, Integer expectedVersion) {
+    noteMetrics.record("delete", null, () -> softDelete(id, expectedVersion));
+  }
+
+  private void softDelete(Long id, Integer expectedVersion) {
+    var existing = noteRepository.findById(id);
+    checkVersion(id, existing, expectedVersion);
+    existing.ifPresent(
+        note -> {
+          reviewQueue.remove(note.getCreatedBy(), note.getId());
+          // Soft delete, so the changes feed can hand the deletion to syncing clients.
+          note.setDeleted(true);
+          var deleted = save(note, expectedVersion);
+          eventPublisher.publishEvent(NoteChangedEvent.deleted(deleted));
+        });
+  }
+
+  private static void checkVersion(Long id, Optional<Note> existing, Integer expectedVersion) {
+    if (expectedVersion != null
+        && existing.map(Note::getVersion).filter(expectedVersion::equals).isEmpty()) {
+      throw new NotePreconditionFailedException(id);
+    }
   }
 
-  public void delete(Long id) {
-    noteRepository.deleteById(id);
+  // A concurrent write between checkVersion and the UPDATE is caught by the optimistic lock.
+  private Note save(Note note, Integer expectedVersion) {
+    try {
+      return noteRepository.save(note);
+    } catch (ObjectOptimisticLockingFailureException ex) {
+      if (expectedVersion == null) {
+        throw ex;
+      }
+      throw new NotePreconditionFailedException(note.getId());
+    }
   }
 }
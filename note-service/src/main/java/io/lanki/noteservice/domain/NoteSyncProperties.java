@@ -0,0 +1,12 @@
+package io.lanki.noteservice.domain;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param tombstoneRetention time a deleted note is kept for syncing clients, and so how long a
+ *     client may stay offline before it has to sync from scratch.
+ */
+@ConfigurationProperties(prefix = "lanki.sync")
+public record NoteSyncProperties(@DefaultValue("30d") Duration tombstoneRetention) {}
@@ -0,0 +1,8 @@
+package io.lanki.noteservice.domain;
+
+public class NoteVersionConflictException extends RuntimeException {
+
+  public NoteVersionConflictException(Long id) {
+    super(String.format("note with ID %d was modified by another request", id));
+  }
+}
@@ -0,0 +1,96 @@
+package io.lanki.noteservice.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+/**
+ * Full-text search over the generated search_vector column of the notes table (see the V3
+ * migration). Every term is matched as a prefix, hits are ordered by ts_rank_cd and paginated with
+ * a (rank, id) keyset.
+ */
+@Component
+@ConditionalOnProperty(
+    prefix = "lanki.search",
+    name = "engine",
+    havingValue = "postgres",
+    matchIfMissing = true)
+@AllArgsConstructor
+public class PostgresNoteSearch implements NoteSearch {
+
+  private static final String SEARCH_SQL =
+      """
+      SELECT %1$s, rank,
+             ts_headline(
+               'english', content, query,
+               'MaxFragments=2, MaxWords=20, MinWords=5, StartSel=<mark>, StopSel=</mark>'
+             ) AS snippet
+      FROM (
+        SELECT %1$s, rank, query
+        FROM (
+          SELECT %1$s, ts_rank_cd(search_vector, query) AS rank, query
+          FROM notes, to_tsquery('english', ?) AS query
+          WHERE created_by = ? AND NOT deleted AND search_vector @@ query
+        ) AS matches
+        WHERE rank < ?::real OR (rank = ?::real AND id > ?)
+        ORDER BY rank DESC, id ASC
+        LIMIT ?
+      ) AS page
+      ORDER BY rank DESC, id ASC
+      """
+          .formatted(NoteRowMapper.COLUMNS);
+
+  private static final RowMapper<NoteSearchHit> HIT_MAPPER =
+      (rs, rowNum) ->
+          new NoteSearchHit(
+              NoteRowMapper.INSTANCE.mapRow(rs, rowNum),
+              rs.getFloat("rank"),
+              rs.getString("snippet"));
+
+  private final JdbcTemplate jdbcTemplate;
+
+  @Override
+  public NoteSearchPage search(String owner, String text, String cursor, int size) {
+    var pageSize = Math.min(Math.max(size, 1), NoteService.MAX_PAGE_SIZE);
+    var query = toTsQuery(text);
+    var after = cursor == null || cursor.isBlank() ? null : SearchCursor.decode(cursor);
+    // Without a cursor every rank is below infinity, so the first page starts at the top.
+    var afterRank = after == null ? Float.POSITIVE_INFINITY : after.rank();
+    var afterId = after == null ? 0L : after.id();
+
+    List<NoteSearchHit> hits =
+        jdbcTemplate.query(
+            SEARCH_SQL, HIT_MAPPER, query, owner, afterRank, afterRank, afterId, pageSize + 1);
+
+    if (hits.size() <= pageSize) {
+      return new NoteSearchPage(hits, null);
+    }
+    var content = new ArrayList<>(hits.subList(0, pageSize));
+    return new NoteSearchPage(content, SearchCursor.after(content.get(pageSize - 1)).encode());
+  }
+
+  /**
+   * Turns free text into a tsquery where all terms must match as prefixes, e.g. "binary sea" into
+   * "binary:* & sea:*". Anything but letters and digits is dropped so user input can never be
+   * parsed as tsquery operators.
+   */
+  static String toTsQuery(String text) {
+    var terms =
+        text == null
+            ? List.<String>of()
+            : Arrays.stream(text.split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .limit(MAX_TERMS)
+                .toList();
+    if (terms.isEmpty()) {
+      throw new InvalidNoteQueryException("query must be defined");
+    }
+    return terms.stream().map(term -> term + ":*").collect(Collectors.joining(" & "));
+  }
+}
@@ -0,0 +1,70 @@
+package io.lanki.noteservice.domain;
+
+import java.util.Arrays;
+
+/**
+ * Append-only list of ascending document ordinals with a weight per document. Each entry is stored
+ * as the varint encoded gap to the previous ordinal followed by one weight byte, so dense lists of
+ * small gaps take two bytes per document.
+ */
+final class PostingList {
+
+  @FunctionalInterface
+  interface Visitor {
+    void visit(int doc, int weight);
+  }
+
+  // Object header, fields and array header.
+  private static final int OVERHEAD_BYTES = 48;
+
+  // Five varint bytes for an int gap and one weight byte.
+  private static final int MAX_ENTRY_BYTES = 6;
+
+  private byte[] data = new byte[8];
+
+  private int length;
+
+  private int lastDoc = -1;
+
+  /**
+   * @param doc ordinal greater than every ordinal added before.
+   * @param weight between 1 and 127.
+   */
+  void add(int doc, int weight) {
+    if (doc <= lastDoc) {
+      throw new IllegalArgumentException("documents must be added in ascending order");
+    }
+    if (length + MAX_ENTRY_BYTES > data.length) {
+      data = Arrays.copyOf(data, Math.max(data.length * 2, length + MAX_ENTRY_BYTES));
+    }
+    var gap = doc - lastDoc;
+    while ((gap & ~0x7F) != 0) {
+      data[length++] = (byte) ((gap & 0x7F) | 0x80);
+      gap >>>= 7;
+    }
+    data[length++] = (byte) gap;
+    data[length++] = (byte) weight;
+    lastDoc = doc;
+  }
+
+  void forEach(Visitor visitor) {
+    var position = 0;
+    var doc = -1;
+    while (position < length) {
+      var gap = 0;
+      var shift = 0;
+      byte b;
+      do {
+        b = data[position++];
+        gap |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      doc += gap;
+      visitor.visit(doc, data[position++]);
+    }
+  }
+
+  long sizeInBytes() {
+    return OVERHEAD_BYTES + data.length;
+  }
+}
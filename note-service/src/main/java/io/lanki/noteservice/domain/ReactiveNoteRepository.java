@@ -0,0 +1,157 @@
+package io.lanki.noteservice.domain;
+
+import io.lanki.noteservice.domain.Note.NoteType;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking access to the notes table over R2DBC, for the reactive profile. The statements are
+ * written by hand like the JDBC ones, since {@link Note} is mapped for JPA only.
+ */
+@Repository
+@Profile("reactive")
+@AllArgsConstructor
+public class ReactiveNoteRepository {
+
+  private static final String SELECT = "SELECT " + NoteRowMapper.COLUMNS + " FROM notes ";
+
+  // nextval hands out a whole block of notes_seq to a single note. The ids skip ahead, but never
+  // collide with the blocks the JPA pooled optimizer takes from the same sequence.
+  private static final String INSERT_SQL =
+      """
+      INSERT INTO notes (id, title, content, type, reviews, next_review_date, score, url,
+          created_date, last_modified_date, created_by, last_modified_by, version)
+      VALUES (nextval('notes_seq'), :title, :content, :type, :reviews, :nextReviewDate, :score,
+          :url, :now, :now, :user, :user, 0)
+      RETURNING\s"""
+          + NoteRowMapper.COLUMNS;
+
+  private static final String UPDATE_SQL =
+      """
+      UPDATE notes
+      SET title = :title, content = :content, type = :type, reviews = :reviews,
+          next_review_date = :nextReviewDate, score = :score, url = :url, version = version + 1,
+          last_modified_date = :now, last_modified_by = :user
+      WHERE id = :id AND version = :version AND NOT deleted
+      RETURNING\s"""
+          + NoteRowMapper.COLUMNS;
+
+  private static final String DELETE_SQL =
+      """
+      UPDATE notes
+      SET deleted = true, version = version + 1, last_modified_date = :now,
+          last_modified_by = :user
+      WHERE id = :id AND version = :version AND NOT deleted
+      RETURNING\s"""
+          + NoteRowMapper.COLUMNS;
+
+  private final DatabaseClient databaseClient;
+
+  public Mono<Note> findById(Long id) {
+    return databaseClient
+        .sql(SELECT + "WHERE id = :id AND NOT deleted")
+        .bind("id", id)
+        .map(ReactiveNoteRepository::mapRow)
+        .one();
+  }
+
+  /** Same keyset queries as {@link NoteRepository}, so they use the same indexes. */
+  Flux<Note> findPage(String owner, NotePageRequest request) {
+    var after = request.after();
+    var sql =
+        switch (request.order()) {
+          case ID -> SELECT
+              + "WHERE created_by = :owner AND NOT deleted"
+              + (after == null ? "" : " AND id > :id")
+              + " ORDER BY id LIMIT :limit";
+          case NEXT_REVIEW_DATE -> SELECT
+              + "WHERE created_by = :owner AND NOT deleted"
+              + (after == null ? "" : " AND (next_review_date, id) > (:nextReviewDate, :id)")
+              + " ORDER BY next_review_date, id LIMIT :limit";
+        };
+    var spec = databaseClient.sql(sql).bind("owner", owner).bind("limit", request.limit());
+    if (after != null) {
+      spec = spec.bind("id", after.id());
+      if (request.order() == NoteOrder.NEXT_REVIEW_DATE) {
+        spec = spec.bind("nextReviewDate", after.nextReviewDate());
+      }
+    }
+    return spec.map(ReactiveNoteRepository::mapRow).all();
+  }
+
+  Mono<Note> insert(Note note, String user, Instant now) {
+    return bindColumns(databaseClient.sql(INSERT_SQL), note)
+        .bind("now", now)
+        .bind("user", user)
+        .map(ReactiveNoteRepository::mapRow)
+        .one();
+  }
+
+  /** @return the updated note, or nothing when the note is gone or has another version. */
+  Mono<Note> update(Long id, Note note, int version, String user, Instant now) {
+    return bindColumns(databaseClient.sql(UPDATE_SQL), note)
+        .bind("id", id)
+        .bind("version", version)
+        .bind("now", now)
+        .bind("user", user)
+        .map(ReactiveNoteRepository::mapRow)
+        .one();
+  }
+
+  /** @return the tombstone, or nothing when the note is gone or has another version. */
+  Mono<Note> softDelete(Long id, int version, String user, Instant now) {
+    return databaseClient
+        .sql(DELETE_SQL)
+        .bind("id", id)
+        .bind("version", version)
+        .bind("now", now)
+        .bind("user", user)
+        .map(ReactiveNoteRepository::mapRow)
+        .one();
+  }
+
+  private static GenericExecuteSpec bindColumns(GenericExecuteSpec spec, Note note) {
+    spec = bind(spec, "title", note.getTitle(), String.class);
+    spec = bind(spec, "content", note.getContent(), String.class);
+    spec = bind(spec, "type", typeName(note.getType()), String.class);
+    spec = bind(spec, "nextReviewDate", note.getNextReviewDate(), Instant.class);
+    spec = bind(spec, "url", note.getUrl(), String.class);
+    return spec.bind("reviews", note.getReviews()).bind("score", note.getScore());
+  }
+
+  // A null value is bound with its type, which the driver needs to encode it.
+  private static <T> GenericExecuteSpec bind(
+      GenericExecuteSpec spec, String name, T value, Class<T> type) {
+    return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+  }
+
+  private static String typeName(NoteType type) {
+    return type == null ? null : type.name();
+  }
+
+  private static Note mapRow(Row row, RowMetadata metadata) {
+    return Note.builder()
+        .id(row.get("id", Long.class))
+        .title(row.get("title", String.class))
+        .content(row.get("content", String.class))
+        .type(NoteType.valueOf(row.get("type", String.class)))
+        .reviews(row.get("reviews", Integer.class))
+        .nextReviewDate(row.get("next_review_date", Instant.class))
+        .score(row.get("score", Integer.class))
+        .url(row.get("url", String.class))
+        .createdDate(row.get("created_date", Instant.class))
+        .lastModifiedDate(row.get("last_modified_date", Instant.class))
+        .createdBy(row.get("created_by", String.class))
+        .lastModifiedBy(row.get("last_modified_by", String.class))
+        .version(row.get("version", Integer.class))
+        .build();
+  }
+}
@@ -0,0 +1,119 @@
+package io.lanki.noteservice.domain;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking counterpart of {@link NoteService} for the reactive profile. Writes are single
+ * version-checked statements, so they need no transaction, and reads skip the {@link NoteCache}
+ * whose loader blocks.
+ */
+@Service
+@Profile("reactive")
+@AllArgsConstructor
+public class ReactiveNoteService {
+
+  private final ReactiveNoteRepository noteRepository;
+
+  private final ReviewQueue reviewQueue;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  public Mono<NotePage> getPage(String owner, String cursor, String sort, int size) {
+    return Mono.fromCallable(() -> NotePageRequest.of(cursor, sort, size))
+        .flatMap(
+            request ->
+                noteRepository.findPage(owner, request).collectList().map(request::toPage));
+  }
+
+  public Mono<Note> get(Long id) {
+    return noteRepository
+        .findById(id)
+        .switchIfEmpty(Mono.error(() -> new NoteNotFoundException(id)));
+  }
+
+  public Mono<Note> post(Note note, String user) {
+    var now = Instant.now();
+    // Same default as Note#defaultNextReviewDate, which only runs for JPA.
+    if (note.getNextReviewDate() == null) {
+      note.setNextReviewDate(now);
+    }
+    return noteRepository
+        .insert(note, user, now)
+        .doOnNext(saved -> eventPublisher.publishEvent(NoteChangedEvent.created(saved)));
+  }
+
+  /**
+   * @param expectedVersion version the client based the update on, or {@code null} to overwrite
+   *     whatever version is stored.
+   */
+  public Mono<Note> put(Long id, Note note, Integer expectedVersion, String user) {
+    return noteRepository
+        .findById(id)
+        .flatMap(existing -> update(existing, note, expectedVersion, user))
+        .switchIfEmpty(
+            Mono.defer(
+                () ->
+                    expectedVersion == null
+                        ? post(note, user)
+                        : Mono.error(new NotePreconditionFailedException(id))));
+  }
+
+  /**
+   * @param expectedVersion version the client based the deletion on, or {@code null} to delete
+   *     whatever version is stored.
+   */
+  public Mono<Void> delete(Long id, Integer expectedVersion, String user) {
+    return noteRepository
+        .findById(id)
+        .flatMap(
+            existing -> {
+              var version = checkVersion(existing, expectedVersion);
+              return offEventLoop(
+                      () -> reviewQueue.remove(existing.getCreatedBy(), existing.getId()))
+                  .then(noteRepository.softDelete(id, version, user, Instant.now()))
+                  .switchIfEmpty(Mono.error(() -> conflict(id, expectedVersion)));
+            })
+        .doOnNext(deleted -> eventPublisher.publishEvent(NoteChangedEvent.deleted(deleted)))
+        .switchIfEmpty(
+            Mono.defer(
+                () ->
+                    expectedVersion == null
+                        ? Mono.empty()
+                        : Mono.error(new NotePreconditionFailedException(id))))
+        .then();
+  }
+
+  private Mono<Note> update(Note existing, Note note, Integer expectedVersion, String user) {
+    var version = checkVersion(existing, expectedVersion);
+    return noteRepository
+        .update(existing.getId(), note, version, user, Instant.now())
+        .switchIfEmpty(Mono.error(() -> conflict(existing.getId(), expectedVersion)))
+        .flatMap(saved -> offEventLoop(() -> reviewQueue.update(saved)).thenReturn(saved))
+        .doOnNext(saved -> eventPublisher.publishEvent(NoteChangedEvent.updated(saved)));
+  }
+
+  // The review queue waits for a refill of the user's queue in progress, which is a JPA query.
+  private static Mono<Void> offEventLoop(Runnable call) {
+    return Mono.fromRunnable(call).subscribeOn(Schedulers.boundedElastic()).then();
+  }
+
+  private static int checkVersion(Note existing, Integer expectedVersion) {
+    if (expectedVersion != null && expectedVersion != existing.getVersion()) {
+      throw new NotePreconditionFailedException(existing.getId());
+    }
+    return existing.getVersion();
+  }
+
+  // The note was written between the read and the version-checked UPDATE.
+  private static RuntimeException conflict(Long id, Integer expectedVersion) {
+    return expectedVersion == null
+        ? new NoteVersionConflictException(id)
+        : new NotePreconditionFailedException(id);
+  }
+}
@@ -0,0 +1,4 @@
+package io.lanki.noteservice.domain;
+
+/** A note was written by another replica, see {@link NoteInvalidationBus}. */
+public record RemoteNoteChangedEvent(Long id, String owner, int version) {}
@@ -0,0 +1,7 @@
+package io.lanki.noteservice.domain;
+
+/**
+ * Changes made by other replicas may have been missed because the invalidation listener was
+ * disconnected, so every cached note should be considered stale.
+ */
+public record RemoteNoteChangesMissedEvent() {}
@@ -0,0 +1,249 @@
+package io.lanki.noteservice.domain;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves the notes that are due for review, per user, from an in-memory buffer. The buffer is
+ * filled from the (created_by, next_review_date, id) index with keyset queries and is refilled in
+ * the background once it runs low, so a review session rarely waits on the database.
+ */
+@Component
+public class ReviewQueue {
+
+  // The order of the due notes query, which the buffer keeps.
+  private static final Comparator<Note> DUE_ORDER =
+      Comparator.comparing(Note::getNextReviewDate).thenComparing(Note::getId);
+
+  private final NoteRepository noteRepository;
+
+  private final TaskExecutor taskExecutor;
+
+  private final ReviewQueueProperties properties;
+
+  private final Clock clock;
+
+  private final Map<String, UserQueue> queues;
+
+  @Autowired
+  public ReviewQueue(
+      NoteRepository noteRepository, TaskExecutor taskExecutor, ReviewQueueProperties properties) {
+    this(noteRepository, taskExecutor, properties, Clock.systemUTC());
+  }
+
+  ReviewQueue(
+      NoteRepository noteRepository,
+      TaskExecutor taskExecutor,
+      ReviewQueueProperties properties,
+      Clock clock) {
+    this.noteRepository = noteRepository;
+    this.taskExecutor = taskExecutor;
+    this.properties = properties;
+    this.clock = clock;
+    this.queues =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, UserQueue> eldest) {
+                return size() > properties.maxUsers();
+              }
+            });
+  }
+
+  /** Hands out up to {@code size} due notes of the user, in next review date order. */
+  public List<Note> next(String owner, int size) {
+    var limit = Math.min(Math.max(size, 1), properties.prefetchSize());
+    var queue = queue(owner);
+
+    var notes = queue.poll(limit);
+    if (notes.isEmpty()) {
+      // Nothing buffered (e.g. a new session): load synchronously once.
+      queue.refill();
+      notes = queue.poll(limit);
+    }
+    if (queue.size() < properties.lowWatermark() && queue.refilling.compareAndSet(false, true)) {
+      taskExecutor.execute(
+          () -> {
+            try {
+              queue.refill();
+            } finally {
+              queue.refilling.set(false);
+            }
+          });
+    }
+    return notes;
+  }
+
+  /** Drops a note from the user's buffer, e.g. after it was reviewed, updated or deleted. */
+  public void remove(String owner, Long noteId) {
+    if (owner == null) {
+      return;
+    }
+    var queue = queues.get(owner);
+    if (queue != null) {
+      queue.remove(noteId);
+    }
+  }
+
+  /**
+   * Replaces the buffered copy of a note after it was saved. A note which is still due is put back
+   * into the buffer, unless a later refill loads it anyway.
+   */
+  public void update(Note note) {
+    if (note.getCreatedBy() == null) {
+      return;
+    }
+    var queue = queues.get(note.getCreatedBy());
+    if (queue != null) {
+      queue.update(note, clock.instant());
+    }
+  }
+
+  /** Discards the user's buffer so the next call starts again from the first due note. */
+  public void reset(String owner) {
+    if (owner != null) {
+      queues.remove(owner);
+    }
+  }
+
+  private UserQueue queue(String owner) {
+    var now = clock.instant();
+    var queue = queues.computeIfAbsent(owner, UserQueue::new);
+    if (queue.isIdle(now)) {
+      queue = new UserQueue(owner);
+      queues.put(owner, queue);
+    }
+    queue.touch(now);
+    return queue;
+  }
+
+  private final class UserQueue {
+
+    private final String owner;
+
+    private final ArrayDeque<Note> buffer = new ArrayDeque<>();
+
+    private final ReentrantLock refillLock = new ReentrantLock();
+
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    // Keyset position of the last note loaded into the buffer.
+    private Instant lastNextReviewDate = Instant.EPOCH;
+
+    private long lastId = 0;
+
+    private volatile Instant lastAccess;
+
+    private UserQueue(String owner) {
+      this.owner = owner;
+      this.lastAccess = clock.instant();
+    }
+
+    private boolean isIdle(Instant now) {
+      return lastAccess.plus(properties.idleTimeout()).isBefore(now);
+    }
+
+    private void touch(Instant now) {
+      lastAccess = now;
+    }
+
+    private synchronized List<Note> poll(int limit) {
+      var notes = new ArrayList<Note>(Math.min(limit, buffer.size()));
+      while (notes.size() < limit && !buffer.isEmpty()) {
+        notes.add(buffer.poll());
+      }
+      return notes;
+    }
+
+    private synchronized int size() {
+      return buffer.size();
+    }
+
+    // Under the refill lock, so that a refill in flight can't bring back the note afterwards.
+    private void remove(Long noteId) {
+      refillLock.lock();
+      try {
+        synchronized (this) {
+          buffer.removeIf(note -> note.getId().equals(noteId));
+        }
+      } finally {
+        refillLock.unlock();
+      }
+    }
+
+    private void update(Note note, Instant now) {
+      refillLock.lock();
+      try {
+        synchronized (this) {
+          buffer.removeIf(buffered -> buffered.getId().equals(note.getId()));
+          if (note.isDeleted()
+              || note.getNextReviewDate() == null
+              || note.getNextReviewDate().isAfter(now)
+              || isAfterKeyset(note)) {
+            return;
+          }
+          var notes = new ArrayList<>(buffer);
+          var index = Collections.binarySearch(notes, note, DUE_ORDER);
+          notes.add(index < 0 ? -index - 1 : index, note);
+          buffer.clear();
+          buffer.addAll(notes);
+        }
+      } finally {
+        refillLock.unlock();
+      }
+    }
+
+    // Such a note is loaded by a later refill.
+    private boolean isAfterKeyset(Note note) {
+      var date = note.getNextReviewDate();
+      return date.isAfter(lastNextReviewDate)
+          || (date.equals(lastNextReviewDate) && note.getId() > lastId);
+    }
+
+    private void refill() {
+      // Only one refill per user at a time so the keyset position is never read twice.
+      refillLock.lock();
+      try {
+        Instant after;
+        long afterId;
+        synchronized (this) {
+          if (buffer.size() >= properties.prefetchSize()) {
+            return;
+          }
+          after = lastNextReviewDate;
+          afterId = lastId;
+        }
+        var due =
+            noteRepository.findDueByCreatedByAfterNextReviewDate(
+                owner,
+                clock.instant(),
+                after,
+                afterId,
+                PageRequest.ofSize(properties.prefetchSize()));
+        synchronized (this) {
+          buffer.addAll(due);
+          if (!due.isEmpty()) {
+            var last = due.get(due.size() - 1);
+            lastNextReviewDate = last.getNextReviewDate();
+            lastId = last.getId();
+          }
+        }
+      } finally {
+        refillLock.unlock();
+      }
+    }
+  }
+}
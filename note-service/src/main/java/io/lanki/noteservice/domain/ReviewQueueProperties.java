@@ -0,0 +1,18 @@
+package io.lanki.noteservice.domain;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param prefetchSize number of due notes loaded per user in one query.
+ * @param lowWatermark buffered notes below which an asynchronous refill is started.
+ * @param maxUsers number of user buffers kept before the least recently used one is dropped.
+ * @param idleTimeout time after which an untouched user buffer is discarded.
+ */
+@ConfigurationProperties(prefix = "lanki.review-queue")
+public record ReviewQueueProperties(
+    @DefaultValue("50") int prefetchSize,
+    @DefaultValue("10") int lowWatermark,
+    @DefaultValue("10000") int maxUsers,
+    @DefaultValue("10m") Duration idleTimeout) {}
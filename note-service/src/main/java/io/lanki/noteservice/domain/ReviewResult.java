@@ -0,0 +1,24 @@
+package io.lanki.noteservice.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Instant;
+
+public record ReviewResult(
+    Long id,
+    Status status,
+    Integer version,
+    @JsonProperty("next_review_date") Instant nextReviewDate) {
+
+  public enum Status {
+    APPLIED,
+    // The note was modified since the submitted version.
+    CONFLICT,
+    NOT_FOUND,
+    // The grade is out of range, or the note was already reviewed earlier in the batch.
+    INVALID
+  }
+
+  static ReviewResult of(Long id, Status status) {
+    return new ReviewResult(id, status, null, null);
+  }
+}
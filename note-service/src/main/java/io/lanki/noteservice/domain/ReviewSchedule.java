@@ -0,0 +1,5 @@
+package io.lanki.noteservice.domain;
+
+import java.time.Instant;
+
+public record ReviewSchedule(int reviews, int score, Instant nextReviewDate) {}
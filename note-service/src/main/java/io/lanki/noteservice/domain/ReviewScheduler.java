@@ -0,0 +1,62 @@
+package io.lanki.noteservice.domain;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * SM-2 spaced repetition. The easiness factor is stored in {@link Note#getScore()} scaled to 0..100
+ * (1.3..2.5) and the repetition count in {@link Note#getReviews()}, so the interval can be derived
+ * without keeping the previous interval around: 1 day, 6 days, then 6 * EF^(n - 2) days.
+ */
+public final class ReviewScheduler {
+
+  public static final int MIN_GRADE = 0;
+
+  public static final int MAX_GRADE = 5;
+
+  private static final double MIN_EASINESS = 1.3;
+
+  private static final double MAX_EASINESS = 2.5;
+
+  private static final long MAX_INTERVAL_SECONDS = Duration.ofDays(3650).toSeconds();
+
+  private static final long SECONDS_PER_DAY = Duration.ofDays(1).toSeconds();
+
+  private ReviewScheduler() {}
+
+  /**
+   * @param reviews number of consecutive successful reviews so far.
+   * @param score easiness factor scaled to 0..100.
+   * @param grade quality of the answer, from 0 (blackout) to 5 (perfect).
+   * @param reviewedDate when the note was reviewed.
+   */
+  public static ReviewSchedule schedule(int reviews, int score, int grade, Instant reviewedDate) {
+    if (grade < MIN_GRADE || grade > MAX_GRADE) {
+      throw new IllegalArgumentException("grade must be between 0 and 5");
+    }
+
+    var easiness = MIN_EASINESS + (MAX_EASINESS - MIN_EASINESS) * clamp(score, 0, 100) / 100.0;
+    var lapse = MAX_GRADE - grade;
+    easiness = clamp(easiness + 0.1 - lapse * (0.08 + lapse * 0.02), MIN_EASINESS, MAX_EASINESS);
+
+    // A failed recall starts the repetitions over.
+    var nextReviews = grade < 3 ? 0 : reviews + 1;
+    long intervalSeconds;
+    if (nextReviews <= 1) {
+      intervalSeconds = SECONDS_PER_DAY;
+    } else if (nextReviews == 2) {
+      intervalSeconds = 6 * SECONDS_PER_DAY;
+    } else {
+      var days = 6 * Math.pow(easiness, nextReviews - 2);
+      intervalSeconds = (long) Math.min(days * SECONDS_PER_DAY, MAX_INTERVAL_SECONDS);
+    }
+
+    var nextScore =
+        (int) Math.round((easiness - MIN_EASINESS) / (MAX_EASINESS - MIN_EASINESS) * 100);
+    return new ReviewSchedule(nextReviews, nextScore, reviewedDate.plusSeconds(intervalSeconds));
+  }
+
+  private static double clamp(double value, double min, double max) {
+    return Math.max(min, Math.min(max, value));
+  }
+}
@@ -0,0 +1,128 @@
+package io.lanki.noteservice.domain;
+
+import io.lanki.noteservice.domain.ReviewResult.Status;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Applies review outcomes in bulk: one query to load the reviewed notes and one JDBC batch of
+ * version-checked UPDATEs, whatever the number of reviews.
+ */
+@Service
+@AllArgsConstructor
+public class ReviewService {
+
+  public static final int MAX_BATCH_SIZE = 500;
+
+  private static final String UPDATE_SQL =
+      """
+      UPDATE notes
+      SET reviews = ?, score = ?, next_review_date = ?, version = version + 1,
+          last_modified_date = ?, last_modified_by = ?
+      WHERE id = ? AND version = ? AND created_by = ? AND NOT deleted
+      """;
+
+  private final NoteRepository noteRepository;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final ReviewQueue reviewQueue;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Transactional
+  public List<ReviewResult> submit(String owner, List<ReviewSubmission> submissions) {
+    if (submissions.size() > MAX_BATCH_SIZE) {
+      throw new InvalidNoteQueryException(
+          "at most " + MAX_BATCH_SIZE + " reviews can be submitted at once");
+    }
+
+    var ids = submissions.stream().map(ReviewSubmission::id).filter(Objects::nonNull).toList();
+    var notes = new HashMap<Long, Note>();
+    noteRepository.findAllById(ids).forEach(note -> notes.put(note.getId(), note));
+
+    var now = Instant.now();
+    var results = new ReviewResult[submissions.size()];
+    var batchArgs = new ArrayList<Object[]>(submissions.size());
+    var batchIndexes = new ArrayList<Integer>(submissions.size());
+    var schedules = new HashMap<Integer, ReviewSchedule>();
+    var batchedIds = new HashSet<Long>();
+
+    for (int i = 0; i < submissions.size(); i++) {
+      var submission = submissions.get(i);
+      var note = submission.id() == null ? null : notes.get(submission.id());
+      if (note == null || !owner.equals(note.getCreatedBy())) {
+        results[i] = ReviewResult.of(submission.id(), Status.NOT_FOUND);
+        continue;
+      }
+      if (submission.grade() == null
+          || submission.grade() < ReviewScheduler.MIN_GRADE
+          || submission.grade() > ReviewScheduler.MAX_GRADE) {
+        results[i] = ReviewResult.of(submission.id(), Status.INVALID);
+        continue;
+      }
+      // A second UPDATE would be checked against the version the first one replaced.
+      if (!batchedIds.add(submission.id())) {
+        results[i] = ReviewResult.of(submission.id(), Status.INVALID);
+        continue;
+      }
+
+      var reviewedDate = reviewedDate(submission, now);
+      var schedule =
+          ReviewScheduler.schedule(
+              note.getReviews(), note.getScore(), submission.grade(), reviewedDate);
+      schedules.put(i, schedule);
+      batchIndexes.add(i);
+      batchArgs.add(
+          new Object[] {
+            schedule.reviews(),
+            schedule.score(),
+            Timestamp.from(schedule.nextReviewDate()),
+            Timestamp.from(now),
+            owner,
+            submission.id(),
+            submission.version(),
+            owner
+          });
+    }
+
+    var counts =
+        batchArgs.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(UPDATE_SQL, batchArgs);
+    for (int j = 0; j < batchIndexes.size(); j++) {
+      var i = batchIndexes.get(j);
+      var submission = submissions.get(i);
+      if (counts[j] == 0) {
+        results[i] = ReviewResult.of(submission.id(), Status.CONFLICT);
+      } else {
+        var schedule = schedules.get(i);
+        results[i] =
+            new ReviewResult(
+                submission.id(),
+                Status.APPLIED,
+                submission.version() + 1,
+                schedule.nextReviewDate());
+        reviewQueue.remove(owner, submission.id());
+        eventPublisher.publishEvent(
+            NoteChangedEvent.reviewed(submission.id(), owner, submission.version() + 1));
+      }
+    }
+    return List.of(results);
+  }
+
+  private static Instant reviewedDate(ReviewSubmission submission, Instant now) {
+    // Offline clients report when the review happened, but never in the future.
+    return submission.reviewedDate() == null || submission.reviewedDate().isAfter(now)
+        ? now
+        : submission.reviewedDate();
+  }
+}
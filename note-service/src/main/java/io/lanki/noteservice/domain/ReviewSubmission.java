@@ -0,0 +1,23 @@
+package io.lanki.noteservice.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import java.time.Instant;
+
+/**
+ * @param id ID of the reviewed note.
+ * @param version version of the note the review was based on.
+ * @param grade quality of the answer, from 0 to 5. Required, since a missing grade must not be
+ *     taken for a lapse.
+ * @param reviewedDate when the note was reviewed, e.g. while offline. Defaults to now.
+ */
+public record ReviewSubmission(
+    Long id,
+    int version,
+    @NotNull(message = "grade must be defined")
+        @Min(value = ReviewScheduler.MIN_GRADE, message = "grade must be between 0 and 5")
+        @Max(value = ReviewScheduler.MAX_GRADE, message = "grade must be between 0 and 5")
+        Integer grade,
+    @JsonProperty("reviewed_date") Instant reviewedDate) {}
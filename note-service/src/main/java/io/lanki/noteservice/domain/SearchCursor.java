@@ -0,0 +1,34 @@
+package io.lanki.noteservice.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/** Keyset position of the last hit of a search page, ordered by rank then ID. */
+record SearchCursor(float rank, long id) {
+
+  private static final String SEPARATOR = "|";
+
+  static SearchCursor after(NoteSearchHit hit) {
+    return new SearchCursor(hit.rank(), hit.note().getId());
+  }
+
+  String encode() {
+    var payload = Float.toString(rank) + SEPARATOR + id;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static SearchCursor decode(String token) {
+    try {
+      var payload = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      var parts = payload.split("\\" + SEPARATOR, -1);
+      if (parts.length != 2) {
+        throw new InvalidNoteQueryException("invalid cursor");
+      }
+      return new SearchCursor(Float.parseFloat(parts[0]), Long.parseLong(parts[1]));
+    } catch (IllegalArgumentException ex) {
+      throw new InvalidNoteQueryException("invalid cursor");
+    }
+  }
+}
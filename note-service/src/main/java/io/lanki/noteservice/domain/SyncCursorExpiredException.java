@@ -0,0 +1,8 @@
+package io.lanki.noteservice.domain;
+
+public class SyncCursorExpiredException extends RuntimeException {
+
+  public SyncCursorExpiredException() {
+    super("cursor is older than the retained deletions, sync from scratch");
+  }
+}
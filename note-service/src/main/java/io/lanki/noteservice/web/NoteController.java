@@ -1,35 +1,161 @@
 package io.lanki.noteservice.web;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.lanki.noteservice.domain.Note;
+import io.lanki.noteservice.domain.NoteChangeFeed;
+import io.lanki.noteservice.domain.NoteChangePage;
+import io.lanki.noteservice.domain.NoteImportResult;
+import io.lanki.noteservice.domain.NoteImporter;
+import io.lanki.noteservice.domain.NotePage;
+import io.lanki.noteservice.domain.NotePatcher;
+import io.lanki.noteservice.domain.NoteSearch;
+import io.lanki.noteservice.domain.NoteSearchPage;
 import io.lanki.noteservice.domain.NoteService;
+import io.lanki.noteservice.domain.ReviewQueue;
+import io.lanki.noteservice.domain.ReviewResult;
+import io.lanki.noteservice.domain.ReviewService;
+import io.lanki.noteservice.domain.ReviewSubmission;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping(path = "/v1/api/notes", produces = "application/json")
 @AllArgsConstructor
 public class NoteController {
 
+  // Notes are readable without authentication, so edge-service may share them between users. They
+  // are revalidated with their ETag after a few seconds, while the stale one is served meanwhile or
+  // when note-service fails. Spring Security would otherwise send no-store.
+  static final CacheControl CACHE_CONTROL =
+      CacheControl.maxAge(Duration.ofSeconds(5))
+          .cachePublic()
+          .staleWhileRevalidate(Duration.ofSeconds(30))
+          .staleIfError(Duration.ofMinutes(10));
+
   private final NoteService noteService;
 
+  private final NoteChangeFeed noteChangeFeed;
+
+  private final NoteImporter noteImporter;
+
+  private final NotePatcher notePatcher;
+
+  private final ReviewQueue reviewQueue;
+
+  private final ReviewService reviewService;
+
+  private final NoteSearch noteSearch;
+
+  private final ObjectMapper objectMapper;
+
   @GetMapping
-  public Iterable<Note> get() {
-    return noteService.getAll();
+  public NotePage get(
+      Principal principal,
+      @RequestParam(name = "cursor", required = false) String cursor,
+      @RequestParam(name = "sort", required = false) String sort,
+      @RequestParam(name = "size", defaultValue = "" + NoteService.DEFAULT_PAGE_SIZE) int size,
+      WebRequest request) {
+    var page = noteService.getPage(principal.getName(), cursor, sort, size);
+    if (request.checkNotModified(NoteETags.of(page))) {
+      return null;
+    }
+    return page;
+  }
+
+  // Delta sync: offline clients fetch what changed since their last cursor instead of every note.
+  @GetMapping("/changes")
+  public NoteChangePage changes(
+      Principal principal,
+      @RequestParam(name = "since", required = false) String since,
+      @RequestParam(name = "size", defaultValue = "" + NoteChangeFeed.DEFAULT_PAGE_SIZE) int size) {
+    return noteChangeFeed.changes(principal.getName(), since, size);
+  }
+
+  @GetMapping("/search")
+  public NoteSearchPage search(
+      Principal principal,
+      @RequestParam(name = "q") String query,
+      @RequestParam(name = "cursor", required = false) String cursor,
+      @RequestParam(name = "size", defaultValue = "" + NoteService.DEFAULT_PAGE_SIZE) int size) {
+    return noteSearch.search(principal.getName(), query, cursor, size);
+  }
+
+  @GetMapping("/reviews")
+  public List<Note> getDueReviews(
+      Principal principal, @RequestParam(name = "size", defaultValue = "10") int size) {
+    return reviewQueue.next(principal.getName(), size);
   }
 
+  // Offline clients sync all of their reviews in one request. A constraint on the list itself is
+  // what has Spring validate its elements, rejecting the whole batch when one of them is invalid.
+  @PostMapping("/reviews")
+  public List<ReviewResult> postReviews(
+      Principal principal,
+      @RequestBody
+          @Size(
+              max = ReviewService.MAX_BATCH_SIZE,
+              message = "at most " + ReviewService.MAX_BATCH_SIZE + " reviews can be submitted")
+          List<@Valid ReviewSubmission> submissions) {
+    return reviewService.submit(principal.getName(), submissions);
+  }
+
+  @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> export(Principal principal) {
+    var owner = principal.getName();
+    var writer = objectMapper.writerFor(Note.class);
+    // Notes are written one per line as they come off the database cursor, so the heap usage does
+    // not depend on how many notes are exported.
+    StreamingResponseBody body =
+        outputStream ->
+            noteService.export(
+                owner,
+                note -> {
+                  try {
+                    outputStream.write(writer.writeValueAsBytes(note));
+                    outputStream.write('\n');
+                  } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                  }
+                });
+    // A bare StreamingResponseBody is written without a Content-Type.
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  // A client holding the current version gets 304 Not Modified before the note is serialized.
   @GetMapping("/{id}")
-  public Note getById(@PathVariable("id") Long id) {
-    return noteService.get(id);
+  public ResponseEntity<Note> getById(@PathVariable("id") Long id) {
+    var note = noteService.get(id);
+    return ResponseEntity.ok().eTag(NoteETags.of(note)).cacheControl(CACHE_CONTROL).body(note);
   }
 
   @PostMapping
@@ -38,15 +164,40 @@ public class NoteController {
     return noteService.post(note);
   }
 
+  // Accepts either a JSON array or newline-delimited JSON. Both are read one note at a time.
+  @PostMapping(
+      path = "/import",
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+  public NoteImportResult importNotes(InputStream body) throws IOException {
+    try (MappingIterator<Note> notes = objectMapper.readerFor(Note.class).readValues(body)) {
+      return noteImporter.importNotes(notes);
+    }
+  }
+
   @PutMapping("/{id}")
-  public Note put(@PathVariable("id") Long id, @Valid @RequestBody Note note) {
-    return noteService.put(id, note);
+  public ResponseEntity<Note> put(
+      @PathVariable("id") Long id,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+      @Valid @RequestBody Note note) {
+    var saved = noteService.put(id, note, NoteETags.expectedVersion(id, ifMatch));
+    return ResponseEntity.ok().eTag(NoteETags.of(saved)).body(saved);
+  }
+
+  // JSON Merge Patch: only the given fields change, and "version" must match the stored note.
+  @PatchMapping(
+      path = "/{id}",
+      consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+  public Note patch(
+      Principal principal, @PathVariable("id") Long id, @RequestBody Map<String, Object> patch) {
+    return notePatcher.patch(id, principal.getName(), patch);
   }
 
   @DeleteMapping("/{id}")
   @ResponseStatus(HttpStatus.NO_CONTENT)
-  public void delete(@PathVariable("id") Long id) {
-    noteService.delete(id);
+  public void delete(
+      @PathVariable("id") Long id,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+    noteService.delete(id, NoteETags.expectedVersion(id, ifMatch));
   }
 
   /* For temporary testing routes */
@@ -1,14 +1,23 @@
 package io.lanki.noteservice.web;
 
+import io.lanki.noteservice.domain.InvalidNotePatchException;
+import io.lanki.noteservice.domain.InvalidNoteQueryException;
 import io.lanki.noteservice.domain.NoteNotFoundException;
+import io.lanki.noteservice.domain.NotePreconditionFailedException;
+import io.lanki.noteservice.domain.NoteVersionConflictException;
+import io.lanki.noteservice.domain.SyncCursorExpiredException;
 import java.util.HashMap;
 import java.util.Map;
 import org.springframework.http.HttpStatus;
+import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
+import org.springframework.validation.method.ParameterErrors;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 
 @RestControllerAdvice
 public class NoteControllerAdvice {
@@ -19,12 +28,84 @@ public class NoteControllerAdvice {
     return ex.getMessage();
   }
 
+  @ExceptionHandler(NoteVersionConflictException.class)
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public String noteVersionConflictExceptionHandler(NoteVersionConflictException ex) {
+    return ex.getMessage();
+  }
+
+  @ExceptionHandler(NotePreconditionFailedException.class)
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public String notePreconditionFailedExceptionHandler(NotePreconditionFailedException ex) {
+    return ex.getMessage();
+  }
+
+  @ExceptionHandler(InvalidNotePatchException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Map<String, String> invalidNotePatchExceptionHandler(InvalidNotePatchException ex) {
+    return ex.getErrors();
+  }
+
+  @ExceptionHandler(InvalidNoteQueryException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public String invalidNoteQueryExceptionHandler(InvalidNoteQueryException ex) {
+    return ex.getMessage();
+  }
+
+  @ExceptionHandler(SyncCursorExpiredException.class)
+  @ResponseStatus(HttpStatus.GONE)
+  public String syncCursorExpiredExceptionHandler(SyncCursorExpiredException ex) {
+    return ex.getMessage();
+  }
+
   @ExceptionHandler(MethodArgumentNotValidException.class)
   @ResponseStatus(HttpStatus.BAD_REQUEST)
   public Map<String, String> methodArgumentNotValidExceptionHandler(
       MethodArgumentNotValidException ex) {
+    return fieldErrors(ex.getBindingResult());
+  }
+
+  // WebFlux reports an invalid request body of the reactive profile with its own exception.
+  @ExceptionHandler(WebExchangeBindException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Map<String, String> webExchangeBindExceptionHandler(WebExchangeBindException ex) {
+    return fieldErrors(ex.getBindingResult());
+  }
+
+  // Method validation reports the invalid elements of a list body, keyed here by their index.
+  @ExceptionHandler(HandlerMethodValidationException.class)
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Map<String, String> handlerMethodValidationExceptionHandler(
+      HandlerMethodValidationException ex) {
+    var errors = new HashMap<String, String>();
+    ex.getAllValidationResults()
+        .forEach(
+            result -> {
+              if (result instanceof ParameterErrors parameterErrors) {
+                var prefix =
+                    parameterErrors.getContainerIndex() == null
+                        ? ""
+                        : "[" + parameterErrors.getContainerIndex() + "].";
+                parameterErrors
+                    .getFieldErrors()
+                    .forEach(
+                        error -> errors.put(prefix + error.getField(), error.getDefaultMessage()));
+              } else {
+                result
+                    .getResolvableErrors()
+                    .forEach(
+                        error ->
+                            errors.put(
+                                result.getMethodParameter().getParameterName(),
+                                error.getDefaultMessage()));
+              }
+            });
+    return errors;
+  }
+
+  private static Map<String, String> fieldErrors(BindingResult bindingResult) {
     var errors = new HashMap<String, String>();
-    ex.getBindingResult()
+    bindingResult
         .getAllErrors()
         .forEach(
             error -> {
@@ -0,0 +1,52 @@
+package io.lanki.noteservice.web;
+
+import io.lanki.noteservice.domain.Note;
+import io.lanki.noteservice.domain.NotePage;
+import io.lanki.noteservice.domain.NotePreconditionFailedException;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Strong entity tags derived from the optimistic lock version, so they change exactly when a note
+ * is written and are computed without serializing it.
+ */
+final class NoteETags {
+
+  private static final Pattern NOTE_ETAG = Pattern.compile("\"(\\d{1,18})-(\\d{1,9})\"");
+
+  private NoteETags() {}
+
+  static String of(Note note) {
+    return "\"" + note.getId() + "-" + note.getVersion() + "\"";
+  }
+
+  /** Changes whenever a note on the page, their order or the next cursor changes. */
+  static String of(NotePage page) {
+    var key = new StringBuilder();
+    for (var note : page.content()) {
+      key.append(note.getId()).append('-').append(note.getVersion()).append(',');
+    }
+    key.append(page.nextCursor());
+    var digest = DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8));
+    return "\"" + digest + "\"";
+  }
+
+  /**
+   * The version an If-Match header asks for, or {@code null} when there is no precondition.
+   *
+   * @throws NotePreconditionFailedException when none of the tags can match the note.
+   */
+  static Integer expectedVersion(Long id, String ifMatch) {
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    for (var tag : ifMatch.split(",")) {
+      var matcher = NOTE_ETAG.matcher(tag.trim());
+      if (matcher.matches() && Long.parseLong(matcher.group(1)) == id) {
+        return Integer.valueOf(matcher.group(2));
+      }
+    }
+    throw new NotePreconditionFailedException(id);
+  }
+}
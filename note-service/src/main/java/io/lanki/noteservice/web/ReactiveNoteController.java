@@ -0,0 +1,87 @@
+package io.lanki.noteservice.web;
+
+import io.lanki.noteservice.domain.Note;
+import io.lanki.noteservice.domain.NotePage;
+import io.lanki.noteservice.domain.NoteService;
+import io.lanki.noteservice.domain.ReactiveNoteService;
+import jakarta.validation.Valid;
+import java.security.Principal;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * The note CRUD endpoints of {@link NoteController} on WebFlux, for the reactive profile. Requests
+ * wait on the database without holding a thread.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping(path = "/v1/api/notes", produces = "application/json")
+@AllArgsConstructor
+public class ReactiveNoteController {
+
+  private final ReactiveNoteService noteService;
+
+  @GetMapping
+  public Mono<NotePage> get(
+      Principal principal,
+      @RequestParam(name = "cursor", required = false) String cursor,
+      @RequestParam(name = "sort", required = false) String sort,
+      @RequestParam(name = "size", defaultValue = "" + NoteService.DEFAULT_PAGE_SIZE) int size,
+      ServerWebExchange exchange) {
+    return noteService
+        .getPage(principal.getName(), cursor, sort, size)
+        .filter(page -> !exchange.checkNotModified(NoteETags.of(page)));
+  }
+
+  @GetMapping("/{id}")
+  public Mono<Note> getById(@PathVariable("id") Long id, ServerWebExchange exchange) {
+    return noteService
+        .get(id)
+        .doOnNext(
+            note ->
+                exchange.getResponse().getHeaders().setCacheControl(NoteController.CACHE_CONTROL))
+        .filter(note -> !exchange.checkNotModified(NoteETags.of(note)));
+  }
+
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public Mono<Note> post(Principal principal, @Valid @RequestBody Note note) {
+    return noteService.post(note, principal.getName());
+  }
+
+  @PutMapping("/{id}")
+  public Mono<ResponseEntity<Note>> put(
+      Principal principal,
+      @PathVariable("id") Long id,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+      @Valid @RequestBody Note note) {
+    return noteService
+        .put(id, note, NoteETags.expectedVersion(id, ifMatch), principal.getName())
+        .map(saved -> ResponseEntity.ok().eTag(NoteETags.of(saved)).body(saved));
+  }
+
+  @DeleteMapping("/{id}")
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public Mono<Void> delete(
+      Principal principal,
+      @PathVariable("id") Long id,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+    return noteService.delete(id, NoteETags.expectedVersion(id, ifMatch), principal.getName());
+  }
+}
@@ -0,0 +1,13 @@
+-- Note ids come from a pooled Hibernate sequence (allocation size 50) rather than the BIGSERIAL default.
+CREATE SEQUENCE IF NOT EXISTS notes_seq START WITH 1 INCREMENT BY 50;
+
+-- Align nullability with the Note entity now that Hibernate no longer generates the schema.
+ALTER TABLE notes ALTER COLUMN url DROP NOT NULL;
+ALTER TABLE notes ALTER COLUMN created_by DROP NOT NULL;
+ALTER TABLE notes ALTER COLUMN last_modified_by DROP NOT NULL;
+
+-- Keyset pagination of a user's notes, ordered by id or by next review date.
+CREATE INDEX IF NOT EXISTS notes_created_by_id_idx
+  ON notes (created_by, id);
+CREATE INDEX IF NOT EXISTS notes_created_by_next_review_date_id_idx
+  ON notes (created_by, next_review_date, id);
@@ -0,0 +1,12 @@
+-- Title matches rank above content matches.
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS search_vector tsvector
+  GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(title, '')), 'A')
+      || setweight(to_tsvector('english', coalesce(content, '')), 'B')
+  ) STORED;
+
+-- btree_gin lets the owner and the search terms share a single GIN index.
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+CREATE INDEX IF NOT EXISTS notes_created_by_search_vector_idx
+  ON notes USING GIN (created_by, search_vector);
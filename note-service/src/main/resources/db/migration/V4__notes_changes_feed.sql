@@ -0,0 +1,20 @@
+-- Deleted notes are kept as tombstones so the changes feed can report them.
+ALTER TABLE notes ADD COLUMN deleted boolean NOT NULL DEFAULT false;
+
+-- ID of the transaction that last wrote the row. Every transaction with an ID below the xmin of a
+-- snapshot has finished, so rows below it can no longer show up out of order, which timestamps and
+-- sequence values taken before commit cannot guarantee.
+ALTER TABLE notes ADD COLUMN change_xid xid8 NOT NULL DEFAULT pg_current_xact_id();
+
+CREATE FUNCTION notes_set_change_xid() RETURNS trigger AS $$
+BEGIN
+  NEW.change_xid := pg_current_xact_id();
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER notes_set_change_xid
+  BEFORE INSERT OR UPDATE ON notes
+  FOR EACH ROW EXECUTE FUNCTION notes_set_change_xid();
+
+CREATE INDEX notes_created_by_change_xid_id_idx ON notes (created_by, change_xid, id);
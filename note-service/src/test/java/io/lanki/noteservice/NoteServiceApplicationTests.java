@@ -7,7 +7,11 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import dasniko.testcontainers.keycloak.KeycloakContainer;
 import io.lanki.noteservice.domain.Note;
 import io.lanki.noteservice.domain.Note.NoteType;
+import io.lanki.noteservice.domain.NoteImportFailure;
+import io.lanki.noteservice.domain.NoteImportResult;
+import io.lanki.noteservice.domain.NotePage;
 import io.lanki.noteservice.domain.NoteRepository;
+import java.util.List;
 import java.util.stream.Collectors;
 import org.apache.http.HttpHeaders;
 import org.junit.jupiter.api.BeforeAll;
@@ -72,16 +76,27 @@ class NoteServiceApplicationTests {
   }
 
   @Test
-  @DisplayName("Test GET request for an empty list of notes")
+  @DisplayName("Test GET request for an empty page of notes")
   public void testGetRequestAllEmpty() {
     webTestClient
         .get()
         .uri("/v1/api/notes")
+        .headers(httpHeaders -> httpHeaders.setBearerAuth(isabelleTokens.accessToken()))
         .exchange()
         .expectStatus()
         .is2xxSuccessful()
-        .expectBodyList(Note.class)
-        .value(list -> assertThat(list).isEmpty());
+        .expectBody(NotePage.class)
+        .value(
+            page -> {
+              assertThat(page.content()).isEmpty();
+              assertThat(page.nextCursor()).isNull();
+            });
+  }
+
+  @Test
+  @DisplayName("Test GET request for a page of notes unauthenticated")
+  public void testGetRequestAllUnauthenticated() {
+    webTestClient.get().uri("/v1/api/notes").exchange().expectStatus().isUnauthorized();
   }
 
   @Test
@@ -107,12 +122,14 @@ class NoteServiceApplicationTests {
     webTestClient
         .get()
         .uri("/v1/api/notes")
+        .headers(httpHeaders -> httpHeaders.setBearerAuth(isabelleTokens.accessToken()))
         .exchange()
         .expectStatus()
         .is2xxSuccessful()
-        .expectBodyList(Note.class)
+        .expectBody(NotePage.class)
         .value(
-            list -> {
+            page -> {
+              var list = page.content();
               assertThat(list).hasSize(1);
               assertThat(list.get(0).getTitle()).isEqualTo(expectedNote.getTitle());
               assertThat(list.get(0).getContent()).isEqualTo(expectedNote.getContent());
@@ -169,12 +186,14 @@ class NoteServiceApplicationTests {
     webTestClient
         .get()
         .uri("/v1/api/notes")
+        .headers(httpHeaders -> httpHeaders.setBearerAuth(isabelleTokens.accessToken()))
         .exchange()
         .expectStatus()
         .is2xxSuccessful()
-        .expectBodyList(Note.class)
+        .expectBody(NotePage.class)
         .value(
-            list -> {
+            page -> {
+              var list = page.content();
               assertThat(list).hasSize(2);
               assertThat(
                       list.stream()
@@ -185,6 +204,113 @@ class NoteServiceApplicationTests {
                           .collect(Collectors.toList()))
                   .hasSize(2);
             });
+
+    // Notes are scoped to the user who created them.
+    webTestClient
+        .get()
+        .uri("/v1/api/notes")
+        .headers(httpHeaders -> httpHeaders.setBearerAuth(bjornTokens.accessToken()))
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBody(NotePage.class)
+        .value(page -> assertThat(page.content()).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Test GET request for notes spanning more than one page")
+  public void testGetRequestAllPaginated() {
+    for (int i = 0; i < 3; i++) {
+      webTestClient
+          .post()
+          .uri("/v1/api/notes")
+          .headers(httpHeaders -> httpHeaders.setBearerAuth(isabelleTokens.accessToken()))
+          .bodyValue(
+              Note.builder()
+                  .title("title_" + i)
+                  .content("content_" + i)
+                  .type(NoteType.PERSONAL)
+                  .score(100)
+                  .build())
+          .exchange()
+          .expectStatus()
+          .isCreated();
+    }
+
+    NotePage first =
+        webTestClient
+            .get()
+            .uri("/v1/api/notes?size=2")
+            .headers(httpHeaders -> httpHeaders.setBearerAuth(isabelleTokens.accessToken()))
+            .exchange()
+            .expectStatus()
+            .is2xxSuccessful()
+            .expectBody(NotePage.class)
+            .returnResult()
+            .getResponseBody();
+
+    assertThat(first.content()).hasSize(2);
+    assertThat(first.nextCursor()).isNotNull();
+
+    webTestClient
+        .get()
+        .uri(
+            uriBuilder ->
+                uriBuilder
+                    .path("/v1/api/notes")
+                    .queryParam("size", 2)
+                    .queryParam("cursor", first.nextCursor())
+                    .build())
+        .headers(httpHeaders -> httpHeaders.setBearerAuth(isabelleTokens.accessToken()))
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBody(NotePage.class)
+        .value(
+            page -> {
+              assertThat(page.content()).hasSize(1);
+              assertThat(page.content().get(0).getTitle()).isEqualTo("title_2");
+              assertThat(page.nextCursor()).isNull();
+            });
+  }
+
+  @Test
+  @DisplayName("Test POST import request with valid and invalid notes authenticated ROLE basic")
+  public void testImportRequestAuthenticatedRoleBasic() {
+    var notes =
+        List.of(
+            Note.builder().title("title_1").content("content_1").type(NoteType.PERSONAL).build(),
+            Note.builder().content("content_2").type(NoteType.PERSONAL).build(),
+            Note.builder().title("title_3").content("content_3").type(NoteType.LEETCODE).build());
+
+    webTestClient
+        .post()
+        .uri("/v1/api/notes/import")
+        .headers(httpHeaders -> httpHeaders.setBearerAuth(isabelleTokens.accessToken()))
+        .bodyValue(notes)
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBody(NoteImportResult.class)
+        .value(
+            result -> {
+              assertThat(result.imported()).isEqualTo(2);
+              assertThat(result.failures()).extracting(NoteImportFailure::index).containsExactly(1);
+            });
+
+    webTestClient
+        .get()
+        .uri("/v1/api/notes")
+        .headers(httpHeaders -> httpHeaders.setBearerAuth(isabelleTokens.accessToken()))
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBody(NotePage.class)
+        .value(
+            page ->
+                assertThat(page.content())
+                    .extracting(Note::getTitle)
+                    .containsExactly("title_1", "title_3"));
   }
 
   @Test
@@ -0,0 +1,148 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.lanki.noteservice.config.DataConfig;
+import io.lanki.noteservice.domain.Note.NoteType;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
+
+@DataJpaTest
+@Import(DataConfig.class)
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@ActiveProfiles("integration")
+@WithMockUser("bob")
+public class InMemoryNoteSearchTests {
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private NoteRepository noteRepository;
+
+  @Autowired private TestEntityManager testEntityManager;
+
+  private InMemoryNoteSearch noteSearch;
+
+  @BeforeEach
+  public void setup() {
+    noteSearch = search(DataSize.ofMegabytes(64));
+  }
+
+  @Test
+  @DisplayName("Test search matches prefixes and ranks title matches first")
+  public void testSearchRanked() {
+    var inContent = persist("Graphs", "Breadth first search of a binary tree");
+    var inTitle = persist("Binary search", "Halve the interval every step");
+    persist("Heaps", "Priority queues");
+
+    NoteSearchPage page = noteSearch.search("bob", "bin sear", null, 10);
+
+    assertThat(page.content())
+        .extracting(hit -> hit.note().getId())
+        .containsExactly(inTitle.getId(), inContent.getId());
+    assertThat(page.content().get(1).snippet())
+        .isEqualTo("Breadth first <mark>search</mark> of a <mark>binary</mark> tree");
+    assertThat(page.nextCursor()).isNull();
+  }
+
+  @Test
+  @DisplayName("Test search pages through hits with a cursor")
+  public void testSearchPaginated() {
+    persist("Tree one", "content");
+    persist("Tree two", "content");
+    persist("Tree three", "content");
+
+    NoteSearchPage first = noteSearch.search("bob", "tree", null, 2);
+    NoteSearchPage second = noteSearch.search("bob", "tree", first.nextCursor(), 2);
+
+    assertThat(first.content()).hasSize(2);
+    assertThat(first.nextCursor()).isNotNull();
+    assertThat(second.content()).hasSize(1);
+    assertThat(second.nextCursor()).isNull();
+    assertThat(second.content().get(0).note().getId())
+        .isNotIn(first.content().stream().map(hit -> hit.note().getId()).toList());
+  }
+
+  @Test
+  @DisplayName("Test search is scoped to the owner")
+  public void testSearchOtherOwner() {
+    persist("Binary search", "content");
+
+    assertThat(noteSearch.search("alice", "binary", null, 10).content()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test search without terms")
+  public void testSearchWithoutTerms() {
+    assertThatThrownBy(() -> noteSearch.search("bob", " & | ", null, 10))
+        .isInstanceOf(InvalidNoteQueryException.class)
+        .hasMessage("query must be defined");
+  }
+
+  @Test
+  @DisplayName("Test search keeps the index current from note change events")
+  public void testSearchAfterChanges() {
+    var note = persist("Binary search", "content");
+    assertThat(noteSearch.search("bob", "binary", null, 10).content()).hasSize(1);
+
+    note.setTitle("Linear search");
+    testEntityManager.persistAndFlush(note);
+    noteSearch.onNoteChanged(NoteChangedEvent.updated(note));
+    var added = persist("Binary tree", "content");
+    noteSearch.onNoteChanged(NoteChangedEvent.created(added));
+
+    assertThat(noteSearch.search("bob", "binary", null, 10).content())
+        .extracting(hit -> hit.note().getId())
+        .containsExactly(added.getId());
+    assertThat(noteSearch.search("bob", "linear", null, 10).content())
+        .extracting(hit -> hit.note().getId())
+        .containsExactly(note.getId());
+
+    noteSearch.onNoteChanged(NoteChangedEvent.deleted(added));
+
+    assertThat(noteSearch.search("bob", "binary", null, 10).content()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test indexes beyond the memory budget are dropped least recently used first")
+  public void testMemoryBudget() {
+    persist("Binary search", "content");
+    noteSearch = search(DataSize.ofBytes(1));
+
+    noteSearch.search("bob", "binary", null, 10);
+
+    assertThat(noteSearch.isIndexed("bob")).isFalse();
+    assertThat(noteSearch.usedBytes()).isZero();
+  }
+
+  @Test
+  @DisplayName("Test snippet marks matched words around the first match")
+  public void testSnippet() {
+    var content = "x".repeat(100) + " then binary search";
+
+    assertThat(InMemoryNoteSearch.snippet(content, List.of("bin")))
+        .isEqualTo("then <mark>binary</mark> search");
+  }
+
+  private InMemoryNoteSearch search(DataSize memoryBudget) {
+    return new InMemoryNoteSearch(
+        jdbcTemplate, noteRepository, new NoteSearchProperties("in-memory", memoryBudget));
+  }
+
+  private Note persist(String title, String content) {
+    var note = Note.builder().title(title).content(content).type(NoteType.PERSONAL).build();
+    return testEntityManager.persistAndFlush(note);
+  }
+}
@@ -0,0 +1,142 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lanki.noteservice.domain.Note.NoteType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+public class NoteCacheTests {
+
+  private SimpleMeterRegistry meterRegistry;
+
+  private NoteCache noteCache;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    var beanFactory = new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry));
+    noteCache =
+        new NoteCache(
+            new NoteCacheProperties(100, Duration.ofMinutes(5)),
+            beanFactory.getBeanProvider(MeterRegistry.class));
+  }
+
+  @Test
+  @DisplayName("Test get loads a note once and then serves it from the cache")
+  public void testGetReadThrough() {
+    var loads = new AtomicInteger();
+    var note = note(1L);
+    Function<Long, Optional<Note>> loader =
+        id -> {
+          loads.incrementAndGet();
+          return Optional.of(note);
+        };
+
+    noteCache.get(1L, loader);
+    Optional<Note> cached = noteCache.get(1L, loader);
+
+    assertThat(cached).containsSame(note);
+    assertThat(loads).hasValue(1);
+  }
+
+  @Test
+  @DisplayName("Test get does not cache absent notes")
+  public void testGetAbsent() {
+    var loads = new AtomicInteger();
+    Function<Long, Optional<Note>> loader =
+        id -> {
+          loads.incrementAndGet();
+          return Optional.empty();
+        };
+
+    noteCache.get(1L, loader);
+    noteCache.get(1L, loader);
+
+    assertThat(loads).hasValue(2);
+    assertThat(noteCache.stats().missCount()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Test a note evicted while it is loaded is not cached")
+  public void testEvictWhileLoading() {
+    var loads = new AtomicInteger();
+    var note = note(1L);
+    Function<Long, Optional<Note>> loader =
+        id -> {
+          if (loads.incrementAndGet() == 1) {
+            // A write commits after the note was read.
+            noteCache.evict(id);
+          }
+          return Optional.of(note);
+        };
+
+    assertThat(noteCache.get(1L, loader)).containsSame(note);
+    noteCache.get(1L, loader);
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  @DisplayName("Test a note change evicts the cached note")
+  public void testEvictOnChange() {
+    var note = note(1L);
+    noteCache.get(1L, id -> Optional.of(note));
+
+    noteCache.onNoteChanged(NoteChangedEvent.deleted(note));
+
+    assertThat(noteCache.get(1L, id -> Optional.empty())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test a remote change evicts older versions only")
+  public void testEvictOnRemoteChange() {
+    var note = note(1L);
+    note.setVersion(2);
+    noteCache.get(1L, id -> Optional.of(note));
+
+    noteCache.onRemoteNoteChanged(new RemoteNoteChangedEvent(1L, "bob", 1));
+    assertThat(noteCache.get(1L, id -> Optional.empty())).containsSame(note);
+
+    noteCache.onRemoteNoteChanged(new RemoteNoteChangedEvent(1L, "bob", 3));
+    assertThat(noteCache.get(1L, id -> Optional.empty())).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test cache statistics are published to the meter registry")
+  public void testMetrics() {
+    noteCache.get(1L, id -> Optional.of(note(1L)));
+    noteCache.get(1L, id -> Optional.of(note(1L)));
+
+    assertThat(
+            meterRegistry
+                .get("cache.gets")
+                .tags("cache", NoteCache.NAME, "result", "hit")
+                .functionCounter()
+                .count())
+        .isEqualTo(1);
+    assertThat(
+            meterRegistry
+                .get("cache.gets")
+                .tags("cache", NoteCache.NAME, "result", "miss")
+                .functionCounter()
+                .count())
+        .isEqualTo(1);
+  }
+
+  private static Note note(long id) {
+    var note = Note.builder().title("title").content("content").type(NoteType.PERSONAL).build();
+    note.setId(id);
+    note.setCreatedBy("bob");
+    return note;
+  }
+}
@@ -0,0 +1,158 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.lanki.noteservice.config.DataConfig;
+import io.lanki.noteservice.domain.Note.NoteType;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+// The feed only returns changes of finished transactions, so every write is committed right away.
+@DataJpaTest
+@Import(DataConfig.class)
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@ActiveProfiles("integration")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@WithMockUser("bob")
+public class NoteChangeFeedTests {
+
+  private static final Duration RETENTION = Duration.ofDays(30);
+
+  @Autowired private NoteRepository noteRepository;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  private NoteChangeFeed noteChangeFeed;
+
+  @BeforeEach
+  public void setup() {
+    jdbcTemplate.update("DELETE FROM notes");
+    noteChangeFeed = feed(Clock.systemUTC());
+  }
+
+  @AfterEach
+  public void cleanup() {
+    jdbcTemplate.update("DELETE FROM notes");
+  }
+
+  @Test
+  @DisplayName("Test changes from scratch return the current notes without tombstones")
+  public void testChangesInitial() {
+    var kept = save("kept");
+    delete(save("deleted"));
+
+    NoteChangePage page = noteChangeFeed.changes("bob", null, 10);
+
+    assertThat(page.changes()).extracting(NoteChange::id).containsExactly(kept.getId());
+    assertThat(page.changes().get(0).note().getTitle()).isEqualTo("kept");
+    assertThat(page.hasMore()).isFalse();
+    assertThat(page.nextCursor()).isNotNull();
+  }
+
+  @Test
+  @DisplayName("Test changes since a cursor return only later updates and deletions")
+  public void testChangesSinceCursor() {
+    var unchanged = save("unchanged");
+    var updated = save("updated");
+    var deleted = save("deleted");
+    var cursor = noteChangeFeed.changes("bob", null, 10).nextCursor();
+
+    updated.setTitle("updated twice");
+    noteRepository.save(updated);
+    delete(deleted);
+    var created = save("created");
+
+    NoteChangePage page = noteChangeFeed.changes("bob", cursor, 10);
+
+    assertThat(page.changes())
+        .extracting(NoteChange::id)
+        .containsExactly(updated.getId(), deleted.getId(), created.getId())
+        .doesNotContain(unchanged.getId());
+    assertThat(page.changes().get(0).note().getTitle()).isEqualTo("updated twice");
+    assertThat(page.changes().get(1).deleted()).isTrue();
+    assertThat(page.changes().get(1).note()).isNull();
+    assertThat(noteChangeFeed.changes("bob", page.nextCursor(), 10).changes()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test changes are paged")
+  public void testChangesPaged() {
+    save("one");
+    save("two");
+    save("three");
+
+    NoteChangePage first = noteChangeFeed.changes("bob", null, 2);
+    NoteChangePage second = noteChangeFeed.changes("bob", first.nextCursor(), 2);
+
+    assertThat(first.changes()).hasSize(2);
+    assertThat(first.hasMore()).isTrue();
+    assertThat(second.changes()).hasSize(1);
+    assertThat(second.hasMore()).isFalse();
+  }
+
+  @Test
+  @DisplayName("Test changes are scoped to the owner")
+  public void testChangesOtherOwner() {
+    save("bob's");
+
+    assertThat(noteChangeFeed.changes("alice", null, 10).changes()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test a cursor older than the tombstone retention has expired")
+  public void testChangesExpiredCursor() {
+    var cursor = noteChangeFeed.changes("bob", null, 10).nextCursor();
+    var later = feed(Clock.offset(Clock.systemUTC(), RETENTION.plusDays(1)));
+
+    assertThatThrownBy(() -> later.changes("bob", cursor, 10))
+        .isInstanceOf(SyncCursorExpiredException.class);
+  }
+
+  @Test
+  @DisplayName("Test purge deletes tombstones past the retention only")
+  public void testPurgeTombstones() {
+    var kept = save("kept");
+    delete(save("deleted"));
+    var later =
+        feed(
+            Clock.fixed(
+                Instant.now().plus(RETENTION).plus(NoteChangeFeed.PURGE_MARGIN).plusSeconds(60),
+                ZoneOffset.UTC));
+
+    later.purgeTombstones();
+
+    assertThat(jdbcTemplate.queryForList("SELECT id FROM notes", Long.class))
+        .containsExactly(kept.getId());
+  }
+
+  private NoteChangeFeed feed(Clock clock) {
+    return new NoteChangeFeed(jdbcTemplate, new NoteSyncProperties(RETENTION), clock);
+  }
+
+  private Note save(String title) {
+    return noteRepository.save(
+        Note.builder().title(title).content("content").type(NoteType.PERSONAL).build());
+  }
+
+  private void delete(Note note) {
+    note.setDeleted(true);
+    noteRepository.save(note);
+  }
+}
@@ -0,0 +1,141 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.lanki.noteservice.domain.Note.NoteType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.Validation;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class NoteImporterTests {
+
+  private EntityManager entityManager;
+
+  private NoteImporter noteImporter;
+
+  @BeforeEach
+  public void setup() {
+    entityManager = mock(EntityManager.class);
+    noteImporter =
+        new NoteImporter(
+            entityManager,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            Validation.buildDefaultValidatorFactory().getValidator(),
+            new NoteImportProperties(2),
+            mock(ApplicationEventPublisher.class));
+  }
+
+  @Test
+  @DisplayName("Test import persists valid notes in chunks")
+  public void testImportInChunks() {
+    var notes = List.of(note("title_1"), note("title_2"), note("title_3"));
+
+    NoteImportResult result = noteImporter.importNotes(notes.iterator());
+
+    assertThat(result.imported()).isEqualTo(3);
+    assertThat(result.failures()).isEmpty();
+    verify(entityManager, times(3)).persist(any(Note.class));
+    // Two chunks: [title_1, title_2] and [title_3].
+    verify(entityManager, times(2)).flush();
+    verify(entityManager, times(2)).clear();
+  }
+
+  @Test
+  @DisplayName("Test import reports invalid notes and keeps importing")
+  public void testImportInvalidNotes() {
+    var notes = List.of(note("title_1"), note(""), note("title_3"));
+
+    NoteImportResult result = noteImporter.importNotes(notes.iterator());
+
+    assertThat(result.imported()).isEqualTo(2);
+    assertThat(result.failures())
+        .containsExactly(new NoteImportFailure(1, Map.of("title", "title must be defined")));
+  }
+
+  @Test
+  @DisplayName("Test import resets the ID and version of imported notes")
+  public void testImportResetsIdAndVersion() {
+    var note = note("title");
+    note.setId(42L);
+    note.setVersion(7);
+
+    noteImporter.importNotes(List.of(note).iterator());
+
+    assertThat(note.getId()).isNull();
+    assertThat(note.getVersion()).isZero();
+  }
+
+  @Test
+  @DisplayName("Test import reports every note of a chunk that could not be saved")
+  public void testImportChunkFailure() {
+    doThrow(new PersistenceException("boom")).when(entityManager).flush();
+
+    NoteImportResult result =
+        noteImporter.importNotes(List.of(note("title_1"), note("title_2")).iterator());
+
+    assertThat(result.imported()).isZero();
+    assertThat(result.failures()).extracting(NoteImportFailure::index).containsExactly(0, 1);
+  }
+
+  @Test
+  @DisplayName("Test import retries a failed chunk note by note to report the rejected note")
+  public void testImportChunkFailureRetried() {
+    var rejected = note("title_2");
+    doThrow(new PersistenceException("boom")).when(entityManager).persist(rejected);
+
+    NoteImportResult result =
+        noteImporter.importNotes(List.of(note("title_1"), rejected, note("title_3")).iterator());
+
+    assertThat(result.imported()).isEqualTo(2);
+    assertThat(result.failures())
+        .containsExactly(new NoteImportFailure(1, Map.of("note", "note could not be saved")));
+  }
+
+  @Test
+  @DisplayName("Test import stops at a malformed note and keeps what was imported")
+  public void testImportMalformedNote() {
+    var first = note("title_1");
+    Iterator<Note> notes =
+        new Iterator<>() {
+          private int calls;
+
+          @Override
+          public boolean hasNext() {
+            return true;
+          }
+
+          @Override
+          public Note next() {
+            if (calls++ == 0) {
+              return first;
+            }
+            throw new NoSuchElementException("malformed");
+          }
+        };
+
+    NoteImportResult result = noteImporter.importNotes(notes);
+
+    assertThat(result.imported()).isEqualTo(1);
+    assertThat(result.failures())
+        .containsExactly(new NoteImportFailure(1, Map.of("note", "malformed note")));
+  }
+
+  private static Note note(String title) {
+    return Note.builder().title(title).content("content").type(NoteType.PERSONAL).build();
+  }
+}
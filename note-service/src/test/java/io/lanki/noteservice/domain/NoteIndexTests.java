@@ -0,0 +1,99 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lanki.noteservice.domain.NoteIndex.Match;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class NoteIndexTests {
+
+  @Test
+  @DisplayName("Test posting list decodes the documents and weights it encoded")
+  public void testPostingListRoundTrip() {
+    var list = new PostingList();
+    var docs = new int[] {0, 1, 127, 128, 20_000, 3_000_000};
+    for (var doc : docs) {
+      list.add(doc, doc % 3 + 1);
+    }
+
+    var decoded = new ArrayList<int[]>();
+    list.forEach((doc, weight) -> decoded.add(new int[] {doc, weight}));
+
+    assertThat(decoded).hasSize(docs.length);
+    for (var i = 0; i < docs.length; i++) {
+      assertThat(decoded.get(i)).containsExactly(docs[i], docs[i] % 3 + 1);
+    }
+  }
+
+  @Test
+  @DisplayName("Test search matches every prefix and ranks title matches first")
+  public void testSearchRanked() {
+    var index = new NoteIndex();
+    index.put(1L, "Graphs", "Breadth first search of a binary tree");
+    index.put(2L, "Binary search", "Halve the interval every step");
+    index.put(3L, "Heaps", "Binary heaps are priority queues");
+
+    List<Match> matches = index.search(List.of("bin", "sear"), Float.POSITIVE_INFINITY, 0L, 10);
+
+    assertThat(matches).extracting(Match::noteId).containsExactly(2L, 1L);
+    assertThat(matches.get(0).rank()).isGreaterThan(matches.get(1).rank());
+  }
+
+  @Test
+  @DisplayName("Test search continues after the keyset position")
+  public void testSearchAfter() {
+    var index = new NoteIndex();
+    index.put(1L, "Tree one", "content");
+    index.put(2L, "Tree two", "content");
+    index.put(3L, "Tree three", "content");
+
+    List<Match> first = index.search(List.of("tree"), Float.POSITIVE_INFINITY, 0L, 2);
+    var last = first.get(1);
+    List<Match> second = index.search(List.of("tree"), last.rank(), last.noteId(), 2);
+
+    assertThat(first).extracting(Match::noteId).containsExactly(1L, 2L);
+    assertThat(second).extracting(Match::noteId).containsExactly(3L);
+  }
+
+  @Test
+  @DisplayName("Test search reflects changed and removed notes")
+  public void testPutAndRemove() {
+    var index = new NoteIndex();
+    index.put(1L, "Binary search", "content");
+    index.put(2L, "Binary tree", "content");
+
+    index.put(1L, "Linear search", "content");
+    index.remove(2L);
+
+    assertThat(index.search(List.of("binary"), Float.POSITIVE_INFINITY, 0L, 10)).isEmpty();
+    assertThat(index.search(List.of("linear"), Float.POSITIVE_INFINITY, 0L, 10))
+        .extracting(Match::noteId)
+        .containsExactly(1L);
+  }
+
+  @Test
+  @DisplayName("Test index asks for compaction once most ordinals are deleted")
+  public void testNeedsCompaction() {
+    var index = new NoteIndex();
+    index.put(1L, "title", "content");
+
+    for (var i = 0; i < 100; i++) {
+      index.put(1L, "title " + i, "content");
+    }
+
+    assertThat(index.needsCompaction()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Test terms are lower-cased words")
+  public void testTerms() {
+    assertThat(NoteIndex.terms("Binary-Search, O(log n)"))
+        .containsExactly("binary", "search", "o", "log", "n");
+    assertThat(NoteIndex.terms("a".repeat(NoteIndex.MAX_TERM_LENGTH + 1) + " b"))
+        .containsExactly("b");
+    assertThat(NoteIndex.terms(null)).isEmpty();
+  }
+}
@@ -0,0 +1,66 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class NoteInvalidationBusTests {
+
+  @Test
+  @DisplayName("Test a batch of changes round-trips through a notification payload")
+  public void testEncodeDecode() {
+    var changes =
+        List.of(NoteChangedEvent.reviewed(1L, "bob", 3), NoteChangedEvent.reviewed(2L, "alice", 0));
+
+    List<String> payloads = NoteInvalidationBus.encode("replica-a", changes);
+
+    assertThat(payloads).hasSize(1);
+    assertThat(NoteInvalidationBus.decode("replica-b", payloads.get(0)))
+        .containsExactly(
+            new RemoteNoteChangedEvent(1L, "bob", 3), new RemoteNoteChangedEvent(2L, "alice", 0));
+  }
+
+  @Test
+  @DisplayName("Test a replica ignores its own notifications")
+  public void testDecodeOwnPayload() {
+    var payloads =
+        NoteInvalidationBus.encode("replica-a", List.of(NoteChangedEvent.reviewed(1L, "bob", 3)));
+
+    assertThat(NoteInvalidationBus.decode("replica-a", payloads.get(0))).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test large batches are split to fit the payload limit")
+  public void testEncodeSplits() {
+    var changes =
+        IntStream.range(0, 1_000)
+            .mapToObj(i -> NoteChangedEvent.reviewed((long) i, "owner-" + i, i))
+            .toList();
+
+    List<String> payloads = NoteInvalidationBus.encode("replica-a", changes);
+
+    assertThat(payloads).hasSizeGreaterThan(1);
+    assertThat(payloads)
+        .allMatch(payload -> payload.length() <= NoteInvalidationBus.MAX_PAYLOAD_BYTES);
+    var decoded = new ArrayList<RemoteNoteChangedEvent>();
+    payloads.forEach(payload -> decoded.addAll(NoteInvalidationBus.decode("replica-b", payload)));
+    assertThat(decoded).extracting(RemoteNoteChangedEvent::id).hasSize(1_000);
+  }
+
+  @Test
+  @DisplayName("Test malformed lines are skipped")
+  public void testDecodeMalformed() {
+    assertThat(NoteInvalidationBus.decode("replica-b", "replica-a\n1\tx\tbob\n2\t1\tbob\n3"))
+        .containsExactly(new RemoteNoteChangedEvent(2L, "bob", 1));
+  }
+
+  @Test
+  @DisplayName("Test nothing is sent for an empty batch")
+  public void testEncodeEmpty() {
+    assertThat(NoteInvalidationBus.encode("replica-a", List.of())).isEmpty();
+  }
+}
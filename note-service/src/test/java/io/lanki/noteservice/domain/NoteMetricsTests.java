@@ -0,0 +1,86 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.lanki.noteservice.domain.Note.NoteType;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class NoteMetricsTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+  private final NoteMetrics noteMetrics = new NoteMetrics(observationRegistry);
+
+  @BeforeEach
+  public void setUp() {
+    observationRegistry
+        .observationConfig()
+        .observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+  }
+
+  @Test
+  @DisplayName("Test record an operation tagged with the type of the returned note")
+  public void testRecordTypeOfResult() {
+    var note = Note.builder().id(1L).type(NoteType.LEETCODE).build();
+
+    assertThat(noteMetrics.record("get", null, () -> note)).isSameAs(note);
+
+    var timer =
+        meterRegistry
+            .get(NoteMetrics.OPERATIONS)
+            .tags("operation", "get", "outcome", "success", "type", "LEETCODE", "error", "none")
+            .timer();
+    assertThat(timer.count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test record a failed operation with its outcome")
+  public void testRecordFailure() {
+    assertThatThrownBy(
+            () ->
+                noteMetrics.record(
+                    "put",
+                    NoteType.PERSONAL,
+                    () -> {
+                      throw new NotePreconditionFailedException(1L);
+                    }))
+        .isInstanceOf(NotePreconditionFailedException.class);
+
+    var timer =
+        meterRegistry
+            .get(NoteMetrics.OPERATIONS)
+            .tags(
+                "operation",
+                "put",
+                "outcome",
+                "precondition_failed",
+                "type",
+                "PERSONAL",
+                "error",
+                "NotePreconditionFailedException")
+            .timer();
+    assertThat(timer.count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test record an operation without a note")
+  public void testRecordWithoutNote() {
+    noteMetrics.record("delete", null, () -> {});
+
+    assertThat(
+            meterRegistry
+                .get(NoteMetrics.OPERATIONS)
+                .tags("operation", "delete", "outcome", "success", "type", "none")
+                .timer()
+                .count())
+        .isEqualTo(1);
+  }
+}
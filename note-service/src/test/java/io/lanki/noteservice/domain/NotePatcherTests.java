@@ -0,0 +1,144 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.lanki.noteservice.config.DataConfig;
+import io.lanki.noteservice.domain.Note.NoteType;
+import jakarta.validation.Validation;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+
+@DataJpaTest
+@Import(DataConfig.class)
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@ActiveProfiles("integration")
+@WithMockUser("bob")
+public class NotePatcherTests {
+
+  @Autowired private NoteRepository noteRepository;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private TestEntityManager testEntityManager;
+
+  private ReviewQueue reviewQueue;
+
+  private NotePatcher notePatcher;
+
+  @BeforeEach
+  public void setup() {
+    reviewQueue = mock(ReviewQueue.class);
+    notePatcher =
+        new NotePatcher(
+            jdbcTemplate,
+            noteRepository,
+            reviewQueue,
+            Validation.buildDefaultValidatorFactory().getValidator(),
+            new ObjectMapper().registerModule(new JavaTimeModule()),
+            mock(ApplicationEventPublisher.class));
+  }
+
+  @Test
+  @DisplayName("Test patch updates only the given fields and bumps the version")
+  public void testPatch() {
+    var note = persist();
+
+    Note patched =
+        notePatcher.patch(
+            note.getId(), "bob", Map.of("version", note.getVersion(), "title", "new_title"));
+
+    assertThat(patched.getTitle()).isEqualTo("new_title");
+    assertThat(patched.getContent()).isEqualTo(note.getContent());
+    assertThat(patched.getType()).isEqualTo(note.getType());
+    assertThat(patched.getScore()).isEqualTo(note.getScore());
+    assertThat(patched.getVersion()).isEqualTo(note.getVersion() + 1);
+    verify(reviewQueue).update(patched);
+  }
+
+  @Test
+  @DisplayName("Test patch with an outdated version")
+  public void testPatchVersionConflict() {
+    var note = persist();
+
+    assertThatThrownBy(
+            () ->
+                notePatcher.patch(
+                    note.getId(),
+                    "bob",
+                    Map.of("version", note.getVersion() + 1, "title", "new_title")))
+        .isInstanceOf(NoteVersionConflictException.class);
+  }
+
+  @Test
+  @DisplayName("Test patch a note of another user")
+  public void testPatchOtherOwner() {
+    var note = persist();
+
+    assertThatThrownBy(
+            () ->
+                notePatcher.patch(
+                    note.getId(), "alice", Map.of("version", note.getVersion(), "score", 10)))
+        .isInstanceOf(NoteNotFoundException.class);
+  }
+
+  @Test
+  @DisplayName("Test patch with invalid fields")
+  public void testPatchInvalid() {
+    var note = persist();
+    var patch = new HashMap<String, Object>();
+    patch.put("title", null);
+    patch.put("score", 101);
+    patch.put("type", "UNKNOWN");
+    patch.put("created_by", "alice");
+
+    assertThatThrownBy(() -> notePatcher.patch(note.getId(), "bob", patch))
+        .isInstanceOf(InvalidNotePatchException.class)
+        .extracting(ex -> ((InvalidNotePatchException) ex).getErrors())
+        .isEqualTo(
+            Map.of(
+                "title", "title must be defined",
+                "score", "must be less than or equal to 100",
+                "type", "invalid value",
+                "created_by", "cannot be modified",
+                "version", "version must be defined"));
+  }
+
+  @Test
+  @DisplayName("Test patch removing a field which is required")
+  public void testPatchRequiredFieldRemoved() {
+    var note = persist();
+    var patch = new HashMap<String, Object>();
+    patch.put("version", note.getVersion());
+    patch.put("next_review_date", null);
+    patch.put("url", null);
+
+    assertThatThrownBy(() -> notePatcher.patch(note.getId(), "bob", patch))
+        .isInstanceOf(InvalidNotePatchException.class)
+        .extracting(ex -> ((InvalidNotePatchException) ex).getErrors())
+        .isEqualTo(Map.of("next_review_date", "next_review_date must be defined"));
+  }
+
+  private Note persist() {
+    var note =
+        Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
+    return testEntityManager.persistFlushFind(note);
+  }
+}
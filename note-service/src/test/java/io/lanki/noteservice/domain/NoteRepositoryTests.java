@@ -4,6 +4,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import io.lanki.noteservice.config.DataConfig;
 import io.lanki.noteservice.domain.Note.NoteType;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -16,6 +19,7 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 
@@ -136,6 +140,64 @@ public class NoteRepositoryTests {
     assertThat(result.getLastModifiedBy()).isEqualTo("bob");
   }
 
+  @Test
+  @DisplayName("Test find notes of an owner after a keyset position ordered by ID")
+  @WithMockUser("bob")
+  public void testFindByCreatedByAfterId() {
+    var n1 = noteRepository.save(note("title_1", Instant.now()));
+    var n2 = noteRepository.save(note("title_2", Instant.now()));
+    var n3 = noteRepository.save(note("title_3", Instant.now()));
+
+    List<Note> first = noteRepository.findByCreatedByOrderByIdAsc("bob", PageRequest.ofSize(2));
+    List<Note> next =
+        noteRepository.findByCreatedByAndIdGreaterThanOrderByIdAsc(
+            "bob", n2.getId(), PageRequest.ofSize(2));
+
+    assertThat(first).extracting(Note::getId).containsExactly(n1.getId(), n2.getId());
+    assertThat(next).extracting(Note::getId).containsExactly(n3.getId());
+    assertThat(noteRepository.findByCreatedByOrderByIdAsc("alice", PageRequest.ofSize(2)))
+        .isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test find notes of an owner after a keyset position ordered by next review date")
+  @WithMockUser("bob")
+  public void testFindByCreatedByAfterNextReviewDate() {
+    var now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    var later = noteRepository.save(note("later", now.plusSeconds(60)));
+    var first = noteRepository.save(note("first", now));
+    var sameDate = noteRepository.save(note("same_date", now));
+
+    List<Note> page =
+        noteRepository.findByCreatedByOrderByNextReviewDateAscIdAsc("bob", PageRequest.ofSize(2));
+    List<Note> next =
+        noteRepository.findByCreatedByAfterNextReviewDate(
+            "bob", first.getNextReviewDate(), first.getId(), PageRequest.ofSize(2));
+
+    assertThat(page).extracting(Note::getId).containsExactly(first.getId(), sameDate.getId());
+    assertThat(next).extracting(Note::getId).containsExactly(sameDate.getId(), later.getId());
+  }
+
+  @Test
+  @DisplayName("Test find due notes of an owner after a keyset position")
+  @WithMockUser("bob")
+  public void testFindDueByCreatedByAfterNextReviewDate() {
+    var now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    var overdue = noteRepository.save(note("overdue", now.minusSeconds(120)));
+    var due = noteRepository.save(note("due", now.minusSeconds(60)));
+    noteRepository.save(note("not_due", now.plusSeconds(60)));
+
+    List<Note> all =
+        noteRepository.findDueByCreatedByAfterNextReviewDate(
+            "bob", now, Instant.EPOCH, 0L, PageRequest.ofSize(10));
+    List<Note> afterOverdue =
+        noteRepository.findDueByCreatedByAfterNextReviewDate(
+            "bob", now, overdue.getNextReviewDate(), overdue.getId(), PageRequest.ofSize(10));
+
+    assertThat(all).extracting(Note::getId).containsExactly(overdue.getId(), due.getId());
+    assertThat(afterOverdue).extracting(Note::getId).containsExactly(due.getId());
+  }
+
   @Test
   @DisplayName("Test delete note by ID")
   public void testDeleteById() {
@@ -148,4 +210,14 @@ public class NoteRepositoryTests {
 
     assertThat(testEntityManager.find(Note.class, noteId)).isNull();
   }
+
+  private static Note note(String title, Instant nextReviewDate) {
+    return Note.builder()
+        .title(title)
+        .content("content")
+        .type(NoteType.PERSONAL)
+        .score(100)
+        .nextReviewDate(nextReviewDate)
+        .build();
+  }
 }
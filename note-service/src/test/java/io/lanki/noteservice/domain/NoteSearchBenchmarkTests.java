@@ -0,0 +1,134 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lanki.noteservice.config.DataConfig;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Compares the latency of both search engines on one generated deck. Skipped unless run with
+ * {@code mvn test -Dtest=NoteSearchBenchmarkTests -Dbenchmark=true}.
+ */
+@DataJpaTest
+@Import(DataConfig.class)
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@ActiveProfiles("integration")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Slf4j
+public class NoteSearchBenchmarkTests {
+
+  private static final int NOTES = 5_000;
+
+  private static final int VOCABULARY = 2_000;
+
+  private static final int WARMUP_QUERIES = 200;
+
+  private static final int QUERIES = 1_000;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private NoteRepository noteRepository;
+
+  @Test
+  @DisplayName("Test in-memory and Postgres search latency on the same deck")
+  public void testSearchLatency() {
+    var random = new Random(42);
+    var words = IntStream.range(0, VOCABULARY).mapToObj(i -> word(random)).toList();
+    seed(words, random);
+    var queries =
+        IntStream.range(0, QUERIES)
+            .mapToObj(i -> words.get(random.nextInt(words.size())).substring(0, 4))
+            .toList();
+
+    var postgres = new PostgresNoteSearch(jdbcTemplate);
+    var inMemory =
+        new InMemoryNoteSearch(
+            jdbcTemplate,
+            noteRepository,
+            new NoteSearchProperties("in-memory", DataSize.ofMegabytes(64)));
+
+    var postgresLatencies = measure(postgres, queries);
+    var inMemoryLatencies = measure(inMemory, queries);
+
+    report("postgres", postgresLatencies);
+    report("in-memory", inMemoryLatencies);
+    assertThat(inMemory.isIndexed("bob")).isTrue();
+  }
+
+  private void seed(List<String> words, Random random) {
+    var now = Timestamp.from(Instant.now());
+    var rows = new ArrayList<Object[]>(NOTES);
+    for (var i = 0; i < NOTES; i++) {
+      rows.add(
+          new Object[] {sentence(words, random, 4), sentence(words, random, 60), now, now, now});
+    }
+    jdbcTemplate.batchUpdate(
+        """
+        INSERT INTO notes (id, title, content, type, next_review_date, created_date,
+                           last_modified_date, created_by, last_modified_by, version)
+        VALUES (nextval('notes_seq'), ?, ?, 'PERSONAL', ?, ?, ?, 'bob', 'bob', 0)
+        """,
+        rows);
+  }
+
+  private static long[] measure(NoteSearch noteSearch, List<String> queries) {
+    for (var i = 0; i < WARMUP_QUERIES; i++) {
+      noteSearch.search("bob", queries.get(i % queries.size()), null, 20);
+    }
+    var latencies = new long[queries.size()];
+    for (var i = 0; i < queries.size(); i++) {
+      var start = System.nanoTime();
+      noteSearch.search("bob", queries.get(i), null, 20);
+      latencies[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(latencies);
+    return latencies;
+  }
+
+  private static void report(String engine, long[] latencies) {
+    log.info(
+        String.format(
+            "%-10s p50=%.3fms p99=%.3fms max=%.3fms",
+            engine,
+            percentile(latencies, 0.50),
+            percentile(latencies, 0.99),
+            latencies[latencies.length - 1] / 1e6));
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1e6;
+  }
+
+  private static String sentence(List<String> words, Random random, int length) {
+    return IntStream.range(0, length)
+        .mapToObj(i -> words.get(random.nextInt(words.size())))
+        .collect(Collectors.joining(" "));
+  }
+
+  private static String word(Random random) {
+    var word = new StringBuilder();
+    for (var i = 0; i < 5 + random.nextInt(6); i++) {
+      word.append((char) ('a' + random.nextInt(26)));
+    }
+    return word.toString();
+  }
+}
@@ -2,20 +2,36 @@ package io.lanki.noteservice.domain;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import io.lanki.noteservice.domain.Note.NoteType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 
 @ExtendWith(MockitoExtension.class)
@@ -23,56 +39,135 @@ public class NoteServiceTests {
 
   @Mock private NoteRepository noteRepository;
 
+  @Mock private EntityManager entityManager;
+
+  @Mock private ReviewQueue reviewQueue;
+
+  @Mock private ApplicationEventPublisher eventPublisher;
+
+  @Spy
+  private NoteCache noteCache =
+      new NoteCache(
+          new NoteCacheProperties(100, Duration.ofMinutes(5)),
+          new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+
+  @Spy private NoteMetrics noteMetrics = new NoteMetrics(ObservationRegistry.NOOP);
+
   @InjectMocks private NoteService noteService;
 
   @Test
-  @DisplayName("Test get an empty list of notes")
-  public void testGetAllEmpty() {
-    when(noteRepository.findAll()).thenReturn(Collections.emptyList());
-    assertThat(noteService.getAll()).hasSize(0);
+  @DisplayName("Test get an empty page of notes")
+  public void testGetPageEmpty() {
+    when(noteRepository.findByCreatedByOrderByIdAsc("bob", PageRequest.ofSize(21)))
+        .thenReturn(Collections.emptyList());
+
+    NotePage page = noteService.getPage("bob", null, null, 20);
+
+    assertThat(page.content()).isEmpty();
+    assertThat(page.nextCursor()).isNull();
   }
 
   @Test
-  @DisplayName("Test get a list of notes with only one")
-  public void testGetAllOnlyOne() {
-    var note =
-        Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
+  @DisplayName("Test get the last page of notes")
+  public void testGetPageLast() {
+    var n1 = noteWithId(1L);
+    var n2 = noteWithId(2L);
+
+    when(noteRepository.findByCreatedByOrderByIdAsc("bob", PageRequest.ofSize(3)))
+        .thenReturn(List.of(n1, n2));
+
+    NotePage page = noteService.getPage("bob", null, null, 2);
+
+    assertThat(page.content()).containsExactly(n1, n2);
+    assertThat(page.nextCursor()).isNull();
+  }
+
+  @Test
+  @DisplayName("Test get a page of notes followed by the next page using its cursor")
+  public void testGetPageWithCursor() {
+    var n1 = noteWithId(1L);
+    var n2 = noteWithId(2L);
+    var n3 = noteWithId(3L);
+
+    when(noteRepository.findByCreatedByOrderByIdAsc("bob", PageRequest.ofSize(3)))
+        .thenReturn(List.of(n1, n2, n3));
+    when(noteRepository.findByCreatedByAndIdGreaterThanOrderByIdAsc(
+            "bob", 2L, PageRequest.ofSize(3)))
+        .thenReturn(List.of(n3));
+
+    NotePage first = noteService.getPage("bob", null, null, 2);
+
+    assertThat(first.content()).containsExactly(n1, n2);
+    assertThat(first.nextCursor()).isNotNull();
+
+    NotePage second = noteService.getPage("bob", first.nextCursor(), null, 2);
+
+    assertThat(second.content()).containsExactly(n3);
+    assertThat(second.nextCursor()).isNull();
+  }
+
+  @Test
+  @DisplayName("Test get a page of notes ordered by next review date using its cursor")
+  public void testGetPageOrderedByNextReviewDate() {
+    var now = Instant.now();
+    var n1 = noteWithId(1L);
+    n1.setNextReviewDate(now);
+    var n2 = noteWithId(2L);
+    n2.setNextReviewDate(now.plusSeconds(60));
+
+    when(noteRepository.findByCreatedByOrderByNextReviewDateAscIdAsc("bob", PageRequest.ofSize(2)))
+        .thenReturn(List.of(n1, n2));
+    when(noteRepository.findByCreatedByAfterNextReviewDate("bob", now, 1L, PageRequest.ofSize(2)))
+        .thenReturn(List.of(n2));
+
+    NotePage first = noteService.getPage("bob", null, "next_review_date", 1);
+    NotePage second = noteService.getPage("bob", first.nextCursor(), null, 1);
+
+    assertThat(first.content()).containsExactly(n1);
+    assertThat(second.content()).containsExactly(n2);
+    assertThat(second.nextCursor()).isNull();
+  }
+
+  @Test
+  @DisplayName("Test get a page of notes clamps the page size")
+  public void testGetPageSizeClamped() {
+    when(noteRepository.findByCreatedByOrderByIdAsc(
+            "bob", PageRequest.ofSize(NoteService.MAX_PAGE_SIZE + 1)))
+        .thenReturn(Collections.emptyList());
+
+    assertThat(noteService.getPage("bob", null, null, 10_000).content()).isEmpty();
+  }
 
-    when(noteRepository.findAll()).thenReturn(List.of(note));
+  @Test
+  @DisplayName("Test get a page of notes with an invalid cursor")
+  public void testGetPageInvalidCursor() {
+    assertThatThrownBy(() -> noteService.getPage("bob", "not-a-cursor", null, 20))
+        .isInstanceOf(InvalidNoteQueryException.class)
+        .hasMessage("invalid cursor");
+  }
 
-    assertThat(
-            StreamSupport.stream(noteService.getAll().spliterator(), true)
-                .filter(n -> n.getTitle().equals(note.getTitle()))
-                .collect(Collectors.toList()))
-        .hasSize(1);
+  @Test
+  @DisplayName("Test get a page of notes with an unknown sort order")
+  public void testGetPageUnknownSort() {
+    assertThatThrownBy(() -> noteService.getPage("bob", null, "title", 20))
+        .isInstanceOf(InvalidNoteQueryException.class)
+        .hasMessage("unknown sort order title");
   }
 
   @Test
-  @DisplayName("Test get a list of notes with more than one")
-  public void testGetAllMoreThanOne() {
-    var n1 =
-        Note.builder()
-            .title("title_1")
-            .content("content_1")
-            .type(NoteType.PERSONAL)
-            .score(100)
-            .build();
-    var n2 =
-        Note.builder()
-            .title("title_2")
-            .content("content_2")
-            .type(NoteType.LEETCODE)
-            .score(50)
-            .build();
+  @DisplayName("Test export streams detached notes of an owner")
+  public void testExport() {
+    var n1 = noteWithId(1L);
+    var n2 = noteWithId(2L);
+
+    when(noteRepository.streamByCreatedByOrderByIdAsc("bob")).thenReturn(Stream.of(n1, n2));
 
-    when(noteRepository.findAll()).thenReturn(List.of(n1, n2));
+    var exported = new ArrayList<Note>();
+    noteService.export("bob", exported::add);
 
-    assertThat(
-            StreamSupport.stream(noteService.getAll().spliterator(), true)
-                .filter(
-                    n -> n.getTitle().equals(n1.getTitle()) || n.getTitle().equals(n2.getTitle()))
-                .collect(Collectors.toList()))
-        .hasSize(2);
+    assertThat(exported).containsExactly(n1, n2);
+    verify(entityManager).detach(n1);
+    verify(entityManager).detach(n2);
   }
 
   @Test
@@ -92,6 +187,23 @@ public class NoteServiceTests {
     assertThat(actualNote.getScore()).isEqualTo(note.getScore());
   }
 
+  @Test
+  @DisplayName("Test get note is served from the cache until the note changes")
+  public void testGetByIdCached() {
+    var note = noteWithId(1L);
+    note.setCreatedBy("bob");
+
+    when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
+
+    noteService.get(1L);
+    noteService.get(1L);
+    noteCache.onNoteChanged(NoteChangedEvent.updated(note));
+    noteService.get(1L);
+
+    verify(noteRepository, times(2)).findById(1L);
+    assertThat(noteCache.stats().hitCount()).isEqualTo(1);
+  }
+
   @Test
   @DisplayName("Test get note by non-existing ID")
   public void testGetByIdNotExist() {
@@ -127,7 +239,7 @@ public class NoteServiceTests {
 
     when(noteRepository.save(note)).thenReturn(note);
 
-    Note actualNote = noteService.put(1L, note);
+    Note actualNote = noteService.put(1L, note, null);
 
     assertThat(actualNote).isNotNull();
     assertThat(actualNote.getTitle()).isEqualTo(note.getTitle());
@@ -136,4 +248,86 @@ public class NoteServiceTests {
     assertThat(actualNote.getScore()).isEqualTo(note.getScore());
   }
 
+  @Test
+  @DisplayName("Test put of a missing note is recorded as a put only")
+  public void testPutNewRecordedOnce() {
+    var note =
+        Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
+
+    when(noteRepository.findById(1L)).thenReturn(Optional.empty());
+    when(noteRepository.save(note)).thenReturn(note);
+
+    noteService.put(1L, note, null);
+
+    verify(noteMetrics).record(eq("put"), eq(NoteType.PERSONAL), any(Supplier.class));
+    verify(noteMetrics, never()).record(eq("post"), any(), any(Supplier.class));
+    verify(eventPublisher).publishEvent(NoteChangedEvent.created(note));
+  }
+
+  @Test
+  @DisplayName("Test delete note leaves a tombstone and removes it from the review queue")
+  public void testDeleteRemovesFromReviewQueue() {
+    var note = noteWithId(1L);
+    note.setCreatedBy("bob");
+
+    when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
+    when(noteRepository.save(note)).thenReturn(note);
+
+    noteService.delete(1L, null);
+
+    assertThat(note.isDeleted()).isTrue();
+    verify(reviewQueue).remove("bob", 1L);
+    verify(noteRepository, never()).delete(any(Note.class));
+    verify(eventPublisher).publishEvent(NoteChangedEvent.deleted(note));
+  }
+
+  @Test
+  @DisplayName("Test save note with an outdated expected version")
+  public void testUpdateOutdatedVersion() {
+    var existing = noteWithId(1L);
+    existing.setVersion(2);
+    var note =
+        Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
+
+    when(noteRepository.findById(1L)).thenReturn(Optional.of(existing));
+
+    assertThatThrownBy(() -> noteService.put(1L, note, 1))
+        .isInstanceOf(NotePreconditionFailedException.class);
+    verify(noteRepository, never()).save(any(Note.class));
+  }
+
+  @Test
+  @DisplayName("Test save note with an expected version when it was modified concurrently")
+  public void testUpdateConcurrentlyModified() {
+    var existing = noteWithId(1L);
+    existing.setVersion(2);
+    var note =
+        Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
+
+    when(noteRepository.findById(1L)).thenReturn(Optional.of(existing));
+    when(noteRepository.save(any(Note.class)))
+        .thenThrow(new ObjectOptimisticLockingFailureException(Note.class, 1L));
+
+    assertThatThrownBy(() -> noteService.put(1L, note, 2))
+        .isInstanceOf(NotePreconditionFailedException.class);
+  }
+
+  @Test
+  @DisplayName("Test delete note with an expected version of a missing note")
+  public void testDeleteMissingWithExpectedVersion() {
+    when(noteRepository.findById(1L)).thenReturn(Optional.empty());
+
+    assertThatThrownBy(() -> noteService.delete(1L, 0))
+        .isInstanceOf(NotePreconditionFailedException.class);
+  }
+
+  private static Note noteWithId(Long id) {
+    return Note.builder()
+        .id(id)
+        .title("title_" + id)
+        .content("content_" + id)
+        .type(NoteType.PERSONAL)
+        .score(100)
+        .build();
+  }
 }
@@ -0,0 +1,94 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.lanki.noteservice.config.DataConfig;
+import io.lanki.noteservice.domain.Note.NoteType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+
+@DataJpaTest
+@Import(DataConfig.class)
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@ActiveProfiles("integration")
+@WithMockUser("bob")
+public class PostgresNoteSearchTests {
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private TestEntityManager testEntityManager;
+
+  private PostgresNoteSearch noteSearch;
+
+  @BeforeEach
+  public void setup() {
+    noteSearch = new PostgresNoteSearch(jdbcTemplate);
+  }
+
+  @Test
+  @DisplayName("Test search matches prefixes and ranks title matches first")
+  public void testSearchRanked() {
+    var inContent = persist("Graphs", "Breadth first search of a binary tree");
+    var inTitle = persist("Binary search", "Halve the interval every step");
+    persist("Heaps", "Priority queues");
+
+    NoteSearchPage page = noteSearch.search("bob", "bin sear", null, 10);
+
+    assertThat(page.content())
+        .extracting(hit -> hit.note().getId())
+        .containsExactly(inTitle.getId(), inContent.getId());
+    assertThat(page.content().get(1).snippet()).contains("<mark>");
+    assertThat(page.nextCursor()).isNull();
+  }
+
+  @Test
+  @DisplayName("Test search pages through hits with a cursor")
+  public void testSearchPaginated() {
+    persist("Tree one", "content");
+    persist("Tree two", "content");
+    persist("Tree three", "content");
+
+    NoteSearchPage first = noteSearch.search("bob", "tree", null, 2);
+    NoteSearchPage second = noteSearch.search("bob", "tree", first.nextCursor(), 2);
+
+    assertThat(first.content()).hasSize(2);
+    assertThat(first.nextCursor()).isNotNull();
+    assertThat(second.content()).hasSize(1);
+    assertThat(second.nextCursor()).isNull();
+    assertThat(second.content().get(0).note().getId())
+        .isNotIn(first.content().stream().map(hit -> hit.note().getId()).toList());
+  }
+
+  @Test
+  @DisplayName("Test search is scoped to the owner")
+  public void testSearchOtherOwner() {
+    persist("Binary search", "content");
+
+    assertThat(noteSearch.search("alice", "binary", null, 10).content()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test search ignores tsquery operators")
+  public void testToTsQuery() {
+    assertThat(PostgresNoteSearch.toTsQuery("binary & !(sea")).isEqualTo("binary:* & sea:*");
+    assertThatThrownBy(() -> PostgresNoteSearch.toTsQuery(" & | "))
+        .isInstanceOf(InvalidNoteQueryException.class)
+        .hasMessage("query must be defined");
+  }
+
+  private Note persist(String title, String content) {
+    var note = Note.builder().title(title).content(content).type(NoteType.PERSONAL).build();
+    return testEntityManager.persistAndFlush(note);
+  }
+}
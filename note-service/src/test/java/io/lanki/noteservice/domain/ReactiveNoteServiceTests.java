@@ -0,0 +1,190 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.lanki.noteservice.domain.Note.NoteType;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveNoteServiceTests {
+
+  @Mock private ReactiveNoteRepository noteRepository;
+
+  @Mock private ReviewQueue reviewQueue;
+
+  @Mock private ApplicationEventPublisher eventPublisher;
+
+  @InjectMocks private ReactiveNoteService noteService;
+
+  @Test
+  @DisplayName("Test get a page of notes with a cursor to the next page")
+  public void testGetPage() {
+    var n1 = noteWithId(1L, 0);
+    var n2 = noteWithId(2L, 0);
+    var n3 = noteWithId(3L, 0);
+    var request = ArgumentCaptor.forClass(NotePageRequest.class);
+    when(noteRepository.findPage(eq("bob"), request.capture())).thenReturn(Flux.just(n1, n2, n3));
+
+    NotePage page = noteService.getPage("bob", null, null, 2).block();
+
+    assertThat(request.getValue().limit()).isEqualTo(3);
+    assertThat(page.content()).containsExactly(n1, n2);
+    assertThat(NoteCursor.decode(page.nextCursor()).id()).isEqualTo(2L);
+  }
+
+  @Test
+  @DisplayName("Test get a page with an invalid cursor")
+  public void testGetPageInvalidCursor() {
+    assertThatThrownBy(() -> noteService.getPage("bob", "not-a-cursor", null, 2).block())
+        .isInstanceOf(InvalidNoteQueryException.class);
+  }
+
+  @Test
+  @DisplayName("Test get a note that does not exist")
+  public void testGetNotFound() {
+    when(noteRepository.findById(1L)).thenReturn(Mono.empty());
+
+    assertThatThrownBy(() -> noteService.get(1L).block())
+        .isInstanceOf(NoteNotFoundException.class);
+  }
+
+  @Test
+  @DisplayName("Test post defaults the next review date and publishes the change")
+  public void testPost() {
+    var note = noteWithId(null, 0);
+    var saved = noteWithId(1L, 0);
+    when(noteRepository.insert(eq(note), eq("bob"), any())).thenReturn(Mono.just(saved));
+
+    assertThat(noteService.post(note, "bob").block()).isEqualTo(saved);
+
+    assertThat(note.getNextReviewDate()).isNotNull();
+    verify(eventPublisher).publishEvent(NoteChangedEvent.created(saved));
+  }
+
+  @Test
+  @DisplayName("Test put updates the stored version of an existing note")
+  public void testPutExisting() {
+    var existing = noteWithId(1L, 3);
+    var note = noteWithId(null, 0);
+    var saved = noteWithId(1L, 4);
+    when(noteRepository.findById(1L)).thenReturn(Mono.just(existing));
+    when(noteRepository.update(eq(1L), eq(note), eq(3), eq("bob"), any()))
+        .thenReturn(Mono.just(saved));
+
+    assertThat(noteService.put(1L, note, null, "bob").block()).isEqualTo(saved);
+
+    verify(reviewQueue).update(saved);
+    verify(eventPublisher).publishEvent(NoteChangedEvent.updated(saved));
+  }
+
+  @Test
+  @DisplayName("Test put updates the review queue off the calling thread")
+  public void testPutReviewQueueOffEventLoop() {
+    var note = noteWithId(null, 0);
+    var saved = noteWithId(1L, 4);
+    var thread = new AtomicReference<String>();
+    when(noteRepository.findById(1L)).thenReturn(Mono.just(noteWithId(1L, 3)));
+    when(noteRepository.update(eq(1L), eq(note), eq(3), eq("bob"), any()))
+        .thenReturn(Mono.just(saved));
+    doAnswer(
+            invocation -> {
+              thread.set(Thread.currentThread().getName());
+              return null;
+            })
+        .when(reviewQueue)
+        .update(saved);
+
+    noteService.put(1L, note, null, "bob").block();
+
+    assertThat(thread.get()).startsWith("boundedElastic");
+  }
+
+  @Test
+  @DisplayName("Test put creates a note that does not exist")
+  public void testPutNew() {
+    var note = noteWithId(null, 0);
+    var saved = noteWithId(7L, 0);
+    when(noteRepository.findById(1L)).thenReturn(Mono.empty());
+    when(noteRepository.insert(eq(note), eq("bob"), any())).thenReturn(Mono.just(saved));
+
+    assertThat(noteService.put(1L, note, null, "bob").block()).isEqualTo(saved);
+  }
+
+  @Test
+  @DisplayName("Test put with a stale expected version")
+  public void testPutPreconditionFailed() {
+    when(noteRepository.findById(1L)).thenReturn(Mono.just(noteWithId(1L, 3)));
+
+    assertThatThrownBy(() -> noteService.put(1L, noteWithId(null, 0), 2, "bob").block())
+        .isInstanceOf(NotePreconditionFailedException.class);
+    verify(noteRepository, never()).update(any(), any(), any(Integer.class), any(), any());
+  }
+
+  @Test
+  @DisplayName("Test put loses a race with a concurrent write")
+  public void testPutConflict() {
+    var note = noteWithId(null, 0);
+    when(noteRepository.findById(1L)).thenReturn(Mono.just(noteWithId(1L, 3)));
+    when(noteRepository.update(eq(1L), eq(note), eq(3), eq("bob"), any()))
+        .thenReturn(Mono.empty());
+
+    assertThatThrownBy(() -> noteService.put(1L, note, null, "bob").block())
+        .isInstanceOf(NoteVersionConflictException.class);
+    assertThatThrownBy(() -> noteService.put(1L, note, 3, "bob").block())
+        .isInstanceOf(NotePreconditionFailedException.class);
+  }
+
+  @Test
+  @DisplayName("Test delete leaves a tombstone and publishes the change")
+  public void testDelete() {
+    var tombstone = noteWithId(1L, 4);
+    when(noteRepository.findById(1L)).thenReturn(Mono.just(noteWithId(1L, 3)));
+    when(noteRepository.softDelete(eq(1L), eq(3), eq("bob"), any()))
+        .thenReturn(Mono.just(tombstone));
+
+    noteService.delete(1L, 3, "bob").block();
+
+    verify(reviewQueue).remove("bob", 1L);
+    verify(eventPublisher).publishEvent(NoteChangedEvent.deleted(tombstone));
+  }
+
+  @Test
+  @DisplayName("Test delete a note that does not exist")
+  public void testDeleteNotFound() {
+    when(noteRepository.findById(1L)).thenReturn(Mono.empty());
+
+    noteService.delete(1L, null, "bob").block();
+
+    assertThatThrownBy(() -> noteService.delete(1L, 3, "bob").block())
+        .isInstanceOf(NotePreconditionFailedException.class);
+    verify(noteRepository, never()).softDelete(any(), any(Integer.class), any(), any());
+  }
+
+  private static Note noteWithId(Long id, int version) {
+    return Note.builder()
+        .id(id)
+        .title("Title")
+        .content("Content")
+        .type(NoteType.PERSONAL)
+        .createdBy("bob")
+        .version(version)
+        .build();
+  }
+}
@@ -0,0 +1,166 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.lanki.noteservice.domain.Note.NoteType;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+public class ReviewQueueTests {
+
+  private static final Instant NOW = Instant.parse("2024-06-08T06:00:00Z");
+
+  private NoteRepository noteRepository;
+
+  private ReviewQueue reviewQueue;
+
+  @BeforeEach
+  public void setup() {
+    noteRepository = mock(NoteRepository.class);
+    // Refills run on the calling thread to keep the tests deterministic.
+    reviewQueue =
+        new ReviewQueue(
+            noteRepository,
+            Runnable::run,
+            new ReviewQueueProperties(3, 1, 10, Duration.ofMinutes(10)),
+            Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  @Test
+  @DisplayName("Test next serves due notes from the buffer after the first load")
+  public void testNextServedFromBuffer() {
+    var n1 = note(1L, NOW.minusSeconds(30));
+    var n2 = note(2L, NOW.minusSeconds(20));
+    var n3 = note(3L, NOW.minusSeconds(10));
+
+    when(noteRepository.findDueByCreatedByAfterNextReviewDate(
+            "bob", NOW, Instant.EPOCH, 0L, PageRequest.ofSize(3)))
+        .thenReturn(List.of(n1, n2, n3));
+
+    assertThat(reviewQueue.next("bob", 1)).containsExactly(n1);
+    assertThat(reviewQueue.next("bob", 1)).containsExactly(n2);
+
+    verify(noteRepository, times(1))
+        .findDueByCreatedByAfterNextReviewDate(any(), any(), any(), any(), any());
+  }
+
+  @Test
+  @DisplayName("Test next refills from the keyset position of the last buffered note")
+  public void testNextRefillsAfterLastNote() {
+    var n1 = note(1L, NOW.minusSeconds(30));
+    var n2 = note(2L, NOW.minusSeconds(20));
+    var n3 = note(3L, NOW.minusSeconds(10));
+
+    when(noteRepository.findDueByCreatedByAfterNextReviewDate(
+            "bob", NOW, Instant.EPOCH, 0L, PageRequest.ofSize(3)))
+        .thenReturn(List.of(n1, n2));
+    when(noteRepository.findDueByCreatedByAfterNextReviewDate(
+            "bob", NOW, n2.getNextReviewDate(), 2L, PageRequest.ofSize(3)))
+        .thenReturn(List.of(n3));
+
+    // Taking both notes leaves the buffer below the low watermark which triggers a refill.
+    assertThat(reviewQueue.next("bob", 2)).containsExactly(n1, n2);
+    assertThat(reviewQueue.next("bob", 2)).containsExactly(n3);
+  }
+
+  @Test
+  @DisplayName("Test next returns nothing when no note is due")
+  public void testNextNothingDue() {
+    when(noteRepository.findDueByCreatedByAfterNextReviewDate(
+            eq("bob"), eq(NOW), any(), any(), any()))
+        .thenReturn(List.of());
+
+    assertThat(reviewQueue.next("bob", 5)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test remove drops a buffered note")
+  public void testRemove() {
+    var n1 = note(1L, NOW.minusSeconds(30));
+    var n2 = note(2L, NOW.minusSeconds(20));
+    var n3 = note(3L, NOW.minusSeconds(10));
+
+    when(noteRepository.findDueByCreatedByAfterNextReviewDate(
+            "bob", NOW, Instant.EPOCH, 0L, PageRequest.ofSize(3)))
+        .thenReturn(List.of(n1, n2, n3));
+
+    assertThat(reviewQueue.next("bob", 1)).containsExactly(n1);
+    reviewQueue.remove("bob", 2L);
+    assertThat(reviewQueue.next("bob", 1)).containsExactly(n3);
+  }
+
+  @Test
+  @DisplayName("Test update puts an edited note which is still due back into the buffer")
+  public void testUpdateStillDue() {
+    var n1 = note(1L, NOW.minusSeconds(30));
+    var n2 = note(2L, NOW.minusSeconds(20));
+    var n3 = note(3L, NOW.minusSeconds(10));
+
+    when(noteRepository.findDueByCreatedByAfterNextReviewDate(
+            "bob", NOW, Instant.EPOCH, 0L, PageRequest.ofSize(3)))
+        .thenReturn(List.of(n1, n2, n3));
+
+    assertThat(reviewQueue.next("bob", 1)).containsExactly(n1);
+    var edited = note(1L, NOW.minusSeconds(15));
+    reviewQueue.update(edited);
+
+    assertThat(reviewQueue.next("bob", 3)).containsExactly(n2, edited, n3);
+  }
+
+  @Test
+  @DisplayName("Test update drops an edited note which is not due anymore")
+  public void testUpdateNotDue() {
+    var n1 = note(1L, NOW.minusSeconds(30));
+    var n2 = note(2L, NOW.minusSeconds(20));
+
+    when(noteRepository.findDueByCreatedByAfterNextReviewDate(
+            "bob", NOW, Instant.EPOCH, 0L, PageRequest.ofSize(3)))
+        .thenReturn(List.of(n1, n2));
+
+    assertThat(reviewQueue.next("bob", 1)).containsExactly(n1);
+    reviewQueue.update(note(2L, NOW.plusSeconds(60)));
+
+    assertThat(reviewQueue.next("bob", 3)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test buffers are kept per user")
+  public void testPerUser() {
+    var bobNote = note(1L, NOW.minusSeconds(30));
+    var aliceNote = note(2L, NOW.minusSeconds(30));
+
+    when(noteRepository.findDueByCreatedByAfterNextReviewDate(
+            eq("bob"), eq(NOW), any(), any(), any()))
+        .thenReturn(List.of(bobNote));
+    when(noteRepository.findDueByCreatedByAfterNextReviewDate(
+            eq("alice"), eq(NOW), any(), any(), any()))
+        .thenReturn(List.of(aliceNote));
+
+    assertThat(reviewQueue.next("bob", 1)).containsExactly(bobNote);
+    assertThat(reviewQueue.next("alice", 1)).containsExactly(aliceNote);
+  }
+
+  private static Note note(Long id, Instant nextReviewDate) {
+    return Note.builder()
+        .id(id)
+        .title("title_" + id)
+        .content("content_" + id)
+        .type(NoteType.PERSONAL)
+        .nextReviewDate(nextReviewDate)
+        .createdBy("bob")
+        .build();
+  }
+}
@@ -0,0 +1,77 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ReviewSchedulerTests {
+
+  private static final Instant NOW = Instant.parse("2024-06-08T06:00:00Z");
+
+  @Test
+  @DisplayName("Test first successful review is scheduled one day later")
+  public void testFirstReview() {
+    ReviewSchedule schedule = ReviewScheduler.schedule(0, 100, 5, NOW);
+
+    assertThat(schedule.reviews()).isEqualTo(1);
+    assertThat(schedule.nextReviewDate()).isEqualTo(NOW.plus(Duration.ofDays(1)));
+  }
+
+  @Test
+  @DisplayName("Test second successful review is scheduled six days later")
+  public void testSecondReview() {
+    ReviewSchedule schedule = ReviewScheduler.schedule(1, 100, 4, NOW);
+
+    assertThat(schedule.reviews()).isEqualTo(2);
+    assertThat(schedule.nextReviewDate()).isEqualTo(NOW.plus(Duration.ofDays(6)));
+  }
+
+  @Test
+  @DisplayName("Test later reviews grow the interval by the easiness factor")
+  public void testLaterReview() {
+    // A perfect answer keeps the easiness factor at its maximum of 2.5.
+    ReviewSchedule schedule = ReviewScheduler.schedule(2, 100, 5, NOW);
+
+    assertThat(schedule.reviews()).isEqualTo(3);
+    assertThat(schedule.score()).isEqualTo(100);
+    assertThat(schedule.nextReviewDate()).isEqualTo(NOW.plus(Duration.ofDays(15)));
+  }
+
+  @Test
+  @DisplayName("Test failed review starts the repetitions over and lowers the score")
+  public void testFailedReview() {
+    ReviewSchedule schedule = ReviewScheduler.schedule(5, 100, 1, NOW);
+
+    assertThat(schedule.reviews()).isZero();
+    assertThat(schedule.score()).isLessThan(100);
+    assertThat(schedule.nextReviewDate()).isEqualTo(NOW.plus(Duration.ofDays(1)));
+  }
+
+  @Test
+  @DisplayName("Test score never drops below zero")
+  public void testScoreLowerBound() {
+    ReviewSchedule schedule = ReviewScheduler.schedule(0, 0, 0, NOW);
+
+    assertThat(schedule.score()).isZero();
+  }
+
+  @Test
+  @DisplayName("Test interval is capped")
+  public void testIntervalCapped() {
+    ReviewSchedule schedule = ReviewScheduler.schedule(1_000, 100, 5, NOW);
+
+    assertThat(schedule.nextReviewDate()).isEqualTo(NOW.plus(Duration.ofDays(3650)));
+  }
+
+  @Test
+  @DisplayName("Test grade out of range")
+  public void testInvalidGrade() {
+    assertThatThrownBy(() -> ReviewScheduler.schedule(0, 100, 6, NOW))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("grade must be between 0 and 5");
+  }
+}
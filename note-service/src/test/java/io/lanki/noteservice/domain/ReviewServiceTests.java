@@ -0,0 +1,131 @@
+package io.lanki.noteservice.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.lanki.noteservice.domain.Note.NoteType;
+import io.lanki.noteservice.domain.ReviewResult.Status;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+public class ReviewServiceTests {
+
+  @Mock private NoteRepository noteRepository;
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private ReviewQueue reviewQueue;
+
+  @Mock private ApplicationEventPublisher eventPublisher;
+
+  @InjectMocks private ReviewService reviewService;
+
+  @Test
+  @DisplayName("Test submit applies every review in one batch")
+  public void testSubmitApplied() {
+    when(noteRepository.findAllById(List.of(1L, 2L)))
+        .thenReturn(List.of(note(1L, "bob"), note(2L, "bob")));
+    when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] {1, 1});
+
+    List<ReviewResult> results =
+        reviewService.submit(
+            "bob",
+            List.of(new ReviewSubmission(1L, 0, 5, null), new ReviewSubmission(2L, 0, 3, null)));
+
+    assertThat(results)
+        .extracting(ReviewResult::status)
+        .containsExactly(Status.APPLIED, Status.APPLIED);
+    assertThat(results).extracting(ReviewResult::version).containsExactly(1, 1);
+    verify(reviewQueue).remove("bob", 1L);
+    verify(reviewQueue).remove("bob", 2L);
+    verify(eventPublisher).publishEvent(NoteChangedEvent.reviewed(1L, "bob", 1));
+    verify(eventPublisher).publishEvent(NoteChangedEvent.reviewed(2L, "bob", 1));
+  }
+
+  @Test
+  @DisplayName("Test submit reports a conflict when the version is outdated")
+  public void testSubmitConflict() {
+    when(noteRepository.findAllById(List.of(1L))).thenReturn(List.of(note(1L, "bob")));
+    when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] {0});
+
+    List<ReviewResult> results =
+        reviewService.submit("bob", List.of(new ReviewSubmission(1L, 3, 5, null)));
+
+    assertThat(results).extracting(ReviewResult::status).containsExactly(Status.CONFLICT);
+    verify(reviewQueue, never()).remove("bob", 1L);
+  }
+
+  @Test
+  @DisplayName("Test submit does not update notes of other users or with invalid grades")
+  public void testSubmitNotFoundAndInvalid() {
+    when(noteRepository.findAllById(List.of(1L, 2L, 3L)))
+        .thenReturn(List.of(note(1L, "alice"), note(3L, "bob")));
+
+    List<ReviewResult> results =
+        reviewService.submit(
+            "bob",
+            List.of(
+                new ReviewSubmission(1L, 0, 5, null),
+                new ReviewSubmission(2L, 0, 5, null),
+                new ReviewSubmission(3L, 0, 9, null)));
+
+    assertThat(results)
+        .extracting(ReviewResult::status)
+        .containsExactly(Status.NOT_FOUND, Status.NOT_FOUND, Status.INVALID);
+    verifyNoInteractions(jdbcTemplate);
+  }
+
+  @Test
+  @DisplayName("Test submit only applies the first review of a note submitted twice")
+  public void testSubmitRepeatedId() {
+    when(noteRepository.findAllById(List.of(1L, 1L))).thenReturn(List.of(note(1L, "bob")));
+    when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] {1});
+
+    List<ReviewResult> results =
+        reviewService.submit(
+            "bob",
+            List.of(new ReviewSubmission(1L, 0, 5, null), new ReviewSubmission(1L, 0, 3, null)));
+
+    assertThat(results)
+        .extracting(ReviewResult::status)
+        .containsExactly(Status.APPLIED, Status.INVALID);
+    verify(eventPublisher).publishEvent(NoteChangedEvent.reviewed(1L, "bob", 1));
+  }
+
+  @Test
+  @DisplayName("Test submit rejects batches that are too large")
+  public void testSubmitTooLarge() {
+    var submissions =
+        Collections.nCopies(
+            ReviewService.MAX_BATCH_SIZE + 1, new ReviewSubmission(1L, 0, 5, null));
+
+    assertThatThrownBy(() -> reviewService.submit("bob", submissions))
+        .isInstanceOf(InvalidNoteQueryException.class);
+  }
+
+  private static Note note(Long id, String owner) {
+    return Note.builder()
+        .id(id)
+        .title("title_" + id)
+        .content("content_" + id)
+        .type(NoteType.PERSONAL)
+        .score(100)
+        .createdBy(owner)
+        .build();
+  }
+}
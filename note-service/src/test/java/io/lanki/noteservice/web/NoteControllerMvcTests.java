@@ -1,78 +1,131 @@
 package io.lanki.noteservice.web;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lanki.noteservice.config.JwtConfig;
 import io.lanki.noteservice.config.SecurityConfig;
+import io.lanki.noteservice.domain.InvalidNoteQueryException;
 import io.lanki.noteservice.domain.Note;
 import io.lanki.noteservice.domain.Note.NoteType;
+import io.lanki.noteservice.domain.NoteChange;
+import io.lanki.noteservice.domain.NoteChangeFeed;
+import io.lanki.noteservice.domain.NoteChangePage;
+import io.lanki.noteservice.domain.NoteImportFailure;
+import io.lanki.noteservice.domain.NoteImportResult;
+import io.lanki.noteservice.domain.NoteImporter;
+import io.lanki.noteservice.domain.NotePage;
+import io.lanki.noteservice.domain.NotePatcher;
+import io.lanki.noteservice.domain.NotePreconditionFailedException;
+import io.lanki.noteservice.domain.NoteSearch;
+import io.lanki.noteservice.domain.NoteSearchHit;
+import io.lanki.noteservice.domain.NoteSearchPage;
+import io.lanki.noteservice.domain.NoteVersionConflictException;
 import io.lanki.noteservice.domain.NoteService;
+import io.lanki.noteservice.domain.ReviewQueue;
+import io.lanki.noteservice.domain.ReviewResult;
+import io.lanki.noteservice.domain.ReviewService;
+import io.lanki.noteservice.domain.ReviewSubmission;
+import io.lanki.noteservice.domain.SyncCursorExpiredException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(NoteController.class)
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, JwtConfig.class})
 public class NoteControllerMvcTests {
 
   @Autowired private MockMvc mockMvc;
 
+  @Autowired private ObjectMapper objectMapper;
+
   @MockBean private NoteService noteService;
 
+  @MockBean private NoteChangeFeed noteChangeFeed;
+
+  @MockBean private NoteImporter noteImporter;
+
+  @MockBean private NotePatcher notePatcher;
+
+  @MockBean private NoteSearch noteSearch;
+
+  @MockBean private ReviewQueue reviewQueue;
+
+  @MockBean private ReviewService reviewService;
+
   @MockBean private JwtDecoder jwtDecoder;
 
   @Test
-  @DisplayName("Test get an empty list of notes")
-  public void testGetAllEmpty() throws Exception {
-    given(noteService.getAll()).willReturn(Collections.emptyList());
+  @DisplayName("Test get an empty page of notes")
+  public void testGetPageEmpty() throws Exception {
+    given(noteService.getPage("user", null, null, NoteService.DEFAULT_PAGE_SIZE))
+        .willReturn(new NotePage(Collections.emptyList(), null));
 
     mockMvc
-        .perform(get("/v1/api/notes"))
+        .perform(get("/v1/api/notes").with(SecurityMockMvcRequestPostProcessors.jwt()))
         .andExpect(status().is2xxSuccessful())
         .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-        .andExpect(jsonPath("$").isEmpty());
+        .andExpect(jsonPath("$.content").isEmpty())
+        .andExpect(jsonPath("$.next_cursor").doesNotExist());
   }
 
   @Test
-  @DisplayName("Test get a list of notes with only one")
-  public void testGetAllOnlyOne() throws Exception {
+  @DisplayName("Test get a page of notes with only one")
+  public void testGetPageOnlyOne() throws Exception {
     var note =
         Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
 
-    given(noteService.getAll()).willReturn(List.of(note));
+    given(noteService.getPage("user", null, null, NoteService.DEFAULT_PAGE_SIZE))
+        .willReturn(new NotePage(List.of(note), null));
 
     mockMvc
-        .perform(get("/v1/api/notes"))
+        .perform(get("/v1/api/notes").with(SecurityMockMvcRequestPostProcessors.jwt()))
         .andExpect(status().is2xxSuccessful())
         .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-        .andExpect(jsonPath("$").isNotEmpty())
-        .andExpect(jsonPath("$[0].title", is(note.getTitle())))
-        .andExpect(jsonPath("$[0].content", is(note.getContent())))
-        .andExpect(jsonPath("$[0].type", is(note.getType().toString())))
-        .andExpect(jsonPath("$[0].score", is(note.getScore())));
+        .andExpect(jsonPath("$.content").isNotEmpty())
+        .andExpect(jsonPath("$.content[0].title", is(note.getTitle())))
+        .andExpect(jsonPath("$.content[0].content", is(note.getContent())))
+        .andExpect(jsonPath("$.content[0].type", is(note.getType().toString())))
+        .andExpect(jsonPath("$.content[0].score", is(note.getScore())));
   }
 
   @Test
-  @DisplayName("Test get a list of notes with more than one")
-  public void testGetAllMoreThanOne() throws Exception {
+  @DisplayName("Test get a page of notes with a cursor to the next page")
+  public void testGetPageWithCursor() throws Exception {
     var n1 =
         Note.builder()
             .title("title_1")
@@ -88,21 +141,315 @@ public class NoteControllerMvcTests {
             .score(50)
             .build();
 
-    given(noteService.getAll()).willReturn(List.of(n1, n2));
+    given(noteService.getPage("user", "cursor", "next_review_date", 2))
+        .willReturn(new NotePage(List.of(n1, n2), "next"));
 
     mockMvc
-        .perform(get("/v1/api/notes"))
+        .perform(
+            get("/v1/api/notes")
+                .param("cursor", "cursor")
+                .param("sort", "next_review_date")
+                .param("size", "2")
+                .with(SecurityMockMvcRequestPostProcessors.jwt()))
         .andExpect(status().is2xxSuccessful())
         .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-        .andExpect(jsonPath("$").isNotEmpty())
-        .andExpect(jsonPath("$[0].title", is(n1.getTitle())))
-        .andExpect(jsonPath("$[0].content", is(n1.getContent())))
-        .andExpect(jsonPath("$[0].type", is(n1.getType().toString())))
-        .andExpect(jsonPath("$[0].score", is(n1.getScore())))
-        .andExpect(jsonPath("$[1].title", is(n2.getTitle())))
-        .andExpect(jsonPath("$[1].content", is(n2.getContent())))
-        .andExpect(jsonPath("$[1].type", is(n2.getType().toString())))
-        .andExpect(jsonPath("$[1].score", is(n2.getScore())));
+        .andExpect(jsonPath("$.content[0].title", is(n1.getTitle())))
+        .andExpect(jsonPath("$.content[1].title", is(n2.getTitle())))
+        .andExpect(jsonPath("$.next_cursor", is("next")));
+  }
+
+  @Test
+  @DisplayName("Test get a page of notes with an invalid cursor")
+  public void testGetPageInvalidCursor() throws Exception {
+    given(noteService.getPage("user", "invalid", null, NoteService.DEFAULT_PAGE_SIZE))
+        .willThrow(new InvalidNoteQueryException("invalid cursor"));
+
+    mockMvc
+        .perform(
+            get("/v1/api/notes")
+                .param("cursor", "invalid")
+                .with(SecurityMockMvcRequestPostProcessors.jwt()))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  @DisplayName("Test get a page of notes unauthenticated")
+  public void testGetPageUnauthenticated() throws Exception {
+    mockMvc.perform(get("/v1/api/notes")).andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("Test search notes")
+  public void testSearch() throws Exception {
+    var note =
+        Note.builder().title("Binary search").content("content").type(NoteType.PERSONAL).build();
+
+    var hit = new NoteSearchHit(note, 0.5f, "<mark>Binary</mark>");
+
+    given(noteSearch.search("user", "binary", null, NoteService.DEFAULT_PAGE_SIZE))
+        .willReturn(new NoteSearchPage(List.of(hit), null));
+
+    mockMvc
+        .perform(
+            get("/v1/api/notes/search")
+                .param("q", "binary")
+                .with(SecurityMockMvcRequestPostProcessors.jwt()))
+        .andExpect(status().is2xxSuccessful())
+        .andExpect(jsonPath("$.content[0].note.title", is(note.getTitle())))
+        .andExpect(jsonPath("$.content[0].snippet", is("<mark>Binary</mark>")));
+  }
+
+  @Test
+  @DisplayName("Test get changes since a cursor")
+  public void testGetChanges() throws Exception {
+    var note = Note.builder().id(1L).title("title").content("content").build();
+    var page =
+        new NoteChangePage(
+            List.of(new NoteChange(1L, false, note), new NoteChange(2L, true, null)),
+            "next",
+            false);
+
+    given(noteChangeFeed.changes("user", "cursor", NoteChangeFeed.DEFAULT_PAGE_SIZE))
+        .willReturn(page);
+
+    mockMvc
+        .perform(
+            get("/v1/api/notes/changes")
+                .param("since", "cursor")
+                .with(SecurityMockMvcRequestPostProcessors.jwt()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.changes[0].note.title", is("title")))
+        .andExpect(jsonPath("$.changes[1].id", is(2)))
+        .andExpect(jsonPath("$.changes[1].deleted", is(true)))
+        .andExpect(jsonPath("$.next_cursor", is("next")))
+        .andExpect(jsonPath("$.has_more", is(false)));
+  }
+
+  @Test
+  @DisplayName("Test get changes since an expired cursor")
+  public void testGetChangesExpired() throws Exception {
+    given(noteChangeFeed.changes("user", "old", NoteChangeFeed.DEFAULT_PAGE_SIZE))
+        .willThrow(new SyncCursorExpiredException());
+
+    mockMvc
+        .perform(
+            get("/v1/api/notes/changes")
+                .param("since", "old")
+                .with(SecurityMockMvcRequestPostProcessors.jwt()))
+        .andExpect(status().isGone());
+  }
+
+  @Test
+  @DisplayName("Test get changes unauthenticated")
+  public void testGetChangesUnauthenticated() throws Exception {
+    mockMvc.perform(get("/v1/api/notes/changes")).andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("Test search notes unauthenticated")
+  public void testSearchUnauthenticated() throws Exception {
+    mockMvc
+        .perform(get("/v1/api/notes/search").param("q", "binary"))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("Test get due reviews")
+  public void testGetDueReviews() throws Exception {
+    var note =
+        Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
+
+    given(reviewQueue.next("user", 5)).willReturn(List.of(note));
+
+    mockMvc
+        .perform(
+            get("/v1/api/notes/reviews")
+                .param("size", "5")
+                .with(SecurityMockMvcRequestPostProcessors.jwt()))
+        .andExpect(status().is2xxSuccessful())
+        .andExpect(jsonPath("$[0].title", is(note.getTitle())));
+  }
+
+  @Test
+  @DisplayName("Test get due reviews unauthenticated")
+  public void testGetDueReviewsUnauthenticated() throws Exception {
+    mockMvc.perform(get("/v1/api/notes/reviews")).andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("Test post a batch of reviews authenticated with Role basic")
+  public void testPostReviews() throws Exception {
+    var submissions =
+        List.of(new ReviewSubmission(1L, 0, 5, null), new ReviewSubmission(2L, 3, 4, null));
+
+    given(reviewService.submit("user", submissions))
+        .willReturn(
+            List.of(
+                new ReviewResult(1L, ReviewResult.Status.APPLIED, 1, null),
+                new ReviewResult(2L, ReviewResult.Status.CONFLICT, null, null)));
+
+    mockMvc
+        .perform(
+            post("/v1/api/notes/reviews")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(submissions)))
+        .andExpect(status().is2xxSuccessful())
+        .andExpect(jsonPath("$[0].status", is("APPLIED")))
+        .andExpect(jsonPath("$[0].version", is(1)))
+        .andExpect(jsonPath("$[1].status", is("CONFLICT")));
+  }
+
+  @Test
+  @DisplayName("Test post a batch of reviews with a missing grade")
+  public void testPostReviewsMissingGrade() throws Exception {
+    mockMvc
+        .perform(
+            post("/v1/api/notes/reviews")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"id\": 1, \"version\": 0}]"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$['[0].grade']", is("grade must be defined")));
+
+    then(reviewService).should(never()).submit(any(), any());
+  }
+
+  @Test
+  @DisplayName("Test post a batch of reviews with a grade out of range")
+  public void testPostReviewsInvalidGrade() throws Exception {
+    mockMvc
+        .perform(
+            post("/v1/api/notes/reviews")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(List.of(new ReviewSubmission(1L, 0, 9, null)))))
+        .andExpect(status().isBadRequest());
+
+    then(reviewService).should(never()).submit(any(), any());
+  }
+
+  @Test
+  @DisplayName("Test post a batch of reviews unauthenticated")
+  public void testPostReviewsUnauthenticated() throws Exception {
+    mockMvc
+        .perform(
+            post("/v1/api/notes/reviews").contentType(MediaType.APPLICATION_JSON).content("[]"))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("Test export notes as newline-delimited JSON")
+  public void testExport() throws Exception {
+    var n1 =
+        Note.builder().title("title_1").content("content_1").type(NoteType.PERSONAL).build();
+    var n2 =
+        Note.builder().title("title_2").content("content_2").type(NoteType.LEETCODE).build();
+
+    willAnswer(
+            invocation -> {
+              Consumer<Note> consumer = invocation.getArgument(1);
+              consumer.accept(n1);
+              consumer.accept(n2);
+              return null;
+            })
+        .given(noteService)
+        .export(eq("user"), any());
+
+    MvcResult mvcResult =
+        mockMvc
+            .perform(get("/v1/api/notes/export").with(SecurityMockMvcRequestPostProcessors.jwt()))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc
+        .perform(asyncDispatch(mvcResult))
+        .andExpect(status().is2xxSuccessful())
+        .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+        .andExpect(
+            content()
+                .string(
+                    objectMapper.writeValueAsString(n1)
+                        + "\n"
+                        + objectMapper.writeValueAsString(n2)
+                        + "\n"));
+  }
+
+  @Test
+  @DisplayName("Test export notes unauthenticated")
+  public void testExportUnauthenticated() throws Exception {
+    mockMvc.perform(get("/v1/api/notes/export")).andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  @DisplayName("Test import a JSON array of notes authenticated with Role basic")
+  public void testImportJsonArray() throws Exception {
+    var n1 = Note.builder().title("title_1").content("content_1").type(NoteType.PERSONAL).build();
+    var n2 = Note.builder().title("title_2").content("content_2").type(NoteType.PERSONAL).build();
+
+    given(noteImporter.importNotes(any()))
+        .willAnswer(
+            invocation -> {
+              Iterator<Note> notes = invocation.getArgument(0);
+              assertThat(notes).toIterable().containsExactly(n1, n2);
+              return new NoteImportResult(
+                  1, List.of(new NoteImportFailure(1, Map.of("title", "title must be defined"))));
+            });
+
+    mockMvc
+        .perform(
+            post("/v1/api/notes/import")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(List.of(n1, n2))))
+        .andExpect(status().is2xxSuccessful())
+        .andExpect(jsonPath("$.imported", is(1)))
+        .andExpect(jsonPath("$.failures[0].index", is(1)))
+        .andExpect(jsonPath("$.failures[0].errors.title", is("title must be defined")));
+  }
+
+  @Test
+  @DisplayName("Test import newline-delimited notes authenticated with Role basic")
+  public void testImportNdjson() throws Exception {
+    var n1 = Note.builder().title("title_1").content("content_1").type(NoteType.PERSONAL).build();
+    var n2 = Note.builder().title("title_2").content("content_2").type(NoteType.PERSONAL).build();
+
+    given(noteImporter.importNotes(any()))
+        .willAnswer(
+            invocation -> {
+              Iterator<Note> notes = invocation.getArgument(0);
+              assertThat(notes).toIterable().containsExactly(n1, n2);
+              return new NoteImportResult(2, List.of());
+            });
+
+    mockMvc
+        .perform(
+            post("/v1/api/notes/import")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(asJsonString(n1) + "\n" + asJsonString(n2) + "\n"))
+        .andExpect(status().is2xxSuccessful())
+        .andExpect(jsonPath("$.imported", is(2)))
+        .andExpect(jsonPath("$.failures").isEmpty());
+  }
+
+  @Test
+  @DisplayName("Test import notes unauthenticated")
+  public void testImportUnauthenticated() throws Exception {
+    mockMvc
+        .perform(
+            post("/v1/api/notes/import").contentType(MediaType.APPLICATION_JSON).content("[]"))
+        .andExpect(status().isUnauthorized());
   }
 
   @Test
@@ -219,7 +566,7 @@ public class NoteControllerMvcTests {
     var note =
         Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
 
-    given(noteService.put(noteId, note)).willReturn(note);
+    given(noteService.put(noteId, note, null)).willReturn(note);
 
     mockMvc
         .perform(
@@ -237,6 +584,180 @@ public class NoteControllerMvcTests {
         .andExpect(jsonPath("$.score", is(note.getScore())));
   }
 
+  @Test
+  @DisplayName("Test put with an If-Match header authenticated with Role basic")
+  public void testPutIfMatchAuthenticatedRoleBasic() throws Exception {
+    var note =
+        Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
+    var saved =
+        Note.builder()
+            .id(1L)
+            .title("title")
+            .content("content")
+            .type(NoteType.PERSONAL)
+            .score(100)
+            .version(3)
+            .build();
+
+    given(noteService.put(1L, note, 2)).willReturn(saved);
+
+    mockMvc
+        .perform(
+            put("/v1/api/notes/1")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .header(HttpHeaders.IF_MATCH, "\"1-2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(note)))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1-3\""));
+  }
+
+  @Test
+  @DisplayName("Test put with an If-Match header of another note authenticated with Role basic")
+  public void testPutIfMatchOtherNoteAuthenticatedRoleBasic() throws Exception {
+    var note =
+        Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
+
+    mockMvc
+        .perform(
+            put("/v1/api/notes/1")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .header(HttpHeaders.IF_MATCH, "\"2-2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(note)))
+        .andExpect(status().isPreconditionFailed());
+  }
+
+  @Test
+  @DisplayName("Test delete with an outdated If-Match header authenticated with Role basic")
+  public void testDeleteIfMatchOutdatedAuthenticatedRoleBasic() throws Exception {
+    willThrow(new NotePreconditionFailedException(1L)).given(noteService).delete(1L, 2);
+
+    mockMvc
+        .perform(
+            delete("/v1/api/notes/1")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .header(HttpHeaders.IF_MATCH, "\"1-2\""))
+        .andExpect(status().isPreconditionFailed());
+  }
+
+  @Test
+  @DisplayName("Test get note by ID answers with its ETag")
+  public void testGetByIdETag() throws Exception {
+    var note = Note.builder().id(1L).title("title").content("content").version(4).build();
+
+    given(noteService.get(1L)).willReturn(note);
+
+    mockMvc
+        .perform(get("/v1/api/notes/1"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"1-4\""))
+        .andExpect(
+            header()
+                .string(
+                    HttpHeaders.CACHE_CONTROL,
+                    "max-age=5, public, stale-if-error=600, stale-while-revalidate=30"))
+        .andExpect(jsonPath("$.title", is("title")));
+  }
+
+  @Test
+  @DisplayName("Test get note by ID with a matching If-None-Match header")
+  public void testGetByIdNotModified() throws Exception {
+    var note = Note.builder().id(1L).title("title").content("content").version(4).build();
+
+    given(noteService.get(1L)).willReturn(note);
+
+    mockMvc
+        .perform(get("/v1/api/notes/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-4\""))
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+  }
+
+  @Test
+  @DisplayName("Test get a page of notes with a matching If-None-Match header")
+  public void testGetPageNotModified() throws Exception {
+    var page = new NotePage(List.of(Note.builder().id(1L).version(0).build()), null);
+
+    given(noteService.getPage("user", null, null, NoteService.DEFAULT_PAGE_SIZE)).willReturn(page);
+
+    var etag =
+        mockMvc
+            .perform(get("/v1/api/notes").with(SecurityMockMvcRequestPostProcessors.jwt()))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+    mockMvc
+        .perform(
+            get("/v1/api/notes")
+                .with(SecurityMockMvcRequestPostProcessors.jwt())
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified());
+  }
+
+  @Test
+  @DisplayName("Test patch with a merge patch authenticated with Role basic")
+  public void testPatchAuthenticatedRoleBasic() throws Exception {
+    var note =
+        Note.builder()
+            .id(1L)
+            .title("new_title")
+            .content("content")
+            .type(NoteType.PERSONAL)
+            .version(2)
+            .build();
+
+    given(notePatcher.patch(1L, "user", Map.of("version", 1, "title", "new_title")))
+        .willReturn(note);
+
+    mockMvc
+        .perform(
+            patch("/v1/api/notes/1")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .contentType("application/merge-patch+json")
+                .content("{\"version\": 1, \"title\": \"new_title\"}"))
+        .andExpect(status().is2xxSuccessful())
+        .andExpect(jsonPath("$.title", is("new_title")))
+        .andExpect(jsonPath("$.version", is(2)));
+  }
+
+  @Test
+  @DisplayName("Test patch with an outdated version authenticated with Role basic")
+  public void testPatchConflictAuthenticatedRoleBasic() throws Exception {
+    given(notePatcher.patch(1L, "user", Map.of("version", 1, "title", "new_title")))
+        .willThrow(new NoteVersionConflictException(1L));
+
+    mockMvc
+        .perform(
+            patch("/v1/api/notes/1")
+                .with(
+                    SecurityMockMvcRequestPostProcessors.jwt()
+                        .authorities(new SimpleGrantedAuthority("ROLE_basic")))
+                .contentType("application/merge-patch+json")
+                .content("{\"version\": 1, \"title\": \"new_title\"}"))
+        .andExpect(status().isConflict());
+  }
+
+  @Test
+  @DisplayName("Test patch unauthenticated")
+  public void testPatchUnauthenticated() throws Exception {
+    mockMvc
+        .perform(
+            patch("/v1/api/notes/1")
+                .contentType("application/merge-patch+json")
+                .content("{\"version\": 1}"))
+        .andExpect(status().isUnauthorized());
+  }
+
   @Test
   @DisplayName("Test delete authenticated with ROLE basic")
   public void testDeleteAuthenticatedRoleBasic() throws Exception {
@@ -344,7 +865,7 @@ public class NoteControllerMvcTests {
     var note =
         Note.builder().title("title").content("content").type(NoteType.PERSONAL).score(100).build();
 
-    given(noteService.put(noteId, note)).willReturn(note);
+    given(noteService.put(noteId, note, null)).willReturn(note);
 
     mockMvc
         .perform(
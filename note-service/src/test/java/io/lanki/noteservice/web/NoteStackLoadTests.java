@@ -0,0 +1,117 @@
+package io.lanki.noteservice.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Compares running note-service instances, one per execution mode, under many concurrent clients.
+ * Start the instances on the same database, for example the default profile on port 9001, {@code
+ * reactive} on 9002 and {@code virtual-threads} (built with {@code -Pvirtual-threads}) on 9003.
+ * Then run {@code mvn test -Dtest=NoteStackLoadTests -Dload=true -Dload.note-id=1} with the
+ * targets as {@code -Dload.targets=platform=http://localhost:9001,virtual=http://localhost:9003}.
+ */
+@EnabledIfSystemProperty(named = "load", matches = "true")
+@Slf4j
+public class NoteStackLoadTests {
+
+  private static final String CONCURRENCY_LEVELS =
+      System.getProperty("load.concurrency", "1000,2000,5000,10000");
+
+  private static final int REQUESTS = Integer.getInteger("load.requests", 50_000);
+
+  private static final int WARMUP_REQUESTS = 5_000;
+
+  private final HttpClient httpClient =
+      HttpClient.newBuilder()
+          .version(HttpClient.Version.HTTP_1_1)
+          .connectTimeout(Duration.ofSeconds(5))
+          .build();
+
+  @Test
+  @DisplayName("Test latency of each execution mode from 1k to 10k concurrent clients")
+  public void testConcurrentClients() throws InterruptedException {
+    var noteId = System.getProperty("load.note-id", "1");
+    var targets = new LinkedHashMap<String, URI>();
+    for (var target : System.getProperty("load.targets").split(",")) {
+      var nameAndUrl = target.split("=", 2);
+      targets.put(nameAndUrl[0], URI.create(nameAndUrl[1] + "/v1/api/notes/" + noteId));
+    }
+    assertThat(targets).isNotEmpty();
+
+    for (var uri : targets.values()) {
+      run(uri, WARMUP_REQUESTS, 100);
+    }
+    for (var level : CONCURRENCY_LEVELS.split(",")) {
+      var concurrency = Integer.parseInt(level.trim());
+      for (Map.Entry<String, URI> target : targets.entrySet()) {
+        // Refused and timed out requests are part of the comparison, so they are only reported.
+        run(target.getValue(), REQUESTS, concurrency).report(target.getKey(), concurrency);
+      }
+    }
+  }
+
+  // Keeps `concurrency` requests in flight, each on its own connection once the pool has grown.
+  private Result run(URI uri, int requests, int concurrency) throws InterruptedException {
+    var permits = new Semaphore(concurrency);
+    var errors = new AtomicInteger();
+    var latencies = new long[requests];
+    var futures = new CompletableFuture<?>[requests];
+    var start = System.nanoTime();
+    for (var i = 0; i < requests; i++) {
+      permits.acquire();
+      var index = i;
+      var sent = System.nanoTime();
+      var request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).build();
+      futures[i] =
+          httpClient
+              .sendAsync(request, BodyHandlers.discarding())
+              .whenComplete(
+                  (response, ex) -> {
+                    latencies[index] = System.nanoTime() - sent;
+                    if (ex != null || response.statusCode() != 200) {
+                      errors.incrementAndGet();
+                    }
+                    permits.release();
+                  });
+    }
+    CompletableFuture.allOf(futures).exceptionally(ex -> null).join();
+    var elapsed = System.nanoTime() - start;
+    Arrays.sort(latencies);
+    return new Result(latencies, errors.get(), elapsed);
+  }
+
+  private record Result(long[] latencies, int errors, long elapsedNanos) {
+
+    void report(String target, int concurrency) {
+      log.info(
+          String.format(
+              "%-9s c=%-6d %.0f req/s p50=%.3fms p99=%.3fms max=%.3fms errors=%d",
+              target,
+              concurrency,
+              latencies.length / (elapsedNanos / 1e9),
+              percentile(0.50),
+              percentile(0.99),
+              latencies[latencies.length - 1] / 1e6,
+              errors));
+    }
+
+    private double percentile(double percentile) {
+      return latencies[(int) Math.ceil(percentile * latencies.length) - 1] / 1e6;
+    }
+  }
+}
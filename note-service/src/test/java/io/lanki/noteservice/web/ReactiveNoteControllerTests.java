@@ -0,0 +1,193 @@
+package io.lanki.noteservice.web;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockJwt;
+
+import io.lanki.noteservice.config.JwtConfig;
+import io.lanki.noteservice.config.ReactiveSecurityConfig;
+import io.lanki.noteservice.domain.Note;
+import io.lanki.noteservice.domain.Note.NoteType;
+import io.lanki.noteservice.domain.NoteNotFoundException;
+import io.lanki.noteservice.domain.NotePage;
+import io.lanki.noteservice.domain.NotePreconditionFailedException;
+import io.lanki.noteservice.domain.NoteService;
+import io.lanki.noteservice.domain.ReactiveNoteService;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+@WebFluxTest(ReactiveNoteController.class)
+@Import({ReactiveSecurityConfig.class, JwtConfig.class})
+@ActiveProfiles("reactive")
+public class ReactiveNoteControllerTests {
+
+  @Autowired private WebTestClient webTestClient;
+
+  @MockBean private ReactiveNoteService noteService;
+
+  @MockBean private ReactiveJwtDecoder jwtDecoder;
+
+  @Test
+  @DisplayName("Test get a page of notes")
+  public void testGetPage() {
+    var note = note(1L, 0);
+    given(noteService.getPage("user", null, null, NoteService.DEFAULT_PAGE_SIZE))
+        .willReturn(Mono.just(new NotePage(List.of(note), "next")));
+
+    webTestClient
+        .mutateWith(mockJwt())
+        .get()
+        .uri("/v1/api/notes")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.content[0].title")
+        .isEqualTo(note.getTitle())
+        .jsonPath("$.next_cursor")
+        .isEqualTo("next");
+  }
+
+  @Test
+  @DisplayName("Test get a page of notes unauthenticated")
+  public void testGetPageUnauthenticated() {
+    webTestClient.get().uri("/v1/api/notes").exchange().expectStatus().isUnauthorized();
+  }
+
+  @Test
+  @DisplayName("Test get a note by ID with its ETag")
+  public void testGetById() {
+    given(noteService.get(1L)).willReturn(Mono.just(note(1L, 2)));
+
+    webTestClient
+        .get()
+        .uri("/v1/api/notes/1")
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectHeader()
+        .valueEquals(HttpHeaders.ETAG, "\"1-2\"")
+        .expectHeader()
+        .valueEquals(
+            HttpHeaders.CACHE_CONTROL,
+            "max-age=5, public, stale-if-error=600, stale-while-revalidate=30");
+  }
+
+  @Test
+  @DisplayName("Test get a note by ID that the client already has")
+  public void testGetByIdNotModified() {
+    given(noteService.get(1L)).willReturn(Mono.just(note(1L, 2)));
+
+    webTestClient
+        .get()
+        .uri("/v1/api/notes/1")
+        .header(HttpHeaders.IF_NONE_MATCH, "\"1-2\"")
+        .exchange()
+        .expectStatus()
+        .isNotModified()
+        .expectBody()
+        .isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test get a note by ID that does not exist")
+  public void testGetByIdNotFound() {
+    given(noteService.get(1L)).willReturn(Mono.error(new NoteNotFoundException(1L)));
+
+    webTestClient.get().uri("/v1/api/notes/1").exchange().expectStatus().isNotFound();
+  }
+
+  @Test
+  @DisplayName("Test post a note")
+  public void testPost() {
+    var note = note(null, 0);
+    given(noteService.post(any(), eq("user"))).willReturn(Mono.just(note(1L, 0)));
+
+    webTestClient
+        .mutateWith(mockJwt())
+        .post()
+        .uri("/v1/api/notes")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(note)
+        .exchange()
+        .expectStatus()
+        .isCreated()
+        .expectBody()
+        .jsonPath("$.id")
+        .isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Test post an invalid note")
+  public void testPostInvalid() {
+    var note = Note.builder().title("").content("Content").type(NoteType.PERSONAL).build();
+
+    webTestClient
+        .mutateWith(mockJwt())
+        .post()
+        .uri("/v1/api/notes")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(note)
+        .exchange()
+        .expectStatus()
+        .isBadRequest()
+        .expectBody()
+        .jsonPath("$.title")
+        .isEqualTo("title must be defined");
+  }
+
+  @Test
+  @DisplayName("Test put a note with a stale If-Match")
+  public void testPutPreconditionFailed() {
+    given(noteService.put(eq(1L), any(), eq(2), eq("user")))
+        .willReturn(Mono.error(new NotePreconditionFailedException(1L)));
+
+    webTestClient
+        .mutateWith(mockJwt())
+        .put()
+        .uri("/v1/api/notes/1")
+        .header(HttpHeaders.IF_MATCH, "\"1-2\"")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(note(null, 0))
+        .exchange()
+        .expectStatus()
+        .isEqualTo(412);
+  }
+
+  @Test
+  @DisplayName("Test delete a note")
+  public void testDelete() {
+    given(noteService.delete(1L, null, "user")).willReturn(Mono.empty());
+
+    webTestClient
+        .mutateWith(mockJwt())
+        .delete()
+        .uri("/v1/api/notes/1")
+        .exchange()
+        .expectStatus()
+        .isNoContent();
+  }
+
+  private static Note note(Long id, int version) {
+    return Note.builder()
+        .id(id)
+        .title("Title")
+        .content("Content")
+        .type(NoteType.PERSONAL)
+        .url("https://lanki.io")
+        .version(version)
+        .build();
+  }
+}